@@ -0,0 +1,114 @@
+package no.unit.nva.stubs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a request body sent with {@code Content-Encoding: aws-chunked}, which the AWS SDKs use to sign payloads
+ * chunk by chunk over plain HTTP. Each chunk is framed as {@code <hex size>;chunk-signature=<signature>\r\n<data>\r\n}
+ * and the body ends with a chunk of size zero, optionally followed by trailing headers. Signatures are not verified.
+ */
+class AwsChunkedInputStream extends InputStream {
+
+    private static final char CARRIAGE_RETURN = '\r';
+    private static final char LINE_FEED = '\n';
+    private static final char EXTENSION_SEPARATOR = ';';
+    private static final int HEXADECIMAL = 16;
+    private static final long INVALID_SIZE = -1;
+    private final InputStream in;
+    private long remainingInChunk;
+    private boolean insideBody;
+    private boolean finished;
+
+    public AwsChunkedInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] singleByte = new byte[1];
+        int read = read(singleByte, 0, 1);
+        return read < 0 ? read : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (remainingInChunk == 0 && !startNextChunk()) {
+            return -1;
+        }
+        int read = in.read(buffer, offset, (int) Math.min(length, remainingInChunk));
+        if (read < 0) {
+            throw new EOFException("Body ended inside a chunk");
+        }
+        remainingInChunk -= read;
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean startNextChunk() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (insideBody) {
+            readLine();
+        }
+        insideBody = true;
+        String header = readLine();
+        int separator = header.indexOf(EXTENSION_SEPARATOR);
+        String size = separator < 0 ? header : header.substring(0, separator);
+        remainingInChunk = chunkSize(header, size.trim());
+        if (remainingInChunk == 0) {
+            skipTrailers();
+            finished = true;
+            return false;
+        }
+        return true;
+    }
+
+    private static long chunkSize(String header, String size) {
+        long chunkSize;
+        try {
+            chunkSize = Long.parseLong(size, HEXADECIMAL);
+        } catch (NumberFormatException e) {
+            chunkSize = INVALID_SIZE;
+        }
+        if (chunkSize < 0) {
+            throw S3Errors.incompleteBody(header);
+        }
+        return chunkSize;
+    }
+
+    private void skipTrailers() throws IOException {
+        String trailer = readLine();
+        while (!trailer.isEmpty()) {
+            trailer = readLine();
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int current = in.read();
+        while (current != LINE_FEED) {
+            if (current < 0) {
+                if (line.length() == 0) {
+                    return line.toString();
+                }
+                throw new EOFException("Body ended inside a chunk header");
+            }
+            if (current != CARRIAGE_RETURN) {
+                line.append((char) current);
+            }
+            current = in.read();
+        }
+        return new String(line.toString().getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.US_ASCII);
+    }
+}
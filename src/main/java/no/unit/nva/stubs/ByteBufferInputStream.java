@@ -0,0 +1,70 @@
+package no.unit.nva.stubs;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} reading directly from a {@link ByteBuffer} without copying it. The stream owns its buffer's
+ * position and limit, so callers should pass a {@link ByteBuffer#duplicate()} of any shared buffer.
+ */
+class ByteBufferInputStream extends InputStream {
+
+    private static final int END_OF_STREAM = -1;
+    private static final int UNSIGNED_BYTE_MASK = 0xFF;
+    private final ByteBuffer buffer;
+    private int mark;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        super();
+        this.buffer = buffer;
+        this.mark = buffer.position();
+    }
+
+    @Override
+    public int read() {
+        if (buffer.hasRemaining()) {
+            return buffer.get() & UNSIGNED_BYTE_MASK;
+        }
+        return END_OF_STREAM;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return END_OF_STREAM;
+        }
+        int bytesToRead = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, bytesToRead);
+        return bytesToRead;
+    }
+
+    @Override
+    public long skip(long bytesToSkip) {
+        int skipped = (int) Math.max(0, Math.min(bytesToSkip, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = buffer.position();
+    }
+
+    @Override
+    public synchronized void reset() {
+        buffer.position(mark);
+    }
+}
@@ -0,0 +1,114 @@
+package no.unit.nva.stubs;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.SdkPublisher;
+
+/**
+ * Publishes object content as a sequence of read-only {@link ByteBuffer} chunks. Chunks are views of the stored
+ * bytes and are only emitted when the subscriber has signalled demand for them. Signals are delivered on the
+ * supplied executor and never concurrently, so a slow subscriber holds back the publisher instead of a thread.
+ */
+class ByteBufferPublisher implements SdkPublisher<ByteBuffer> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private final ObjectContent content;
+    private final Executor executor;
+    private final int chunkSize;
+
+    public ByteBufferPublisher(ObjectContent content, Executor executor) {
+        this(content, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ByteBufferPublisher(ObjectContent content, Executor executor, int chunkSize) {
+        this.content = content;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        ChunkSubscription subscription = new ChunkSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.schedule();
+    }
+
+    private class ChunkSubscription implements Subscription {
+
+        private final Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean done;
+        private volatile Throwable pendingError;
+        private long position;
+
+        public ChunkSubscription(Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long numberOfChunks) {
+            if (done || pendingError != null) {
+                return;
+            }
+            if (numberOfChunks <= 0) {
+                pendingError = new IllegalArgumentException("Demand must be positive, was " + numberOfChunks);
+            } else {
+                demand.getAndUpdate(current -> addCapped(current, numberOfChunks));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        private void schedule() {
+            if (pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                emitRequestedChunks();
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emitRequestedChunks() {
+            if (pendingError != null) {
+                signalError();
+                return;
+            }
+            while (!done && position < content.size() && demand.get() > 0) {
+                ByteBuffer chunk = content.read(position, chunkSize);
+                position += chunk.remaining();
+                demand.decrementAndGet();
+                subscriber.onNext(chunk);
+            }
+            if (!done && position >= content.size()) {
+                done = true;
+                subscriber.onComplete();
+            }
+        }
+
+        private void signalError() {
+            if (!done) {
+                done = true;
+                subscriber.onError(pendingError);
+            }
+        }
+
+        private long addCapped(long current, long increment) {
+            long sum = current + increment;
+            return sum < 0 ? Long.MAX_VALUE : sum;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package no.unit.nva.stubs;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single HTTP byte range ({@code bytes=first-last}, {@code bytes=first-} or {@code bytes=-suffixLength}) resolved
+ * against the size of an object. Like S3, headers that are not a single well-formed byte range are ignored and the
+ * whole object is returned. Positions too large for a {@code long} lie beyond the end of any object and are clamped
+ * like any other position past the end.
+ */
+final class ByteRange {
+
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("^\\s*bytes=(\\d*)-(\\d*)\\s*$");
+    private static final int FIRST_GROUP = 1;
+    private static final int LAST_GROUP = 2;
+    private final long first;
+    private final long last;
+    private final long objectSize;
+
+    private ByteRange(long first, long last, long objectSize) {
+        this.first = first;
+        this.last = last;
+        this.objectSize = objectSize;
+    }
+
+    /**
+     * Parses a {@code Range} header.
+     *
+     * @param rangeHeader the header value, possibly null.
+     * @param objectSize  the size of the object the range refers to.
+     * @return the range, or empty when the header is absent or should be ignored.
+     */
+    public static Optional<ByteRange> parse(String rangeHeader, long objectSize) {
+        if (rangeHeader == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = SINGLE_BYTE_RANGE.matcher(rangeHeader);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        String first = matcher.group(FIRST_GROUP);
+        String last = matcher.group(LAST_GROUP);
+        if (first.isEmpty() && last.isEmpty()) {
+            return Optional.empty();
+        }
+        if (first.isEmpty()) {
+            return Optional.of(suffix(position(last), objectSize));
+        }
+        long firstByte = position(first);
+        if (last.isEmpty()) {
+            return Optional.of(new ByteRange(firstByte, objectSize - 1, objectSize));
+        }
+        long lastByte = position(last);
+        if (lastByte < firstByte) {
+            return Optional.empty();
+        }
+        return Optional.of(new ByteRange(firstByte, Math.min(lastByte, objectSize - 1), objectSize));
+    }
+
+    private static long position(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static ByteRange suffix(long suffixLength, long objectSize) {
+        return new ByteRange(Math.max(0, objectSize - suffixLength), objectSize - 1, objectSize);
+    }
+
+    /**
+     * A range is satisfiable when it overlaps the object by at least one byte.
+     *
+     * @return true if there are bytes to return.
+     */
+    public boolean isSatisfiable() {
+        return first < objectSize && first <= last;
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLength() {
+        return last - first + 1;
+    }
+
+    /**
+     * The value of the {@code Content-Range} header of a partial response.
+     *
+     * @return for example {@code bytes 0-99/1000}.
+     */
+    public String toContentRange() {
+        return String.format("bytes %d-%d/%d", first, last, objectSize);
+    }
+}
@@ -0,0 +1,109 @@
+package no.unit.nva.stubs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Content made of other content laid end to end, such as the parts of a completed multipart upload. The parts are
+ * never concatenated: streams read through the parts in turn and buffers are views of the part that holds the
+ * requested offset.
+ */
+class CompositeContent implements ObjectContent {
+
+    private final List<ObjectContent> parts;
+    private final long[] partOffsets;
+    private final long size;
+
+    public CompositeContent(List<ObjectContent> parts) {
+        this.parts = parts.stream().filter(part -> part.size() > 0).collect(Collectors.toList());
+        this.partOffsets = new long[this.parts.size()];
+        long offset = 0;
+        for (int index = 0; index < this.parts.size(); index++) {
+            partOffsets[index] = offset;
+            offset += this.parts.get(index).size();
+        }
+        this.size = offset;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream newInputStream() {
+        return new SequenceInputStream(new LazyStreams(parts.iterator()));
+    }
+
+    /**
+     * Returns bytes from the single part holding {@code offset}, so the buffer may be shorter than {@code length}
+     * when the requested bytes span several parts.
+     */
+    @Override
+    public ByteBuffer read(long offset, int length) {
+        if (offset >= size) {
+            return ByteBuffer.allocate(0);
+        }
+        int partIndex = partContaining(offset);
+        return parts.get(partIndex).read(offset - partOffsets[partIndex], length);
+    }
+
+    @Override
+    public ObjectContent slice(long offset, long length) {
+        long end = Math.min(size, offset + length);
+        List<ObjectContent> slicedParts = new ArrayList<>();
+        long position = offset;
+        while (position < end) {
+            int partIndex = partContaining(position);
+            ObjectContent part = parts.get(partIndex);
+            long offsetInPart = position - partOffsets[partIndex];
+            long bytesFromPart = Math.min(part.size() - offsetInPart, end - position);
+            slicedParts.add(part.slice(offsetInPart, bytesFromPart));
+            position += bytesFromPart;
+        }
+        return slicedParts.size() == 1 ? slicedParts.get(0) : new CompositeContent(slicedParts);
+    }
+
+    @Override
+    public void transferTo(WritableByteChannel target) throws IOException {
+        for (ObjectContent part : parts) {
+            part.transferTo(target);
+        }
+    }
+
+    private int partContaining(long offset) {
+        int searchResult = Arrays.binarySearch(partOffsets, offset);
+        return searchResult >= 0 ? searchResult : -searchResult - 2;
+    }
+
+    /**
+     * Opens the stream of each part only when the previous one has been read to its end.
+     */
+    private static class LazyStreams implements Enumeration<InputStream> {
+
+        private final Iterator<ObjectContent> parts;
+
+        public LazyStreams(Iterator<ObjectContent> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return parts.hasNext();
+        }
+
+        @Override
+        public InputStream nextElement() {
+            return parts.next().newInputStream();
+        }
+    }
+}
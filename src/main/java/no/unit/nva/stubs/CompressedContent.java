@@ -0,0 +1,134 @@
+package no.unit.nva.stubs;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Object content stored as independently compressed blocks in one off-heap buffer. A read inflates the single block
+ * holding the requested offset, so ranged reads cost the blocks they cover rather than the whole object, and slices
+ * share the compressed bytes. The compressed bytes can be moved elsewhere, such as to a {@link SegmentFile}, and are
+ * then read back one block at a time.
+ */
+class CompressedContent implements ObjectContent {
+
+    private final ContentCompressor compressor;
+    private final ObjectContent blocks;
+    private final int[] blockEnds;
+    private final long totalSize;
+    private final long start;
+    private final long size;
+
+    public CompressedContent(ContentCompressor compressor, ByteBuffer data, int[] blockEnds, long totalSize) {
+        this(compressor, new DirectBufferContent(data), blockEnds, totalSize, 0, totalSize);
+    }
+
+    private CompressedContent(ContentCompressor compressor, ObjectContent blocks, int[] blockEnds, long totalSize,
+                              long start, long size) {
+        this.compressor = compressor;
+        this.blocks = blocks;
+        this.blockEnds = blockEnds;
+        this.totalSize = totalSize;
+        this.start = start;
+        this.size = size;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream newInputStream() {
+        return new BlockInputStream();
+    }
+
+    /**
+     * Returns bytes from the single block holding {@code offset}, so the buffer may be shorter than {@code length}
+     * when the requested bytes span several blocks.
+     */
+    @Override
+    public ByteBuffer read(long offset, int length) {
+        if (offset >= size || length <= 0) {
+            return ByteBuffer.allocate(0);
+        }
+        int blockSize = compressor.getBlockSize();
+        long position = start + offset;
+        int block = (int) (position / blockSize);
+        long blockStart = (long) block * blockSize;
+        int compressedStart = block == 0 ? 0 : blockEnds[block - 1];
+        ByteBuffer compressedBlock = blocks.read(compressedStart, blockEnds[block] - compressedStart);
+        ByteBuffer inflated = compressor.inflate(compressedBlock, (int) Math.min(blockSize, totalSize - blockStart));
+        int first = (int) (position - blockStart);
+        int available = (int) Math.min(Math.min(length, size - offset), inflated.remaining() - first);
+        inflated.position(first).limit(first + available);
+        return inflated.slice();
+    }
+
+    @Override
+    public ObjectContent slice(long offset, long length) {
+        long sliceStart = Math.min(offset, size);
+        return new CompressedContent(compressor, blocks, blockEnds, totalSize, start + sliceStart,
+                                     Math.min(length, size - sliceStart));
+    }
+
+    /**
+     * The compressed bytes of every block of the content, which is all the memory the content takes.
+     *
+     * @return the compressed blocks.
+     */
+    public ObjectContent getCompressedBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Returns the same content reading its compressed blocks from another place.
+     *
+     * @param movedBlocks a copy of the bytes returned by {@link #getCompressedBlocks()}.
+     * @return content reading the same bytes.
+     */
+    public CompressedContent withCompressedBlocks(ObjectContent movedBlocks) {
+        return new CompressedContent(compressor, movedBlocks, blockEnds, totalSize, start, size);
+    }
+
+    /**
+     * Inflates one block at a time as the stream is read.
+     */
+    private class BlockInputStream extends InputStream {
+
+        private static final int END_OF_STREAM = -1;
+        private static final int UNSIGNED_BYTE_MASK = 0xFF;
+        private long position;
+        private ByteBuffer block = ByteBuffer.allocate(0);
+
+        @Override
+        public int read() {
+            return nextBlock() ? block.get() & UNSIGNED_BYTE_MASK : END_OF_STREAM;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextBlock()) {
+                return END_OF_STREAM;
+            }
+            int read = Math.min(length, block.remaining());
+            block.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return block.remaining();
+        }
+
+        private boolean nextBlock() {
+            if (!block.hasRemaining() && position < size) {
+                block = CompressedContent.this.read(position, compressor.getBlockSize());
+                position += block.remaining();
+            }
+            return block.hasRemaining();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package no.unit.nva.stubs;
+
+import java.time.Duration;
+
+/**
+ * An immutable copy of the counters of a client storing objects compressed: the bytes compressed so far, what they
+ * were compressed to, and the time spent compressing on write and inflating on read.
+ */
+public final class CompressionStatistics {
+
+    public static final CompressionStatistics EMPTY = new CompressionStatistics(0, 0, 0, 0, 0);
+    private final long uncompressedBytes;
+    private final long compressedBytes;
+    private final long compressionNanos;
+    private final long inflatedBlocks;
+    private final long decompressionNanos;
+
+    CompressionStatistics(long uncompressedBytes, long compressedBytes, long compressionNanos, long inflatedBlocks,
+                          long decompressionNanos) {
+        this.uncompressedBytes = uncompressedBytes;
+        this.compressedBytes = compressedBytes;
+        this.compressionNanos = compressionNanos;
+        this.inflatedBlocks = inflatedBlocks;
+        this.decompressionNanos = decompressionNanos;
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * How many times smaller the content became, over all content compressed so far.
+     *
+     * @return the uncompressed bytes divided by the compressed bytes, or 1 when nothing has been compressed.
+     */
+    public double getRatio() {
+        return compressedBytes == 0 ? 1 : (double) uncompressedBytes / compressedBytes;
+    }
+
+    public Duration getCompressionTime() {
+        return Duration.ofNanos(compressionNanos);
+    }
+
+    /**
+     * The number of blocks inflated by reads. A ranged read inflates only the blocks it covers.
+     *
+     * @return the number of inflated blocks.
+     */
+    public long getInflatedBlocks() {
+        return inflatedBlocks;
+    }
+
+    public Duration getDecompressionTime() {
+        return Duration.ofNanos(decompressionNanos);
+    }
+}
@@ -0,0 +1,116 @@
+package no.unit.nva.stubs;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses object content with the JDK's {@link Deflater} in independent blocks of a fixed uncompressed size, so
+ * that a read inflates only the blocks it covers, and counts the bytes and the time spent. A compressor is shared by
+ * the stores of a client and its forks, and is thread-safe.
+ */
+class ContentCompressor {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    private final int blockSize;
+    private final int level;
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+    private final LongAdder inflatedBlocks = new LongAdder();
+    private final LongAdder decompressionNanos = new LongAdder();
+
+    public ContentCompressor() {
+        this(DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ContentCompressor(int blockSize, int level) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("The block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.level = level;
+    }
+
+    /**
+     * Compresses content into a single off-heap buffer holding its blocks one after the other.
+     *
+     * @param content the content, which is read once.
+     * @return content inflating its blocks when they are read.
+     */
+    public ObjectContent compress(ObjectContent content) {
+        long started = System.nanoTime();
+        int blockCount = Math.toIntExact((content.size() + blockSize - 1) / blockSize);
+        int[] blockEnds = new int[blockCount];
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] scratch = new byte[blockSize];
+        Deflater deflater = new Deflater(level);
+        try {
+            for (int block = 0; block < blockCount; block++) {
+                deflater.reset();
+                long position = (long) block * blockSize;
+                long blockEnd = Math.min(content.size(), position + blockSize);
+                while (position < blockEnd) {
+                    ByteBuffer chunk = content.read(position, (int) (blockEnd - position));
+                    position += chunk.remaining();
+                    deflater.setInput(chunk);
+                    while (!deflater.needsInput()) {
+                        compressed.write(scratch, 0, deflater.deflate(scratch));
+                    }
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(scratch, 0, deflater.deflate(scratch));
+                }
+                blockEnds[block] = compressed.size();
+            }
+        } finally {
+            deflater.end();
+        }
+        ByteBuffer data = ByteBuffer.allocateDirect(compressed.size()).put(compressed.toByteArray()).flip();
+        uncompressedBytes.add(content.size());
+        compressedBytes.add(data.remaining());
+        compressionNanos.add(System.nanoTime() - started);
+        return new CompressedContent(this, data, blockEnds, content.size());
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public CompressionStatistics statistics() {
+        return new CompressionStatistics(uncompressedBytes.sum(), compressedBytes.sum(), compressionNanos.sum(),
+                                         inflatedBlocks.sum(), decompressionNanos.sum());
+    }
+
+    /**
+     * Inflates one block.
+     *
+     * @param compressedBlock the compressed bytes of the block.
+     * @param length          the number of bytes in the inflated block.
+     * @return a read-only buffer with the inflated bytes.
+     */
+    ByteBuffer inflate(ByteBuffer compressedBlock, int length) {
+        long started = System.nanoTime();
+        ByteBuffer inflated = ByteBuffer.allocate(length);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressedBlock);
+            while (inflated.hasRemaining()) {
+                if (inflater.inflate(inflated) == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("A compressed block ended before its " + length + " bytes");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+        inflatedBlocks.increment();
+        decompressionNanos.add(System.nanoTime() - started);
+        return inflated.flip().asReadOnlyBuffer();
+    }
+}
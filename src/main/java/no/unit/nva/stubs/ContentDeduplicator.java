@@ -0,0 +1,97 @@
+package no.unit.nva.stubs;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps one copy of the bytes of each distinct object content, keyed by the SHA-256 digest of the bytes. Storing
+ * content that is already present returns the stored copy, so the new bytes can be dropped. A blob lives for as long
+ * as any key, snapshot or reader refers to it: the garbage collector does the reference counting, because snapshots
+ * of the store make it impossible to know from index updates alone when the last reference goes away.
+ */
+class ContentDeduplicator {
+
+    private static final String SHA_256 = "SHA-256";
+    private final Map<ByteBuffer, BlobReference> blobs;
+    private final ReferenceQueue<ObjectContent> collectedBlobs;
+
+    public ContentDeduplicator() {
+        this.blobs = new ConcurrentHashMap<>();
+        this.collectedBlobs = new ReferenceQueue<>();
+    }
+
+    /**
+     * Returns the stored copy of content with the same bytes, or stores the content when it is new.
+     *
+     * @param content the content to store.
+     * @param retain  applied to new content before it is stored, for example to place it under a memory budget.
+     * @return the content that should be indexed.
+     */
+    public ObjectContent deduplicate(ObjectContent content, UnaryOperator<ObjectContent> retain) {
+        expungeCollectedBlobs();
+        ByteBuffer digest = digestOf(content);
+        ObjectContent[] stored = new ObjectContent[1];
+        blobs.compute(digest, (key, reference) -> {
+            stored[0] = reference == null ? null : reference.get();
+            if (stored[0] != null) {
+                return reference;
+            }
+            stored[0] = retain.apply(content);
+            return new BlobReference(key, stored[0], collectedBlobs);
+        });
+        return stored[0];
+    }
+
+    /**
+     * The number of distinct blobs that are still referenced.
+     *
+     * @return the number of blobs.
+     */
+    public int size() {
+        expungeCollectedBlobs();
+        return blobs.size();
+    }
+
+    private void expungeCollectedBlobs() {
+        BlobReference collected = (BlobReference) collectedBlobs.poll();
+        while (collected != null) {
+            blobs.remove(collected.digest, collected);
+            collected = (BlobReference) collectedBlobs.poll();
+        }
+    }
+
+    private static ByteBuffer digestOf(ObjectContent content) {
+        MessageDigest sha256 = newSha256Digest();
+        long position = 0;
+        while (position < content.size()) {
+            ByteBuffer chunk = content.read(position, ByteBufferPublisher.DEFAULT_CHUNK_SIZE);
+            position += chunk.remaining();
+            sha256.update(chunk);
+        }
+        return ByteBuffer.wrap(sha256.digest());
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance(SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class BlobReference extends WeakReference<ObjectContent> {
+
+        private final ByteBuffer digest;
+
+        private BlobReference(ByteBuffer digest, ObjectContent blob, ReferenceQueue<ObjectContent> queue) {
+            super(blob, queue);
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package no.unit.nva.stubs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The origin of an object that is loaded on first read, such as a file, an archive entry or a classpath resource.
+ * Opening a source is the only point where its bytes are touched, so a source costs no I/O until it is read.
+ */
+final class ContentSource {
+
+    public static final long UNKNOWN_SIZE = ContentWriter.UNKNOWN_CONTENT_LENGTH;
+    private final long size;
+    private final StreamOpener opener;
+
+    private ContentSource(long size, StreamOpener opener) {
+        this.size = size;
+        this.opener = opener;
+    }
+
+    public static ContentSource ofFile(Path file, long size) {
+        return new ContentSource(size, () -> Files.newInputStream(file));
+    }
+
+    /**
+     * An entry of an open archive. The archive must stay open for as long as the source may be read.
+     *
+     * @param archive the archive containing the entry.
+     * @param entry   the entry.
+     * @return the source.
+     */
+    public static ContentSource ofArchiveEntry(ZipFile archive, ZipEntry entry) {
+        return new ContentSource(entry.getSize(), () -> archive.getInputStream(entry));
+    }
+
+    public static ContentSource ofUrl(URL url) {
+        return new ContentSource(UNKNOWN_SIZE, url::openStream);
+    }
+
+    /**
+     * The number of bytes in the source as known without reading it.
+     *
+     * @return the size or {@link #UNKNOWN_SIZE}.
+     */
+    public long size() {
+        return size;
+    }
+
+    public InputStream open() throws IOException {
+        return opener.open();
+    }
+
+    private interface StreamOpener {
+
+        InputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,50 @@
+package no.unit.nva.stubs;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Collects the chunks of an asynchronous request body into a {@link ContentWriter} and hands the finished content to
+ * a callback, completing the future with the callback's result.
+ *
+ * @param <T> the type of the result.
+ */
+class ContentSubscriber<T> implements Subscriber<ByteBuffer> {
+
+    private final ContentWriter writer;
+    private final Function<ObjectContent, T> onContent;
+    private final CompletableFuture<T> result;
+
+    public ContentSubscriber(ContentWriter writer, Function<ObjectContent, T> onContent, CompletableFuture<T> result) {
+        this.writer = writer;
+        this.onContent = onContent;
+        this.result = result;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+        writer.write(chunk);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        result.completeExceptionally(error);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            result.complete(onContent.apply(writer.finish()));
+        } catch (RuntimeException exception) {
+            result.completeExceptionally(exception);
+        }
+    }
+}
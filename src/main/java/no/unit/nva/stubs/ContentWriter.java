@@ -0,0 +1,144 @@
+package no.unit.nva.stubs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Accumulates the bytes of one object in off-heap memory. When the length is known up front the bytes are written
+ * straight into their final arena region; otherwise they are staged in a growing direct buffer and moved into the
+ * arena once the object is complete. Objects larger than a segment are kept as a chain of fixed-size segments rather
+ * than one buffer, so their size is not limited by the 2 GiB capacity of a buffer and no single allocation needs the
+ * whole object. The MD5 digest of the bytes is updated as they are written, so the ETag of the object is known when it
+ * is finished without reading it again. A writer is not thread-safe and is used for a single object.
+ */
+class ContentWriter {
+
+    public static final long UNKNOWN_CONTENT_LENGTH = -1;
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int END_OF_STREAM = -1;
+    private static final int INITIAL_STAGING_BUFFER_SIZE = 64 * 1024;
+    private final DirectMemoryArena arena;
+    private final long contentLength;
+    private final int segmentSize;
+    private final MessageDigest md5;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private long segmentedBytes;
+    private ByteBuffer buffer;
+    private boolean staged;
+    private String eTag;
+
+    public ContentWriter(DirectMemoryArena arena, long contentLength) {
+        this(arena, contentLength, DEFAULT_SEGMENT_SIZE);
+    }
+
+    ContentWriter(DirectMemoryArena arena, long contentLength, int segmentSize) {
+        this.arena = arena;
+        this.contentLength = contentLength;
+        this.segmentSize = segmentSize;
+        this.md5 = ETags.newMd5Digest();
+        this.staged = contentLength == UNKNOWN_CONTENT_LENGTH;
+        this.buffer = staged
+                          ? ByteBuffer.allocateDirect(Math.min(INITIAL_STAGING_BUFFER_SIZE, segmentSize))
+                          : arena.allocate((int) Math.min(contentLength, segmentSize));
+    }
+
+    /**
+     * Copies the remaining bytes of the chunk.
+     *
+     * @param chunk the next bytes of the object.
+     */
+    public void write(ByteBuffer chunk) {
+        md5.update(chunk.duplicate());
+        while (chunk.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                nextBuffer();
+            }
+            ByteBuffer piece = chunk.duplicate();
+            piece.limit(piece.position() + Math.min(piece.remaining(), buffer.remaining()));
+            buffer.put(piece);
+            chunk.position(piece.position());
+        }
+    }
+
+    /**
+     * Reads the channel to its end.
+     *
+     * @param channel the source of the object's bytes.
+     * @throws IOException when reading from the channel fails.
+     */
+    public void writeFrom(ReadableByteChannel channel) throws IOException {
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                nextBuffer();
+            }
+            int start = buffer.position();
+            if (channel.read(buffer) == END_OF_STREAM) {
+                return;
+            }
+            md5.update(buffer.duplicate().flip().position(start));
+        }
+    }
+
+    /**
+     * Completes the object.
+     *
+     * @return the content, which is a chain of segments when the object outgrew a single segment.
+     */
+    public ObjectContent finish() {
+        eTag = ETags.of(md5);
+        buffer.flip();
+        if (staged) {
+            ByteBuffer region = arena.allocate(buffer.remaining());
+            region.put(buffer);
+            region.flip();
+            buffer = region;
+            staged = false;
+        }
+        if (buffer.hasRemaining() || segments.isEmpty()) {
+            segments.add(buffer);
+        }
+        return segments.size() == 1
+                   ? new DirectBufferContent(segments.get(0))
+                   : new CompositeContent(segments.stream().map(DirectBufferContent::new).collect(Collectors.toList()));
+    }
+
+    /**
+     * The ETag of the written bytes.
+     *
+     * @return the quoted MD5 digest, or null until the writer has been finished.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Makes room for more bytes once the current buffer is full: a staging buffer doubles until it reaches the segment
+     * size, and a full segment is added to the chain and followed by a new one. The new segment is an arena region
+     * of the expected remaining length or, when the writer has already received all expected bytes or the length is
+     * unknown, a staging buffer as large as the bytes written so far, up to a segment.
+     */
+    private void nextBuffer() {
+        if (staged && buffer.capacity() < segmentSize) {
+            ByteBuffer larger = ByteBuffer.allocateDirect((int) Math.min(segmentSize, 2L * buffer.capacity()));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+            return;
+        }
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            segments.add(buffer);
+            segmentedBytes += buffer.remaining();
+        }
+        long expectedBytes = contentLength - segmentedBytes;
+        staged = expectedBytes <= 0;
+        buffer = staged
+                     ? ByteBuffer.allocateDirect((int) Math.min(segmentSize, Math.max(1, segmentedBytes)))
+                     : arena.allocate((int) Math.min(expectedBytes, segmentSize));
+    }
+}
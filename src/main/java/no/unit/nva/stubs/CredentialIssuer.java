@@ -0,0 +1,82 @@
+package no.unit.nva.stubs;
+
+import com.amazonaws.services.securitytoken.model.Credentials;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues the temporary credentials of {@link FakeStsClient}. Every principal, session and requested duration gets its
+ * own credentials, which are cached until they expire, so that repeated requests for the same session return the same
+ * credentials instead of growing the cache, requests for another duration get credentials expiring when they asked
+ * for, and requests after the expiry are issued new ones.
+ */
+final class CredentialIssuer {
+
+    public static final String ACCESS_KEY_ID_PREFIX = "ASIA";
+    public static final String SESSION_TOKEN_PREFIX = "FwoGZXIvYXdzE";
+    private static final char[] KEY_ID_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    private static final char[] SECRET_CHARACTERS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final int KEY_ID_SUFFIX_LENGTH = 16;
+    private static final int SECRET_LENGTH = 40;
+    private static final int SESSION_TOKEN_SUFFIX_LENGTH = 64;
+    private static final long FIRST_SEQUENCE_BOUND = 1L << 40;
+    private final Clock clock;
+    private final ConcurrentMap<List<Object>, Credentials> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong(ThreadLocalRandom.current().nextLong(FIRST_SEQUENCE_BOUND));
+
+    CredentialIssuer(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the credentials of a session for the duration, issuing new ones when the session has none for the
+     * duration or they have expired.
+     *
+     * @param principal   the identity the session belongs to.
+     * @param sessionName the name of the session.
+     * @param duration    how long new credentials are valid.
+     * @return a copy of the credentials, which callers may change without affecting the cache.
+     */
+    public Credentials issue(String principal, String sessionName, Duration duration) {
+        List<Object> session = List.of(principal, sessionName, duration);
+        return sessions.compute(session, (ignored, cached) -> isValid(cached) ? cached : newCredentials(duration))
+                   .clone();
+    }
+
+    private boolean isValid(Credentials credentials) {
+        return credentials != null && clock.instant().isBefore(credentials.getExpiration().toInstant());
+    }
+
+    private Credentials newCredentials(Duration duration) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new Credentials(ACCESS_KEY_ID_PREFIX + keyIdSuffix(sequence.getAndIncrement()),
+                               randomString(random, SECRET_LENGTH),
+                               SESSION_TOKEN_PREFIX + randomString(random, SESSION_TOKEN_SUFFIX_LENGTH),
+                               Date.from(clock.instant().plus(duration)));
+    }
+
+    private static String keyIdSuffix(long number) {
+        char[] suffix = new char[KEY_ID_SUFFIX_LENGTH];
+        long remaining = number;
+        for (int index = suffix.length - 1; index >= 0; index--) {
+            suffix[index] = KEY_ID_CHARACTERS[(int) Long.remainderUnsigned(remaining, KEY_ID_CHARACTERS.length)];
+            remaining = Long.divideUnsigned(remaining, KEY_ID_CHARACTERS.length);
+        }
+        return new String(suffix);
+    }
+
+    private static String randomString(ThreadLocalRandom random, int length) {
+        char[] characters = new char[length];
+        for (int index = 0; index < length; index++) {
+            characters[index] = SECRET_CHARACTERS[random.nextInt(SECRET_CHARACTERS.length)];
+        }
+        return new String(characters);
+    }
+}
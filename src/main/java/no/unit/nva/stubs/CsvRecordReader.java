@@ -0,0 +1,152 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import software.amazon.awssdk.services.s3.model.CSVInput;
+import software.amazon.awssdk.services.s3.model.FileHeaderInfo;
+
+/**
+ * Reads CSV records as JSON objects whose fields are named after the header line, when the request says to use it,
+ * or by position as {@code _1}, {@code _2} and so on. The bytes are split on the delimiters before they are decoded,
+ * which is safe for UTF-8 because the delimiters are ASCII characters, and counted as they are consumed.
+ */
+final class CsvRecordReader implements RecordReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int END_OF_INPUT = -1;
+    private static final int NO_COMMENTS = -2;
+    private static final String CRLF = "\r\n";
+    private final InputStream input;
+    private final int fieldDelimiter;
+    private final int recordDelimiter;
+    private final int quoteCharacter;
+    private final int commentCharacter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final List<String> header;
+    private byte[] field = new byte[64];
+    private int fieldLength;
+    private int position;
+    private int limit;
+    private long bytesScanned;
+
+    CsvRecordReader(CSVInput csvInput, InputStream input) throws IOException {
+        this.input = input;
+        this.fieldDelimiter = delimiterOf(csvInput.fieldDelimiter(), ',');
+        String recordDelimiter = csvInput.recordDelimiter();
+        this.recordDelimiter = CRLF.equals(recordDelimiter) ? '\n' : delimiterOf(recordDelimiter, '\n');
+        this.quoteCharacter = delimiterOf(csvInput.quoteCharacter(), '"');
+        this.commentCharacter = csvInput.comments() == null ? NO_COMMENTS : delimiterOf(csvInput.comments(), '#');
+        FileHeaderInfo fileHeaderInfo = csvInput.fileHeaderInfo();
+        List<String> firstLine = fileHeaderInfo == FileHeaderInfo.USE || fileHeaderInfo == FileHeaderInfo.IGNORE
+                                     ? readFields()
+                                     : null;
+        this.header = fileHeaderInfo == FileHeaderInfo.USE && firstLine != null ? firstLine : List.of();
+    }
+
+    @Override
+    public JsonNode next() throws IOException {
+        List<String> fields = readFields();
+        if (fields == null) {
+            return null;
+        }
+        ObjectNode record = JsonNodeFactory.instance.objectNode();
+        for (int index = 0; index < fields.size(); index++) {
+            String name = index < header.size() ? header.get(index) : "_" + (index + 1);
+            record.put(name, fields.get(index));
+        }
+        return record;
+    }
+
+    @Override
+    public long getBytesScanned() {
+        return bytesScanned;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private List<String> readFields() throws IOException {
+        int next = read();
+        while (next == commentCharacter || next == recordDelimiter) {
+            while (next != recordDelimiter && next != END_OF_INPUT) {
+                next = read();
+            }
+            next = read();
+        }
+        if (next == END_OF_INPUT) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        boolean quoted = false;
+        while (true) {
+            if (quoted && next == quoteCharacter) {
+                next = read();
+                if (next != quoteCharacter) {
+                    quoted = false;
+                    continue;
+                }
+                append(next);
+            } else if (quoted && next != END_OF_INPUT) {
+                append(next);
+            } else if (next == quoteCharacter && fieldLength == 0) {
+                quoted = true;
+            } else if (next == fieldDelimiter) {
+                fields.add(takeField());
+            } else if (next == recordDelimiter || next == END_OF_INPUT) {
+                if (fieldLength > 0 && field[fieldLength - 1] == '\r' && recordDelimiter == '\n') {
+                    fieldLength--;
+                }
+                fields.add(takeField());
+                return fields;
+            } else {
+                append(next);
+            }
+            next = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = input.read(buffer);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return END_OF_INPUT;
+            }
+        }
+        bytesScanned++;
+        return buffer[position++] & 0xFF;
+    }
+
+    private void append(int character) {
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, field.length * 2);
+        }
+        field[fieldLength++] = (byte) character;
+    }
+
+    private String takeField() {
+        String value = new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+        fieldLength = 0;
+        return value;
+    }
+
+    private static int delimiterOf(String delimiter, char defaultDelimiter) {
+        if (delimiter == null) {
+            return defaultDelimiter;
+        }
+        if (delimiter.length() != 1 || delimiter.charAt(0) > Byte.MAX_VALUE) {
+            throw S3Errors.invalidSelectRequest("A CSV delimiter must be a single ASCII character: " + delimiter);
+        }
+        return delimiter.charAt(0);
+    }
+}
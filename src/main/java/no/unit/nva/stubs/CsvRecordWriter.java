@@ -0,0 +1,54 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import software.amazon.awssdk.services.s3.model.CSVOutput;
+
+/**
+ * Writes each record as a CSV line of its values, quoting the values that contain a delimiter or a quote character.
+ * Missing and null values are written as empty fields, and nested values as JSON.
+ */
+final class CsvRecordWriter implements RecordWriter {
+
+    private final String fieldDelimiter;
+    private final String recordDelimiter;
+    private final String quoteCharacter;
+
+    CsvRecordWriter(CSVOutput csvOutput) {
+        this.fieldDelimiter = Objects.requireNonNullElse(csvOutput.fieldDelimiter(), ",");
+        this.recordDelimiter = Objects.requireNonNullElse(csvOutput.recordDelimiter(), "\n");
+        this.quoteCharacter = Objects.requireNonNullElse(csvOutput.quoteCharacter(), "\"");
+    }
+
+    @Override
+    public void write(List<String> names, List<JsonNode> values, ByteArrayOutputStream output) {
+        StringBuilder line = new StringBuilder();
+        for (int index = 0; index < values.size(); index++) {
+            if (index > 0) {
+                line.append(fieldDelimiter);
+            }
+            line.append(quoted(textOf(values.get(index))));
+        }
+        line.append(recordDelimiter);
+        output.writeBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String textOf(JsonNode value) {
+        if (value.isMissingNode() || value.isNull()) {
+            return "";
+        }
+        return value.isValueNode() ? value.asText() : value.toString();
+    }
+
+    private String quoted(String value) {
+        boolean needsQuotes = value.contains(fieldDelimiter) || value.contains(quoteCharacter)
+                              || value.contains(recordDelimiter) || value.indexOf('\n') >= 0
+                              || value.indexOf('\r') >= 0;
+        return needsQuotes
+                   ? quoteCharacter + value.replace(quoteCharacter, quoteCharacter + quoteCharacter) + quoteCharacter
+                   : value;
+    }
+}
@@ -0,0 +1,41 @@
+package no.unit.nva.stubs;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Object content held in a read-only region of off-heap memory, or in a buffer handed over by the caller. Every reader
+ * gets its own view of the same region, so reads neither copy nor allocate the payload.
+ */
+class DirectBufferContent implements ObjectContent {
+
+    private final ByteBuffer content;
+
+    public DirectBufferContent(ByteBuffer content) {
+        this.content = content.asReadOnlyBuffer();
+    }
+
+    @Override
+    public long size() {
+        return content.remaining();
+    }
+
+    @Override
+    public InputStream newInputStream() {
+        return new ByteBufferInputStream(content.duplicate());
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int length) {
+        int start = (int) Math.min(offset, content.limit());
+        int end = (int) Math.min((long) start + length, content.limit());
+        ByteBuffer view = content.duplicate();
+        view.position(start).limit(end);
+        return view.slice();
+    }
+
+    @Override
+    public ObjectContent slice(long offset, long length) {
+        return new DirectBufferContent(read(offset, Math.toIntExact(length)));
+    }
+}
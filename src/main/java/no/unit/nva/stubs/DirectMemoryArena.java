@@ -0,0 +1,48 @@
+package no.unit.nva.stubs;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hands out regions of off-heap memory carved from large direct segments, so that storing many small objects does
+ * not pay for one direct allocation each. Objects larger than a fraction of a segment get a dedicated buffer.
+ * Memory is never reused; regions are released together with the segment once no view refers to it.
+ */
+class DirectMemoryArena {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final int DEDICATED_ALLOCATION_FRACTION = 4;
+    private final int segmentSize;
+    private ByteBuffer currentSegment;
+
+    public DirectMemoryArena() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public DirectMemoryArena(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Reserves a region of exactly {@code size} bytes. The returned buffer is positioned at zero with its limit at
+     * {@code size}, and it is safe to fill it from any thread without further synchronization.
+     *
+     * @param size the number of bytes to reserve.
+     * @return a writable direct buffer covering the reserved region.
+     */
+    public ByteBuffer allocate(int size) {
+        if (size > segmentSize / DEDICATED_ALLOCATION_FRACTION) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        return allocateFromSegment(size);
+    }
+
+    private synchronized ByteBuffer allocateFromSegment(int size) {
+        if (currentSegment == null || currentSegment.remaining() < size) {
+            currentSegment = ByteBuffer.allocateDirect(segmentSize);
+        }
+        ByteBuffer region = currentSegment.slice();
+        region.limit(size);
+        currentSegment.position(currentSegment.position() + size);
+        return region;
+    }
+}
@@ -0,0 +1,115 @@
+package no.unit.nva.stubs;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Computes and compares the entity tags of objects and parts.
+ */
+final class ETags {
+
+    public static final String ANY = "*";
+    private static final String QUOTE = "\"";
+    private static final String EMPTY_STRING = "";
+    private static final String LIST_SEPARATOR = ",";
+    private static final String MD5 = "MD5";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int NIBBLE_BITS = 4;
+    private static final int NIBBLE_MASK = 0xF;
+    private static final String PART_COUNT_SEPARATOR = "-";
+    private static final int HEX_RADIX = 16;
+
+    private ETags() {
+    }
+
+    /**
+     * The quoted MD5 digest of the content, which is the ETag S3 gives objects uploaded in a single request.
+     *
+     * @param content the content.
+     * @return the ETag.
+     */
+    public static String md5Of(ObjectContent content) {
+        MessageDigest md5 = newMd5Digest();
+        long position = 0;
+        while (position < content.size()) {
+            ByteBuffer chunk = content.read(position, ByteBufferPublisher.DEFAULT_CHUNK_SIZE);
+            position += chunk.remaining();
+            md5.update(chunk);
+        }
+        return of(md5);
+    }
+
+    /**
+     * The ETag S3 gives an object assembled from a multipart upload: the MD5 digest of the concatenated binary MD5
+     * digests of the parts, followed by a dash and the number of parts.
+     *
+     * @param partETags the ETags of the parts, in part number order.
+     * @return the ETag.
+     */
+    public static String multipartOf(List<String> partETags) {
+        MessageDigest md5 = newMd5Digest();
+        for (String partETag : partETags) {
+            md5.update(toDigestBytes(unquote(partETag)));
+        }
+        return QUOTE + hex(md5.digest()) + PART_COUNT_SEPARATOR + partETags.size() + QUOTE;
+    }
+
+    /**
+     * Completes a digest of the bytes of an object into its ETag.
+     *
+     * @param md5 an MD5 digest that has been fed every byte of the object. The digest is reset.
+     * @return the ETag.
+     */
+    public static String of(MessageDigest md5) {
+        return QUOTE + hex(md5.digest()) + QUOTE;
+    }
+
+    /**
+     * Whether an ETag satisfies an {@code If-Match} or {@code If-None-Match} condition, which is either {@code *} or a
+     * comma-separated list of ETags, quoted or not.
+     *
+     * @param condition the condition.
+     * @param eTag      the ETag of an existing object.
+     * @return true if the condition names the ETag or is {@code *}.
+     */
+    public static boolean matches(String condition, String eTag) {
+        for (String listed : condition.split(LIST_SEPARATOR)) {
+            String trimmed = listed.trim();
+            if (ANY.equals(trimmed) || unquote(trimmed).equals(unquote(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String unquote(String eTag) {
+        return eTag.replace(QUOTE, EMPTY_STRING);
+    }
+
+    public static MessageDigest newMd5Digest() {
+        try {
+            return MessageDigest.getInstance(MD5);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] digest) {
+        char[] hex = new char[2 * digest.length];
+        for (int index = 0; index < digest.length; index++) {
+            hex[2 * index] = HEX_DIGITS[(digest[index] >> NIBBLE_BITS) & NIBBLE_MASK];
+            hex[2 * index + 1] = HEX_DIGITS[digest[index] & NIBBLE_MASK];
+        }
+        return new String(hex);
+    }
+
+    private static byte[] toDigestBytes(String hexDigest) {
+        byte[] digest = new byte[hexDigest.length() / 2];
+        for (int index = 0; index < digest.length; index++) {
+            digest[index] = (byte) Integer.parseInt(hexDigest.substring(2 * index, 2 * index + 2), HEX_RADIX);
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,195 @@
+package no.unit.nva.stubs;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Where {@link FakeS3Client} sends S3 event notifications for the objects matching a key prefix and suffix, in the
+ * JSON shape S3 sends to queues and Lambda functions: a document with a {@code Records} array. Event types are given
+ * as in S3, for example {@code s3:ObjectCreated:*} or {@code s3:ObjectRemoved:Delete}.
+ *
+ * <p>Records wait in a queue of the destination until one of its delivery workers takes them. A worker delivers up to
+ * the batch size of records at once, waiting at most the batch window for a batch to fill, as a Lambda function polls
+ * a queue. Several workers deliver batches concurrently, so a slow consumer builds up a backlog that can be watched in
+ * {@link EventNotificationStatistics}.
+ */
+public final class EventNotificationConfiguration {
+
+    public static final String ALL_OBJECTS_CREATED = "s3:ObjectCreated:*";
+    public static final String ALL_OBJECTS_REMOVED = "s3:ObjectRemoved:*";
+    private static final String WILDCARD = "*";
+    private final String id;
+    private final Consumer<String> destination;
+    private final String bucket;
+    private final List<String> events;
+    private final String prefix;
+    private final String suffix;
+    private final int batchSize;
+    private final Duration batchWindow;
+    private final int concurrency;
+
+    private EventNotificationConfiguration(Builder builder) {
+        this.id = builder.id;
+        this.destination = builder.destination;
+        this.bucket = builder.bucket;
+        this.events = List.copyOf(builder.events);
+        this.prefix = builder.prefix;
+        this.suffix = builder.suffix;
+        this.batchSize = builder.batchSize;
+        this.batchWindow = builder.batchWindow;
+        this.concurrency = builder.concurrency;
+    }
+
+    /**
+     * Starts a configuration delivering to the given consumer, which receives one JSON document per batch. A
+     * {@link java.util.concurrent.BlockingQueue} receives the documents with {@code queue::add}.
+     *
+     * @param id          the ID of the configuration, reported as {@code configurationId} in the records.
+     * @param destination the consumer of the JSON documents.
+     * @return the builder.
+     */
+    public static Builder builder(String id, Consumer<String> destination) {
+        return new Builder(id, destination);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Consumer<String> getDestination() {
+        return destination;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Duration getBatchWindow() {
+        return batchWindow;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Whether an event on a key is sent to this destination.
+     *
+     * @param bucket    the bucket name.
+     * @param eventName the event name as it appears in a record, for example {@code ObjectCreated:Put}.
+     * @param key       the object key.
+     * @return true if the event type and the key filter match.
+     */
+    boolean matches(String bucket, String eventName, String key) {
+        return (this.bucket == null || this.bucket.equals(bucket)) && key.startsWith(prefix) && key.endsWith(suffix)
+               && events.stream().anyMatch(event -> eventMatches(event, "s3:" + eventName));
+    }
+
+    private static boolean eventMatches(String configuredEvent, String event) {
+        return configuredEvent.endsWith(WILDCARD)
+                   ? event.startsWith(configuredEvent.substring(0, configuredEvent.length() - WILDCARD.length()))
+                   : configuredEvent.equals(event);
+    }
+
+    public static final class Builder {
+
+        private final String id;
+        private final Consumer<String> destination;
+        private String bucket;
+        private List<String> events = List.of(ALL_OBJECTS_CREATED);
+        private String prefix = "";
+        private String suffix = "";
+        private int batchSize = 1;
+        private Duration batchWindow = Duration.ZERO;
+        private int concurrency = 1;
+
+        private Builder(String id, Consumer<String> destination) {
+            this.id = Objects.requireNonNull(id);
+            this.destination = Objects.requireNonNull(destination);
+        }
+
+        /**
+         * The event types to send, {@link #ALL_OBJECTS_CREATED} by default.
+         *
+         * @param events event types such as {@code s3:ObjectCreated:Put}, where a trailing {@code *} matches any
+         *               type starting with what comes before it.
+         * @return the builder.
+         */
+        public Builder withEvents(String... events) {
+            this.events = List.of(events);
+            return this;
+        }
+
+        /**
+         * Limits the notifications to the objects of one bucket. By default, the objects of every bucket of the client
+         * are reported.
+         *
+         * @param bucket the bucket name.
+         * @return the builder.
+         */
+        public Builder withBucket(String bucket) {
+            this.bucket = Objects.requireNonNull(bucket);
+            return this;
+        }
+
+        public Builder withPrefix(String prefix) {
+            this.prefix = Objects.requireNonNull(prefix);
+            return this;
+        }
+
+        public Builder withSuffix(String suffix) {
+            this.suffix = Objects.requireNonNull(suffix);
+            return this;
+        }
+
+        /**
+         * The most records delivered in one document, 1 by default.
+         *
+         * @param batchSize the maximum number of records per batch.
+         * @return the builder.
+         */
+        public Builder withBatchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * How long a worker waits for a batch to fill before delivering it. With the default of zero, a worker
+         * delivers the records that are waiting, up to the batch size, without waiting for more.
+         *
+         * @param batchWindow the maximum wait.
+         * @return the builder.
+         */
+        public Builder withBatchWindow(Duration batchWindow) {
+            if (batchWindow.isNegative()) {
+                throw new IllegalArgumentException("The batch window cannot be negative: " + batchWindow);
+            }
+            this.batchWindow = batchWindow;
+            return this;
+        }
+
+        /**
+         * The number of batches delivered at the same time, 1 by default. With one worker, records are delivered in
+         * the order of the writes.
+         *
+         * @param concurrency the number of delivery workers.
+         * @return the builder.
+         */
+        public Builder withConcurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("The concurrency must be positive: " + concurrency);
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public EventNotificationConfiguration build() {
+            return new EventNotificationConfiguration(this);
+        }
+    }
+}
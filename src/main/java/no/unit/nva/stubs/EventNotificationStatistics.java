@@ -0,0 +1,64 @@
+package no.unit.nva.stubs;
+
+import java.util.Optional;
+
+/**
+ * An immutable copy of the counters of one event notification destination.
+ */
+public final class EventNotificationStatistics {
+
+    public static final EventNotificationStatistics EMPTY = new EventNotificationStatistics(0, 0, 0, 0, null);
+    private final long publishedRecords;
+    private final long deliveredRecords;
+    private final long deliveredBatches;
+    private final long failedRecords;
+    private final Throwable lastFailure;
+
+    EventNotificationStatistics(long publishedRecords, long deliveredRecords, long deliveredBatches,
+                                long failedRecords, Throwable lastFailure) {
+        this.publishedRecords = publishedRecords;
+        this.deliveredRecords = deliveredRecords;
+        this.deliveredBatches = deliveredBatches;
+        this.failedRecords = failedRecords;
+        this.lastFailure = lastFailure;
+    }
+
+    public long getPublishedRecords() {
+        return publishedRecords;
+    }
+
+    public long getDeliveredRecords() {
+        return deliveredRecords;
+    }
+
+    public long getDeliveredBatches() {
+        return deliveredBatches;
+    }
+
+    /**
+     * The records of batches whose delivery threw an exception. As with S3, failed deliveries are not retried.
+     *
+     * @return the number of records.
+     */
+    public long getFailedRecords() {
+        return failedRecords;
+    }
+
+    /**
+     * What the destination threw for the most recent failed batch, such as the assertion error of a test consumer.
+     *
+     * @return the failure, or empty when no delivery has failed.
+     */
+    public Optional<Throwable> getLastFailure() {
+        return Optional.ofNullable(lastFailure);
+    }
+
+    /**
+     * The records published but not yet delivered or failed.
+     *
+     * @return the size of the backlog.
+     */
+    public long getBacklog() {
+        return publishedRecords - deliveredRecords - failedRecords;
+    }
+}
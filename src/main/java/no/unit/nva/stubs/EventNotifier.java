@@ -0,0 +1,155 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers the events matching one {@link EventNotificationConfiguration} to its destination. Matching events are
+ * queued without blocking the writer, and a fixed number of daemon workers take them off the queue in batches, so a
+ * slow destination slows only its own workers while the backlog grows.
+ */
+final class EventNotifier implements AutoCloseable {
+
+    private final EventNotificationConfiguration configuration;
+    private final BlockingQueue<ObjectEvent> events = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final LongAdder publishedRecords = new LongAdder();
+    private final LongAdder deliveredRecords = new LongAdder();
+    private final LongAdder deliveredBatches = new LongAdder();
+    private final LongAdder failedRecords = new LongAdder();
+    private final AtomicLong unfinishedRecords = new AtomicLong();
+    private volatile Throwable lastFailure;
+    private final Object idle = new Object();
+
+    EventNotifier(EventNotificationConfiguration configuration) {
+        this.configuration = configuration;
+        this.workers = Executors.newFixedThreadPool(configuration.getConcurrency(), task -> {
+            Thread thread = new Thread(task, "s3-events-" + configuration.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < configuration.getConcurrency(); i++) {
+            workers.execute(this::deliverUntilClosed);
+        }
+    }
+
+    public String getId() {
+        return configuration.getId();
+    }
+
+    /**
+     * Queues the event for delivery if the configuration matches it.
+     *
+     * @param event the event.
+     */
+    public void publish(ObjectEvent event) {
+        if (configuration.matches(event.getBucket(), event.getEventName(), event.getKey())) {
+            publishedRecords.increment();
+            unfinishedRecords.incrementAndGet();
+            events.add(event);
+        }
+    }
+
+    public EventNotificationStatistics statistics() {
+        return new EventNotificationStatistics(publishedRecords.sum(), deliveredRecords.sum(), deliveredBatches.sum(),
+                                               failedRecords.sum(), lastFailure);
+    }
+
+    /**
+     * Waits until every published event has been delivered or has failed.
+     *
+     * @param timeout the longest time to wait.
+     * @return true if the backlog is empty, false if the timeout passed first.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (idle) {
+            while (unfinishedRecords.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the workers. Events still queued are not delivered.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private void deliverUntilClosed() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                deliver(takeBatch());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for an event, then gathers up to a batch of events, waiting for more for at most the batch window.
+     */
+    private List<ObjectEvent> takeBatch() throws InterruptedException {
+        int batchSize = configuration.getBatchSize();
+        List<ObjectEvent> batch = new ArrayList<>(Math.min(batchSize, 64));
+        batch.add(events.take());
+        long deadline = System.nanoTime() + configuration.getBatchWindow().toNanos();
+        while (batch.size() < batchSize) {
+            events.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() == batchSize || remaining <= 0) {
+                break;
+            }
+            ObjectEvent next = events.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    /**
+     * Sends a batch to the destination. An exception or assertion error thrown by the destination counts the batch
+     * as failed, is kept as the last failure and leaves the worker running. Other errors, such as running out of
+     * memory, end the worker, but the batch still leaves the backlog.
+     */
+    private void deliver(List<ObjectEvent> batch) {
+        try {
+            ObjectNode notification = JsonNodeFactory.instance.objectNode();
+            ArrayNode records = notification.putArray("Records");
+            batch.forEach(event -> records.add(event.toRecord(configuration.getId())));
+            configuration.getDestination().accept(notification.toString());
+            deliveredRecords.add(batch.size());
+            deliveredBatches.increment();
+        } catch (Exception | AssertionError e) {
+            lastFailure = e;
+            failedRecords.add(batch.size());
+        } finally {
+            if (unfinishedRecords.addAndGet(-batch.size()) == 0) {
+                synchronized (idle) {
+                    idle.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package no.unit.nva.stubs;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateBucketResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteBucketRequest;
+import software.amazon.awssdk.services.s3.model.DeleteBucketResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetBucketVersioningRequest;
+import software.amazon.awssdk.services.s3.model.GetBucketVersioningResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListBucketsRequest;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutBucketVersioningRequest;
+import software.amazon.awssdk.services.s3.model.PutBucketVersioningResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentEventStream;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentRequest;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentResponse;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentResponseHandler;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+/**
+ * Non-blocking counterpart of {@link FakeS3Client} that reads and writes the same objects. Futures are completed on
+ * the supplied executor, object content is published as {@link java.nio.ByteBuffer} chunks that honor the
+ * subscriber's demand, and request bodies are consumed as they are published, so no thread blocks on fake I/O.
+ * Response times of the shared client's {@link LatencyModel} delay the futures instead of blocking a thread.
+ */
+public class FakeS3AsyncClient implements S3AsyncClient {
+
+    private final FakeS3Client s3Client;
+    private final Executor executor;
+
+    public FakeS3AsyncClient() {
+        this(new FakeS3Client());
+    }
+
+    public FakeS3AsyncClient(FakeS3Client s3Client) {
+        this(s3Client, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an asynchronous client sharing the objects of the given blocking client.
+     *
+     * @param s3Client the client whose objects are read and written.
+     * @param executor the executor that completes futures and delivers content to subscribers.
+     */
+    public FakeS3AsyncClient(FakeS3Client s3Client, Executor executor) {
+        this.s3Client = s3Client;
+        this.executor = executor;
+    }
+
+    @Override
+    public <ReturnT> CompletableFuture<ReturnT> getObject(
+        GetObjectRequest getObjectRequest,
+        AsyncResponseTransformer<GetObjectResponse, ReturnT> asyncResponseTransformer) {
+        return timed(S3Operation.GET_OBJECT, getObjectRequest.key(), () -> {
+            CompletableFuture<ReturnT> result = new CompletableFuture<>();
+            asyncResponseTransformer.prepare().whenComplete((value, error) -> complete(result, value, error));
+            executor.execute(() -> streamObject(getObjectRequest, asyncResponseTransformer, result));
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<HeadObjectResponse> headObject(HeadObjectRequest headObjectRequest) {
+        return respond(S3Operation.HEAD_OBJECT, headObjectRequest.key(),
+                       () -> s3Client.describeObject(headObjectRequest));
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest putObjectRequest,
+                                                          AsyncRequestBody requestBody) {
+        return timed(S3Operation.PUT_OBJECT, putObjectRequest.key(),
+                     () -> consume(putObjectRequest.bucket(), requestBody,
+                                   (content, eTag) -> s3Client.storeObject(putObjectRequest, content, eTag)));
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest deleteObjectRequest) {
+        return respond(S3Operation.DELETE_OBJECT, deleteObjectRequest.key(),
+                       () -> s3Client.removeObject(deleteObjectRequest));
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectsResponse> deleteObjects(DeleteObjectsRequest deleteObjectsRequest) {
+        return respond(S3Operation.DELETE_OBJECTS, null, () -> s3Client.removeObjects(deleteObjectsRequest));
+    }
+
+    @Override
+    public CompletableFuture<CopyObjectResponse> copyObject(CopyObjectRequest copyObjectRequest) {
+        return respond(S3Operation.COPY_OBJECT, copyObjectRequest.key(),
+                       () -> s3Client.copyStoredObject(copyObjectRequest));
+    }
+
+    @Override
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(
+        CreateMultipartUploadRequest createMultipartUploadRequest) {
+        return respond(S3Operation.CREATE_MULTIPART_UPLOAD, createMultipartUploadRequest.key(),
+                       () -> s3Client.initiateMultipartUpload(createMultipartUploadRequest));
+    }
+
+    @Override
+    public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest uploadPartRequest,
+                                                            AsyncRequestBody requestBody) {
+        return timed(S3Operation.UPLOAD_PART, uploadPartRequest.key(),
+                     () -> consume(uploadPartRequest.bucket(), requestBody,
+                                   (content, eTag) -> s3Client.storePart(uploadPartRequest, content, eTag)));
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(
+        CompleteMultipartUploadRequest completeMultipartUploadRequest) {
+        return respond(S3Operation.COMPLETE_MULTIPART_UPLOAD, completeMultipartUploadRequest.key(),
+                       () -> s3Client.assembleMultipartUpload(completeMultipartUploadRequest));
+    }
+
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(
+        AbortMultipartUploadRequest abortMultipartUploadRequest) {
+        return respond(S3Operation.ABORT_MULTIPART_UPLOAD, abortMultipartUploadRequest.key(),
+                       () -> s3Client.discardMultipartUpload(abortMultipartUploadRequest));
+    }
+
+    @Override
+    public CompletableFuture<ListObjectsResponse> listObjects(ListObjectsRequest listObjectsRequest) {
+        return respond(S3Operation.LIST_OBJECTS, listObjectsRequest.prefix(),
+                       () -> s3Client.listObjectsPage(listObjectsRequest));
+    }
+
+    @Override
+    public CompletableFuture<ListObjectsV2Response> listObjectsV2(ListObjectsV2Request listObjectsV2Request) {
+        return respond(S3Operation.LIST_OBJECTS_V2, listObjectsV2Request.prefix(),
+                       () -> s3Client.listObjectsV2Page(listObjectsV2Request));
+    }
+
+    @Override
+    public CompletableFuture<CreateBucketResponse> createBucket(CreateBucketRequest createBucketRequest) {
+        return respond(S3Operation.CREATE_BUCKET, null, () -> s3Client.createStoredBucket(createBucketRequest));
+    }
+
+    @Override
+    public CompletableFuture<DeleteBucketResponse> deleteBucket(DeleteBucketRequest deleteBucketRequest) {
+        return respond(S3Operation.DELETE_BUCKET, null, () -> s3Client.deleteStoredBucket(deleteBucketRequest));
+    }
+
+    @Override
+    public CompletableFuture<ListBucketsResponse> listBuckets(ListBucketsRequest listBucketsRequest) {
+        return respond(S3Operation.LIST_BUCKETS, null, s3Client::listStoredBuckets);
+    }
+
+    @Override
+    public CompletableFuture<PutBucketVersioningResponse> putBucketVersioning(
+        PutBucketVersioningRequest putBucketVersioningRequest) {
+        return respond(S3Operation.PUT_BUCKET_VERSIONING, null,
+                       () -> s3Client.configureVersioning(putBucketVersioningRequest));
+    }
+
+    @Override
+    public CompletableFuture<GetBucketVersioningResponse> getBucketVersioning(
+        GetBucketVersioningRequest getBucketVersioningRequest) {
+        return respond(S3Operation.GET_BUCKET_VERSIONING, null,
+                       () -> s3Client.readVersioning(getBucketVersioningRequest));
+    }
+
+    /**
+     * Selects records from a JSON or CSV object with the subset of S3 Select SQL described by
+     * {@link SelectExpression}. The object is scanned as the handler's subscriber asks for events: the selected
+     * records are published in chunks, followed by the statistics of the bytes scanned and returned, and the end of
+     * the stream. The returned future completes once the handler has been told that the stream is complete. The
+     * blocking SDK client has no select operation, so this is the only way to run one.
+     *
+     * @param selectObjectContentRequest the request.
+     * @param asyncResponseHandler       the handler receiving the response and its event stream.
+     * @return a future that completes when the stream is complete.
+     */
+    @Override
+    public CompletableFuture<Void> selectObjectContent(SelectObjectContentRequest selectObjectContentRequest,
+                                                       SelectObjectContentResponseHandler asyncResponseHandler) {
+        return timed(S3Operation.SELECT_OBJECT_CONTENT, selectObjectContentRequest.key(), () -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            delayedExecutor(s3Client.responseTime(0))
+                .execute(() -> streamSelection(selectObjectContentRequest, asyncResponseHandler, result));
+            return result;
+        });
+    }
+
+    @Override
+    public String serviceName() {
+        return "FakeS3AsyncClient";
+    }
+
+    @Override
+    public void close() {
+
+    }
+
+    private <ReturnT> void streamObject(GetObjectRequest getObjectRequest,
+                                        AsyncResponseTransformer<GetObjectResponse, ReturnT> responseTransformer,
+                                        CompletableFuture<ReturnT> result) {
+        try {
+            ObjectRead objectRead = s3Client.readObject(getObjectRequest);
+            Duration responseTime = s3Client.responseTime(objectRead.getContent().size());
+            if (responseTime.isZero()) {
+                deliverObject(objectRead, responseTransformer, result);
+            } else {
+                delayedExecutor(responseTime).execute(() -> deliverObject(objectRead, responseTransformer, result));
+            }
+        } catch (RuntimeException exception) {
+            fail(responseTransformer, result, exception);
+        }
+    }
+
+    private <ReturnT> void deliverObject(ObjectRead objectRead,
+                                         AsyncResponseTransformer<GetObjectResponse, ReturnT> responseTransformer,
+                                         CompletableFuture<ReturnT> result) {
+        try {
+            responseTransformer.onResponse(objectRead.getResponse());
+            responseTransformer.onStream(new ByteBufferPublisher(objectRead.getContent(), executor));
+        } catch (RuntimeException exception) {
+            fail(responseTransformer, result, exception);
+        }
+    }
+
+    private void streamSelection(SelectObjectContentRequest selectObjectContentRequest,
+                                 SelectObjectContentResponseHandler responseHandler, CompletableFuture<Void> result) {
+        try {
+            ObjectSelection selection = s3Client.selectObject(selectObjectContentRequest);
+            IteratorPublisher<SelectObjectContentEventStream> events = new IteratorPublisher<>(selection, executor);
+            events.getCompletion().whenComplete((ignored, error) -> {
+                s3Client.getMetrics().recordBytesOut(S3Operation.SELECT_OBJECT_CONTENT,
+                                                     FakeS3Client.prefixOf(selectObjectContentRequest.key()),
+                                                     selection.getBytesReturned());
+                if (error == null) {
+                    responseHandler.complete();
+                } else {
+                    responseHandler.exceptionOccurred(error);
+                }
+                complete(result, null, error);
+                selection.close();
+            });
+            responseHandler.responseReceived(SelectObjectContentResponse.builder().build());
+            responseHandler.onEventStream(events);
+        } catch (RuntimeException exception) {
+            responseHandler.exceptionOccurred(exception);
+            result.completeExceptionally(exception);
+        }
+    }
+
+    private <T> CompletableFuture<T> consume(String bucket, AsyncRequestBody requestBody,
+                                             BiFunction<ObjectContent, String, T> onContent) {
+        CompletableFuture<ObjectContent> received = new CompletableFuture<>();
+        ContentWriter writer = s3Client.newContentWriter(
+            bucket, requestBody.contentLength().orElse(ContentWriter.UNKNOWN_CONTENT_LENGTH));
+        requestBody.subscribe(new ContentSubscriber<>(writer, Function.identity(), received));
+        return received.thenCompose(content -> CompletableFuture.supplyAsync(
+            () -> onContent.apply(content, writer.getETag()),
+            delayedExecutor(s3Client.responseTime(content.size()))));
+    }
+
+    private <T> CompletableFuture<T> respond(S3Operation operation, String key, Supplier<T> call) {
+        return timed(operation, key,
+                     () -> CompletableFuture.supplyAsync(call, delayedExecutor(s3Client.responseTime(0))));
+    }
+
+    private <T> CompletableFuture<T> timed(S3Operation operation, String key, Supplier<CompletableFuture<T>> call) {
+        return s3Client.getMetrics().timeAsync(operation, FakeS3Client.prefixOf(key), call);
+    }
+
+    private Executor delayedExecutor(Duration delay) {
+        return delay.isZero()
+                   ? executor
+                   : CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS, executor);
+    }
+
+    private static <ReturnT> void fail(AsyncResponseTransformer<GetObjectResponse, ReturnT> responseTransformer,
+                                       CompletableFuture<ReturnT> result, RuntimeException exception) {
+        responseTransformer.exceptionOccurred(exception);
+        result.completeExceptionally(exception);
+    }
+
+    private static <T> void complete(CompletableFuture<T> result, T value, Throwable error) {
+        if (error == null) {
+            result.complete(value);
+        } else {
+            result.completeExceptionally(error);
+        }
+    }
+}
@@ -1,70 +1,762 @@
 package no.unit.nva.stubs;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.AbstractMap.SimpleEntry;
-import java.util.Arrays;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import no.unit.nva.testutils.IoUtils;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import no.unit.nva.stubs.LatencyModel.RequestType;
+import no.unit.nva.stubs.ObjectStore.Versioning;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.Bucket;
+import software.amazon.awssdk.services.s3.model.BucketVersioningStatus;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectResult;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateBucketResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteBucketRequest;
+import software.amazon.awssdk.services.s3.model.DeleteBucketResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.ExpressionType;
+import software.amazon.awssdk.services.s3.model.GetBucketVersioningRequest;
+import software.amazon.awssdk.services.s3.model.GetBucketVersioningResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListBucketsRequest;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutBucketVersioningRequest;
+import software.amazon.awssdk.services.s3.model.PutBucketVersioningResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.model.VersioningConfiguration;
 
+/**
+ * An in-memory {@link S3Client}. Requests to buckets that were never created with {@link #createBucket} share one
+ * default bucket, so a client can be used without setting up buckets. Every created bucket has a store of its own,
+ * which grows independently of the others, so writers to different buckets do not contend.
+ */
 public class FakeS3Client implements S3Client {
 
-    private final Map<String, InputStream> filesAndContent;
+    public static final int DEFAULT_MAX_KEYS = 1000;
+    public static final int MAX_DELETE_OBJECTS = 1000;
+    public static final String ACCEPT_BYTE_RANGES = "bytes";
+    private static final String EMPTY_STRING = "";
+    private static final String PATH_SEPARATOR = "/";
+    private static final String QUERY_SEPARATOR = "?";
+    private static final String PLUS_SIGN = "+";
+    private static final String ENCODED_PLUS_SIGN = "%2B";
+    private static final String VERSION_ID_PARAMETER = "versionId=";
+    private static final String IF_MATCH = "If-Match";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private final ObjectStore objectStore;
+    private final ConcurrentMap<String, ObjectStore> buckets;
+    private final Map<String, MultipartUpload> multipartUploads;
+    private final S3Metrics metrics;
+    private final ObjectSeeder seeder;
+    private final List<EventNotifier> eventNotifiers = new CopyOnWriteArrayList<>();
+    private MemoryBudget memoryBudget;
+    private ContentDeduplicator deduplicator;
+    private volatile ObjectLifecycle lifecycle;
+    private volatile LatencyModel latencyModel = LatencyModel.NONE;
 
+    /**
+     * Creates a client whose bucket contains the given classpath resources, each stored under its resource name. Only
+     * the keys are registered here; a resource is read when its object is first requested.
+     *
+     * @param filesInBucket the names of the resources in the bucket.
+     */
     public FakeS3Client(String... filesInBucket) {
-        this(readResourceFiles(filesInBucket));
+        this(Collections.emptyMap());
+        for (String filename : filesInBucket) {
+            seeder.seedResource(filename, filename);
+        }
     }
 
+    /**
+     * Creates a client whose bucket contains the supplied files. The streams are drained into the client's off-heap
+     * storage and closed, so the content can afterwards be read any number of times.
+     *
+     * @param filesAndContent the keys and content of the files in the bucket.
+     */
     public FakeS3Client(Map<String, InputStream> filesAndContent) {
-        this.filesAndContent = new ConcurrentHashMap<>(filesAndContent);
+        this(new ObjectStore());
+        filesAndContent.forEach(objectStore::put);
+    }
+
+    FakeS3Client(ObjectStore objectStore) {
+        this(objectStore, new ConcurrentHashMap<>());
+    }
+
+    FakeS3Client(ObjectStore objectStore, ConcurrentMap<String, ObjectStore> buckets) {
+        this.objectStore = objectStore;
+        this.buckets = buckets;
+        this.multipartUploads = new ConcurrentHashMap<>();
+        this.metrics = new S3Metrics();
+        this.seeder = new ObjectSeeder(objectStore);
+    }
+
+    /**
+     * Adds every resource below a classpath directory to the default bucket, whether the directory is on disk or
+     * inside a JAR. Only the keys are registered here; an object is read from its resource when it is first requested.
+     *
+     * @param resourceDirectory the name of the resource directory.
+     * @param keyPrefix         the prefix put in front of each resource's path relative to the directory.
+     * @return the client.
+     */
+    public FakeS3Client withObjectsFromResources(String resourceDirectory, String keyPrefix) {
+        seeder.seedResourceDirectory(resourceDirectory, keyPrefix);
+        return this;
+    }
+
+    /**
+     * Adds every regular file below a directory to the default bucket, keyed by its path relative to the directory
+     * with '/' as separator. Only the keys are registered here; a file is read when its object is first requested.
+     *
+     * @param directory the directory.
+     * @param keyPrefix the prefix put in front of each file's relative path.
+     * @return the client.
+     */
+    public FakeS3Client withObjectsFromDirectory(Path directory, String keyPrefix) {
+        seeder.seedDirectory(directory, keyPrefix);
+        return this;
+    }
+
+    /**
+     * Adds every file entry of a ZIP or JAR archive to the default bucket, keyed by its entry name. The archive stays
+     * open until the client is closed, and an entry is read when its object is first requested.
+     *
+     * @param archive   the archive.
+     * @param keyPrefix the prefix put in front of each entry name.
+     * @return the client.
+     */
+    public FakeS3Client withObjectsFromArchive(Path archive, String keyPrefix) {
+        seeder.seedArchive(archive, keyPrefix);
+        return this;
+    }
+
+    /**
+     * Stores objects in a bucket using all cores, for seeding large buckets. Each object is copied into off-heap
+     * storage and indexed on a thread of the common fork-join pool, and writers to the same bucket contend only when
+     * their keys fall in the same index stripe. As with the other seeding methods, the objects are stored without
+     * going through the latency model, the metrics or event notifications.
+     *
+     * @param bucket  the bucket, or null for the default bucket.
+     * @param objects the keys and content of the objects, which are stored in no particular order.
+     * @return the client.
+     */
+    public FakeS3Client withObjects(String bucket, Stream<? extends Entry<String, byte[]>> objects) {
+        ObjectStore store = storeOf(bucket);
+        objects.parallel().forEach(object -> storeBytes(store, object.getKey(), object.getValue()));
+        return this;
+    }
+
+    /**
+     * Stores objects in a bucket using all cores, as {@link #withObjects(String, Stream)} does, taking them from an
+     * iterator in batches.
+     *
+     * @param bucket  the bucket, or null for the default bucket.
+     * @param objects the keys and content of the objects.
+     * @return the client.
+     */
+    public FakeS3Client withObjects(String bucket, Iterator<? extends Entry<String, byte[]>> objects) {
+        Spliterator<? extends Entry<String, byte[]>> batches = Spliterators.spliteratorUnknownSize(objects,
+                                                                                                   Spliterator.NONNULL);
+        return withObjects(bucket, StreamSupport.stream(batches, true));
+    }
+
+    /**
+     * Bounds the memory taken by object content stored from now on. When the content in memory exceeds the budget, the
+     * least recently used objects are appended to a temporary segment file in the given directory and read back from
+     * it on demand. Forks of the client share the budget. The segment file is deleted when the client is closed.
+     *
+     * @param budgetBytes    the number of bytes of object content to keep in memory.
+     * @param spillDirectory the directory of the segment file.
+     * @return the client.
+     * @throws IllegalStateException if the client already has a memory budget.
+     */
+    public FakeS3Client withMemoryBudget(long budgetBytes, Path spillDirectory) {
+        if (memoryBudget != null) {
+            throw new IllegalStateException("The client already has a memory budget");
+        }
+        memoryBudget = new MemoryBudget(budgetBytes, spillDirectory);
+        stores().forEach(store -> store.setMemoryBudget(memoryBudget));
+        return this;
+    }
+
+    /**
+     * Stores object content stored from now on only once per distinct content. Objects with the same bytes then share
+     * a single copy, identified by the SHA-256 digest of the bytes, that is freed once no key or snapshot refers to it.
+     * Forks of the client share the deduplicated content.
+     *
+     * @return the client.
+     */
+    public FakeS3Client withDeduplication() {
+        if (deduplicator == null) {
+            deduplicator = new ContentDeduplicator();
+            stores().forEach(store -> store.setDeduplicator(deduplicator));
+        }
+        return this;
+    }
+
+    /**
+     * Stores object content stored from now on compressed with {@link java.util.zip.Deflater}, in independent blocks
+     * of 64 KiB, so that a read inflates only the blocks it covers. Text such as JSON then takes a fraction of the
+     * memory at the cost of compressing on write and inflating on every read, both counted in
+     * {@link #getCompressionStatistics()}. With a memory budget, compressed objects count and spill at their
+     * compressed size. Forks of the client share the compression and its counters.
+     *
+     * @return the client.
+     */
+    public FakeS3Client withCompression() {
+        if (objectStore.getCompressor() == null) {
+            ContentCompressor compressor = new ContentCompressor();
+            stores().forEach(store -> store.setCompressor(compressor));
+        }
+        return this;
+    }
+
+    /**
+     * The bytes compressed so far, what they were compressed to, and the time spent compressing and inflating.
+     *
+     * @return the counters, empty if the client does not compress.
+     */
+    public CompressionStatistics getCompressionStatistics() {
+        return Optional.ofNullable(objectStore.getCompressor())
+                   .map(ContentCompressor::statistics)
+                   .orElse(CompressionStatistics.EMPTY);
+    }
+
+    /**
+     * Sends S3 event notifications of the objects written and deleted from now on to a destination. Puts, copies,
+     * completed multipart uploads and deletions through this client, its async client and its server are reported, in
+     * batches delivered by the destination's own workers, so writers never wait for the destination.
+     *
+     * @param configuration the events to report and where to deliver them.
+     * @return the client.
+     * @throws IllegalArgumentException if the client already has a destination with the same ID.
+     */
+    public FakeS3Client withEventNotification(EventNotificationConfiguration configuration) {
+        if (findEventNotifier(configuration.getId()).isPresent()) {
+            throw new IllegalArgumentException("Duplicate event notification ID: " + configuration.getId());
+        }
+        eventNotifiers.add(new EventNotifier(configuration));
+        return this;
+    }
+
+    /**
+     * The records published to, delivered to and waiting for one event notification destination.
+     *
+     * @param configurationId the ID of the destination.
+     * @return the counters, empty if the client has no such destination.
+     */
+    public EventNotificationStatistics getEventNotificationStatistics(String configurationId) {
+        return findEventNotifier(configurationId)
+                   .map(EventNotifier::statistics)
+                   .orElse(EventNotificationStatistics.EMPTY);
     }
 
+    /**
+     * Waits until every event notification destination has received or failed all the records published to it.
+     *
+     * @param timeout the longest time to wait.
+     * @return true if nothing is waiting for delivery, false if the timeout passed first.
+     */
+    public boolean awaitEventDelivery(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            for (EventNotifier notifier : eventNotifiers) {
+                if (!notifier.awaitIdle(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SdkClientException.builder().message("Interrupted while waiting for event delivery").cause(e).build();
+        }
+    }
+
+    /**
+     * Applies lifecycle rules to the objects and multipart uploads of the client, replacing any earlier rules. Objects
+     * already in the bucket age from now. Expiry is carried out at the start of every request, or explicitly with
+     * {@link #applyLifecycleRules()}, so with a {@link VirtualClock} it happens as soon as the clock has passed the
+     * deadline and a request is made.
+     *
+     * @param configuration the lifecycle rules and the clock they are measured on.
+     * @return the client.
+     */
+    public FakeS3Client withLifecycleConfiguration(LifecycleConfiguration configuration) {
+        ObjectLifecycle objectLifecycle = new ObjectLifecycle(configuration);
+        stores().forEach(store -> store.snapshot()
+                                      .iterator()
+                                      .forEachRemaining(entry -> scheduleExpiry(objectLifecycle, store, entry)));
+        multipartUploads.values().forEach(upload -> objectLifecycle.uploadInitiated(multipartUploads, upload));
+        this.lifecycle = objectLifecycle;
+        return this;
+    }
+
+    /**
+     * Deletes the objects and aborts the multipart uploads whose lifecycle rules are due at the current time.
+     */
+    public void applyLifecycleRules() {
+        ObjectLifecycle objectLifecycle = lifecycle;
+        if (objectLifecycle != null) {
+            objectLifecycle.applyDueRules();
+        }
+    }
+
+    /**
+     * Makes the client answer with the response times and request-rate limits of the given model. Requests above a
+     * prefix's rate limit fail with {@code SlowDown}, where everything up to the last '/' of a key is its prefix.
+     *
+     * @param latencyModel the model, or {@link LatencyModel#NONE} to answer instantly.
+     * @return the client.
+     */
+    public FakeS3Client withLatencyModel(LatencyModel latencyModel) {
+        this.latencyModel = latencyModel;
+        return this;
+    }
+
+    /**
+     * Captures the buckets and objects currently in the client, in time proportional to the number of buckets. Later
+     * writes to the client do not change the snapshot.
+     *
+     * @return the snapshot.
+     */
+    public FakeS3Snapshot snapshot() {
+        Map<String, StoreSnapshot> bucketSnapshots = new ConcurrentHashMap<>();
+        buckets.forEach((name, store) -> bucketSnapshots.put(name, store.snapshot()));
+        return new FakeS3Snapshot(objectStore.snapshot(), bucketSnapshots);
+    }
+
+    /**
+     * Writes the buckets and objects currently in the client to a snapshot file, which
+     * {@link #importSnapshot(Path)} restores in any process without copying the object content.
+     *
+     * @param file the snapshot file.
+     * @see FakeS3Snapshot#writeTo(Path)
+     */
+    public void exportSnapshot(Path file) {
+        snapshot().writeTo(file);
+    }
+
+    /**
+     * Creates a client with the buckets and objects of a snapshot file, reading only its index. Object content stays
+     * in the file, memory-mapped read-only, so the file must not be changed or deleted while the client is used.
+     *
+     * @param file the snapshot file.
+     * @return a new client.
+     * @see FakeS3Snapshot#readFrom(Path)
+     */
+    public static FakeS3Client importSnapshot(Path file) {
+        return FakeS3Snapshot.readFrom(file).fork();
+    }
+
+    /**
+     * Creates a client that starts out with the buckets and objects currently in the client and shares their bytes
+     * with this client. Writes to either client are invisible to the other.
+     *
+     * @return a new client.
+     * @see FakeS3Snapshot#fork()
+     */
+    public FakeS3Client fork() {
+        return snapshot().fork();
+    }
+
+    /**
+     * Puts the buckets back into the state captured by a snapshot, discarding every bucket created and every object
+     * written since.
+     *
+     * @param snapshot a snapshot of this or any other client.
+     */
+    public void restore(FakeS3Snapshot snapshot) {
+        objectStore.restore(snapshot.getDefaultBucket());
+        buckets.keySet().retainAll(snapshot.getBuckets().keySet());
+        snapshot.getBuckets().forEach((name, bucketSnapshot) -> {
+            ObjectStore store = objectStore.newBucketStore(bucketSnapshot.getCreationDate());
+            store.restore(bucketSnapshot);
+            buckets.put(name, store);
+        });
+    }
+
+    /**
+     * The calls, transferred bytes and latencies recorded by this client and the asynchronous clients sharing it.
+     *
+     * @return the live metrics, which can be copied with {@link S3Metrics#snapshot()}.
+     */
+    public S3Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reads an object. Each version carries the MD5 ETag computed while its bytes were written, or the multipart ETag
+     * of its parts, so that clients caching objects can revalidate them: with {@code ifNoneMatch} or
+     * {@code ifModifiedSince} an unchanged object is answered with a 304 {@code S3Exception} instead of its content.
+     *
+     * @param getObjectRequest    the request.
+     * @param responseTransformer receives the response and the content.
+     * @param <ReturnT>           the type of the transformed response.
+     * @return the transformed response.
+     */
     @Override
     public <ReturnT> ReturnT getObject(GetObjectRequest getObjectRequest,
                                        ResponseTransformer<GetObjectResponse, ReturnT> responseTransformer) {
-        String filename = getObjectRequest.key();
-        InputStream inputStream = extractInputStream(filename);
-        byte[] contentBytes = readAllBytes(inputStream);
-        GetObjectResponse response = GetObjectResponse.builder().contentLength((long) contentBytes.length).build();
-        return transformResponse(responseTransformer, new ByteArrayInputStream(contentBytes), response);
+        return metrics.time(S3Operation.GET_OBJECT, prefixOf(getObjectRequest.key()), () -> {
+            ObjectRead objectRead = readObject(getObjectRequest);
+            awaitResponse(objectRead.getContent().size());
+            return transformResponse(responseTransformer, objectRead.getContent().newInputStream(),
+                                     objectRead.getResponse());
+        });
     }
 
+    /**
+     * Reads an object into a new file. The content is written to the file from where the object keeps it, through
+     * views of off-heap memory or, for objects stored from files, by file-to-file transfer, so it is not copied
+     * through the heap.
+     *
+     * @param getObjectRequest the request.
+     * @param destinationPath  the file to create, which must not exist.
+     * @return the response.
+     */
+    @Override
+    public GetObjectResponse getObject(GetObjectRequest getObjectRequest, Path destinationPath) {
+        return metrics.time(S3Operation.GET_OBJECT, prefixOf(getObjectRequest.key()), () -> {
+            ObjectRead objectRead = readObject(getObjectRequest);
+            awaitResponse(objectRead.getContent().size());
+            writeFile(objectRead.getContent(), destinationPath);
+            return objectRead.getResponse();
+        });
+    }
+
+    /**
+     * Reads the metadata of an object without its content, honoring the same conditions as
+     * {@link #getObject(GetObjectRequest, ResponseTransformer)}.
+     *
+     * @param headObjectRequest the request.
+     * @return the response.
+     */
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest headObjectRequest) {
+        return metrics.time(S3Operation.HEAD_OBJECT, prefixOf(headObjectRequest.key()), () -> {
+            HeadObjectResponse response = describeObject(headObjectRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    /**
+     * Lists the objects in the bucket, honoring {@code prefix}, {@code delimiter} and {@code marker}. Unlike S3, all
+     * matching keys are returned on a single page unless {@code maxKeys} is set explicitly.
+     *
+     * @param listObjectsRequest the request.
+     * @return a page of objects and common prefixes.
+     */
     @Override
     public ListObjectsResponse listObjects(ListObjectsRequest listObjectsRequest) {
-        List<S3Object> files = filesAndContent
-                                   .keySet()
-                                   .stream()
-                                   .map(filename -> S3Object.builder().key(filename).build())
-                                   .collect(Collectors.toList());
+        return metrics.time(S3Operation.LIST_OBJECTS, prefixOf(listObjectsRequest.prefix()), () -> {
+            ListObjectsResponse response = listObjectsPage(listObjectsRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
 
-        return ListObjectsResponse.builder().contents(files).isTruncated(false).build();
+    @Override
+    public ListObjectsV2Response listObjectsV2(ListObjectsV2Request listObjectsV2Request) {
+        return metrics.time(S3Operation.LIST_OBJECTS_V2, prefixOf(listObjectsV2Request.prefix()), () -> {
+            ListObjectsV2Response response = listObjectsV2Page(listObjectsV2Request);
+            awaitResponse(0);
+            return response;
+        });
     }
 
+    /**
+     * Stores an object. The SDK has no fields for conditional writes, so as with S3 they are given as
+     * {@code If-Match} and {@code If-None-Match} headers in the request's override configuration. The condition is
+     * checked atomically with the write, so of several writers conditioned on the same ETag exactly one succeeds and
+     * the others fail with {@code PreconditionFailed}.
+     *
+     * @param putObjectRequest the request.
+     * @param requestBody      the object content.
+     * @return the response with the ETag of the object and, in a versioned bucket, its version ID.
+     */
     @Override
     public PutObjectResponse putObject(PutObjectRequest putObjectRequest, RequestBody requestBody)
         throws AwsServiceException,SdkClientException {
-        String path = putObjectRequest.key();
-        InputStream inputStream = requestBody.contentStreamProvider().newStream();
-        this.filesAndContent.put(path, inputStream);
-        return PutObjectResponse.builder().build();
+        return metrics.time(S3Operation.PUT_OBJECT, prefixOf(putObjectRequest.key()), () -> {
+            ContentWriter writer = readRequestBody(putObjectRequest.bucket(), requestBody);
+            ObjectContent content = writer.finish();
+            PutObjectResponse response = storeObject(putObjectRequest, content, writer.getETag());
+            awaitResponse(content.size());
+            return response;
+        });
+    }
+
+    /**
+     * Stores a file as an object without copying it. The object refers to the file, which is memory-mapped when the
+     * object is read, so the file must not be changed or deleted while the object is stored. Its ETag is computed
+     * from the file when the object is written.
+     *
+     * @param putObjectRequest the request.
+     * @param sourcePath       the file with the object content.
+     * @return the response with the ETag of the object and, in a versioned bucket, its version ID.
+     */
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest putObjectRequest, Path sourcePath) {
+        return metrics.time(S3Operation.PUT_OBJECT, prefixOf(putObjectRequest.key()), () -> {
+            ObjectContent content = fileContent(sourcePath);
+            PutObjectResponse response = storeObjectInPlace(putObjectRequest, content);
+            awaitResponse(content.size());
+            return response;
+        });
+    }
+
+    /**
+     * Stores the remaining bytes of a buffer as an object without copying them. The SDK copies buffers given to
+     * {@link RequestBody#fromByteBuffer}, so this method is offered for content that is already in a buffer, such as
+     * generated test data. The buffer must not be changed while the object is stored.
+     *
+     * @param putObjectRequest the request.
+     * @param content          the object content, from its position to its limit.
+     * @return the response with the ETag of the object and, in a versioned bucket, its version ID.
+     */
+    public PutObjectResponse putObject(PutObjectRequest putObjectRequest, ByteBuffer content) {
+        return metrics.time(S3Operation.PUT_OBJECT, prefixOf(putObjectRequest.key()), () -> {
+            PutObjectResponse response = storeObjectInPlace(putObjectRequest, new DirectBufferContent(content.slice()));
+            awaitResponse(content.remaining());
+            return response;
+        });
+    }
+
+    /**
+     * Deletes an object, or one version of it when {@code versionId} is set. As in S3, deleting a key that does not
+     * exist succeeds, and in a versioned bucket the delete adds a delete marker instead of removing the object.
+     *
+     * @param deleteObjectRequest the request.
+     * @return the response.
+     */
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest deleteObjectRequest) {
+        return metrics.time(S3Operation.DELETE_OBJECT, prefixOf(deleteObjectRequest.key()), () -> {
+            DeleteObjectResponse response = removeObject(deleteObjectRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    /**
+     * Deletes up to {@value #MAX_DELETE_OBJECTS} objects or object versions of a bucket in one request. Each key is
+     * deleted as by {@link #deleteObject(DeleteObjectRequest)} and, as in S3, counts as one write against the request
+     * rate of its prefix, so a key refused with {@code SlowDown} is reported as an error while the others are deleted.
+     * In quiet mode, only the errors are reported.
+     *
+     * @param deleteObjectsRequest the request.
+     * @return the deleted keys and the errors.
+     * @throws S3Exception with code {@code MalformedXML} if the request lists no keys or more than
+     *                     {@value #MAX_DELETE_OBJECTS}.
+     */
+    @Override
+    public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest deleteObjectsRequest) {
+        return metrics.time(S3Operation.DELETE_OBJECTS, EMPTY_STRING, () -> {
+            DeleteObjectsResponse response = removeObjects(deleteObjectsRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    /**
+     * Copies an object within the fake bucket. The copy shares the bytes of the source object, so copying costs the
+     * same regardless of the object size. The source is read from {@code copySource}, formatted as
+     * {@code bucket/key} with the key URL-encoded.
+     *
+     * @param copyObjectRequest the request.
+     * @return the response.
+     */
+    @Override
+    public CopyObjectResponse copyObject(CopyObjectRequest copyObjectRequest) {
+        return metrics.time(S3Operation.COPY_OBJECT, prefixOf(copyObjectRequest.key()), () -> {
+            CopyObjectResponse response = copyStoredObject(copyObjectRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(
+        CreateMultipartUploadRequest createMultipartUploadRequest) {
+        return metrics.time(S3Operation.CREATE_MULTIPART_UPLOAD, prefixOf(createMultipartUploadRequest.key()), () -> {
+            CreateMultipartUploadResponse response = initiateMultipartUpload(createMultipartUploadRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest uploadPartRequest, RequestBody requestBody) {
+        return metrics.time(S3Operation.UPLOAD_PART, prefixOf(uploadPartRequest.key()), () -> {
+            extractUpload(uploadPartRequest.uploadId(), uploadPartRequest.key());
+            MultipartUpload.validPartNumber(uploadPartRequest.partNumber());
+            ContentWriter writer = readRequestBody(uploadPartRequest.bucket(), requestBody);
+            ObjectContent content = writer.finish();
+            UploadPartResponse response = storePart(uploadPartRequest, content, writer.getETag());
+            awaitResponse(content.size());
+            return response;
+        });
+    }
+
+    /**
+     * Completes a multipart upload by laying the listed parts end to end without copying them. Unlike S3, parts
+     * smaller than 5 MiB are accepted so that tests can use small payloads.
+     *
+     * @param completeMultipartUploadRequest the request listing the parts in ascending order.
+     * @return the response.
+     */
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(
+        CompleteMultipartUploadRequest completeMultipartUploadRequest) {
+        String prefix = prefixOf(completeMultipartUploadRequest.key());
+        return metrics.time(S3Operation.COMPLETE_MULTIPART_UPLOAD, prefix, () -> {
+            CompleteMultipartUploadResponse response = assembleMultipartUpload(completeMultipartUploadRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest abortMultipartUploadRequest) {
+        return metrics.time(S3Operation.ABORT_MULTIPART_UPLOAD, prefixOf(abortMultipartUploadRequest.key()), () -> {
+            AbortMultipartUploadResponse response = discardMultipartUpload(abortMultipartUploadRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    /**
+     * Enables or suspends versioning of a bucket. Once enabled, every write keeps the version it replaces, and every
+     * delete without a version ID adds a delete marker.
+     *
+     * @param putBucketVersioningRequest the request.
+     * @return the response.
+     */
+    @Override
+    public PutBucketVersioningResponse putBucketVersioning(PutBucketVersioningRequest putBucketVersioningRequest) {
+        return metrics.time(S3Operation.PUT_BUCKET_VERSIONING, EMPTY_STRING, () -> {
+            PutBucketVersioningResponse response = configureVersioning(putBucketVersioningRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    @Override
+    public GetBucketVersioningResponse getBucketVersioning(GetBucketVersioningRequest getBucketVersioningRequest) {
+        return metrics.time(S3Operation.GET_BUCKET_VERSIONING, EMPTY_STRING, () -> {
+            GetBucketVersioningResponse response = readVersioning(getBucketVersioningRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    /**
+     * Creates an empty bucket. Until then, requests naming the bucket go to the default bucket.
+     *
+     * @param createBucketRequest the request.
+     * @return the response.
+     */
+    @Override
+    public CreateBucketResponse createBucket(CreateBucketRequest createBucketRequest) {
+        return metrics.time(S3Operation.CREATE_BUCKET, EMPTY_STRING, () -> {
+            CreateBucketResponse response = createStoredBucket(createBucketRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    /**
+     * Deletes a bucket created with {@link #createBucket}. As in S3, only empty buckets can be deleted.
+     *
+     * @param deleteBucketRequest the request.
+     * @return the response.
+     */
+    @Override
+    public DeleteBucketResponse deleteBucket(DeleteBucketRequest deleteBucketRequest) {
+        return metrics.time(S3Operation.DELETE_BUCKET, EMPTY_STRING, () -> {
+            DeleteBucketResponse response = deleteStoredBucket(deleteBucketRequest);
+            awaitResponse(0);
+            return response;
+        });
+    }
+
+    /**
+     * Lists the buckets created with {@link #createBucket}, in name order.
+     *
+     * @param listBucketsRequest the request.
+     * @return the response.
+     */
+    @Override
+    public ListBucketsResponse listBuckets(ListBucketsRequest listBucketsRequest) {
+        return metrics.time(S3Operation.LIST_BUCKETS, EMPTY_STRING, () -> {
+            ListBucketsResponse response = listStoredBuckets();
+            awaitResponse(0);
+            return response;
+        });
     }
 
     @Override
@@ -74,30 +766,632 @@ public class FakeS3Client implements S3Client {
 
     @Override
     public void close() {
+        try {
+            seeder.close();
+        } catch (IOException e) {
+            throw SdkClientException.builder().message("Failed to close seeded archives").cause(e).build();
+        }
+        eventNotifiers.forEach(EventNotifier::close);
+        closeMemoryBudget();
+    }
+
+    ListObjectsResponse listObjectsPage(ListObjectsRequest listObjectsRequest) {
+        admit(listObjectsRequest.prefix(), RequestType.READ);
+        String startKey = Optional.ofNullable(listObjectsRequest.marker()).map(ObjectStore::successor).orElse(null);
+        int maxKeys = Optional.ofNullable(listObjectsRequest.maxKeys()).orElse(Integer.MAX_VALUE);
+        KeyPage page = storeOf(listObjectsRequest.bucket())
+                           .list(listObjectsRequest.prefix(), listObjectsRequest.delimiter(), startKey, maxKeys);
+        return ListObjectsResponse.builder()
+                   .name(listObjectsRequest.bucket())
+                   .prefix(listObjectsRequest.prefix())
+                   .delimiter(listObjectsRequest.delimiter())
+                   .marker(listObjectsRequest.marker())
+                   .maxKeys(listObjectsRequest.maxKeys())
+                   .contents(toS3Objects(page))
+                   .commonPrefixes(toCommonPrefixes(page))
+                   .isTruncated(page.isTruncated())
+                   .nextMarker(page.isTruncated() ? page.getLastEntry() : null)
+                   .build();
+    }
+
+    ListObjectsV2Response listObjectsV2Page(ListObjectsV2Request listObjectsV2Request) {
+        admit(listObjectsV2Request.prefix(), RequestType.READ);
+        String startKey = Optional.ofNullable(listObjectsV2Request.continuationToken())
+                              .map(FakeS3Client::decodeContinuationToken)
+                              .or(() -> Optional.ofNullable(listObjectsV2Request.startAfter())
+                                            .map(ObjectStore::successor))
+                              .orElse(null);
+        int maxKeys = Optional.ofNullable(listObjectsV2Request.maxKeys()).orElse(DEFAULT_MAX_KEYS);
+        KeyPage page = storeOf(listObjectsV2Request.bucket())
+                           .list(listObjectsV2Request.prefix(), listObjectsV2Request.delimiter(), startKey, maxKeys);
+        return ListObjectsV2Response.builder()
+                   .name(listObjectsV2Request.bucket())
+                   .prefix(listObjectsV2Request.prefix())
+                   .delimiter(listObjectsV2Request.delimiter())
+                   .startAfter(listObjectsV2Request.startAfter())
+                   .continuationToken(listObjectsV2Request.continuationToken())
+                   .maxKeys(maxKeys)
+                   .keyCount(page.size())
+                   .contents(toS3Objects(page))
+                   .commonPrefixes(toCommonPrefixes(page))
+                   .isTruncated(page.isTruncated())
+                   .nextContinuationToken(nextContinuationToken(page))
+                   .build();
+    }
+
+    CreateMultipartUploadResponse initiateMultipartUpload(CreateMultipartUploadRequest createMultipartUploadRequest) {
+        admit(createMultipartUploadRequest.key(), RequestType.WRITE);
+        String uploadId = UUID.randomUUID().toString();
+        MultipartUpload upload = new MultipartUpload(uploadId, createMultipartUploadRequest.key());
+        multipartUploads.put(uploadId, upload);
+        ObjectLifecycle objectLifecycle = lifecycle;
+        if (objectLifecycle != null) {
+            objectLifecycle.uploadInitiated(multipartUploads, upload);
+        }
+        return CreateMultipartUploadResponse.builder()
+                   .bucket(createMultipartUploadRequest.bucket())
+                   .key(createMultipartUploadRequest.key())
+                   .uploadId(uploadId)
+                   .build();
+    }
+
+    CompleteMultipartUploadResponse assembleMultipartUpload(
+        CompleteMultipartUploadRequest completeMultipartUploadRequest) {
+        admit(completeMultipartUploadRequest.key(), RequestType.WRITE);
+        String uploadId = completeMultipartUploadRequest.uploadId();
+        MultipartUpload upload = extractUpload(uploadId, completeMultipartUploadRequest.key());
+        List<UploadedPart> parts = listedParts(upload, completeMultipartUploadRequest.multipartUpload());
+        if (!multipartUploads.remove(uploadId, upload)) {
+            throw S3Errors.noSuchUpload(uploadId);
+        }
+        ObjectContent content = new CompositeContent(parts.stream()
+                                                         .map(UploadedPart::getContent)
+                                                         .collect(Collectors.toList()));
+        String eTag = ETags.multipartOf(parts.stream().map(UploadedPart::getETag).collect(Collectors.toList()));
+        ObjectStore store = storeOf(completeMultipartUploadRequest.bucket());
+        ObjectVersion version = store(store, upload.getKey(), content, eTag, RequestConditions.NONE);
+        publishCreated(ObjectEvent.OBJECT_CREATED_MULTIPART, completeMultipartUploadRequest.bucket(), upload.getKey(),
+                       store, version);
+        return CompleteMultipartUploadResponse.builder()
+                   .bucket(completeMultipartUploadRequest.bucket())
+                   .key(upload.getKey())
+                   .eTag(version.getETag())
+                   .versionId(versionIdOf(store, version))
+                   .build();
+    }
+
+    AbortMultipartUploadResponse discardMultipartUpload(AbortMultipartUploadRequest abortMultipartUploadRequest) {
+        admit(abortMultipartUploadRequest.key(), RequestType.WRITE);
+        String uploadId = abortMultipartUploadRequest.uploadId();
+        MultipartUpload upload = extractUpload(uploadId, abortMultipartUploadRequest.key());
+        multipartUploads.remove(uploadId, upload);
+        return AbortMultipartUploadResponse.builder().build();
+    }
+
+    /**
+     * Resolves a {@code GetObject} request. When the request carries a satisfiable {@code Range}, only a view of the
+     * requested bytes is returned together with partial content metadata, so ranged reads cost the size of the range
+     * rather than the size of the object.
+     */
+    ObjectRead readObject(GetObjectRequest getObjectRequest) {
+        admit(getObjectRequest.key(), RequestType.READ);
+        ObjectStore store = storeOf(getObjectRequest.bucket());
+        ObjectVersion version = extractVersion(store, getObjectRequest.key(), getObjectRequest.versionId());
+        RequestConditions.of(getObjectRequest.ifMatch(), getObjectRequest.ifNoneMatch(),
+                             getObjectRequest.ifModifiedSince(), getObjectRequest.ifUnmodifiedSince())
+            .checkRead(version);
+        ObjectContent content = version.getContent();
+        GetObjectResponse.Builder response = GetObjectResponse.builder()
+                                                 .acceptRanges(ACCEPT_BYTE_RANGES)
+                                                 .eTag(version.getETag())
+                                                 .lastModified(version.getLastModified())
+                                                 .versionId(versionIdOf(store, version));
+        Optional<ByteRange> range = ByteRange.parse(getObjectRequest.range(), content.size());
+        if (range.isEmpty()) {
+            metrics.recordBytesOut(S3Operation.GET_OBJECT, prefixOf(getObjectRequest.key()), content.size());
+            return new ObjectRead(response.contentLength(content.size()).build(), content);
+        }
+        ByteRange byteRange = range.get();
+        if (!byteRange.isSatisfiable()) {
+            throw S3Errors.invalidRange(getObjectRequest.range());
+        }
+        response.contentLength(byteRange.getLength()).contentRange(byteRange.toContentRange());
+        metrics.recordBytesOut(S3Operation.GET_OBJECT, prefixOf(getObjectRequest.key()), byteRange.getLength());
+        return new ObjectRead(response.build(), content.slice(byteRange.getFirst(), byteRange.getLength()));
+    }
+
+    HeadObjectResponse describeObject(HeadObjectRequest headObjectRequest) {
+        admit(headObjectRequest.key(), RequestType.READ);
+        ObjectStore store = storeOf(headObjectRequest.bucket());
+        ObjectVersion version = extractVersion(store, headObjectRequest.key(), headObjectRequest.versionId());
+        RequestConditions.of(headObjectRequest.ifMatch(), headObjectRequest.ifNoneMatch(),
+                             headObjectRequest.ifModifiedSince(), headObjectRequest.ifUnmodifiedSince())
+            .checkRead(version);
+        return HeadObjectResponse.builder()
+                   .acceptRanges(ACCEPT_BYTE_RANGES)
+                   .contentLength(version.getContent().size())
+                   .eTag(version.getETag())
+                   .lastModified(version.getLastModified())
+                   .versionId(versionIdOf(store, version))
+                   .build();
+    }
+
+    /**
+     * Resolves a select request to the selection of records from the latest version of the object. The expression and
+     * the formats are checked before the object is looked up, as S3 does.
+     */
+    ObjectSelection selectObject(SelectObjectContentRequest selectObjectContentRequest) {
+        ExpressionType expressionType = selectObjectContentRequest.expressionType();
+        if (expressionType != ExpressionType.SQL) {
+            throw S3Errors.invalidExpressionType(String.valueOf(expressionType));
+        }
+        SelectExpression expression = SelectExpression.parse(selectObjectContentRequest.expression());
+        admit(selectObjectContentRequest.key(), RequestType.READ);
+        ObjectStore store = storeOf(selectObjectContentRequest.bucket());
+        ObjectVersion version = extractVersion(store, selectObjectContentRequest.key(), null);
+        return ObjectSelection.of(version.getContent(), expression, selectObjectContentRequest.inputSerialization(),
+                                  selectObjectContentRequest.outputSerialization());
+    }
+
+    PutObjectResponse storeObject(PutObjectRequest putObjectRequest, ObjectContent content, String eTag) {
+        admit(putObjectRequest.key(), RequestType.WRITE);
+        metrics.recordBytesIn(S3Operation.PUT_OBJECT, prefixOf(putObjectRequest.key()), content.size());
+        ObjectStore store = storeOf(putObjectRequest.bucket());
+        ObjectVersion version = store(store, putObjectRequest.key(), content, eTag,
+                                      writeConditions(putObjectRequest));
+        publishCreated(ObjectEvent.OBJECT_CREATED_PUT, putObjectRequest.bucket(), putObjectRequest.key(), store,
+                       version);
+        return PutObjectResponse.builder()
+                   .eTag(version.getETag())
+                   .versionId(versionIdOf(store, version))
+                   .build();
+    }
+
+    PutObjectResponse storeObjectInPlace(PutObjectRequest putObjectRequest, ObjectContent content) {
+        admit(putObjectRequest.key(), RequestType.WRITE);
+        metrics.recordBytesIn(S3Operation.PUT_OBJECT, prefixOf(putObjectRequest.key()), content.size());
+        ObjectStore store = storeOf(putObjectRequest.bucket());
+        ObjectVersion version = store.putInPlace(putObjectRequest.key(), content, writeConditions(putObjectRequest));
+        scheduleExpiry(store, putObjectRequest.key(), version);
+        publishCreated(ObjectEvent.OBJECT_CREATED_PUT, putObjectRequest.bucket(), putObjectRequest.key(), store,
+                       version);
+        return PutObjectResponse.builder()
+                   .eTag(version.getETag())
+                   .versionId(versionIdOf(store, version))
+                   .build();
+    }
+
+    DeleteObjectResponse removeObject(DeleteObjectRequest deleteObjectRequest) {
+        admit(deleteObjectRequest.key(), RequestType.WRITE);
+        ObjectStore store = storeOf(deleteObjectRequest.bucket());
+        if (deleteObjectRequest.versionId() != null) {
+            Optional<ObjectVersion> removed = store.remove(deleteObjectRequest.key(), deleteObjectRequest.versionId());
+            publishRemoved(ObjectEvent.OBJECT_REMOVED_DELETE, deleteObjectRequest, deleteObjectRequest.versionId());
+            return DeleteObjectResponse.builder()
+                       .deleteMarker(removed.map(ObjectVersion::isDeleteMarker).orElse(null))
+                       .versionId(deleteObjectRequest.versionId())
+                       .build();
+        }
+        Optional<ObjectVersion> deleteMarker = store.remove(deleteObjectRequest.key());
+        publishRemoved(deleteMarker.isPresent() ? ObjectEvent.OBJECT_REMOVED_DELETE_MARKER
+                           : ObjectEvent.OBJECT_REMOVED_DELETE,
+                       deleteObjectRequest, deleteMarker.map(marker -> versionIdOf(store, marker)).orElse(null));
+        return DeleteObjectResponse.builder()
+                   .deleteMarker(deleteMarker.map(ObjectVersion::isDeleteMarker).orElse(null))
+                   .versionId(deleteMarker.map(marker -> versionIdOf(store, marker)).orElse(null))
+                   .build();
+    }
 
+    DeleteObjectsResponse removeObjects(DeleteObjectsRequest deleteObjectsRequest) {
+        List<ObjectIdentifier> identifiers = Optional.ofNullable(deleteObjectsRequest.delete())
+                                                 .map(Delete::objects)
+                                                 .orElse(Collections.emptyList());
+        if (identifiers.isEmpty() || identifiers.size() > MAX_DELETE_OBJECTS) {
+            throw S3Errors.malformedDeleteList(identifiers.size());
+        }
+        boolean quiet = Boolean.TRUE.equals(deleteObjectsRequest.delete().quiet());
+        List<DeletedObject> deleted = new ArrayList<>();
+        List<S3Error> errors = new ArrayList<>();
+        for (ObjectIdentifier identifier : identifiers) {
+            try {
+                DeleteObjectResponse response = removeObject(DeleteObjectRequest.builder()
+                                                                 .bucket(deleteObjectsRequest.bucket())
+                                                                 .key(identifier.key())
+                                                                 .versionId(identifier.versionId())
+                                                                 .build());
+                if (!quiet) {
+                    deleted.add(deletedObject(identifier, response));
+                }
+            } catch (S3Exception e) {
+                errors.add(S3Error.builder()
+                               .key(identifier.key())
+                               .versionId(identifier.versionId())
+                               .code(e.awsErrorDetails().errorCode())
+                               .message(e.awsErrorDetails().errorMessage())
+                               .build());
+            }
+        }
+        return DeleteObjectsResponse.builder().deleted(deleted).errors(errors).build();
+    }
+
+    CopyObjectResponse copyStoredObject(CopyObjectRequest copyObjectRequest) {
+        admit(copyObjectRequest.key(), RequestType.WRITE);
+        String sourcePath = sourcePathOf(copyObjectRequest.copySource());
+        int keyStart = sourcePath.indexOf(PATH_SEPARATOR);
+        ObjectStore source = storeOf(sourcePath.substring(0, keyStart));
+        ObjectVersion sourceVersion = extractVersion(source, sourcePath.substring(keyStart + 1),
+                                                     sourceVersionIdOf(copyObjectRequest.copySource()));
+        ObjectStore destination = storeOf(copyObjectRequest.bucket());
+        ObjectVersion copy = destination.copy(sourceVersion, copyObjectRequest.key());
+        scheduleExpiry(destination, copyObjectRequest.key(), copy);
+        publishCreated(ObjectEvent.OBJECT_CREATED_COPY, copyObjectRequest.bucket(), copyObjectRequest.key(),
+                       destination, copy);
+        return CopyObjectResponse.builder()
+                   .copyObjectResult(CopyObjectResult.builder()
+                                         .eTag(copy.getETag())
+                                         .lastModified(copy.getLastModified())
+                                         .build())
+                   .versionId(versionIdOf(destination, copy))
+                   .copySourceVersionId(versionIdOf(source, sourceVersion))
+                   .build();
+    }
+
+    UploadPartResponse storePart(UploadPartRequest uploadPartRequest, ObjectContent content, String eTag) {
+        MultipartUpload.validPartNumber(uploadPartRequest.partNumber());
+        admit(uploadPartRequest.key(), RequestType.WRITE);
+        metrics.recordBytesIn(S3Operation.UPLOAD_PART, prefixOf(uploadPartRequest.key()), content.size());
+        MultipartUpload upload = extractUpload(uploadPartRequest.uploadId(), uploadPartRequest.key());
+        upload.putPart(uploadPartRequest.partNumber(), new UploadedPart(content, eTag));
+        return UploadPartResponse.builder().eTag(eTag).build();
+    }
+
+    PutBucketVersioningResponse configureVersioning(PutBucketVersioningRequest putBucketVersioningRequest) {
+        admit(null, RequestType.WRITE);
+        BucketVersioningStatus status = Optional.ofNullable(putBucketVersioningRequest.versioningConfiguration())
+                                            .map(VersioningConfiguration::status)
+                                            .orElse(null);
+        if (status != BucketVersioningStatus.ENABLED && status != BucketVersioningStatus.SUSPENDED) {
+            throw S3Errors.malformedVersioningConfiguration();
+        }
+        storeOf(putBucketVersioningRequest.bucket())
+            .setVersioning(status == BucketVersioningStatus.ENABLED ? Versioning.ENABLED : Versioning.SUSPENDED);
+        return PutBucketVersioningResponse.builder().build();
+    }
+
+    GetBucketVersioningResponse readVersioning(GetBucketVersioningRequest getBucketVersioningRequest) {
+        admit(null, RequestType.READ);
+        Versioning versioning = storeOf(getBucketVersioningRequest.bucket()).getVersioning();
+        BucketVersioningStatus status = versioning == Versioning.ENABLED ? BucketVersioningStatus.ENABLED
+                                        : versioning == Versioning.SUSPENDED ? BucketVersioningStatus.SUSPENDED
+                                        : null;
+        return GetBucketVersioningResponse.builder().status(status).build();
+    }
+
+    CreateBucketResponse createStoredBucket(CreateBucketRequest createBucketRequest) {
+        admit(null, RequestType.WRITE);
+        String name = createBucketRequest.bucket();
+        if (buckets.putIfAbsent(name, objectStore.newBucketStore(Instant.now())) != null) {
+            throw S3Errors.bucketAlreadyOwnedByYou(name);
+        }
+        return CreateBucketResponse.builder().location(PATH_SEPARATOR + name).build();
+    }
+
+    DeleteBucketResponse deleteStoredBucket(DeleteBucketRequest deleteBucketRequest) {
+        admit(null, RequestType.WRITE);
+        String name = deleteBucketRequest.bucket();
+        ObjectStore store = Optional.ofNullable(name).map(buckets::get).orElseThrow(() -> S3Errors.noSuchBucket(name));
+        if (!store.isEmpty()) {
+            throw S3Errors.bucketNotEmpty(name);
+        }
+        buckets.remove(name, store);
+        return DeleteBucketResponse.builder().build();
     }
 
-    private static Map<String, InputStream> readResourceFiles(String[] filesInBucket) {
-        List<String> suppliedFilenames = Arrays.asList(filesInBucket);
-        return suppliedFilenames.stream()
-                   .map(filename -> new SimpleEntry<>(filename, IoUtils.inputStreamFromResources(filename)))
-                   .collect(Collectors.toMap(SimpleEntry::getKey, SimpleEntry::getValue));
+    ListBucketsResponse listStoredBuckets() {
+        admit(null, RequestType.READ);
+        List<Bucket> listedBuckets = buckets.entrySet()
+                                         .stream()
+                                         .sorted(Entry.comparingByKey())
+                                         .map(bucket -> Bucket.builder()
+                                                            .name(bucket.getKey())
+                                                            .creationDate(bucket.getValue().getCreationDate())
+                                                            .build())
+                                         .collect(Collectors.toList());
+        return ListBucketsResponse.builder().buckets(listedBuckets).build();
     }
 
-    private byte[] readAllBytes(InputStream inputStream) {
+    MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    ContentDeduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    ContentWriter newContentWriter(String bucket, long contentLength) {
+        return storeOf(bucket).newWriter(contentLength);
+    }
+
+    /**
+     * The time the service takes to answer a request transferring the given number of bytes.
+     */
+    Duration responseTime(long bytesTransferred) {
+        return latencyModel.responseTime(bytesTransferred);
+    }
+
+    private void admit(String key, RequestType requestType) {
+        applyLifecycleRules();
+        if (!latencyModel.tryAcquire(prefixOf(key), requestType)) {
+            throw S3Errors.slowDown();
+        }
+    }
+
+    private void awaitResponse(long bytesTransferred) {
+        Duration responseTime = responseTime(bytesTransferred);
+        if (responseTime.isZero()) {
+            return;
+        }
         try {
-            return inputStream.readAllBytes();
+            TimeUnit.NANOSECONDS.sleep(responseTime.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw SdkClientException.builder().message("Interrupted while waiting for the response").cause(e).build();
+        }
+    }
+
+    private void closeMemoryBudget() {
+        if (memoryBudget != null) {
+            try {
+                memoryBudget.close();
+            } catch (IOException e) {
+                throw SdkClientException.builder().message("Failed to close the segment file").cause(e).build();
+            }
+        }
+    }
+
+    static String prefixOf(String key) {
+        return key == null ? EMPTY_STRING : key.substring(0, key.lastIndexOf(PATH_SEPARATOR) + 1);
+    }
+
+    /**
+     * The store of a created bucket, or the store of the default bucket for any other bucket name.
+     */
+    private ObjectStore storeOf(String bucket) {
+        ObjectStore store = bucket == null ? null : buckets.get(bucket);
+        return store == null ? objectStore : store;
+    }
+
+    private Stream<ObjectStore> stores() {
+        return Stream.concat(Stream.of(objectStore), buckets.values().stream());
+    }
+
+    private ObjectVersion store(ObjectStore store, String key, ObjectContent content, String eTag,
+                                RequestConditions conditions) {
+        ObjectVersion version = store.put(key, content, eTag, conditions);
+        scheduleExpiry(store, key, version);
+        return version;
+    }
+
+    private void scheduleExpiry(ObjectStore store, String key, ObjectVersion version) {
+        ObjectLifecycle objectLifecycle = lifecycle;
+        if (objectLifecycle != null) {
+            objectLifecycle.objectStored(store, key, version);
+        }
+    }
+
+    /**
+     * How a deleted key is reported: a deleted version by its ID, and a delete that added a delete marker by the
+     * version ID of the marker.
+     */
+    private static DeletedObject deletedObject(ObjectIdentifier identifier, DeleteObjectResponse response) {
+        DeletedObject.Builder deletedObject = DeletedObject.builder()
+                                                  .key(identifier.key())
+                                                  .deleteMarker(response.deleteMarker());
+        return identifier.versionId() == null
+                   ? deletedObject.deleteMarkerVersionId(response.versionId()).build()
+                   : deletedObject.versionId(identifier.versionId()).build();
+    }
+
+    private void storeBytes(ObjectStore store, String key, byte[] bytes) {
+        ContentWriter writer = store.newWriter(bytes.length);
+        writer.write(ByteBuffer.wrap(bytes));
+        ObjectVersion version = store.put(key, writer.finish(), writer.getETag(), RequestConditions.NONE);
+        scheduleExpiry(store, key, version);
+    }
+
+    private Optional<EventNotifier> findEventNotifier(String configurationId) {
+        return eventNotifiers.stream().filter(notifier -> notifier.getId().equals(configurationId)).findFirst();
+    }
+
+    private void publishCreated(String eventName, String bucket, String key, ObjectStore store,
+                                ObjectVersion version) {
+        if (!eventNotifiers.isEmpty()) {
+            publish(ObjectEvent.created(eventName, bucketNameOf(bucket), key, version, versionIdOf(store, version)));
+        }
+    }
+
+    private void publishRemoved(String eventName, DeleteObjectRequest deleteObjectRequest, String versionId) {
+        if (!eventNotifiers.isEmpty()) {
+            publish(ObjectEvent.removed(eventName, bucketNameOf(deleteObjectRequest.bucket()),
+                                        deleteObjectRequest.key(), versionId, Instant.now()));
+        }
+    }
+
+    private void publish(ObjectEvent event) {
+        eventNotifiers.forEach(notifier -> notifier.publish(event));
+    }
+
+    private static String bucketNameOf(String bucket) {
+        return Optional.ofNullable(bucket).orElse(EMPTY_STRING);
+    }
+
+    private static void scheduleExpiry(ObjectLifecycle objectLifecycle, ObjectStore store,
+                                       Entry<String, ObjectVersion> entry) {
+        if (!entry.getValue().isDeleteMarker()) {
+            objectLifecycle.objectStored(store, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * The version ID as S3 reports it, which is absent for objects of buckets that have never been versioned.
+     */
+    private static String versionIdOf(ObjectStore store, ObjectVersion version) {
+        return store.getVersioning() == Versioning.UNVERSIONED ? null : version.getVersionId();
+    }
+
+    private static RequestConditions writeConditions(PutObjectRequest putObjectRequest) {
+        Map<String, List<String>> headers = putObjectRequest.overrideConfiguration()
+                                                .map(AwsRequestOverrideConfiguration::headers)
+                                                .orElse(Collections.emptyMap());
+        return RequestConditions.of(header(headers, IF_MATCH), header(headers, IF_NONE_MATCH), null, null);
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        return headers.entrySet()
+                   .stream()
+                   .filter(header -> header.getKey().equalsIgnoreCase(name))
+                   .flatMap(header -> header.getValue().stream())
+                   .findFirst()
+                   .orElse(null);
+    }
+
+    /**
+     * Writes the request body into a writer, which is left to be finished by the caller.
+     */
+    private ContentWriter readRequestBody(String bucket, RequestBody requestBody) {
+        ContentWriter writer = newContentWriter(bucket, requestBody.contentLength());
+        try (ReadableByteChannel channel = Channels.newChannel(requestBody.contentStreamProvider().newStream())) {
+            writer.writeFrom(channel);
+        } catch (IOException e) {
+            throw SdkClientException.builder().message("Failed to read request body").cause(e).build();
+        }
+        return writer;
+    }
+
+    private static ObjectContent fileContent(Path sourcePath) {
+        try {
+            return FileRegionContent.of(sourcePath);
+        } catch (IOException e) {
+            throw SdkClientException.builder().message("Failed to read " + sourcePath).cause(e).build();
+        }
+    }
+
+    private static void writeFile(ObjectContent content, Path destinationPath) {
+        try (FileChannel channel = FileChannel.open(destinationPath, StandardOpenOption.CREATE_NEW,
+                                                    StandardOpenOption.WRITE)) {
+            content.transferTo(channel);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw SdkClientException.builder().message("Failed to write " + destinationPath).cause(e).build();
+        }
+    }
+
+    private MultipartUpload extractUpload(String uploadId, String key) {
+        MultipartUpload upload = uploadId == null ? null : multipartUploads.get(uploadId);
+        if (upload == null || !upload.getKey().equals(key)) {
+            throw S3Errors.noSuchUpload(uploadId);
+        }
+        return upload;
+    }
+
+    private static List<UploadedPart> listedParts(MultipartUpload upload, CompletedMultipartUpload listing) {
+        if (listing == null || !listing.hasParts() || listing.parts().isEmpty()) {
+            throw S3Errors.malformedPartList();
+        }
+        List<UploadedPart> parts = new ArrayList<>();
+        int previousPartNumber = 0;
+        for (CompletedPart listedPart : listing.parts()) {
+            int partNumber = Optional.ofNullable(listedPart.partNumber()).orElse(0);
+            if (partNumber <= previousPartNumber) {
+                throw S3Errors.invalidPartOrder();
+            }
+            UploadedPart uploadedPart = upload.getPart(partNumber)
+                                            .filter(part -> eTagMatches(listedPart.eTag(), part.getETag()))
+                                            .orElseThrow(() -> S3Errors.invalidPart(partNumber));
+            parts.add(uploadedPart);
+            previousPartNumber = partNumber;
+        }
+        return parts;
+    }
+
+    /**
+     * Extracts {@code bucket/key} from a copy source of the form {@code [/]bucket/key[?versionId=id]}, where the key
+     * is URL-encoded.
+     */
+    private static String sourcePathOf(String copySource) {
+        String source = Optional.ofNullable(copySource).orElse(EMPTY_STRING);
+        int queryStart = source.indexOf(QUERY_SEPARATOR);
+        String path = source.substring(source.startsWith(PATH_SEPARATOR) ? 1 : 0,
+                                       queryStart < 0 ? source.length() : queryStart);
+        int keyStart = path.indexOf(PATH_SEPARATOR);
+        if (keyStart <= 0 || keyStart == path.length() - 1) {
+            throw S3Errors.invalidCopySource(copySource);
+        }
+        String encodedKey = path.substring(keyStart + 1).replace(PLUS_SIGN, ENCODED_PLUS_SIGN);
+        return path.substring(0, keyStart + 1) + URLDecoder.decode(encodedKey, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The version ID of a copy source of the form {@code [/]bucket/key?versionId=id}, or null for the latest version.
+     */
+    private static String sourceVersionIdOf(String copySource) {
+        int queryStart = copySource.indexOf(QUERY_SEPARATOR);
+        if (queryStart < 0) {
+            return null;
+        }
+        String query = copySource.substring(queryStart + 1);
+        return query.startsWith(VERSION_ID_PARAMETER) ? query.substring(VERSION_ID_PARAMETER.length()) : null;
+    }
+
+    private static boolean eTagMatches(String listedETag, String uploadedETag) {
+        return listedETag == null || ETags.unquote(listedETag).equals(ETags.unquote(uploadedETag));
+    }
+
+    private static List<S3Object> toS3Objects(KeyPage page) {
+        return page.getObjects()
+                   .stream()
+                   .map(entry -> S3Object.builder()
+                                     .key(entry.getKey())
+                                     .size(entry.getValue().getContent().size())
+                                     .lastModified(entry.getValue().getLastModified())
+                                     .build())
+                   .collect(Collectors.toList());
+    }
+
+    private static List<CommonPrefix> toCommonPrefixes(KeyPage page) {
+        return page.getCommonPrefixes()
+                   .stream()
+                   .map(prefix -> CommonPrefix.builder().prefix(prefix).build())
+                   .collect(Collectors.toList());
+    }
+
+    private static String nextContinuationToken(KeyPage page) {
+        return page.getNextStartKey().map(FakeS3Client::encodeContinuationToken).orElse(null);
+    }
+
+    private static String encodeContinuationToken(String startKey) {
+        return Base64.getUrlEncoder().encodeToString(startKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeContinuationToken(String continuationToken) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw S3Errors.invalidContinuationToken();
         }
     }
 
-    private InputStream extractInputStream(String filename) {
-        if (filesAndContent.containsKey(filename)) {
-            return filesAndContent.get(filename);
-        } else {
-            throw NoSuchKeyException.builder().message("File does not exist:" + filename).build();
+    /**
+     * The version of an object that a read refers to, which must not be a delete marker.
+     */
+    private static ObjectVersion extractVersion(ObjectStore store, String key, String versionId) {
+        ObjectVersion version = store.getVersion(key, versionId)
+                                    .orElseThrow(() -> versionId == null
+                                                           ? S3Errors.noSuchKey(key)
+                                                           : S3Errors.noSuchVersion(key, versionId));
+        if (version.isDeleteMarker()) {
+            throw versionId == null ? S3Errors.noSuchKey(key) : S3Errors.deleteMarkerVersion(key, versionId);
         }
+        return version;
     }
 
     private <ReturnT> ReturnT transformResponse(ResponseTransformer<GetObjectResponse, ReturnT> responseTransformer,
@@ -0,0 +1,626 @@
+package no.unit.nva.stubs;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.stream.XMLStreamException;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.BucketVersioningStatus;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteBucketRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetBucketVersioningRequest;
+import software.amazon.awssdk.services.s3.model.GetBucketVersioningResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.PutBucketVersioningRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.VersioningConfiguration;
+
+/**
+ * An embedded S3-compatible HTTP endpoint serving the objects of a {@link FakeS3Client}, so that a real SDK client,
+ * with its HTTP client, connection pool, signing and (un)marshalling, can be pointed at {@code localhost}. It serves
+ * GetObject (with ranges), HeadObject, PutObject, CopyObject, DeleteObject, ListObjects, ListObjectsV2, multipart
+ * uploads, CreateBucket, DeleteBucket, ListBuckets and bucket versioning, addressed path-style
+ * ({@code http://localhost:port/bucket/key}) or virtual-hosted style against {@code bucket.localhost}. Request
+ * signatures are accepted without being verified.
+ *
+ * <pre>{@code
+ * try (FakeS3Server server = new FakeS3Server(fakeS3Client).start()) {
+ *     S3Client s3Client = S3Client.builder()
+ *                             .endpointOverride(server.getEndpoint())
+ *                             .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+ *                             .build();
+ * }
+ * }</pre>
+ */
+public class FakeS3Server implements AutoCloseable {
+
+    public static final int OK = 200;
+    public static final int PARTIAL_CONTENT = 206;
+    public static final int NO_CONTENT = 204;
+    public static final int METHOD_NOT_ALLOWED = 405;
+    public static final int LENGTH_REQUIRED = 411;
+    public static final int INTERNAL_SERVER_ERROR = 500;
+    public static final int NOT_IMPLEMENTED = 501;
+    private static final int NO_RESPONSE_BODY = -1;
+    private static final int CONNECTION_BACKLOG = 1024;
+    private static final int STOP_IMMEDIATELY = 0;
+    private static final String PATH_SEPARATOR = "/";
+    private static final String VIRTUAL_HOST_SUFFIX = ".localhost";
+    private static final String DEFAULT_CONTENT_TYPE = "binary/octet-stream";
+    private static final String XML_CONTENT_TYPE = "application/xml";
+    private static final String STREAMING_PAYLOAD_PREFIX = "STREAMING-";
+    private static final String CONTENT_SHA256 = "x-amz-content-sha256";
+    private static final String DECODED_CONTENT_LENGTH = "x-amz-decoded-content-length";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final long INVALID_LENGTH = -1;
+    private static final String REQUEST_ID = "x-amz-request-id";
+    private static final String COPY_SOURCE = "x-amz-copy-source";
+    private static final String VERSION_ID = "x-amz-version-id";
+    private static final String DELETE_MARKER = "x-amz-delete-marker";
+    private static final String IF_MATCH = "If-Match";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
+    private static final Set<String> LIST_PARAMETERS =
+        Set.of("list-type", "prefix", "delimiter", "marker", "max-keys", "encoding-type", "continuation-token",
+               "start-after");
+    private final FakeS3Client s3Client;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server for the objects of the given client, bound to an ephemeral port on the loopback interface.
+     *
+     * @param s3Client the client whose objects are served.
+     */
+    public FakeS3Server(FakeS3Client s3Client) {
+        this.s3Client = s3Client;
+        this.executor = Executors.newCachedThreadPool();
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                                            CONNECTION_BACKLOG);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.createContext(PATH_SEPARATOR, this::handle);
+        server.setExecutor(executor);
+    }
+
+    public FakeS3Server start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * The endpoint to configure SDK clients with, for example {@code http://localhost:54321}.
+     *
+     * @return the endpoint URI.
+     */
+    public URI getEndpoint() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @Override
+    public void close() {
+        server.stop(STOP_IMMEDIATELY);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set(REQUEST_ID, UUID.randomUUID().toString());
+        S3HttpRequest request = new S3HttpRequest(exchange);
+        try {
+            route(request, exchange);
+        } catch (AwsServiceException exception) {
+            sendError(exchange, exception.statusCode(), exception.awsErrorDetails().errorCode(),
+                      exception.awsErrorDetails().errorMessage(), request.resource());
+        } catch (RuntimeException exception) {
+            sendError(exchange, INTERNAL_SERVER_ERROR, "InternalError", String.valueOf(exception.getMessage()),
+                      request.resource());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod().toUpperCase(Locale.ROOT);
+        if (request.bucket.isEmpty()) {
+            routeServiceRequest(method, request, exchange);
+        } else if (request.key.isEmpty()) {
+            routeBucketRequest(method, request, exchange);
+        } else {
+            routeObjectRequest(method, request, exchange);
+        }
+    }
+
+    private void routeServiceRequest(String method, S3HttpRequest request, HttpExchange exchange)
+        throws IOException {
+        if ("GET".equals(method)) {
+            sendXml(exchange, OK, S3Xml.listAllMyBucketsResult(s3Client.listBuckets()));
+        } else {
+            sendNotImplemented(request, exchange);
+        }
+    }
+
+    private void routeBucketRequest(String method, S3HttpRequest request, HttpExchange exchange)
+        throws IOException {
+        if ("GET".equals(method) && request.query.isEmpty() || isListRequest(method, request)) {
+            listObjects(request, exchange);
+        } else if (request.query.containsKey("versioning")) {
+            routeVersioningRequest(method, request, exchange);
+        } else if ("PUT".equals(method) && request.query.isEmpty()) {
+            s3Client.createBucket(CreateBucketRequest.builder().bucket(request.bucket).build());
+            exchange.getResponseHeaders().set("Location", PATH_SEPARATOR + request.bucket);
+            exchange.sendResponseHeaders(OK, NO_RESPONSE_BODY);
+        } else if ("DELETE".equals(method) && request.query.isEmpty()) {
+            s3Client.deleteBucket(DeleteBucketRequest.builder().bucket(request.bucket).build());
+            exchange.sendResponseHeaders(NO_CONTENT, NO_RESPONSE_BODY);
+        } else if ("POST".equals(method) && request.query.containsKey("delete")) {
+            deleteObjects(request, exchange);
+        } else if ("HEAD".equals(method)) {
+            exchange.sendResponseHeaders(OK, NO_RESPONSE_BODY);
+        } else {
+            sendNotImplemented(request, exchange);
+        }
+    }
+
+    private void routeVersioningRequest(String method, S3HttpRequest request, HttpExchange exchange)
+        throws IOException {
+        if ("PUT".equals(method)) {
+            BucketVersioningStatus status;
+            try (InputStream body = exchange.getRequestBody()) {
+                status = S3Xml.versioningStatus(body);
+            } catch (XMLStreamException e) {
+                throw S3Errors.malformedVersioningConfiguration();
+            }
+            s3Client.putBucketVersioning(PutBucketVersioningRequest.builder()
+                                             .bucket(request.bucket)
+                                             .versioningConfiguration(VersioningConfiguration.builder()
+                                                                          .status(status)
+                                                                          .build())
+                                             .build());
+            exchange.sendResponseHeaders(OK, NO_RESPONSE_BODY);
+        } else if ("GET".equals(method)) {
+            GetBucketVersioningResponse response = s3Client.getBucketVersioning(
+                GetBucketVersioningRequest.builder().bucket(request.bucket).build());
+            sendXml(exchange, OK, S3Xml.versioningConfiguration(response));
+        } else {
+            sendNotImplemented(request, exchange);
+        }
+    }
+
+    private static boolean isListRequest(String method, S3HttpRequest request) {
+        return "GET".equals(method) && request.query.keySet().stream().anyMatch(LIST_PARAMETERS::contains);
+    }
+
+    private void routeObjectRequest(String method, S3HttpRequest request, HttpExchange exchange)
+        throws IOException {
+        switch (method) {
+            case "GET":
+                getObject(request, exchange);
+                break;
+            case "HEAD":
+                headObject(request, exchange);
+                break;
+            case "PUT":
+                if (request.query.containsKey("uploadId")) {
+                    uploadPart(request, exchange);
+                } else if (exchange.getRequestHeaders().containsKey(COPY_SOURCE)) {
+                    copyObject(request, exchange);
+                } else {
+                    putObject(request, exchange);
+                }
+                break;
+            case "POST":
+                if (request.query.containsKey("uploads")) {
+                    createMultipartUpload(request, exchange);
+                } else if (request.query.containsKey("uploadId")) {
+                    completeMultipartUpload(request, exchange);
+                } else {
+                    sendNotImplemented(request, exchange);
+                }
+                break;
+            case "DELETE":
+                deleteObject(request, exchange);
+                break;
+            default:
+                sendError(exchange, METHOD_NOT_ALLOWED, "MethodNotAllowed", "The method is not allowed",
+                          request.resource());
+        }
+    }
+
+    private void getObject(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                .bucket(request.bucket)
+                                                .key(request.key)
+                                                .versionId(request.query.get("versionId"))
+                                                .range(requestHeaders.getFirst("Range"))
+                                                .ifMatch(requestHeaders.getFirst(IF_MATCH))
+                                                .ifNoneMatch(requestHeaders.getFirst(IF_NONE_MATCH))
+                                                .ifModifiedSince(httpDate(requestHeaders.getFirst(IF_MODIFIED_SINCE)))
+                                                .ifUnmodifiedSince(httpDate(requestHeaders.getFirst(
+                                                    IF_UNMODIFIED_SINCE)))
+                                                .build();
+        try (ResponseInputStream<GetObjectResponse> content = s3Client.getObject(getObjectRequest)) {
+            GetObjectResponse response = content.response();
+            Headers headers = exchange.getResponseHeaders();
+            setObjectHeaders(headers, response.contentType(), response.eTag(), response.lastModified(),
+                             response.versionId());
+            setIfPresent(headers, "Accept-Ranges", response.acceptRanges());
+            setIfPresent(headers, "Content-Range", response.contentRange());
+            int status = response.contentRange() == null ? OK : PARTIAL_CONTENT;
+            long contentLength = response.contentLength();
+            exchange.sendResponseHeaders(status, contentLength == 0 ? NO_RESPONSE_BODY : contentLength);
+            try (OutputStream body = exchange.getResponseBody()) {
+                content.transferTo(body);
+            }
+        }
+    }
+
+    private void headObject(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
+                                                  .bucket(request.bucket)
+                                                  .key(request.key)
+                                                  .versionId(request.query.get("versionId"))
+                                                  .ifMatch(requestHeaders.getFirst(IF_MATCH))
+                                                  .ifNoneMatch(requestHeaders.getFirst(IF_NONE_MATCH))
+                                                  .ifModifiedSince(httpDate(requestHeaders.getFirst(
+                                                      IF_MODIFIED_SINCE)))
+                                                  .ifUnmodifiedSince(httpDate(requestHeaders.getFirst(
+                                                      IF_UNMODIFIED_SINCE)))
+                                                  .build();
+        HeadObjectResponse response = s3Client.headObject(headObjectRequest);
+        Headers headers = exchange.getResponseHeaders();
+        setObjectHeaders(headers, response.contentType(), response.eTag(), response.lastModified(),
+                         response.versionId());
+        setIfPresent(headers, "Accept-Ranges", response.acceptRanges());
+        headers.set(CONTENT_LENGTH, Long.toString(response.contentLength()));
+        exchange.sendResponseHeaders(OK, NO_RESPONSE_BODY);
+    }
+
+    private void putObject(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        Optional<RequestBody> requestBody = requestBody(exchange);
+        if (requestBody.isEmpty()) {
+            sendMissingContentLength(request, exchange);
+            return;
+        }
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                                                .bucket(request.bucket)
+                                                .key(request.key)
+                                                .contentType(exchange.getRequestHeaders().getFirst("Content-Type"))
+                                                .overrideConfiguration(conditionalWriteHeaders(exchange))
+                                                .build();
+        PutObjectResponse response = s3Client.putObject(putObjectRequest, requestBody.get());
+        setIfPresent(exchange.getResponseHeaders(), "ETag", response.eTag());
+        setIfPresent(exchange.getResponseHeaders(), VERSION_ID, response.versionId());
+        exchange.sendResponseHeaders(OK, NO_RESPONSE_BODY);
+    }
+
+    private void deleteObject(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        if (request.query.containsKey("uploadId")) {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                                              .bucket(request.bucket)
+                                              .key(request.key)
+                                              .uploadId(request.query.get("uploadId"))
+                                              .build());
+        } else {
+            DeleteObjectResponse response = s3Client.deleteObject(DeleteObjectRequest.builder()
+                                                                      .bucket(request.bucket)
+                                                                      .key(request.key)
+                                                                      .versionId(request.query.get("versionId"))
+                                                                      .build());
+            setIfPresent(exchange.getResponseHeaders(), DELETE_MARKER,
+                         Optional.ofNullable(response.deleteMarker()).map(String::valueOf).orElse(null));
+            setIfPresent(exchange.getResponseHeaders(), VERSION_ID, response.versionId());
+        }
+        exchange.sendResponseHeaders(NO_CONTENT, NO_RESPONSE_BODY);
+    }
+
+    private void listObjects(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        boolean urlEncoded = S3Xml.URL_ENCODING.equals(request.query.get("encoding-type"));
+        Integer maxKeys = integerParameter(request, "max-keys");
+        byte[] result;
+        if ("2".equals(request.query.get("list-type"))) {
+            result = S3Xml.listBucketResult(s3Client.listObjectsV2(ListObjectsV2Request.builder()
+                                                                       .bucket(request.bucket)
+                                                                       .prefix(request.query.get("prefix"))
+                                                                       .delimiter(request.query.get("delimiter"))
+                                                                       .maxKeys(maxKeys)
+                                                                       .continuationToken(
+                                                                           request.query.get("continuation-token"))
+                                                                       .startAfter(request.query.get("start-after"))
+                                                                       .build()), urlEncoded);
+        } else {
+            result = S3Xml.listBucketResult(s3Client.listObjects(ListObjectsRequest.builder()
+                                                                     .bucket(request.bucket)
+                                                                     .prefix(request.query.get("prefix"))
+                                                                     .delimiter(request.query.get("delimiter"))
+                                                                     .maxKeys(maxKeys)
+                                                                     .marker(request.query.get("marker"))
+                                                                     .build()), urlEncoded);
+        }
+        sendXml(exchange, OK, result);
+    }
+
+    private void copyObject(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        CopyObjectRequest copyObjectRequest = CopyObjectRequest.builder()
+                                                  .copySource(exchange.getRequestHeaders().getFirst(COPY_SOURCE))
+                                                  .bucket(request.bucket)
+                                                  .key(request.key)
+                                                  .build();
+        sendXml(exchange, OK, S3Xml.copyObjectResult(s3Client.copyObject(copyObjectRequest).copyObjectResult()));
+    }
+
+    private void createMultipartUpload(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        CreateMultipartUploadRequest createMultipartUploadRequest =
+            CreateMultipartUploadRequest.builder()
+                .bucket(request.bucket)
+                .key(request.key)
+                .contentType(exchange.getRequestHeaders().getFirst("Content-Type"))
+                .build();
+        sendXml(exchange, OK,
+                S3Xml.initiateMultipartUploadResult(s3Client.createMultipartUpload(createMultipartUploadRequest)));
+    }
+
+    private void uploadPart(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        Optional<RequestBody> requestBody = requestBody(exchange);
+        if (requestBody.isEmpty()) {
+            sendMissingContentLength(request, exchange);
+            return;
+        }
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                                                  .bucket(request.bucket)
+                                                  .key(request.key)
+                                                  .uploadId(request.query.get("uploadId"))
+                                                  .partNumber(integerParameter(request, "partNumber"))
+                                                  .build();
+        setIfPresent(exchange.getResponseHeaders(), "ETag",
+                     s3Client.uploadPart(uploadPartRequest, requestBody.get()).eTag());
+        exchange.sendResponseHeaders(OK, NO_RESPONSE_BODY);
+    }
+
+    private void deleteObjects(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        Delete delete;
+        try (InputStream body = exchange.getRequestBody()) {
+            delete = S3Xml.delete(body);
+        } catch (XMLStreamException e) {
+            throw S3Errors.malformedDeleteList(0);
+        }
+        DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
+                                                        .bucket(request.bucket)
+                                                        .delete(delete)
+                                                        .build();
+        sendXml(exchange, OK, S3Xml.deleteResult(s3Client.deleteObjects(deleteObjectsRequest)));
+    }
+
+    private void completeMultipartUpload(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        CompletedMultipartUpload parts;
+        try (InputStream body = exchange.getRequestBody()) {
+            parts = S3Xml.completedMultipartUpload(body);
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw S3Errors.malformedPartList();
+        }
+        CompleteMultipartUploadResponse response = s3Client.completeMultipartUpload(
+            CompleteMultipartUploadRequest.builder()
+                .bucket(request.bucket)
+                .key(request.key)
+                .uploadId(request.query.get("uploadId"))
+                .multipartUpload(parts)
+                .build());
+        sendXml(exchange, OK, S3Xml.completeMultipartUploadResult(response, getEndpoint() + request.resource()));
+    }
+
+    private static Integer integerParameter(S3HttpRequest request, String name) {
+        String value = request.query.get(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw S3Errors.invalidQueryParameter(name, value);
+        }
+    }
+
+    /**
+     * The request body, decoded from aws-chunked encoding when the SDK signed the payload chunk by chunk. As in S3,
+     * uploads must state their length.
+     */
+    private static Optional<RequestBody> requestBody(HttpExchange exchange) {
+        Headers headers = exchange.getRequestHeaders();
+        String contentSha256 = Optional.ofNullable(headers.getFirst(CONTENT_SHA256)).orElse("");
+        if (contentSha256.startsWith(STREAMING_PAYLOAD_PREFIX) || headers.containsKey(DECODED_CONTENT_LENGTH)) {
+            return Optional.ofNullable(headers.getFirst(DECODED_CONTENT_LENGTH))
+                       .map(length -> lengthHeader(DECODED_CONTENT_LENGTH, length))
+                       .map(length -> RequestBody.fromInputStream(
+                           new AwsChunkedInputStream(exchange.getRequestBody()), length));
+        }
+        return Optional.ofNullable(headers.getFirst(CONTENT_LENGTH))
+                   .map(length -> lengthHeader(CONTENT_LENGTH, length))
+                   .map(length -> RequestBody.fromInputStream(exchange.getRequestBody(), length));
+    }
+
+    private static long lengthHeader(String name, String value) {
+        long length;
+        try {
+            length = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            length = INVALID_LENGTH;
+        }
+        if (length < 0) {
+            throw S3Errors.invalidHeader(name, value);
+        }
+        return length;
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, byte[] document) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", XML_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, document.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(document);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message, String resource)
+        throws IOException {
+        if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod()) || status == S3Errors.NOT_MODIFIED) {
+            exchange.sendResponseHeaders(status, NO_RESPONSE_BODY);
+            return;
+        }
+        sendXml(exchange, status,
+                S3Xml.error(code, message, resource, exchange.getResponseHeaders().getFirst(REQUEST_ID)));
+    }
+
+    private static void sendNotImplemented(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        sendError(exchange, NOT_IMPLEMENTED, "NotImplemented", "The request is not supported by FakeS3Server",
+                  request.resource());
+    }
+
+    private static void sendMissingContentLength(S3HttpRequest request, HttpExchange exchange) throws IOException {
+        sendError(exchange, LENGTH_REQUIRED, "MissingContentLength", "You must provide the Content-Length HTTP header",
+                  request.resource());
+    }
+
+    /**
+     * Passes the conditional write headers of a request on the way SDK clients send them, in the override
+     * configuration of the request.
+     */
+    private static AwsRequestOverrideConfiguration conditionalWriteHeaders(HttpExchange exchange) {
+        AwsRequestOverrideConfiguration.Builder configuration = AwsRequestOverrideConfiguration.builder();
+        for (String header : List.of(IF_MATCH, IF_NONE_MATCH)) {
+            Optional.ofNullable(exchange.getRequestHeaders().getFirst(header))
+                .ifPresent(value -> configuration.putHeader(header, value));
+        }
+        return configuration.build();
+    }
+
+    private static Instant httpDate(String value) {
+        try {
+            return value == null ? null : Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(value));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String formatHttpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC));
+    }
+
+    private static void setObjectHeaders(Headers headers, String contentType, String eTag, Instant lastModified,
+                                         String versionId) {
+        headers.set("Content-Type", Optional.ofNullable(contentType).orElse(DEFAULT_CONTENT_TYPE));
+        setIfPresent(headers, "ETag", eTag);
+        setIfPresent(headers, "Last-Modified", Optional.ofNullable(lastModified)
+                                                   .map(FakeS3Server::formatHttpDate)
+                                                   .orElse(null));
+        setIfPresent(headers, VERSION_ID, versionId);
+    }
+
+    private static void setIfPresent(Headers headers, String name, String value) {
+        if (value != null) {
+            headers.set(name, value);
+        }
+    }
+
+    /**
+     * The bucket, key and query parameters of a request, addressed either path-style or virtual-hosted style.
+     */
+    private static class S3HttpRequest {
+
+        private final String bucket;
+        private final String key;
+        private final Map<String, String> query;
+
+        public S3HttpRequest(HttpExchange exchange) {
+            String path = Optional.ofNullable(exchange.getRequestURI().getPath()).orElse(PATH_SEPARATOR);
+            String withoutLeadingSeparator = path.startsWith(PATH_SEPARATOR) ? path.substring(1) : path;
+            Optional<String> virtualHostBucket = virtualHostBucket(exchange.getRequestHeaders().getFirst("Host"));
+            if (virtualHostBucket.isPresent()) {
+                this.bucket = virtualHostBucket.get();
+                this.key = withoutLeadingSeparator;
+            } else {
+                int separator = withoutLeadingSeparator.indexOf(PATH_SEPARATOR);
+                this.bucket = separator < 0 ? withoutLeadingSeparator : withoutLeadingSeparator.substring(0, separator);
+                this.key = separator < 0 ? "" : withoutLeadingSeparator.substring(separator + 1);
+            }
+            this.query = parseQuery(exchange.getRequestURI().getRawQuery());
+        }
+
+        public String resource() {
+            return PATH_SEPARATOR + bucket + (key.isEmpty() ? "" : PATH_SEPARATOR + key);
+        }
+
+        private static Optional<String> virtualHostBucket(String host) {
+            if (host == null) {
+                return Optional.empty();
+            }
+            int portSeparator = host.lastIndexOf(':');
+            String hostName = portSeparator < 0 ? host : host.substring(0, portSeparator);
+            return hostName.endsWith(VIRTUAL_HOST_SUFFIX)
+                       ? Optional.of(hostName.substring(0, hostName.length() - VIRTUAL_HOST_SUFFIX.length()))
+                       : Optional.empty();
+        }
+
+        private static Map<String, String> parseQuery(String rawQuery) {
+            Map<String, String> parameters = new HashMap<>();
+            if (rawQuery == null || rawQuery.isEmpty()) {
+                return parameters;
+            }
+            for (String parameter : rawQuery.split("&")) {
+                int separator = parameter.indexOf('=');
+                String name = separator < 0 ? parameter : parameter.substring(0, separator);
+                String value = separator < 0 ? "" : parameter.substring(separator + 1);
+                parameters.put(decode(name), decode(value));
+            }
+            return parameters;
+        }
+
+        private static String decode(String value) {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package no.unit.nva.stubs;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The objects and buckets of a {@link FakeS3Client} at one point in time. Taking a snapshot and forking it are cheap
+ * operations: the snapshot shares the client's immutable indexes and object bytes, and a fork copies only the index
+ * nodes it changes. A snapshot can therefore be seeded once and forked by every test, including tests running in
+ * parallel, without writes leaking from one test to another.
+ */
+public final class FakeS3Snapshot {
+
+    private final StoreSnapshot defaultBucket;
+    private final Map<String, StoreSnapshot> buckets;
+
+    FakeS3Snapshot(StoreSnapshot defaultBucket, Map<String, StoreSnapshot> buckets) {
+        this.defaultBucket = defaultBucket;
+        this.buckets = Map.copyOf(buckets);
+    }
+
+    /**
+     * Maps a snapshot written by {@link #writeTo(Path)}. Only the index of keys and versions is read; object content
+     * is a read-only memory mapping of the file, paged in as it is read and shared by every process mapping the same
+     * file. The file must not be changed or deleted while clients forked from the snapshot are used.
+     *
+     * @param file the snapshot file.
+     * @return the snapshot.
+     * @throws IllegalArgumentException if the file is not a snapshot file.
+     */
+    public static FakeS3Snapshot readFrom(Path file) {
+        return SnapshotFile.read(file);
+    }
+
+    /**
+     * Writes the buckets, versions and object content of the snapshot to a single file: an index of the keys and
+     * versions followed by the content, where content shared by several objects is written once. An existing file is
+     * replaced atomically.
+     *
+     * @param file the snapshot file.
+     */
+    public void writeTo(Path file) {
+        SnapshotFile.write(this, file);
+    }
+
+    /**
+     * The number of objects in the snapshot, over all buckets.
+     *
+     * @return the number of objects.
+     */
+    public int size() {
+        return defaultBucket.size() + buckets.values().stream().mapToInt(StoreSnapshot::size).sum();
+    }
+
+    /**
+     * Creates a client that starts out with the objects and buckets of this snapshot. The client has its own metrics,
+     * no multipart uploads in progress, no latency model, no lifecycle rules and no event notifications. Objects
+     * seeded from archives are read through the archives of the client the snapshot was taken from, so that client
+     * must stay open while forks read them.
+     *
+     * @return a new client.
+     */
+    public FakeS3Client fork() {
+        ConcurrentMap<String, ObjectStore> forkedBuckets = new ConcurrentHashMap<>();
+        buckets.forEach((name, bucket) -> forkedBuckets.put(name, bucket.fork()));
+        return new FakeS3Client(defaultBucket.fork(), forkedBuckets);
+    }
+
+    StoreSnapshot getDefaultBucket() {
+        return defaultBucket;
+    }
+
+    Map<String, StoreSnapshot> getBuckets() {
+        return buckets;
+    }
+}
@@ -1,21 +1,23 @@
 package no.unit.nva.stubs;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import com.amazonaws.AmazonServiceException.ErrorType;
 import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.ResponseMetadata;
+import com.amazonaws.SdkClientException;
 import com.amazonaws.regions.Region;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.model.AWSSecurityTokenServiceException;
 import com.amazonaws.services.securitytoken.model.AssumeRoleRequest;
 import com.amazonaws.services.securitytoken.model.AssumeRoleResult;
 import com.amazonaws.services.securitytoken.model.AssumeRoleWithSAMLRequest;
 import com.amazonaws.services.securitytoken.model.AssumeRoleWithSAMLResult;
 import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityRequest;
 import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityResult;
+import com.amazonaws.services.securitytoken.model.AssumedRoleUser;
 import com.amazonaws.services.securitytoken.model.Credentials;
 import com.amazonaws.services.securitytoken.model.DecodeAuthorizationMessageRequest;
 import com.amazonaws.services.securitytoken.model.DecodeAuthorizationMessageResult;
+import com.amazonaws.services.securitytoken.model.FederatedUser;
 import com.amazonaws.services.securitytoken.model.GetAccessKeyInfoRequest;
 import com.amazonaws.services.securitytoken.model.GetAccessKeyInfoResult;
 import com.amazonaws.services.securitytoken.model.GetCallerIdentityRequest;
@@ -24,26 +26,140 @@ import com.amazonaws.services.securitytoken.model.GetFederationTokenRequest;
 import com.amazonaws.services.securitytoken.model.GetFederationTokenResult;
 import com.amazonaws.services.securitytoken.model.GetSessionTokenRequest;
 import com.amazonaws.services.securitytoken.model.GetSessionTokenResult;
+import java.time.Clock;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import no.unit.nva.stubs.LatencyModel.RequestType;
 
+/**
+ * An in-memory STS client. It issues unique temporary credentials for every role and session, every federated user
+ * and the caller's own session, and returns the same credentials for a session until they expire after the requested
+ * duration. Durations and names are validated as in STS, except that {@code assumeRole} accepts requests without a
+ * role ARN or session name; a request with neither returns the sample credentials.
+ */
 public class FakeStsClient implements AWSSecurityTokenService {
 
     public static final String SAMPLE_ACCESS_KEY_ID = "sampleAccessKeyid";
     public static final String SAMPLE_ACCESS_KEY = "sampleAccessKey";
     public static final String SAMPLE_SESSION_TOKEN = "sampleSessionToken";
     public static final String NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT = "Not implemented in MockStsClient";
+    public static final String THROTTLING_ERROR_CODE = "Throttling";
+    public static final String VALIDATION_ERROR_CODE = "ValidationError";
+    public static final int BAD_REQUEST = 400;
+    public static final String ACCOUNT_ID = "123456789012";
+    public static final String CALLER_USER_ID = "AIDAFAKESTSCALLER0000";
+    public static final String CALLER_ARN = "arn:aws:iam::" + ACCOUNT_ID + ":user/fake-sts-caller";
+    public static final Duration DEFAULT_ROLE_SESSION_DURATION = Duration.ofHours(1);
+    public static final Duration MAX_ROLE_SESSION_DURATION = Duration.ofHours(12);
+    public static final Duration DEFAULT_SESSION_TOKEN_DURATION = Duration.ofHours(12);
+    public static final Duration MAX_SESSION_TOKEN_DURATION = Duration.ofHours(36);
+    public static final Duration MIN_SESSION_DURATION = Duration.ofMinutes(15);
+    private static final String SERVICE_NAME = "AWSSecurityTokenService";
+    private static final String EMPTY_STRING = "";
+    private static final String DEFAULT_ROLE_SESSION_NAME = "session";
+    private static final Pattern ROLE_SESSION_NAME = Pattern.compile("[\\w+=,.@-]{2,64}");
+    private static final Pattern FEDERATED_USER_NAME = Pattern.compile("[\\w+=,.@-]{2,32}");
+    private static final int ARN_PARTS = 6;
+    private static final int ARN_ACCOUNT = 4;
+    private static final int ARN_RESOURCE = 5;
     private final AWSSecurityTokenService sts;
+    private final ConcurrentMap<List<String>, LongAdder> assumeRoleCalls = new ConcurrentHashMap<>();
+    private volatile LatencyModel latencyModel = LatencyModel.NONE;
+    private volatile Clock clock = Clock.systemUTC();
+    private volatile CredentialIssuer credentialIssuer = new CredentialIssuer(clock);
+    private volatile Duration sessionDuration;
 
     public FakeStsClient() {
-        sts = fakeStsService();
+        this(null);
     }
 
+    /**
+     * Creates a client that answers {@code assumeRole}, {@code getSessionToken}, {@code getCallerIdentity} and
+     * {@code getFederationToken} with the given service instead of issuing credentials itself, while still applying
+     * the latency model.
+     *
+     * @param sts the service to answer with, or null to issue credentials in memory.
+     */
     public FakeStsClient(AWSSecurityTokenService sts) {
         this.sts = sts;
     }
 
+    /**
+     * Makes the client answer with the response times and request-rate limits of the given model. Requests above the
+     * rate limit of a role fail with a {@code Throttling} error.
+     *
+     * @param latencyModel the model, or {@link LatencyModel#NONE} to answer instantly.
+     * @return the client.
+     */
+    public FakeStsClient withLatencyModel(LatencyModel latencyModel) {
+        this.latencyModel = latencyModel;
+        return this;
+    }
+
+    /**
+     * Makes the client measure the lifetime of credentials on the given clock, which can be a {@link VirtualClock} so
+     * that tests move past the expiry of credentials without waiting. Credentials issued before are forgotten.
+     *
+     * @param clock the clock.
+     * @return the client.
+     */
+    public FakeStsClient withClock(Clock clock) {
+        this.clock = clock;
+        this.credentialIssuer = new CredentialIssuer(clock);
+        return this;
+    }
+
+    /**
+     * Sets how long credentials are valid when a request does not ask for a duration, in place of the STS defaults of
+     * one hour for role sessions and twelve hours for session and federation tokens. Unlike requested durations, the
+     * duration is not held to the STS minimum of fifteen minutes, so tests can use short sessions on a real clock.
+     *
+     * @param sessionDuration the duration.
+     * @return the client.
+     */
+    public FakeStsClient withSessionDuration(Duration sessionDuration) {
+        if (sessionDuration.isNegative() || sessionDuration.isZero()) {
+            throw new IllegalArgumentException("The session duration must be positive: " + sessionDuration);
+        }
+        this.sessionDuration = sessionDuration;
+        return this;
+    }
+
+    /**
+     * The number of {@code assumeRole} calls for a role over all sessions, including calls that failed, for asserting
+     * how often a credential provider goes to STS.
+     *
+     * @param roleArn the role ARN.
+     * @return the number of calls.
+     */
+    public long getAssumeRoleCount(String roleArn) {
+        String role = Optional.ofNullable(roleArn).orElse(EMPTY_STRING);
+        return assumeRoleCalls.entrySet().stream()
+                   .filter(entry -> entry.getKey().get(0).equals(role))
+                   .mapToLong(entry -> entry.getValue().sum())
+                   .sum();
+    }
+
+    /**
+     * The number of {@code assumeRole} calls for a role by one caller, identified by its role session name, including
+     * calls that failed.
+     *
+     * @param roleArn         the role ARN.
+     * @param roleSessionName the role session name.
+     * @return the number of calls.
+     */
+    public long getAssumeRoleCount(String roleArn, String roleSessionName) {
+        LongAdder calls = assumeRoleCalls.get(assumeRoleCaller(roleArn, roleSessionName));
+        return calls == null ? 0 : calls.sum();
+    }
+
     @Override
     public void setEndpoint(String endpoint) {
         throw new UnsupportedOperationException(NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT);
@@ -54,9 +170,24 @@ public class FakeStsClient implements AWSSecurityTokenService {
         throw new UnsupportedOperationException(NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT);
     }
 
+    /**
+     * Returns the credentials of a role session, which are valid for the requested duration, by default one hour or the
+     * duration set with {@link #withSessionDuration(Duration)}. Every call is counted for the role and session.
+     *
+     * @param assumeRoleRequest the request.
+     * @return the credentials and the assumed role user.
+     */
     @Override
     public AssumeRoleResult assumeRole(AssumeRoleRequest assumeRoleRequest) {
-        return sts.assumeRole(assumeRoleRequest);
+        assumeRoleCalls.computeIfAbsent(
+            assumeRoleCaller(assumeRoleRequest.getRoleArn(), assumeRoleRequest.getRoleSessionName()),
+            ignored -> new LongAdder()).increment();
+        admit(Optional.ofNullable(assumeRoleRequest.getRoleArn()).orElse(EMPTY_STRING));
+        AssumeRoleResult result = sts == null
+                                      ? issueRoleCredentials(assumeRoleRequest)
+                                      : sts.assumeRole(assumeRoleRequest);
+        awaitResponse();
+        return result;
     }
 
     @Override
@@ -81,24 +212,61 @@ public class FakeStsClient implements AWSSecurityTokenService {
         throw new UnsupportedOperationException(NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT);
     }
 
+    /**
+     * Returns the identity of the caller, which is the IAM user {@link #CALLER_ARN} in account {@link #ACCOUNT_ID}.
+     *
+     * @param getCallerIdentityRequest the request.
+     * @return the identity.
+     */
     @Override
     public GetCallerIdentityResult getCallerIdentity(GetCallerIdentityRequest getCallerIdentityRequest) {
-        throw new UnsupportedOperationException(NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT);
+        admit(CALLER_ARN);
+        GetCallerIdentityResult result = sts == null
+                                             ? new GetCallerIdentityResult().withAccount(ACCOUNT_ID)
+                                                   .withArn(CALLER_ARN)
+                                                   .withUserId(CALLER_USER_ID)
+                                             : sts.getCallerIdentity(getCallerIdentityRequest);
+        awaitResponse();
+        return result;
     }
 
+    /**
+     * Returns the credentials of a federated user, which are valid for the requested duration, twelve hours by
+     * default.
+     *
+     * @param getFederationTokenRequest the request naming the federated user.
+     * @return the credentials and the federated user.
+     */
     @Override
     public GetFederationTokenResult getFederationToken(GetFederationTokenRequest getFederationTokenRequest) {
-        throw new UnsupportedOperationException(NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT);
+        admit(CALLER_ARN);
+        GetFederationTokenResult result = sts == null
+                                              ? issueFederationCredentials(getFederationTokenRequest)
+                                              : sts.getFederationToken(getFederationTokenRequest);
+        awaitResponse();
+        return result;
     }
 
+    /**
+     * Returns the credentials of the caller's own session, which are valid for the requested duration, twelve hours
+     * by default.
+     *
+     * @param getSessionTokenRequest the request.
+     * @return the credentials.
+     */
     @Override
     public GetSessionTokenResult getSessionToken(GetSessionTokenRequest getSessionTokenRequest) {
-        throw new UnsupportedOperationException(NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT);
+        admit(CALLER_ARN);
+        GetSessionTokenResult result = sts == null
+                                           ? issueSessionCredentials(getSessionTokenRequest)
+                                           : sts.getSessionToken(getSessionTokenRequest);
+        awaitResponse();
+        return result;
     }
 
     @Override
     public GetSessionTokenResult getSessionToken() {
-        throw new UnsupportedOperationException(NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT);
+        return getSessionToken(new GetSessionTokenRequest());
     }
 
     @Override
@@ -111,18 +279,111 @@ public class FakeStsClient implements AWSSecurityTokenService {
         throw new UnsupportedOperationException(NOT_IMPLEMENTED_IN_MOCK_STS_CLIENT);
     }
 
-    private AWSSecurityTokenService fakeStsService() {
-        AWSSecurityTokenService sts = mock(AWSSecurityTokenService.class);
-        when(sts.assumeRole(any(AssumeRoleRequest.class))).thenReturn(fakeAssumedRole());
-        return sts;
+    private void admit(String roleArn) {
+        if (!latencyModel.tryAcquire(roleArn, RequestType.READ)) {
+            throw throttlingException();
+        }
+    }
+
+    private void awaitResponse() {
+        Duration responseTime = latencyModel.responseTime(0);
+        if (responseTime.isZero()) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(responseTime.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SdkClientException("Interrupted while waiting for the response", e);
+        }
+    }
+
+    private static AWSSecurityTokenServiceException throttlingException() {
+        return serviceException("Rate exceeded", THROTTLING_ERROR_CODE);
+    }
+
+    private static AWSSecurityTokenServiceException serviceException(String message, String errorCode) {
+        AWSSecurityTokenServiceException exception = new AWSSecurityTokenServiceException(message);
+        exception.setErrorCode(errorCode);
+        exception.setErrorType(ErrorType.Client);
+        exception.setStatusCode(BAD_REQUEST);
+        exception.setServiceName(SERVICE_NAME);
+        return exception;
+    }
+
+    private AssumeRoleResult issueRoleCredentials(AssumeRoleRequest assumeRoleRequest) {
+        Duration duration = durationOf(assumeRoleRequest.getDurationSeconds(), DEFAULT_ROLE_SESSION_DURATION,
+                                       MAX_ROLE_SESSION_DURATION);
+        String roleArn = assumeRoleRequest.getRoleArn();
+        String sessionName = assumeRoleRequest.getRoleSessionName();
+        if (roleArn == null && sessionName == null) {
+            return new AssumeRoleResult().withCredentials(sampleCredentials(duration));
+        }
+        if (sessionName != null && !ROLE_SESSION_NAME.matcher(sessionName).matches()) {
+            throw validationError("Invalid role session name: " + sessionName);
+        }
+        String session = Optional.ofNullable(sessionName).orElse(DEFAULT_ROLE_SESSION_NAME);
+        String role = Optional.ofNullable(roleArn).orElse(EMPTY_STRING);
+        return new AssumeRoleResult().withCredentials(credentialIssuer.issue(role, session, duration))
+                   .withAssumedRoleUser(assumedRoleUser(role, session));
+    }
+
+    private GetSessionTokenResult issueSessionCredentials(GetSessionTokenRequest getSessionTokenRequest) {
+        Duration duration = durationOf(getSessionTokenRequest.getDurationSeconds(), DEFAULT_SESSION_TOKEN_DURATION,
+                                       MAX_SESSION_TOKEN_DURATION);
+        return new GetSessionTokenResult().withCredentials(credentialIssuer.issue(CALLER_ARN, EMPTY_STRING, duration));
+    }
+
+    private GetFederationTokenResult issueFederationCredentials(GetFederationTokenRequest getFederationTokenRequest) {
+        String name = getFederationTokenRequest.getName();
+        if (name == null || !FEDERATED_USER_NAME.matcher(name).matches()) {
+            throw validationError("Invalid federated user name: " + name);
+        }
+        Duration duration = durationOf(getFederationTokenRequest.getDurationSeconds(),
+                                       DEFAULT_SESSION_TOKEN_DURATION, MAX_SESSION_TOKEN_DURATION);
+        String federatedUserArn = "arn:aws:sts::" + ACCOUNT_ID + ":federated-user/" + name;
+        FederatedUser federatedUser = new FederatedUser().withArn(federatedUserArn)
+                                          .withFederatedUserId(ACCOUNT_ID + ":" + name);
+        return new GetFederationTokenResult()
+                   .withCredentials(credentialIssuer.issue(federatedUserArn, EMPTY_STRING, duration))
+                   .withFederatedUser(federatedUser);
+    }
+
+    private static AssumedRoleUser assumedRoleUser(String roleArn, String sessionName) {
+        String[] arnParts = roleArn.split(":", ARN_PARTS);
+        boolean isArn = arnParts.length == ARN_PARTS;
+        String account = isArn ? arnParts[ARN_ACCOUNT] : ACCOUNT_ID;
+        String resource = isArn ? arnParts[ARN_RESOURCE] : roleArn;
+        String roleName = resource.substring(resource.lastIndexOf('/') + 1);
+        String roleId = "AROA" + Integer.toUnsignedString(roleArn.hashCode(), Character.MAX_RADIX).toUpperCase();
+        return new AssumedRoleUser()
+                   .withArn("arn:aws:sts::" + account + ":assumed-role/" + roleName + "/" + sessionName)
+                   .withAssumedRoleId(roleId + ":" + sessionName);
+    }
+
+    private Duration durationOf(Integer durationSeconds, Duration defaultDuration, Duration maxDuration) {
+        if (durationSeconds == null) {
+            return Optional.ofNullable(sessionDuration).orElse(defaultDuration);
+        }
+        Duration duration = Duration.ofSeconds(durationSeconds);
+        if (duration.compareTo(MIN_SESSION_DURATION) < 0 || duration.compareTo(maxDuration) > 0) {
+            throw validationError("The duration must be between " + MIN_SESSION_DURATION.toSeconds() + " and "
+                                  + maxDuration.toSeconds() + " seconds, was " + durationSeconds);
+        }
+        return duration;
+    }
+
+    private static List<String> assumeRoleCaller(String roleArn, String roleSessionName) {
+        return List.of(Optional.ofNullable(roleArn).orElse(EMPTY_STRING),
+                       Optional.ofNullable(roleSessionName).orElse(EMPTY_STRING));
     }
 
-    private AssumeRoleResult fakeAssumedRole() {
-        return new AssumeRoleResult().withCredentials(fakeCredentials());
+    private static AWSSecurityTokenServiceException validationError(String message) {
+        return serviceException(message, VALIDATION_ERROR_CODE);
     }
 
-    private Credentials fakeCredentials() {
+    private Credentials sampleCredentials(Duration duration) {
         return new Credentials(SAMPLE_ACCESS_KEY_ID, SAMPLE_ACCESS_KEY, SAMPLE_SESSION_TOKEN,
-                               Date.from(Instant.now().plus(Duration.ofDays(10))));
+                               Date.from(clock.instant().plus(duration)));
     }
 }
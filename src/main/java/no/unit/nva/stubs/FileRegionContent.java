@@ -0,0 +1,105 @@
+package no.unit.nva.stubs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Object content that stays in a region of a file owned by the caller. The region is memory-mapped on first read, so
+ * reads are views of the page cache rather than copies on the heap, and transfers to other files or sockets go through
+ * {@link FileChannel#transferTo}. The file must not be changed or deleted for as long as the object is stored.
+ */
+class FileRegionContent implements ObjectContent {
+
+    public static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+    private final Path file;
+    private final long start;
+    private final long size;
+    private volatile ByteBuffer mapping;
+
+    private FileRegionContent(Path file, long start, long size) {
+        this.file = file;
+        this.start = start;
+        this.size = size;
+    }
+
+    /**
+     * The whole content of a file. Files larger than a single mapping are split into consecutive regions.
+     *
+     * @param file the file.
+     * @return content reading the file in place.
+     * @throws IOException when the size of the file cannot be read.
+     */
+    public static ObjectContent of(Path file) throws IOException {
+        long fileSize = Files.size(file);
+        if (fileSize <= MAX_REGION_SIZE) {
+            return new FileRegionContent(file, 0, fileSize);
+        }
+        List<ObjectContent> regions = new ArrayList<>();
+        for (long regionStart = 0; regionStart < fileSize; regionStart += MAX_REGION_SIZE) {
+            regions.add(new FileRegionContent(file, regionStart, Math.min(MAX_REGION_SIZE, fileSize - regionStart)));
+        }
+        return new CompositeContent(regions);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream newInputStream() {
+        return new ByteBufferInputStream(mapping().duplicate());
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int length) {
+        int first = (int) Math.min(offset, size);
+        int end = (int) Math.min((long) first + length, size);
+        ByteBuffer view = mapping().duplicate();
+        view.position(first).limit(end);
+        return view.slice();
+    }
+
+    @Override
+    public ObjectContent slice(long offset, long length) {
+        long sliceStart = Math.min(offset, size);
+        return new FileRegionContent(file, start + sliceStart, Math.min(length, size - sliceStart));
+    }
+
+    @Override
+    public void transferTo(WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long transferred = 0;
+            while (transferred < size) {
+                transferred += channel.transferTo(start + transferred, size - transferred, target);
+            }
+        }
+    }
+
+    /**
+     * Maps the region read-only. The mapping stays valid after its channel is closed and is released with this
+     * content.
+     */
+    private ByteBuffer mapping() {
+        ByteBuffer mapped = mapping;
+        if (mapped == null) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = channel.map(MapMode.READ_ONLY, start, size).asReadOnlyBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            mapping = mapped;
+        }
+        return mapped;
+    }
+}
@@ -0,0 +1,145 @@
+package no.unit.nva.stubs;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.SdkPublisher;
+
+/**
+ * Publishes the elements of an iterator to a single subscriber, computing each element only when the subscriber has
+ * signalled demand for it. Like {@link ByteBufferPublisher}, signals are delivered on the supplied executor and never
+ * concurrently. A failure of the iterator is signalled to the subscriber.
+ *
+ * @param <T> the type of the elements.
+ */
+class IteratorPublisher<T> implements SdkPublisher<T> {
+
+    private static final Subscription NO_SUBSCRIPTION = new Subscription() {
+        @Override
+        public void request(long numberOfElements) {
+            // a rejected subscriber receives nothing
+        }
+
+        @Override
+        public void cancel() {
+            // nothing to cancel
+        }
+    };
+
+    private final Iterator<T> elements;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    public IteratorPublisher(Iterator<T> elements, Executor executor) {
+        this.elements = elements;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(NO_SUBSCRIPTION);
+            subscriber.onError(new IllegalStateException("The publisher accepts a single subscriber"));
+            return;
+        }
+        ElementSubscription subscription = new ElementSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.schedule();
+    }
+
+    /**
+     * Completes when the subscriber has received every element or cancelled its subscription, or exceptionally when
+     * the iterator failed.
+     *
+     * @return the future.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    private class ElementSubscription implements Subscription {
+
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean done;
+        private volatile Throwable pendingError;
+
+        public ElementSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long numberOfElements) {
+            if (done || pendingError != null) {
+                return;
+            }
+            if (numberOfElements <= 0) {
+                pendingError = new IllegalArgumentException("Demand must be positive, was " + numberOfElements);
+            } else {
+                demand.getAndUpdate(current -> addCapped(current, numberOfElements));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            completion.complete(null);
+        }
+
+        private void schedule() {
+            if (pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                emitRequestedElements();
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emitRequestedElements() {
+            if (pendingError != null) {
+                signalError(pendingError);
+                return;
+            }
+            try {
+                while (!done && demand.get() > 0 && elements.hasNext()) {
+                    T element = elements.next();
+                    demand.decrementAndGet();
+                    subscriber.onNext(element);
+                }
+                if (!done && !elements.hasNext()) {
+                    done = true;
+                    subscriber.onComplete();
+                    completion.complete(null);
+                }
+            } catch (RuntimeException exception) {
+                signalError(exception);
+            }
+        }
+
+        private void signalError(Throwable error) {
+            if (!done) {
+                done = true;
+                subscriber.onError(error);
+            }
+            completion.completeExceptionally(error);
+        }
+
+        private long addCapped(long current, long increment) {
+            long sum = current + increment;
+            return sum < 0 ? Long.MAX_VALUE : sum;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads JSON records with a streaming parser. Every top-level value is a record, so both JSON Lines objects and
+ * documents holding one or more values are read without loading the object as a whole.
+ */
+final class JsonRecordReader implements RecordReader {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private final JsonParser parser;
+
+    JsonRecordReader(InputStream input) throws IOException {
+        this.parser = OBJECT_MAPPER.getFactory().createParser(input);
+    }
+
+    @Override
+    public JsonNode next() throws IOException {
+        try {
+            return parser.nextToken() == null ? null : parser.readValueAsTree();
+        } catch (JsonParseException e) {
+            throw S3Errors.jsonParsingError(getBytesScanned());
+        }
+    }
+
+    @Override
+    public long getBytesScanned() {
+        return parser.getCurrentLocation().getByteOffset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,38 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import software.amazon.awssdk.services.s3.model.JSONOutput;
+
+/**
+ * Writes each record as a JSON object. As in S3, columns the record does not have are left out of the object.
+ */
+final class JsonRecordWriter implements RecordWriter {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private final byte[] recordDelimiter;
+
+    JsonRecordWriter(JSONOutput jsonOutput) {
+        this.recordDelimiter = Objects.requireNonNullElse(jsonOutput.recordDelimiter(), "\n")
+                                   .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(List<String> names, List<JsonNode> values, ByteArrayOutputStream output) throws IOException {
+        ObjectNode record = JsonNodeFactory.instance.objectNode();
+        for (int index = 0; index < names.size(); index++) {
+            if (!values.get(index).isMissingNode()) {
+                record.set(names.get(index), values.get(index));
+            }
+        }
+        output.write(OBJECT_MAPPER.writeValueAsBytes(record));
+        output.write(recordDelimiter);
+    }
+}
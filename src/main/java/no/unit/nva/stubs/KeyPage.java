@@ -0,0 +1,61 @@
+package no.unit.nva.stubs;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+/**
+ * One page of a key listing: the objects and common prefixes in key order, and where the next page starts when the
+ * listing was truncated.
+ */
+class KeyPage {
+
+    private final List<Entry<String, ObjectVersion>> objects;
+    private final List<String> commonPrefixes;
+    private final String nextStartKey;
+
+    public KeyPage(List<Entry<String, ObjectVersion>> objects, List<String> commonPrefixes, String nextStartKey) {
+        this.objects = objects;
+        this.commonPrefixes = commonPrefixes;
+        this.nextStartKey = nextStartKey;
+    }
+
+    public List<Entry<String, ObjectVersion>> getObjects() {
+        return objects;
+    }
+
+    public List<String> getCommonPrefixes() {
+        return commonPrefixes;
+    }
+
+    public boolean isTruncated() {
+        return nextStartKey != null;
+    }
+
+    /**
+     * The smallest key that may appear on the next page, present only when the listing was truncated.
+     *
+     * @return the inclusive start key of the next page.
+     */
+    public Optional<String> getNextStartKey() {
+        return Optional.ofNullable(nextStartKey);
+    }
+
+    /**
+     * The last key or common prefix on the page in key order, or null for an empty page.
+     *
+     * @return the last entry of the page.
+     */
+    public String getLastEntry() {
+        String lastKey = objects.isEmpty() ? null : objects.get(objects.size() - 1).getKey();
+        String lastPrefix = commonPrefixes.isEmpty() ? null : commonPrefixes.get(commonPrefixes.size() - 1);
+        if (lastKey == null || lastPrefix != null && lastPrefix.compareTo(lastKey) > 0) {
+            return lastPrefix;
+        }
+        return lastKey;
+    }
+
+    public int size() {
+        return objects.size() + commonPrefixes.size();
+    }
+}
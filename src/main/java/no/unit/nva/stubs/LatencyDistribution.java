@@ -0,0 +1,73 @@
+package no.unit.nva.stubs;
+
+import java.time.Duration;
+
+/**
+ * An immutable copy of a latency histogram, answering count, mean, maximum and percentile queries.
+ */
+public final class LatencyDistribution {
+
+    public static final LatencyDistribution EMPTY =
+        new LatencyDistribution(new long[LatencyHistogram.BUCKET_COUNT], 0, 0);
+    private static final double PERCENT = 100d;
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    LatencyDistribution(long[] counts, long totalNanos, long maxNanos) {
+        this.counts = counts;
+        this.count = sum(counts);
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Duration getMean() {
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos / count);
+    }
+
+    public Duration getMax() {
+        return Duration.ofNanos(maxNanos);
+    }
+
+    /**
+     * The latency that the given percentage of the calls did not exceed, accurate to the histogram's bucket width.
+     *
+     * @param percentile a percentage between 0 and 100, for example 99.9.
+     * @return the latency at the percentile, or zero when nothing was recorded.
+     */
+    public Duration getPercentile(double percentile) {
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / PERCENT * count));
+        long seen = 0;
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(LatencyHistogram.highestValueIn(index), maxNanos));
+            }
+        }
+        return getMax();
+    }
+
+    LatencyDistribution merge(LatencyDistribution other) {
+        long[] merged = new long[counts.length];
+        for (int index = 0; index < counts.length; index++) {
+            merged[index] = counts[index] + other.counts[index];
+        }
+        return new LatencyDistribution(merged, totalNanos + other.totalNanos, Math.max(maxNanos, other.maxNanos));
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long bucketCount : counts) {
+            sum += bucketCount;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,165 @@
+package no.unit.nva.stubs;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Models the response time and request-rate limits of an AWS service for the fake clients. Every request costs a
+ * fixed base latency plus the time needed to transfer its payload at the configured bandwidth, and requests are
+ * admitted per partition (an S3 key prefix, an STS role) by token buckets refilled at the configured rate, so that
+ * bursts above the rate are rejected the way the real services throttle them.
+ *
+ * <p>The default model, {@link #NONE}, answers instantly and never throttles.
+ */
+public final class LatencyModel {
+
+    public static final LatencyModel NONE = builder().build();
+    public static final int UNLIMITED = 0;
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private final Duration baseLatency;
+    private final long bytesPerSecond;
+    private final int readRequestsPerSecond;
+    private final int writeRequestsPerSecond;
+    private final Clock clock;
+    private final Map<String, TokenBucket> readBuckets;
+    private final Map<String, TokenBucket> writeBuckets;
+
+    private LatencyModel(Builder builder) {
+        this.baseLatency = builder.baseLatency;
+        this.bytesPerSecond = builder.bytesPerSecond;
+        this.readRequestsPerSecond = builder.readRequestsPerSecond;
+        this.writeRequestsPerSecond = builder.writeRequestsPerSecond;
+        this.clock = builder.clock;
+        this.readBuckets = new ConcurrentHashMap<>();
+        this.writeBuckets = new ConcurrentHashMap<>();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Admits a request to a partition if the partition's rate limit allows it.
+     *
+     * @param partition   the unit the service limits requests by, for example an S3 key prefix.
+     * @param requestType whether the request reads or writes.
+     * @return true if the request is admitted, false if the service would throttle it.
+     */
+    public boolean tryAcquire(String partition, RequestType requestType) {
+        int requestsPerSecond = requestType == RequestType.READ ? readRequestsPerSecond : writeRequestsPerSecond;
+        if (requestsPerSecond == UNLIMITED) {
+            return true;
+        }
+        Map<String, TokenBucket> buckets = requestType == RequestType.READ ? readBuckets : writeBuckets;
+        return buckets.computeIfAbsent(partition, ignored -> new TokenBucket(requestsPerSecond, clock.instant()))
+                   .tryAcquire(clock.instant());
+    }
+
+    /**
+     * The time the service takes to answer a request transferring the given number of bytes.
+     *
+     * @param bytesTransferred the size of the request or response payload.
+     * @return the base latency plus the transfer time.
+     */
+    public Duration responseTime(long bytesTransferred) {
+        if (bytesPerSecond == UNLIMITED || bytesTransferred <= 0) {
+            return baseLatency;
+        }
+        long transferNanos = (long) (bytesTransferred * NANOS_PER_SECOND / bytesPerSecond);
+        return baseLatency.plusNanos(transferNanos);
+    }
+
+    public enum RequestType {
+        READ, WRITE
+    }
+
+    public static final class Builder {
+
+        private Duration baseLatency = Duration.ZERO;
+        private long bytesPerSecond = UNLIMITED;
+        private int readRequestsPerSecond = UNLIMITED;
+        private int writeRequestsPerSecond = UNLIMITED;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder() {
+        }
+
+        public Builder withBaseLatency(Duration baseLatency) {
+            this.baseLatency = baseLatency;
+            return this;
+        }
+
+        public Builder withBytesPerSecond(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Limits read requests per partition, for example 5500 GET/HEAD requests per second per prefix in S3.
+         *
+         * @param readRequestsPerSecond the sustained rate, or {@link #UNLIMITED}.
+         * @return the builder.
+         */
+        public Builder withReadRequestsPerSecond(int readRequestsPerSecond) {
+            this.readRequestsPerSecond = readRequestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Limits write requests per partition, for example 3500 PUT/COPY/POST/DELETE requests per second per prefix
+         * in S3.
+         *
+         * @param writeRequestsPerSecond the sustained rate, or {@link #UNLIMITED}.
+         * @return the builder.
+         */
+        public Builder withWriteRequestsPerSecond(int writeRequestsPerSecond) {
+            this.writeRequestsPerSecond = writeRequestsPerSecond;
+            return this;
+        }
+
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public LatencyModel build() {
+            return new LatencyModel(this);
+        }
+    }
+
+    /**
+     * Holds up to one second's worth of requests and is refilled continuously at the configured rate.
+     */
+    private static class TokenBucket {
+
+        private final int requestsPerSecond;
+        private double tokens;
+        private Instant lastRefill;
+
+        public TokenBucket(int requestsPerSecond, Instant now) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.tokens = requestsPerSecond;
+            this.lastRefill = now;
+        }
+
+        public synchronized boolean tryAcquire(Instant now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return true;
+            }
+            return false;
+        }
+
+        private void refill(Instant now) {
+            if (now.isAfter(lastRefill)) {
+                double elapsedSeconds = Duration.between(lastRefill, now).toNanos() / NANOS_PER_SECOND;
+                tokens = Math.min(requestsPerSecond, tokens + elapsedSeconds * requestsPerSecond);
+                lastRefill = now;
+            }
+        }
+    }
+}
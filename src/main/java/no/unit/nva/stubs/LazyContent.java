@@ -0,0 +1,73 @@
+package no.unit.nva.stubs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Object content that is copied from its {@link ContentSource} into off-heap memory on first read and served from
+ * there, or from wherever the store's memory budget moves it, afterwards. The size of the object is answered from the
+ * source when known, so listing seeded objects does not load them.
+ */
+class LazyContent implements ObjectContent {
+
+    private final ContentSource source;
+    private final ObjectStore objectStore;
+    private volatile ObjectContent loaded;
+
+    public LazyContent(ContentSource source, ObjectStore objectStore) {
+        this.source = source;
+        this.objectStore = objectStore;
+    }
+
+    @Override
+    public long size() {
+        ObjectContent content = loaded;
+        if (content == null && source.size() != ContentSource.UNKNOWN_SIZE) {
+            return source.size();
+        }
+        return load().size();
+    }
+
+    @Override
+    public InputStream newInputStream() {
+        return load().newInputStream();
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int length) {
+        return load().read(offset, length);
+    }
+
+    @Override
+    public ObjectContent slice(long offset, long length) {
+        return load().slice(offset, length);
+    }
+
+    private ObjectContent load() {
+        ObjectContent content = loaded;
+        if (content == null) {
+            synchronized (this) {
+                content = loaded;
+                if (content == null) {
+                    content = readSource();
+                    loaded = content;
+                }
+            }
+        }
+        return content;
+    }
+
+    private ObjectContent readSource() {
+        ContentWriter writer = objectStore.newWriter(source.size());
+        try (ReadableByteChannel channel = Channels.newChannel(source.open())) {
+            writer.writeFrom(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return objectStore.retain(writer.finish());
+    }
+}
@@ -0,0 +1,109 @@
+package no.unit.nva.stubs;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * S3-style lifecycle rules for {@link FakeS3Client}: objects under a prefix expire a given time after they were
+ * written, and multipart uploads under a prefix that are not completed in time are aborted. When several rules match
+ * a key, the shortest age applies, as in S3. Ages are measured on the configured clock, which can be a
+ * {@link VirtualClock} so that hours of expiry behaviour play out instantly.
+ *
+ * <p>Unlike S3, which applies lifecycle rules once a day, the fake expires objects to the millisecond.
+ */
+public final class LifecycleConfiguration {
+
+    public static final String ALL_KEYS = "";
+    private final List<Rule> expirations;
+    private final List<Rule> uploadAborts;
+    private final Clock clock;
+
+    private LifecycleConfiguration(Builder builder) {
+        this.expirations = List.copyOf(builder.expirations);
+        this.uploadAborts = List.copyOf(builder.uploadAborts);
+        this.clock = builder.clock;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    Optional<Duration> expirationOf(String key) {
+        return shortestAge(expirations, key);
+    }
+
+    Optional<Duration> uploadAbortOf(String key) {
+        return shortestAge(uploadAborts, key);
+    }
+
+    private static Optional<Duration> shortestAge(List<Rule> rules, String key) {
+        return rules.stream()
+                   .filter(rule -> key != null && key.startsWith(rule.prefix))
+                   .map(rule -> rule.age)
+                   .min(Duration::compareTo);
+    }
+
+    public static final class Builder {
+
+        private final List<Rule> expirations = new ArrayList<>();
+        private final List<Rule> uploadAborts = new ArrayList<>();
+        private Clock clock = Clock.systemUTC();
+
+        private Builder() {
+        }
+
+        /**
+         * Expires objects whose keys start with the prefix once they are older than the given age.
+         *
+         * @param prefix the key prefix, or {@link #ALL_KEYS}.
+         * @param age    the time after writing an object at which it is deleted.
+         * @return the builder.
+         */
+        public Builder withExpiration(String prefix, Duration age) {
+            expirations.add(new Rule(prefix, age));
+            return this;
+        }
+
+        /**
+         * Aborts multipart uploads to keys starting with the prefix that are not completed within the given time.
+         *
+         * @param prefix the key prefix, or {@link #ALL_KEYS}.
+         * @param age    the time after initiating an upload at which it is aborted.
+         * @return the builder.
+         */
+        public Builder withAbortIncompleteMultipartUpload(String prefix, Duration age) {
+            uploadAborts.add(new Rule(prefix, age));
+            return this;
+        }
+
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public LifecycleConfiguration build() {
+            return new LifecycleConfiguration(this);
+        }
+    }
+
+    private static final class Rule {
+
+        private final String prefix;
+        private final Duration age;
+
+        private Rule(String prefix, Duration age) {
+            if (age.isNegative()) {
+                throw new IllegalArgumentException("A lifecycle age cannot be negative: " + age);
+            }
+            this.prefix = prefix == null ? ALL_KEYS : prefix;
+            this.age = age;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package no.unit.nva.stubs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounds the bytes of object content kept in memory. Content is admitted in memory and, once the resident bytes exceed
+ * the budget, the least recently used content is spilled to an append-only {@link SegmentFile} and read back from
+ * there on demand. Off-heap memory is returned when every object sharing an arena segment with the spilled content
+ * has been spilled or discarded, which with LRU order happens to the oldest segments first.
+ *
+ * <p>Resident content is tracked through weak references, like the blobs of {@link ContentDeduplicator}: content that
+ * no key, snapshot or reader refers to any more is released from the budget once it has been collected, instead of
+ * counting towards the budget until it is spilled to disk for nothing.
+ */
+class MemoryBudget implements Closeable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final boolean ACCESS_ORDER = true;
+    private final long budgetBytes;
+    private final SegmentFile segmentFile;
+    private final Map<Resident, Long> residents;
+    private final ReferenceQueue<SpillingContent> discardedContent;
+    private long residentBytes;
+
+    public MemoryBudget(long budgetBytes, Path spillDirectory) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("The memory budget cannot be negative: " + budgetBytes);
+        }
+        this.budgetBytes = budgetBytes;
+        this.segmentFile = new SegmentFile(spillDirectory);
+        this.residents = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, ACCESS_ORDER);
+        this.discardedContent = new ReferenceQueue<>();
+    }
+
+    /**
+     * Places content under the budget, spilling least recently used content if the budget is exceeded.
+     *
+     * @param content content held in memory.
+     * @return content that reads the same bytes and may be moved to disk later.
+     */
+    public ObjectContent admit(ObjectContent content) {
+        SpillingContent spillingContent = new SpillingContent(this, content, discardedContent);
+        List<SpillingContent> victims;
+        synchronized (this) {
+            releaseDiscardedContent();
+            residents.put(spillingContent.getResidentEntry(), spillingContent.getFootprint());
+            residentBytes += spillingContent.getFootprint();
+            victims = selectVictims();
+        }
+        victims.forEach(victim -> victim.spill(segmentFile));
+        return spillingContent;
+    }
+
+    public synchronized long getResidentBytes() {
+        releaseDiscardedContent();
+        return residentBytes;
+    }
+
+    public long getSpilledBytes() {
+        return segmentFile.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        segmentFile.close();
+    }
+
+    synchronized void touch(SpillingContent content) {
+        residents.get(content.getResidentEntry());
+    }
+
+    /**
+     * Takes collected content out of the resident set. Content that was spilled before it was collected has already
+     * left the set and is skipped.
+     */
+    private void releaseDiscardedContent() {
+        Resident discarded = (Resident) discardedContent.poll();
+        while (discarded != null) {
+            Long size = residents.remove(discarded);
+            if (size != null) {
+                residentBytes -= size;
+            }
+            discarded = (Resident) discardedContent.poll();
+        }
+    }
+
+    /**
+     * Removes least recently used content from the resident set until the rest fits the budget. The bytes are
+     * written to disk by the caller outside the lock, while readers keep using the memory copy. Content that has been
+     * collected in the meantime only leaves the set.
+     */
+    private List<SpillingContent> selectVictims() {
+        List<SpillingContent> victims = new ArrayList<>();
+        Iterator<Map.Entry<Resident, Long>> leastRecentlyUsed = residents.entrySet().iterator();
+        while (residentBytes > budgetBytes && leastRecentlyUsed.hasNext()) {
+            Map.Entry<Resident, Long> victim = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            residentBytes -= victim.getValue();
+            SpillingContent content = victim.getKey().get();
+            if (content != null) {
+                victims.add(content);
+            }
+        }
+        return victims;
+    }
+
+    /**
+     * The entry of content in the resident set, which does not keep the content from being collected.
+     */
+    static final class Resident extends WeakReference<SpillingContent> {
+
+        Resident(SpillingContent content, ReferenceQueue<SpillingContent> queue) {
+            super(content, queue);
+        }
+    }
+}
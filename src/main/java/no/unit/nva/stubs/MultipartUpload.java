@@ -0,0 +1,59 @@
+package no.unit.nva.stubs;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An initiated multipart upload. Each part is written to its own off-heap segment by the thread uploading it, so
+ * parts can arrive concurrently and in any order; completing the upload only references the segments.
+ */
+class MultipartUpload {
+
+    public static final int MIN_PART_NUMBER = 1;
+    public static final int MAX_PART_NUMBER = 10_000;
+    private final String uploadId;
+    private final String key;
+    private final Map<Integer, UploadedPart> parts;
+
+    public MultipartUpload(String uploadId, String key) {
+        this.uploadId = uploadId;
+        this.key = key;
+        this.parts = new ConcurrentHashMap<>();
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Stores a part, replacing any part previously uploaded with the same number.
+     *
+     * @param partNumber the part number, between {@value #MIN_PART_NUMBER} and {@value #MAX_PART_NUMBER}.
+     * @param part       the uploaded part.
+     */
+    public void putPart(Integer partNumber, UploadedPart part) {
+        parts.put(validPartNumber(partNumber), part);
+    }
+
+    public Optional<UploadedPart> getPart(int partNumber) {
+        return Optional.ofNullable(parts.get(partNumber));
+    }
+
+    /**
+     * Checks a part number before any part data is read, so that an invalid request is rejected like S3 does.
+     *
+     * @param partNumber the part number of a request.
+     * @return the part number.
+     */
+    public static int validPartNumber(Integer partNumber) {
+        if (partNumber == null || partNumber < MIN_PART_NUMBER || partNumber > MAX_PART_NUMBER) {
+            throw S3Errors.invalidPartNumber(partNumber);
+        }
+        return partNumber;
+    }
+}
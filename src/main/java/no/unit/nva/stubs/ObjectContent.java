@@ -0,0 +1,55 @@
+package no.unit.nva.stubs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The stored bytes of a single object. Implementations are immutable and can be read any number of times, each call
+ * to {@link #newInputStream()} returning an independent stream positioned at the start of the content.
+ */
+interface ObjectContent {
+
+    long size();
+
+    InputStream newInputStream();
+
+    /**
+     * Returns up to {@code length} bytes starting at {@code offset} as a read-only buffer. Memory-backed content
+     * returns a view of the stored bytes rather than a copy.
+     *
+     * @param offset the position of the first byte.
+     * @param length the maximum number of bytes to return.
+     * @return a buffer positioned at the first byte, empty when {@code offset} is at or beyond the end.
+     */
+    ByteBuffer read(long offset, int length);
+
+    /**
+     * Returns a view of {@code length} bytes starting at {@code offset}, without copying the stored bytes.
+     *
+     * @param offset the position of the first byte of the view.
+     * @param length the number of bytes in the view.
+     * @return content covering the requested bytes.
+     */
+    ObjectContent slice(long offset, long length);
+
+    /**
+     * Writes the whole content to a channel. By default the buffers returned by {@link #read(long, int)} are written,
+     * which for memory-backed content are views of the stored bytes; file-backed content transfers the bytes from
+     * file to channel directly.
+     *
+     * @param target the channel to write to.
+     * @throws IOException when writing to the channel fails.
+     */
+    default void transferTo(WritableByteChannel target) throws IOException {
+        long position = 0;
+        while (position < size()) {
+            ByteBuffer chunk = read(position, ByteBufferPublisher.DEFAULT_CHUNK_SIZE);
+            position += chunk.remaining();
+            while (chunk.hasRemaining()) {
+                target.write(chunk);
+            }
+        }
+    }
+}
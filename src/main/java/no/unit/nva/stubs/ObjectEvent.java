@@ -0,0 +1,146 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A change to an object that event notifications report, turned into a record of the shape S3 sends.
+ */
+final class ObjectEvent {
+
+    public static final String OBJECT_CREATED_PUT = "ObjectCreated:Put";
+    public static final String OBJECT_CREATED_COPY = "ObjectCreated:Copy";
+    public static final String OBJECT_CREATED_MULTIPART = "ObjectCreated:CompleteMultipartUpload";
+    public static final String OBJECT_REMOVED_DELETE = "ObjectRemoved:Delete";
+    public static final String OBJECT_REMOVED_DELETE_MARKER = "ObjectRemoved:DeleteMarkerCreated";
+    private static final String EVENT_VERSION = "2.1";
+    private static final String EVENT_SOURCE = "aws:s3";
+    private static final String AWS_REGION = "us-east-1";
+    private static final String PRINCIPAL_ID = "FAKE-PRINCIPAL";
+    private static final String SOURCE_IP_ADDRESS = "127.0.0.1";
+    private static final String SCHEMA_VERSION = "1.0";
+    private static final String BUCKET_ARN_PREFIX = "arn:aws:s3:::";
+    private static final DateTimeFormatter EVENT_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+                                                            .withZone(ZoneOffset.UTC);
+    private static final AtomicLong SEQUENCER = new AtomicLong();
+    private static final AtomicLong REQUEST_IDS = new AtomicLong();
+    private final String eventName;
+    private final String bucket;
+    private final String key;
+    private final Long size;
+    private final String eTag;
+    private final String versionId;
+    private final Instant eventTime;
+    private final String sequencer;
+    private final String requestId;
+
+    private ObjectEvent(String eventName, String bucket, String key, Long size, String eTag, String versionId,
+                        Instant eventTime) {
+        this.eventName = eventName;
+        this.bucket = bucket;
+        this.key = key;
+        this.size = size;
+        this.eTag = eTag;
+        this.versionId = versionId;
+        this.eventTime = eventTime;
+        this.sequencer = String.format("%016X", SEQUENCER.incrementAndGet());
+        this.requestId = String.format("%016X", REQUEST_IDS.incrementAndGet());
+    }
+
+    /**
+     * Describes a created object.
+     *
+     * @param eventName the name of the event, for example {@link #OBJECT_CREATED_PUT}.
+     * @param bucket    the bucket name.
+     * @param key       the object key.
+     * @param version   the created version.
+     * @param versionId the version ID as S3 reports it, or null in an unversioned bucket.
+     * @return the event.
+     */
+    public static ObjectEvent created(String eventName, String bucket, String key, ObjectVersion version,
+                                      String versionId) {
+        return new ObjectEvent(eventName, bucket, key, version.getContent().size(), version.getETag(), versionId,
+                               version.getLastModified());
+    }
+
+    /**
+     * Describes a deleted object, which has neither size nor ETag in S3 records.
+     *
+     * @param eventName the name of the event, for example {@link #OBJECT_REMOVED_DELETE}.
+     * @param bucket    the bucket name.
+     * @param key       the object key.
+     * @param versionId the ID of the removed version or of the created delete marker, or null.
+     * @param eventTime the time of the deletion.
+     * @return the event.
+     */
+    public static ObjectEvent removed(String eventName, String bucket, String key, String versionId,
+                                      Instant eventTime) {
+        return new ObjectEvent(eventName, bucket, key, null, null, versionId, eventTime);
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * The record of the event as it appears in the {@code Records} array of a notification.
+     *
+     * @param configurationId the ID of the configuration that sends the notification.
+     * @return the record.
+     */
+    public ObjectNode toRecord(String configurationId) {
+        JsonNodeFactory json = JsonNodeFactory.instance;
+        ObjectNode record = json.objectNode()
+                                .put("eventVersion", EVENT_VERSION)
+                                .put("eventSource", EVENT_SOURCE)
+                                .put("awsRegion", AWS_REGION)
+                                .put("eventTime", EVENT_TIME.format(eventTime))
+                                .put("eventName", eventName);
+        record.putObject("userIdentity").put("principalId", PRINCIPAL_ID);
+        record.putObject("requestParameters").put("sourceIPAddress", SOURCE_IP_ADDRESS);
+        record.putObject("responseElements")
+            .put("x-amz-request-id", requestId)
+            .put("x-amz-id-2", requestId);
+        ObjectNode s3 = record.putObject("s3")
+                            .put("s3SchemaVersion", SCHEMA_VERSION)
+                            .put("configurationId", configurationId);
+        s3.putObject("bucket")
+            .put("name", bucket)
+            .put("arn", BUCKET_ARN_PREFIX + bucket)
+            .putObject("ownerIdentity").put("principalId", PRINCIPAL_ID);
+        ObjectNode object = s3.putObject("object").put("key", encode(key));
+        if (size != null) {
+            object.put("size", size).put("eTag", unquoted(eTag));
+        }
+        if (versionId != null) {
+            object.put("versionId", versionId);
+        }
+        object.put("sequencer", sequencer);
+        return record;
+    }
+
+    /**
+     * Encodes the key as S3 does in records: form encoded, with spaces as '+' and the path separators kept.
+     */
+    private static String encode(String key) {
+        return URLEncoder.encode(key, StandardCharsets.UTF_8).replace("%2F", "/");
+    }
+
+    private static String unquoted(String eTag) {
+        return eTag.replace("\"", "");
+    }
+}
@@ -0,0 +1,61 @@
+package no.unit.nva.stubs;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Applies a {@link LifecycleConfiguration} to the objects and multipart uploads of one client. Every write that a
+ * rule matches schedules its expiry on a {@link TimingWheel}, and each request first advances the wheel to the
+ * current time of the configured clock. An expiry only removes the object if the key still holds the version it was
+ * scheduled for, so overwritten objects need not be unscheduled. Versions are compared rather than content, because
+ * a deduplicated rewrite of the same bytes stores the same content again.
+ */
+class ObjectLifecycle {
+
+    private static final Consumer<Runnable> RUN = Runnable::run;
+    private final LifecycleConfiguration configuration;
+    private final Clock clock;
+    private final TimingWheel<Runnable> timingWheel;
+    private volatile long appliedUpTo;
+
+    public ObjectLifecycle(LifecycleConfiguration configuration) {
+        this.configuration = configuration;
+        this.clock = configuration.getClock();
+        this.appliedUpTo = clock.millis();
+        this.timingWheel = new TimingWheel<>(appliedUpTo);
+    }
+
+    public void objectStored(ObjectStore objectStore, String key, ObjectVersion version) {
+        schedule(configuration.expirationOf(key), () -> objectStore.remove(key, version));
+    }
+
+    public void uploadInitiated(Map<String, MultipartUpload> multipartUploads, MultipartUpload upload) {
+        schedule(configuration.uploadAbortOf(upload.getKey()),
+                 () -> multipartUploads.remove(upload.getUploadId(), upload));
+    }
+
+    /**
+     * Carries out every expiry that is due at the current time of the clock.
+     */
+    public void applyDueRules() {
+        long now = clock.millis();
+        if (now > appliedUpTo) {
+            synchronized (this) {
+                timingWheel.advanceTo(now, RUN);
+                appliedUpTo = timingWheel.getCurrentTime();
+            }
+        }
+    }
+
+    private void schedule(Optional<Duration> age, Runnable expiry) {
+        if (age.isPresent()) {
+            long deadline = clock.millis() + age.get().toMillis();
+            synchronized (this) {
+                timingWheel.schedule(deadline, expiry, RUN);
+            }
+        }
+    }
+}
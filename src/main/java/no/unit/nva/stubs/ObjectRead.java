@@ -0,0 +1,26 @@
+package no.unit.nva.stubs;
+
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * The outcome of resolving a {@code GetObject} request: the response metadata and the content to transfer. Shared by
+ * the blocking and the asynchronous fake clients so both answer requests identically.
+ */
+class ObjectRead {
+
+    private final GetObjectResponse response;
+    private final ObjectContent content;
+
+    public ObjectRead(GetObjectResponse response, ObjectContent content) {
+        this.response = response;
+        this.content = content;
+    }
+
+    public GetObjectResponse getResponse() {
+        return response;
+    }
+
+    public ObjectContent getContent() {
+        return content;
+    }
+}
@@ -0,0 +1,215 @@
+package no.unit.nva.stubs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Registers objects of a {@link ObjectStore} from classpath resources, directory trees and ZIP or JAR archives
+ * without reading their content. Only keys and sizes are collected up front; the bytes are loaded by
+ * {@link LazyContent} when an object is first read. Archives are kept open until the seeder is closed.
+ */
+class ObjectSeeder implements Closeable {
+
+    private static final String FILE_PROTOCOL = "file";
+    private static final String JAR_PROTOCOL = "jar";
+    private static final String PATH_SEPARATOR = "/";
+    private static final String EMPTY_STRING = "";
+    private final ObjectStore objectStore;
+    private final Map<Path, ZipFile> openArchives;
+
+    public ObjectSeeder(ObjectStore objectStore) {
+        this.objectStore = objectStore;
+        this.openArchives = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Registers a single classpath resource under the given key.
+     *
+     * @param key          the object key.
+     * @param resourceName the name of the resource.
+     * @throws IllegalArgumentException if the resource does not exist.
+     */
+    public void seedResource(String key, String resourceName) {
+        URL resource = findResource(resourceName);
+        objectStore.putLazily(key, resourceSource(resource).orElseGet(() -> ContentSource.ofUrl(resource)));
+    }
+
+    /**
+     * Registers every resource below a classpath directory, whether the directory is on disk or inside a JAR.
+     *
+     * @param resourceDirectory the name of the resource directory.
+     * @param keyPrefix         the prefix put in front of each resource's path relative to the directory.
+     * @throws IllegalArgumentException if the directory does not exist or is not on disk or in a JAR.
+     */
+    public void seedResourceDirectory(String resourceDirectory, String keyPrefix) {
+        URL resource = findResource(resourceDirectory);
+        if (FILE_PROTOCOL.equals(resource.getProtocol())) {
+            seedDirectory(toPath(resource.toString()), keyPrefix);
+        } else if (JAR_PROTOCOL.equals(resource.getProtocol())) {
+            JarURLConnection jarEntry = jarEntry(resource);
+            seedArchiveEntries(toPath(jarEntry.getJarFileURL().toString()), asDirectory(jarEntry.getEntryName()),
+                               keyPrefix);
+        } else {
+            throw new IllegalArgumentException("Cannot list resource directory " + resource);
+        }
+    }
+
+    /**
+     * Registers every regular file below a directory.
+     *
+     * @param directory the directory.
+     * @param keyPrefix the prefix put in front of each file's path relative to the directory.
+     */
+    public void seedDirectory(Path directory, String keyPrefix) {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile()) {
+                        String key = keyPrefix + toKey(directory.relativize(file));
+                        objectStore.putLazily(key, ContentSource.ofFile(file, attributes.size()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Registers every file entry of a ZIP or JAR archive.
+     *
+     * @param archive   the archive.
+     * @param keyPrefix the prefix put in front of each entry's name.
+     */
+    public void seedArchive(Path archive, String keyPrefix) {
+        seedArchiveEntries(archive, EMPTY_STRING, keyPrefix);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ZipFile archive : openArchives.values()) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        openArchives.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void seedArchiveEntries(Path archive, String entryDirectory, String keyPrefix) {
+        ZipFile zipFile = openArchive(archive);
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && entry.getName().startsWith(entryDirectory)) {
+                String key = keyPrefix + entry.getName().substring(entryDirectory.length());
+                objectStore.putLazily(key, ContentSource.ofArchiveEntry(zipFile, entry));
+            }
+        }
+    }
+
+    /**
+     * Resolves a resource that lives on disk or in a JAR to a source that knows its size without opening it.
+     */
+    private Optional<ContentSource> resourceSource(URL resource) {
+        if (FILE_PROTOCOL.equals(resource.getProtocol())) {
+            Path file = toPath(resource.toString());
+            return Optional.of(ContentSource.ofFile(file, fileSize(file)));
+        }
+        if (JAR_PROTOCOL.equals(resource.getProtocol())) {
+            JarURLConnection jarEntry = jarEntry(resource);
+            ZipFile zipFile = openArchive(toPath(jarEntry.getJarFileURL().toString()));
+            return Optional.ofNullable(zipFile.getEntry(jarEntry.getEntryName()))
+                       .map(entry -> ContentSource.ofArchiveEntry(zipFile, entry));
+        }
+        return Optional.empty();
+    }
+
+    private ZipFile openArchive(Path archive) {
+        return openArchives.computeIfAbsent(archive.toAbsolutePath().normalize(), path -> {
+            try {
+                return new ZipFile(path.toFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static URL findResource(String resourceName) {
+        URL resource = Thread.currentThread().getContextClassLoader().getResource(resourceName);
+        if (resource == null) {
+            throw new IllegalArgumentException("Resource not found: " + resourceName);
+        }
+        return resource;
+    }
+
+    /**
+     * Parses a {@code jar:} URL into the archive and entry it names. The connection is never connected, so the
+     * archive is not opened by this call.
+     */
+    private static JarURLConnection jarEntry(URL resource) {
+        try {
+            return (JarURLConnection) resource.openConnection();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path toPath(String fileUrl) {
+        try {
+            return Paths.get(new URI(fileUrl));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(fileUrl, e);
+        }
+    }
+
+    private static String toKey(Path relativePath) {
+        StringBuilder key = new StringBuilder();
+        for (Path name : relativePath) {
+            if (key.length() > 0) {
+                key.append(PATH_SEPARATOR);
+            }
+            key.append(name);
+        }
+        return key.toString();
+    }
+
+    private static String asDirectory(String entryName) {
+        if (entryName == null || entryName.isEmpty() || entryName.endsWith(PATH_SEPARATOR)) {
+            return Optional.ofNullable(entryName).orElse(EMPTY_STRING);
+        }
+        return entryName + PATH_SEPARATOR;
+    }
+}
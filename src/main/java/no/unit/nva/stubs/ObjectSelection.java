@@ -0,0 +1,175 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.s3.model.EndEvent;
+import software.amazon.awssdk.services.s3.model.InputSerialization;
+import software.amazon.awssdk.services.s3.model.OutputSerialization;
+import software.amazon.awssdk.services.s3.model.RecordsEvent;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentEventStream;
+import software.amazon.awssdk.services.s3.model.Stats;
+import software.amazon.awssdk.services.s3.model.StatsEvent;
+
+/**
+ * The events answering a select request over one object: the selected records in chunks of about
+ * {@value #RECORDS_EVENT_SIZE} bytes, followed by the statistics and the end of the stream. The object is scanned as
+ * the events are asked for, so a consumer that stops early leaves the rest of the object unread, and only the
+ * selected records are ever held in memory.
+ */
+final class ObjectSelection implements Iterator<SelectObjectContentEventStream>, Closeable {
+
+    public static final int RECORDS_EVENT_SIZE = 64 * 1024;
+    private static final String UNNAMED_COLUMN = "_1";
+    private final RecordReader reader;
+    private final SelectExpression expression;
+    private final RecordWriter writer;
+    private final List<String> columnNames;
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+    private long recordsSelected;
+    private long bytesReturned;
+    private boolean scanned;
+    private boolean statsSent;
+    private boolean ended;
+
+    private ObjectSelection(RecordReader reader, SelectExpression expression, RecordWriter writer) {
+        this.reader = reader;
+        this.expression = expression;
+        this.writer = writer;
+        this.columnNames = expression.getColumnNames();
+    }
+
+    /**
+     * Prepares the selection of records from the content of an object. Nothing is read until the first event is
+     * asked for.
+     *
+     * @param content             the content of the object.
+     * @param expression          the parsed select expression.
+     * @param inputSerialization  the format of the object.
+     * @param outputSerialization the format of the selected records.
+     * @return the selection.
+     * @throws software.amazon.awssdk.services.s3.model.S3Exception if a format is missing or not supported.
+     */
+    public static ObjectSelection of(ObjectContent content, SelectExpression expression,
+                                     InputSerialization inputSerialization, OutputSerialization outputSerialization) {
+        RecordWriter writer = RecordWriter.of(outputSerialization);
+        InputStream input = content.newInputStream();
+        try {
+            return new ObjectSelection(RecordReader.of(inputSerialization, input), expression, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(input);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !ended;
+    }
+
+    @Override
+    public SelectObjectContentEventStream next() {
+        if (ended) {
+            throw new NoSuchElementException();
+        }
+        if (!scanned) {
+            scan();
+            if (records.size() > 0) {
+                return recordsEvent();
+            }
+        }
+        if (!statsSent) {
+            statsSent = true;
+            return StatsEvent.builder().details(getStats()).build();
+        }
+        ended = true;
+        return EndEvent.builder().build();
+    }
+
+    /**
+     * The bytes scanned and processed so far, which are the same because compressed input is not supported, and the
+     * bytes of the records returned so far.
+     *
+     * @return the statistics.
+     */
+    public Stats getStats() {
+        long bytesScanned = reader.getBytesScanned();
+        return Stats.builder()
+                   .bytesScanned(bytesScanned)
+                   .bytesProcessed(bytesScanned)
+                   .bytesReturned(bytesReturned)
+                   .build();
+    }
+
+    public long getBytesReturned() {
+        return bytesReturned;
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void scan() {
+        try {
+            while (!scanned && records.size() < RECORDS_EVENT_SIZE) {
+                JsonNode record = recordsSelected < expression.getLimit() ? reader.next() : null;
+                if (record == null) {
+                    scanned = true;
+                } else if (expression.matches(record)) {
+                    recordsSelected++;
+                    write(record);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(JsonNode record) throws IOException {
+        if (!expression.isSelectAll()) {
+            writer.write(columnNames, expression.project(record), records);
+        } else if (record.isObject()) {
+            List<String> names = new ArrayList<>();
+            List<JsonNode> values = new ArrayList<>();
+            for (Iterator<Entry<String, JsonNode>> fields = record.fields(); fields.hasNext(); ) {
+                Entry<String, JsonNode> field = fields.next();
+                names.add(field.getKey());
+                values.add(field.getValue());
+            }
+            writer.write(names, values, records);
+        } else {
+            writer.write(List.of(UNNAMED_COLUMN), List.of(record), records);
+        }
+    }
+
+    private RecordsEvent recordsEvent() {
+        byte[] payload = records.toByteArray();
+        records.reset();
+        bytesReturned += payload.length;
+        return RecordsEvent.builder().payload(SdkBytes.fromByteArrayUnsafe(payload)).build();
+    }
+
+    private static void closeQuietly(InputStream input) {
+        try {
+            input.close();
+        } catch (IOException ignored) {
+            // the request failed already, and the stream only reads stored content
+        }
+    }
+}
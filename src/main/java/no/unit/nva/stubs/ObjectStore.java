@@ -0,0 +1,561 @@
+package no.unit.nva.stubs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Instant;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Storage engine of {@link FakeS3Client}. Object bytes are copied once, on write, into off-heap memory and every read
+ * is served as a read-only view of that memory, so objects can be read any number of times without extra heap
+ * allocation. Keys are kept in a persistent sorted index, so that listing a page of keys under a prefix costs a
+ * lookup per stripe plus the size of the page, and so that taking a snapshot of the whole store costs one read per
+ * stripe. The index is split into stripes by key hash, so that writers of neighbouring keys, as under a hot prefix,
+ * swap in new versions of different stripes instead of contending on a single one; readers and snapshots keep the
+ * versions they started with. Every bucket of a client has a store of its own, with its own arena and index. With a
+ * {@link MemoryBudget}, least recently used content moves from memory to a file on disk. With a
+ * {@link ContentCompressor}, content is kept in compressed blocks.
+ *
+ * <p>Each key maps to the chain of its {@link ObjectVersion}s. Every write builds the new head of the chain and
+ * installs it with a compare-and-swap of the stripe, retrying when another writer got there first, so conditional
+ * writes are checked against exactly the version they replace without any lock.
+ */
+class ObjectStore {
+
+    private static final String EMPTY_STRING = "";
+    private static final char SMALLEST_CHARACTER = Character.MIN_VALUE;
+    private static final char LARGEST_CHARACTER = Character.MAX_VALUE;
+    private static final DirectMemoryArena DEDICATED_BUFFERS = new DirectMemoryArena(0);
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+    private static final AtomicLong VERSION_SEQUENCE = new AtomicLong();
+    private final AtomicReferenceArray<PersistentSortedMap<String, ObjectVersion>> objects;
+    private final DirectMemoryArena arena;
+    private final Instant creationDate;
+    private volatile Versioning versioning;
+    private volatile MemoryBudget memoryBudget;
+    private volatile ContentDeduplicator deduplicator;
+    private volatile ContentCompressor compressor;
+
+    public ObjectStore() {
+        this(emptyStripes(), new DirectMemoryArena(), Instant.now(), Versioning.UNVERSIONED, null, null, null);
+    }
+
+    private ObjectStore(List<PersistentSortedMap<String, ObjectVersion>> stripes, DirectMemoryArena arena,
+                        Instant creationDate, Versioning versioning, MemoryBudget memoryBudget,
+                        ContentDeduplicator deduplicator, ContentCompressor compressor) {
+        this.objects = new AtomicReferenceArray<>(STRIPES);
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            objects.set(stripe, stripes.get(stripe));
+        }
+        this.arena = arena;
+        this.creationDate = creationDate;
+        this.versioning = versioning;
+        this.memoryBudget = memoryBudget;
+        this.deduplicator = deduplicator;
+        this.compressor = compressor;
+    }
+
+    /**
+     * Creates an empty store for another bucket. It has an arena of its own, so that writers to different buckets do
+     * not contend, and shares the memory budget, deduplicator and compressor of this store.
+     *
+     * @param creationDate the time the bucket was created.
+     * @return the new store.
+     */
+    public ObjectStore newBucketStore(Instant creationDate) {
+        return new ObjectStore(emptyStripes(), new DirectMemoryArena(), creationDate, Versioning.UNVERSIONED,
+                               memoryBudget, deduplicator, compressor);
+    }
+
+    public Instant getCreationDate() {
+        return creationDate;
+    }
+
+    public Versioning getVersioning() {
+        return versioning;
+    }
+
+    /**
+     * Sets how writes from now on treat the versions they replace.
+     *
+     * @param versioning the versioning state of the bucket.
+     */
+    public void setVersioning(Versioning versioning) {
+        this.versioning = versioning;
+    }
+
+    /**
+     * Drains the stream into off-heap memory and stores it under the given key, replacing any previous object. The
+     * stream is closed afterwards.
+     *
+     * @param key           the object key.
+     * @param input         the object content.
+     * @param contentLength the number of bytes in the stream or {@link ContentWriter#UNKNOWN_CONTENT_LENGTH}.
+     */
+    public void put(String key, InputStream input, long contentLength) {
+        try (ReadableByteChannel channel = Channels.newChannel(input)) {
+            ContentWriter writer = newWriter(contentLength);
+            writer.writeFrom(channel);
+            put(key, writer.finish(), writer.getETag(), RequestConditions.NONE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void put(String key, InputStream input) {
+        put(key, input, ContentWriter.UNKNOWN_CONTENT_LENGTH);
+    }
+
+    /**
+     * Stores content under the given key as its latest version.
+     *
+     * @param key     the object key.
+     * @param content the object content.
+     * @return the new version, whose content may be a deduplicated copy or may be placed under the memory budget.
+     */
+    public ObjectVersion put(String key, ObjectContent content) {
+        return put(key, content, null, RequestConditions.NONE);
+    }
+
+    /**
+     * Stores content under the given key as its latest version, provided the version it replaces satisfies the
+     * conditions.
+     *
+     * @param key        the object key.
+     * @param content    the object content.
+     * @param eTag       the ETag of the content, or null to compute it when it is first asked for.
+     * @param conditions the conditions of the write.
+     * @return the new version, whose content may be a deduplicated copy or may be placed under the memory budget.
+     */
+    public ObjectVersion put(String key, ObjectContent content, String eTag, RequestConditions conditions) {
+        conditions.checkWrite(key, latest(key));
+        ContentDeduplicator contentDeduplicator = deduplicator;
+        ObjectContent stored = contentDeduplicator == null
+                                   ? retain(content)
+                                   : contentDeduplicator.deduplicate(content, this::retain);
+        return index(key, stored, eTag, conditions);
+    }
+
+    /**
+     * Stores a version of an object of this or another store as the latest version of a key of this store, without
+     * copying its bytes.
+     *
+     * @param source         the version to copy.
+     * @param destinationKey the key of the copy.
+     * @return the new version.
+     */
+    public ObjectVersion copy(ObjectVersion source, String destinationKey) {
+        return index(destinationKey, source.getContent(), source.getETag(), RequestConditions.NONE);
+    }
+
+    /**
+     * Stores content that stays where the caller keeps it, such as a region of a file, as the latest version of a key.
+     * The content is neither deduplicated nor placed under the memory budget, since it takes no memory of the store.
+     *
+     * @param key        the object key.
+     * @param content    the object content.
+     * @param conditions the conditions of the write.
+     * @return the new version.
+     */
+    public ObjectVersion putInPlace(String key, ObjectContent content, RequestConditions conditions) {
+        return index(key, content, null, conditions);
+    }
+
+    /**
+     * Replaces the versions of a key with a version chain read from elsewhere, such as a snapshot file. Version IDs
+     * generated afterwards are larger than every version ID of the chain.
+     *
+     * @param key  the object key.
+     * @param head the latest version of the chain.
+     */
+    public void putVersions(String key, ObjectVersion head) {
+        for (ObjectVersion version = head; version != null; version = version.getPrevious()) {
+            if (!ObjectVersion.NULL_VERSION_ID.equals(version.getVersionId())) {
+                long sequence = Long.parseLong(version.getVersionId(), Character.MAX_RADIX);
+                VERSION_SEQUENCE.accumulateAndGet(sequence, Math::max);
+            }
+        }
+        update(key, ignored -> head);
+    }
+
+    /**
+     * Stores an object whose content stays in its source until the object is first read.
+     *
+     * @param key    the object key.
+     * @param source the origin of the object content.
+     */
+    public void putLazily(String key, ContentSource source) {
+        index(key, new LazyContent(source, this), null, RequestConditions.NONE);
+    }
+
+    /**
+     * Places all content stored from now on under a memory budget. Content stored earlier stays in memory.
+     *
+     * @param memoryBudget the budget, shared with stores forked from this one.
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Compresses content that was just copied into memory, if the store compresses content, and hands it to the
+     * memory budget, if there is one.
+     *
+     * @param content content held in memory.
+     * @return content reading the same bytes.
+     */
+    public ObjectContent retain(ObjectContent content) {
+        ContentCompressor contentCompressor = compressor;
+        ObjectContent kept = contentCompressor == null ? content : contentCompressor.compress(content);
+        MemoryBudget budget = memoryBudget;
+        return budget == null ? kept : budget.admit(kept);
+    }
+
+    /**
+     * Deduplicates all content stored from now on, keeping one copy of each distinct content. Content is then kept in
+     * buffers of its own rather than in shared arena segments, so that dropping a duplicate frees its memory.
+     *
+     * @param deduplicator the deduplicator, shared with stores forked from this one.
+     */
+    public void setDeduplicator(ContentDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Compresses all content stored from now on. Content is then written to buffers of its own rather than to shared
+     * arena segments, so that the uncompressed bytes are freed once they are compressed.
+     *
+     * @param compressor the compressor, shared with stores forked from this one.
+     */
+    public void setCompressor(ContentCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    public ContentCompressor getCompressor() {
+        return compressor;
+    }
+
+    public ContentWriter newWriter(long contentLength) {
+        boolean dedicated = deduplicator != null || compressor != null;
+        return new ContentWriter(dedicated ? DEDICATED_BUFFERS : arena, contentLength);
+    }
+
+    /**
+     * Deletes the object under the key. In a versioned bucket, a delete marker becomes the latest version; otherwise
+     * the key is removed.
+     *
+     * @param key the object key.
+     * @return the delete marker, or empty when the key was removed.
+     */
+    public Optional<ObjectVersion> remove(String key) {
+        Versioning currentVersioning = versioning;
+        return Optional.ofNullable(update(key, head -> deletedHead(currentVersioning, head)));
+    }
+
+    /**
+     * Permanently removes one version of the object under the key. The key is removed along with its last version.
+     *
+     * @param key       the object key.
+     * @param versionId the ID of the version.
+     * @return the removed version, or empty when the key has no such version.
+     */
+    public Optional<ObjectVersion> remove(String key, String versionId) {
+        ObjectVersion[] removed = new ObjectVersion[1];
+        update(key, head -> {
+            removed[0] = head == null ? null : head.find(versionId);
+            return removed[0] == null ? head : head.without(versionId);
+        });
+        return Optional.ofNullable(removed[0]);
+    }
+
+    /**
+     * Deletes the object under the key, as {@link #remove(String)} does, if the given version is still its latest.
+     *
+     * @param key     the object key.
+     * @param version the version the key is expected to hold.
+     */
+    public void remove(String key, ObjectVersion version) {
+        Versioning currentVersioning = versioning;
+        update(key, head -> head == version ? deletedHead(currentVersioning, head) : head);
+    }
+
+    /**
+     * The content of the latest version of the object under the key.
+     *
+     * @param key the object key.
+     * @return the content, or empty when the key does not exist or its latest version is a delete marker.
+     */
+    public Optional<ObjectContent> get(String key) {
+        return Optional.ofNullable(latest(key)).map(ObjectVersion::getContent);
+    }
+
+    /**
+     * A version of the object under the key.
+     *
+     * @param key       the object key.
+     * @param versionId the version ID, or null for the latest version.
+     * @return the version, which may be a delete marker, or empty when there is no such version.
+     */
+    public Optional<ObjectVersion> getVersion(String key, String versionId) {
+        ObjectVersion head = objects.get(stripeOf(key)).get(key);
+        return Optional.ofNullable(head == null || versionId == null ? head : head.find(versionId));
+    }
+
+    public int size() {
+        return snapshot().size();
+    }
+
+    public boolean isEmpty() {
+        return IntStream.range(0, STRIPES).allMatch(stripe -> objects.get(stripe).size() == 0);
+    }
+
+    /**
+     * The current versions of the index stripes. Later writes to the store do not change the returned snapshot. Each
+     * stripe is read atomically, so a write racing with the snapshot is either fully captured or not at all.
+     *
+     * @return the objects of the store at the time of the call.
+     */
+    public StoreSnapshot snapshot() {
+        List<PersistentSortedMap<String, ObjectVersion>> stripes = new ArrayList<>(STRIPES);
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            stripes.add(objects.get(stripe));
+        }
+        return new StoreSnapshot(this, stripes, versioning);
+    }
+
+    /**
+     * Replaces every object of the store with the objects of a snapshot.
+     *
+     * @param snapshot a snapshot of this or another store.
+     */
+    public void restore(StoreSnapshot snapshot) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            objects.set(stripe, snapshot.getStripes().get(stripe));
+        }
+        versioning = snapshot.getVersioning();
+    }
+
+    /**
+     * Creates a store that starts out with the objects of a snapshot and shares their bytes, while writes to either
+     * store stay invisible to the other.
+     *
+     * @param snapshot a snapshot of this store.
+     * @return the new store.
+     */
+    public ObjectStore fork(StoreSnapshot snapshot) {
+        return new ObjectStore(snapshot.getStripes(), arena, creationDate, snapshot.getVersioning(), memoryBudget,
+                               deduplicator, compressor);
+    }
+
+    private ObjectVersion index(String key, ObjectContent content, String eTag, RequestConditions conditions) {
+        Versioning currentVersioning = versioning;
+        return update(key, head -> {
+            conditions.checkWrite(key, head);
+            return ObjectVersion.of(newVersionId(currentVersioning), content, eTag, Instant.now(),
+                                    retainedVersions(currentVersioning, head));
+        });
+    }
+
+    /**
+     * Replaces the version chain of a key with a compare-and-swap of its stripe, retrying with the latest chain when
+     * another writer swapped the stripe in the meantime.
+     *
+     * @param key     the object key.
+     * @param newHead computes the new head of the chain from the current one, where null means no versions.
+     * @return the new head.
+     */
+    private ObjectVersion update(String key, UnaryOperator<ObjectVersion> newHead) {
+        int stripe = stripeOf(key);
+        while (true) {
+            PersistentSortedMap<String, ObjectVersion> current = objects.get(stripe);
+            ObjectVersion head = current.get(key);
+            ObjectVersion next = newHead.apply(head);
+            if (next == head) {
+                return next;
+            }
+            PersistentSortedMap<String, ObjectVersion> updated = next == null
+                                                                     ? current.remove(key)
+                                                                     : current.put(key, next);
+            if (objects.compareAndSet(stripe, current, updated)) {
+                return next;
+            }
+        }
+    }
+
+    private ObjectVersion latest(String key) {
+        ObjectVersion head = objects.get(stripeOf(key)).get(key);
+        return head == null || head.isDeleteMarker() ? null : head;
+    }
+
+    private static ObjectVersion deletedHead(Versioning versioning, ObjectVersion head) {
+        return versioning == Versioning.UNVERSIONED
+                   ? null
+                   : ObjectVersion.deleteMarker(newVersionId(versioning), Instant.now(),
+                                                retainedVersions(versioning, head));
+    }
+
+    /**
+     * The versions kept below a new version: all of them when versioning is enabled, all but the one with the null
+     * version ID, which the new version replaces, when versioning is suspended, and none in an unversioned bucket.
+     */
+    private static ObjectVersion retainedVersions(Versioning versioning, ObjectVersion head) {
+        switch (versioning) {
+            case ENABLED:
+                return head;
+            case SUSPENDED:
+                return head == null ? null : head.without(ObjectVersion.NULL_VERSION_ID);
+            default:
+                return null;
+        }
+    }
+
+    private static String newVersionId(Versioning versioning) {
+        return versioning == Versioning.ENABLED
+                   ? Long.toString(VERSION_SEQUENCE.incrementAndGet(), Character.MAX_RADIX)
+                   : ObjectVersion.NULL_VERSION_ID;
+    }
+
+    /**
+     * The stripe of a key, taken from the high bits of its multiplicative hash so that keys sharing a prefix spread
+     * over all stripes.
+     */
+    static int stripeOf(String key) {
+        return (key.hashCode() * GOLDEN_RATIO) >>> (Integer.SIZE - STRIPE_BITS);
+    }
+
+    private static List<PersistentSortedMap<String, ObjectVersion>> emptyStripes() {
+        return Collections.nCopies(STRIPES, PersistentSortedMap.empty());
+    }
+
+    /**
+     * Lists, in key order, at most {@code maxKeys} objects and common prefixes whose keys start with {@code prefix}
+     * and are not smaller than {@code startKey}. When a delimiter is given, keys containing the delimiter after the
+     * prefix are rolled up into a single common prefix that counts as one entry of the page.
+     *
+     * @param prefix    the prefix every listed key starts with, or null for all keys.
+     * @param delimiter the delimiter that groups keys into common prefixes, or null for no grouping.
+     * @param startKey  the smallest key that may be listed, or null to start from the prefix.
+     * @param maxKeys   the maximum number of objects and common prefixes on the page.
+     * @return the page.
+     */
+    public KeyPage list(String prefix, String delimiter, String startKey, int maxKeys) {
+        String keyPrefix = prefix == null ? EMPTY_STRING : prefix;
+        List<Entry<String, ObjectVersion>> page = new ArrayList<>();
+        List<String> commonPrefixes = new ArrayList<>();
+        String fromKey = startingPoint(keyPrefix, startKey);
+        StoreSnapshot index = snapshot();
+        Iterator<Entry<String, ObjectVersion>> cursor = seek(index, fromKey);
+        Entry<String, ObjectVersion> next = nextWithPrefix(cursor, keyPrefix);
+        while (next != null && page.size() + commonPrefixes.size() < maxKeys) {
+            String commonPrefix = commonPrefix(next.getKey(), keyPrefix, delimiter);
+            if (commonPrefix == null) {
+                page.add(new SimpleImmutableEntry<>(next.getKey(), next.getValue()));
+            } else {
+                addUnlessAlreadyListed(commonPrefixes, commonPrefix, fromKey);
+                cursor = seek(index, prefixUpperBound(commonPrefix));
+            }
+            next = nextWithPrefix(cursor, keyPrefix);
+        }
+        return new KeyPage(page, commonPrefixes, nextStartKey(next, keyPrefix, delimiter));
+    }
+
+    /**
+     * Skips a common prefix that sorts before the start key: it was returned on an earlier page and the listing now
+     * resumes from a key inside it.
+     */
+    private static void addUnlessAlreadyListed(List<String> commonPrefixes, String commonPrefix, String fromKey) {
+        if (commonPrefix.compareTo(fromKey) >= 0) {
+            commonPrefixes.add(commonPrefix);
+        }
+    }
+
+    private static String nextStartKey(Entry<String, ObjectVersion> next, String keyPrefix, String delimiter) {
+        if (next == null) {
+            return null;
+        }
+        String commonPrefix = commonPrefix(next.getKey(), keyPrefix, delimiter);
+        return commonPrefix == null ? next.getKey() : commonPrefix;
+    }
+
+    private static Iterator<Entry<String, ObjectVersion>> seek(StoreSnapshot index, String fromKey) {
+        return fromKey == null ? Collections.emptyIterator() : index.tailIterator(fromKey);
+    }
+
+    private static String startingPoint(String keyPrefix, String startKey) {
+        return startKey != null && startKey.compareTo(keyPrefix) > 0 ? startKey : keyPrefix;
+    }
+
+    /**
+     * The next key under the prefix whose latest version is not a delete marker.
+     */
+    private static Entry<String, ObjectVersion> nextWithPrefix(Iterator<Entry<String, ObjectVersion>> cursor,
+                                                               String keyPrefix) {
+        while (cursor.hasNext()) {
+            Entry<String, ObjectVersion> next = cursor.next();
+            if (!next.getKey().startsWith(keyPrefix)) {
+                return null;
+            }
+            if (!next.getValue().isDeleteMarker()) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private static String commonPrefix(String key, String keyPrefix, String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            return null;
+        }
+        int delimiterIndex = key.indexOf(delimiter, keyPrefix.length());
+        return delimiterIndex < 0 ? null : key.substring(0, delimiterIndex + delimiter.length());
+    }
+
+    /**
+     * The smallest key that is larger than every key starting with the given prefix, or null when no such key exists.
+     */
+    private static String prefixUpperBound(String prefix) {
+        StringBuilder bound = new StringBuilder(prefix);
+        while (bound.length() > 0) {
+            int last = bound.length() - 1;
+            char lastCharacter = bound.charAt(last);
+            if (lastCharacter != LARGEST_CHARACTER) {
+                bound.setCharAt(last, (char) (lastCharacter + 1));
+                return bound.toString();
+            }
+            bound.setLength(last);
+        }
+        return null;
+    }
+
+    /**
+     * The smallest key that is larger than the given key.
+     */
+    static String successor(String key) {
+        return key + SMALLEST_CHARACTER;
+    }
+
+    /**
+     * The versioning state of a bucket. A bucket starts unversioned, and once versioning has been enabled it can only
+     * be suspended, in which case new writes replace the version with the null version ID and older versions stay.
+     */
+    enum Versioning {
+        UNVERSIONED,
+        ENABLED,
+        SUSPENDED
+    }
+}
@@ -0,0 +1,133 @@
+package no.unit.nva.stubs;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * One version of an object, linked to the version it replaced. The latest version of a key heads an immutable chain
+ * of its older versions, so that replacing the head of a key is a single swap of its index entry. A delete marker is a
+ * version without content.
+ */
+final class ObjectVersion {
+
+    public static final String NULL_VERSION_ID = "null";
+    private final String versionId;
+    private final ObjectContent content;
+    private final Instant lastModified;
+    private final ObjectVersion previous;
+    private volatile String eTag;
+
+    private ObjectVersion(String versionId, ObjectContent content, Instant lastModified, ObjectVersion previous) {
+        this.versionId = versionId;
+        this.content = content;
+        this.lastModified = lastModified;
+        this.previous = previous;
+    }
+
+    /**
+     * Creates a version with content.
+     *
+     * @param versionId    the version ID.
+     * @param content      the content.
+     * @param eTag         the ETag of the content, or null to compute it when it is first asked for.
+     * @param lastModified the time the version was written.
+     * @param previous     the version it replaces, or null.
+     * @return the version.
+     */
+    public static ObjectVersion of(String versionId, ObjectContent content, String eTag, Instant lastModified,
+                                   ObjectVersion previous) {
+        ObjectVersion version = new ObjectVersion(versionId, content, lastModified, previous);
+        version.eTag = eTag;
+        return version;
+    }
+
+    public static ObjectVersion deleteMarker(String versionId, Instant lastModified, ObjectVersion previous) {
+        return new ObjectVersion(versionId, null, lastModified, previous);
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    /**
+     * The content of the version.
+     *
+     * @return the content, or null for a delete marker.
+     */
+    public ObjectContent getContent() {
+        return content;
+    }
+
+    public boolean isDeleteMarker() {
+        return content == null;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public ObjectVersion getPrevious() {
+        return previous;
+    }
+
+    /**
+     * The quoted ETag of the content, computed when it is first asked for.
+     *
+     * @return the ETag, or null for a delete marker.
+     */
+    public String getETag() {
+        String computed = eTag;
+        if (computed == null && content != null) {
+            computed = ETags.md5Of(content);
+            eTag = computed;
+        }
+        return computed;
+    }
+
+    /**
+     * Finds a version in the chain headed by this version.
+     *
+     * @param wantedVersionId the version ID.
+     * @return the version, or null when the chain does not contain it.
+     */
+    public ObjectVersion find(String wantedVersionId) {
+        for (ObjectVersion version = this; version != null; version = version.previous) {
+            if (version.versionId.equals(wantedVersionId)) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The chain headed by this version without the given version. The versions newer than the removed one are copied,
+     * the older ones are shared.
+     *
+     * @param removedVersionId the ID of the version to leave out.
+     * @return the new head of the chain, which is null when the chain held only the removed version, or this version
+     *     when the chain does not contain the removed version.
+     */
+    public ObjectVersion without(String removedVersionId) {
+        Deque<ObjectVersion> newer = new ArrayDeque<>();
+        ObjectVersion removed = this;
+        while (removed != null && !removed.versionId.equals(removedVersionId)) {
+            newer.push(removed);
+            removed = removed.previous;
+        }
+        if (removed == null) {
+            return this;
+        }
+        ObjectVersion head = removed.previous;
+        while (!newer.isEmpty()) {
+            head = newer.pop().withPrevious(head);
+        }
+        return head;
+    }
+
+    private ObjectVersion withPrevious(ObjectVersion newPrevious) {
+        ObjectVersion copy = new ObjectVersion(versionId, content, lastModified, newPrevious);
+        copy.eTag = eTag;
+        return copy;
+    }
+}
@@ -0,0 +1,62 @@
+package no.unit.nva.stubs;
+
+/**
+ * What was recorded for one operation, either under one key prefix or summed over all of them.
+ */
+public final class OperationStatistics {
+
+    public static final OperationStatistics EMPTY = new OperationStatistics(0, 0, 0, 0, LatencyDistribution.EMPTY);
+    private final long calls;
+    private final long errors;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final LatencyDistribution latency;
+
+    OperationStatistics(long calls, long errors, long bytesIn, long bytesOut, LatencyDistribution latency) {
+        this.calls = calls;
+        this.errors = errors;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.latency = latency;
+    }
+
+    /**
+     * The number of calls, including the calls that failed.
+     *
+     * @return the number of calls.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * The number of bytes the calls uploaded.
+     *
+     * @return the number of bytes received by the fake.
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * The number of bytes the calls downloaded.
+     *
+     * @return the number of bytes returned by the fake.
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    OperationStatistics merge(OperationStatistics other) {
+        return new OperationStatistics(calls + other.calls, errors + other.errors, bytesIn + other.bytesIn,
+                                       bytesOut + other.bytesOut, latency.merge(other.latency));
+    }
+}
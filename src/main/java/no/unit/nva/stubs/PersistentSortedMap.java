@@ -0,0 +1,209 @@
+package no.unit.nva.stubs;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable sorted map whose updates return a new map sharing every unchanged node with the old one. It is a treap
+ * with priorities derived from the key hashes, so an update copies only the O(log n) nodes on the path to the key and
+ * any number of versions of the map can be kept at the cost of their differences.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+final class PersistentSortedMap<K extends Comparable<K>, V> {
+
+    private static final PersistentSortedMap<?, ?> EMPTY = new PersistentSortedMap<>(null);
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+    private final Node<K, V> root;
+
+    private PersistentSortedMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<K>, V> PersistentSortedMap<K, V> empty() {
+        return (PersistentSortedMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return Node.size(root);
+    }
+
+    public V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+            if (comparison == 0) {
+                return node.value;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public PersistentSortedMap<K, V> put(K key, V value) {
+        return new PersistentSortedMap<>(insert(root, key, value, priorityOf(key)));
+    }
+
+    /**
+     * Returns the map without the key, or this map when the key is absent.
+     */
+    public PersistentSortedMap<K, V> remove(K key) {
+        Node<K, V> newRoot = delete(root, key);
+        return newRoot == root ? this : new PersistentSortedMap<>(newRoot);
+    }
+
+    /**
+     * Iterates in key order over the entries whose keys are not smaller than {@code fromKey}.
+     *
+     * @param fromKey the smallest key to visit.
+     * @return an iterator over the entries of this version of the map.
+     */
+    public Iterator<Entry<K, V>> tailIterator(K fromKey) {
+        return new InOrderIterator<>(root, fromKey);
+    }
+
+    public Iterator<Entry<K, V>> iterator() {
+        return new InOrderIterator<>(root, null);
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> insert(Node<K, V> node, K key, V value, int priority) {
+        if (node == null) {
+            return new Node<>(key, value, priority, null, null);
+        }
+        int comparison = key.compareTo(node.key);
+        if (comparison == 0) {
+            return new Node<>(key, value, node.priority, node.left, node.right);
+        }
+        if (comparison < 0) {
+            Node<K, V> left = insert(node.left, key, value, priority);
+            return left.priority > node.priority
+                       ? new Node<>(left.key, left.value, left.priority, left.left, node.withLeft(left.right))
+                       : node.withLeft(left);
+        }
+        Node<K, V> right = insert(node.right, key, value, priority);
+        return right.priority > node.priority
+                   ? new Node<>(right.key, right.value, right.priority, node.withRight(right.left), right.right)
+                   : node.withRight(right);
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> delete(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = key.compareTo(node.key);
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        }
+        if (comparison < 0) {
+            Node<K, V> left = delete(node.left, key);
+            return left == node.left ? node : node.withLeft(left);
+        }
+        Node<K, V> right = delete(node.right, key);
+        return right == node.right ? node : node.withRight(right);
+    }
+
+    /**
+     * Joins two treaps where every key of {@code smaller} sorts before every key of {@code larger}.
+     */
+    private static <K extends Comparable<K>, V> Node<K, V> merge(Node<K, V> smaller, Node<K, V> larger) {
+        if (smaller == null) {
+            return larger;
+        }
+        if (larger == null) {
+            return smaller;
+        }
+        return smaller.priority > larger.priority
+                   ? smaller.withRight(merge(smaller.right, larger))
+                   : larger.withLeft(merge(smaller, larger.left));
+    }
+
+    private static int priorityOf(Object key) {
+        int hash = key.hashCode() * GOLDEN_RATIO;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Node<K, V> implements Entry<K, V> {
+
+        private final K key;
+        private final V value;
+        private final int priority;
+        private final int size;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+
+        private Node(K key, V value, int priority, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        private static int size(Node<?, ?> node) {
+            return node == null ? 0 : node.size;
+        }
+
+        private Node<K, V> withLeft(Node<K, V> newLeft) {
+            return new Node<>(key, value, priority, newLeft, right);
+        }
+
+        private Node<K, V> withRight(Node<K, V> newRight) {
+            return new Node<>(key, value, priority, left, newRight);
+        }
+    }
+
+    private static final class InOrderIterator<K extends Comparable<K>, V> implements Iterator<Entry<K, V>> {
+
+        private final Deque<Node<K, V>> path = new ArrayDeque<>();
+
+        private InOrderIterator(Node<K, V> root, K fromKey) {
+            Node<K, V> node = root;
+            while (node != null) {
+                if (fromKey == null || node.key.compareTo(fromKey) >= 0) {
+                    path.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> next = path.pop();
+            for (Node<K, V> node = next.right; node != null; node = node.left) {
+                path.push(node);
+            }
+            return next;
+        }
+    }
+}
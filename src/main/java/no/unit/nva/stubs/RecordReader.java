@@ -0,0 +1,54 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import software.amazon.awssdk.services.s3.model.CompressionType;
+import software.amazon.awssdk.services.s3.model.InputSerialization;
+
+/**
+ * Reads the records of an object for a select request, one at a time, as it scans the object's bytes.
+ */
+interface RecordReader extends Closeable {
+
+    /**
+     * Creates a reader for the input format of a select request.
+     *
+     * @param inputSerialization the input format.
+     * @param input              the bytes of the object.
+     * @return the reader.
+     * @throws software.amazon.awssdk.services.s3.model.S3Exception if the format is missing or not supported.
+     */
+    static RecordReader of(InputSerialization inputSerialization, InputStream input) throws IOException {
+        if (inputSerialization == null) {
+            throw S3Errors.invalidSelectRequest("The input serialization is missing");
+        }
+        CompressionType compressionType = inputSerialization.compressionType();
+        if (compressionType != null && compressionType != CompressionType.NONE) {
+            throw S3Errors.invalidSelectRequest("Compressed input is not supported: " + compressionType);
+        }
+        if (inputSerialization.json() != null) {
+            return new JsonRecordReader(input);
+        }
+        if (inputSerialization.csv() != null) {
+            return new CsvRecordReader(inputSerialization.csv(), input);
+        }
+        throw S3Errors.invalidSelectRequest("Only JSON and CSV input is supported");
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record, or null when the object has no more records.
+     * @throws IOException if the object cannot be read.
+     */
+    JsonNode next() throws IOException;
+
+    /**
+     * The number of bytes of the object read so far.
+     *
+     * @return the number of bytes.
+     */
+    long getBytesScanned();
+}
@@ -0,0 +1,43 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import software.amazon.awssdk.services.s3.model.OutputSerialization;
+
+/**
+ * Writes the selected records of a select request in the requested output format.
+ */
+interface RecordWriter {
+
+    /**
+     * Creates a writer for the output format of a select request.
+     *
+     * @param outputSerialization the output format.
+     * @return the writer.
+     * @throws software.amazon.awssdk.services.s3.model.S3Exception if the format is missing or not supported.
+     */
+    static RecordWriter of(OutputSerialization outputSerialization) {
+        if (outputSerialization == null) {
+            throw S3Errors.invalidSelectRequest("The output serialization is missing");
+        }
+        if (outputSerialization.json() != null) {
+            return new JsonRecordWriter(outputSerialization.json());
+        }
+        if (outputSerialization.csv() != null) {
+            return new CsvRecordWriter(outputSerialization.csv());
+        }
+        throw S3Errors.invalidSelectRequest("Only JSON and CSV output is supported");
+    }
+
+    /**
+     * Writes one record followed by the record delimiter.
+     *
+     * @param names  the names of the columns.
+     * @param values the values of the columns, where missing nodes stand for values the record does not have.
+     * @param output where to write the record.
+     * @throws IOException if the record cannot be written.
+     */
+    void write(List<String> names, List<JsonNode> values, ByteArrayOutputStream output) throws IOException;
+}
@@ -0,0 +1,81 @@
+package no.unit.nva.stubs;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The {@code If-Match}, {@code If-None-Match}, {@code If-Modified-Since} and {@code If-Unmodified-Since} conditions of
+ * a request, checked against the version of the object the request finds. Writes check them inside the
+ * compare-and-swap that installs the new version, so a conditional write never overwrites a version it has not seen.
+ */
+final class RequestConditions {
+
+    public static final RequestConditions NONE = new RequestConditions(null, null, null, null);
+    private final String ifMatch;
+    private final String ifNoneMatch;
+    private final Instant ifModifiedSince;
+    private final Instant ifUnmodifiedSince;
+
+    private RequestConditions(String ifMatch, String ifNoneMatch, Instant ifModifiedSince,
+                              Instant ifUnmodifiedSince) {
+        this.ifMatch = ifMatch;
+        this.ifNoneMatch = ifNoneMatch;
+        this.ifModifiedSince = ifModifiedSince;
+        this.ifUnmodifiedSince = ifUnmodifiedSince;
+    }
+
+    public static RequestConditions of(String ifMatch, String ifNoneMatch, Instant ifModifiedSince,
+                                       Instant ifUnmodifiedSince) {
+        return ifMatch == null && ifNoneMatch == null && ifModifiedSince == null && ifUnmodifiedSince == null
+                   ? NONE
+                   : new RequestConditions(ifMatch, ifNoneMatch, ifModifiedSince, ifUnmodifiedSince);
+    }
+
+    /**
+     * Checks the {@code If-Match} and {@code If-None-Match} conditions of a write. As in S3, {@code If-Match} requires
+     * the object to exist and {@code If-None-Match: *} requires it not to exist.
+     *
+     * @param key     the object key.
+     * @param current the latest version of the object, or null if the key has never been written.
+     */
+    public void checkWrite(String key, ObjectVersion current) {
+        boolean exists = current != null && !current.isDeleteMarker();
+        if (ifMatch != null && !exists) {
+            throw S3Errors.noSuchKey(key);
+        }
+        if (ifMatch != null && !ETags.matches(ifMatch, current.getETag())
+            || ifNoneMatch != null && exists && ETags.matches(ifNoneMatch, current.getETag())) {
+            throw S3Errors.preconditionFailed();
+        }
+    }
+
+    /**
+     * Checks the conditions of a read in the order of HTTP. A failed {@code If-Match} or {@code If-Unmodified-Since}
+     * fails the request with {@code PreconditionFailed}; otherwise a matching {@code If-None-Match}, or an unchanged
+     * object under {@code If-Modified-Since}, answers {@code 304 Not Modified} without content. As in HTTP, the date
+     * conditions are ignored when the corresponding ETag condition is given.
+     *
+     * @param version the version being read.
+     */
+    public void checkRead(ObjectVersion version) {
+        boolean satisfied = ifMatch == null
+                                ? ifUnmodifiedSince == null || !modifiedSince(version, ifUnmodifiedSince)
+                                : ETags.matches(ifMatch, version.getETag());
+        if (!satisfied) {
+            throw S3Errors.preconditionFailed();
+        }
+        boolean modified = ifNoneMatch == null
+                               ? ifModifiedSince == null || modifiedSince(version, ifModifiedSince)
+                               : !ETags.matches(ifNoneMatch, version.getETag());
+        if (!modified) {
+            throw S3Errors.notModified();
+        }
+    }
+
+    /**
+     * Compares at the precision of HTTP dates, which is whole seconds.
+     */
+    private static boolean modifiedSince(ObjectVersion version, Instant time) {
+        return version.getLastModified().truncatedTo(ChronoUnit.SECONDS).isAfter(time);
+    }
+}
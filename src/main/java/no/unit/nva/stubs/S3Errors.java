@@ -0,0 +1,213 @@
+package no.unit.nva.stubs;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Factory for the error responses of the fake S3 clients, shaped like the exceptions the SDK builds from real S3
+ * error responses.
+ */
+final class S3Errors {
+
+    public static final String SERVICE_NAME = "S3";
+    public static final int NOT_MODIFIED = 304;
+    public static final int BAD_REQUEST = 400;
+    public static final int NOT_FOUND = 404;
+    public static final int METHOD_NOT_ALLOWED = 405;
+    public static final int CONFLICT = 409;
+    public static final int PRECONDITION_FAILED = 412;
+    public static final int RANGE_NOT_SATISFIABLE = 416;
+    public static final int SERVICE_UNAVAILABLE = 503;
+
+    private S3Errors() {
+    }
+
+    public static NoSuchKeyException noSuchKey(String key) {
+        String message = "File does not exist:" + key;
+        return NoSuchKeyException.builder()
+                   .message(message)
+                   .statusCode(NOT_FOUND)
+                   .awsErrorDetails(errorDetails("NoSuchKey", message))
+                   .build();
+    }
+
+    public static NoSuchBucketException noSuchBucket(String bucket) {
+        String message = "The specified bucket does not exist: " + bucket;
+        return NoSuchBucketException.builder()
+                   .message(message)
+                   .statusCode(NOT_FOUND)
+                   .awsErrorDetails(errorDetails("NoSuchBucket", message))
+                   .build();
+    }
+
+    public static BucketAlreadyOwnedByYouException bucketAlreadyOwnedByYou(String bucket) {
+        String message = "Your previous request to create the named bucket succeeded: " + bucket;
+        return BucketAlreadyOwnedByYouException.builder()
+                   .message(message)
+                   .statusCode(CONFLICT)
+                   .awsErrorDetails(errorDetails("BucketAlreadyOwnedByYou", message))
+                   .build();
+    }
+
+    public static S3Exception bucketNotEmpty(String bucket) {
+        String message = "The bucket you tried to delete is not empty: " + bucket;
+        return S3Exception.builder()
+                   .message(message)
+                   .statusCode(CONFLICT)
+                   .awsErrorDetails(errorDetails("BucketNotEmpty", message))
+                   .build();
+    }
+
+    public static S3Exception noSuchVersion(String key, String versionId) {
+        String message = "The specified version does not exist: " + key + " " + versionId;
+        return S3Exception.builder()
+                   .message(message)
+                   .statusCode(NOT_FOUND)
+                   .awsErrorDetails(errorDetails("NoSuchVersion", message))
+                   .build();
+    }
+
+    public static S3Exception deleteMarkerVersion(String key, String versionId) {
+        String message = "The specified version is a delete marker: " + key + " " + versionId;
+        return S3Exception.builder()
+                   .message(message)
+                   .statusCode(METHOD_NOT_ALLOWED)
+                   .awsErrorDetails(errorDetails("MethodNotAllowed", message))
+                   .build();
+    }
+
+    public static S3Exception preconditionFailed() {
+        String message = "At least one of the pre-conditions you specified did not hold";
+        return S3Exception.builder()
+                   .message(message)
+                   .statusCode(PRECONDITION_FAILED)
+                   .awsErrorDetails(errorDetails("PreconditionFailed", message))
+                   .build();
+    }
+
+    /**
+     * The answer to a read whose {@code If-None-Match} or {@code If-Modified-Since} condition finds the object
+     * unchanged. Like the SDK does for the empty 304 response of S3, it is surfaced as an exception.
+     *
+     * @return the exception.
+     */
+    public static S3Exception notModified() {
+        String message = "Not Modified";
+        return S3Exception.builder()
+                   .message(message)
+                   .statusCode(NOT_MODIFIED)
+                   .awsErrorDetails(errorDetails("NotModified", message))
+                   .build();
+    }
+
+    public static S3Exception invalidRange(String range) {
+        String message = "The requested range is not satisfiable: " + range;
+        return S3Exception.builder()
+                   .message(message)
+                   .statusCode(RANGE_NOT_SATISFIABLE)
+                   .awsErrorDetails(errorDetails("InvalidRange", message))
+                   .build();
+    }
+
+    public static NoSuchUploadException noSuchUpload(String uploadId) {
+        String message = "The specified multipart upload does not exist: " + uploadId;
+        return NoSuchUploadException.builder()
+                   .message(message)
+                   .statusCode(NOT_FOUND)
+                   .awsErrorDetails(errorDetails("NoSuchUpload", message))
+                   .build();
+    }
+
+    public static S3Exception invalidPart(int partNumber) {
+        String message = "Part " + partNumber + " has not been uploaded or its ETag does not match";
+        return badRequest("InvalidPart", message);
+    }
+
+    public static S3Exception invalidPartNumber(Integer partNumber) {
+        return badRequest("InvalidArgument", "Part number must be an integer between "
+                                             + MultipartUpload.MIN_PART_NUMBER + " and "
+                                             + MultipartUpload.MAX_PART_NUMBER + ", inclusive: " + partNumber);
+    }
+
+    public static S3Exception invalidPartOrder() {
+        return badRequest("InvalidPartOrder", "The list of parts was not in ascending order");
+    }
+
+    public static S3Exception malformedPartList() {
+        return badRequest("MalformedXML", "The list of parts is missing or empty");
+    }
+
+    public static S3Exception malformedDeleteList(int keyCount) {
+        return badRequest("MalformedXML", "A delete request must list between 1 and "
+                                          + FakeS3Client.MAX_DELETE_OBJECTS + " keys, not " + keyCount);
+    }
+
+    public static S3Exception malformedVersioningConfiguration() {
+        return badRequest("MalformedXML", "The versioning status must be Enabled or Suspended");
+    }
+
+    public static S3Exception invalidCopySource(String copySource) {
+        return badRequest("InvalidArgument", "Copy Source must mention the source bucket and key: " + copySource);
+    }
+
+    public static S3Exception invalidContinuationToken() {
+        return badRequest("InvalidArgument", "The continuation token provided is incorrect");
+    }
+
+    public static S3Exception invalidQueryParameter(String name, String value) {
+        return badRequest("InvalidArgument", "The query parameter " + name + " must be an integer: " + value);
+    }
+
+    public static S3Exception invalidHeader(String name, String value) {
+        return badRequest("InvalidArgument", "The header " + name + " must be a non-negative integer: " + value);
+    }
+
+    public static S3Exception incompleteBody(String chunkHeader) {
+        return badRequest("IncompleteBody", "The chunk header is not a hexadecimal chunk size: " + chunkHeader);
+    }
+
+    public static S3Exception invalidExpressionType(String expressionType) {
+        return badRequest("InvalidExpressionType", "The expression type is not supported: " + expressionType);
+    }
+
+    public static S3Exception invalidSelectRequest(String message) {
+        return badRequest("InvalidRequestParameter", message);
+    }
+
+    public static S3Exception unexpectedToken(String token, int position) {
+        return badRequest("ParseUnexpectedToken", "Unexpected token '" + token + "' at position " + position);
+    }
+
+    public static S3Exception jsonParsingError(long byteOffset) {
+        return badRequest("JSONParsingError", "Encountered an error parsing the JSON file at byte " + byteOffset);
+    }
+
+    public static S3Exception slowDown() {
+        String message = "Please reduce your request rate.";
+        return S3Exception.builder()
+                   .message(message)
+                   .statusCode(SERVICE_UNAVAILABLE)
+                   .awsErrorDetails(errorDetails("SlowDown", message))
+                   .build();
+    }
+
+    private static S3Exception badRequest(String errorCode, String message) {
+        return S3Exception.builder()
+                   .message(message)
+                   .statusCode(BAD_REQUEST)
+                   .awsErrorDetails(errorDetails(errorCode, message))
+                   .build();
+    }
+
+    private static AwsErrorDetails errorDetails(String errorCode, String message) {
+        return AwsErrorDetails.builder()
+                   .errorCode(errorCode)
+                   .errorMessage(message)
+                   .serviceName(SERVICE_NAME)
+                   .build();
+    }
+}
@@ -0,0 +1,103 @@
+package no.unit.nva.stubs;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counts the calls, errors and transferred bytes of the fake S3 clients and records their latency, per operation and
+ * key prefix. Recording is lock-free, so the metrics can stay enabled in concurrent tests and benchmarks. Calls that
+ * are in flight while the metrics are {@link #reset() reset} may be left out of later snapshots.
+ */
+public class S3Metrics {
+
+    private final Map<S3Operation, Map<String, OperationMetrics>> metrics;
+
+    public S3Metrics() {
+        this.metrics = new EnumMap<>(S3Operation.class);
+        for (S3Operation operation : S3Operation.values()) {
+            metrics.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Copies the metrics recorded so far.
+     *
+     * @return the snapshot.
+     */
+    public S3MetricsSnapshot snapshot() {
+        Map<S3Operation, Map<String, OperationStatistics>> statistics = new EnumMap<>(S3Operation.class);
+        metrics.forEach((operation, byPrefix) -> {
+            Map<String, OperationStatistics> copy = new HashMap<>();
+            byPrefix.forEach((prefix, operationMetrics) -> copy.put(prefix, operationMetrics.snapshot()));
+            statistics.put(operation, copy);
+        });
+        return new S3MetricsSnapshot(statistics);
+    }
+
+    public void reset() {
+        metrics.values().forEach(Map::clear);
+    }
+
+    <T> T time(S3Operation operation, String prefix, Supplier<T> call) {
+        OperationMetrics operationMetrics = metricsOf(operation, prefix);
+        long startTime = System.nanoTime();
+        try {
+            T result = call.get();
+            operationMetrics.recordCall(System.nanoTime() - startTime, false);
+            return result;
+        } catch (RuntimeException exception) {
+            operationMetrics.recordCall(System.nanoTime() - startTime, true);
+            throw exception;
+        }
+    }
+
+    <T> CompletableFuture<T> timeAsync(S3Operation operation, String prefix, Supplier<CompletableFuture<T>> call) {
+        OperationMetrics operationMetrics = metricsOf(operation, prefix);
+        long startTime = System.nanoTime();
+        return call.get().whenComplete(
+            (result, error) -> operationMetrics.recordCall(System.nanoTime() - startTime, error != null));
+    }
+
+    void recordBytesIn(S3Operation operation, String prefix, long bytes) {
+        metricsOf(operation, prefix).bytesIn.add(bytes);
+    }
+
+    void recordBytesOut(S3Operation operation, String prefix, long bytes) {
+        metricsOf(operation, prefix).bytesOut.add(bytes);
+    }
+
+    private OperationMetrics metricsOf(S3Operation operation, String prefix) {
+        Map<String, OperationMetrics> byPrefix = metrics.get(operation);
+        OperationMetrics operationMetrics = byPrefix.get(prefix);
+        return operationMetrics == null
+                   ? byPrefix.computeIfAbsent(prefix, ignored -> new OperationMetrics())
+                   : operationMetrics;
+    }
+
+    private static class OperationMetrics {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        public void recordCall(long nanos, boolean failed) {
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            latency.record(nanos);
+        }
+
+        public OperationStatistics snapshot() {
+            return new OperationStatistics(calls.sum(), errors.sum(), bytesIn.sum(), bytesOut.sum(),
+                                           latency.snapshot());
+        }
+    }
+}
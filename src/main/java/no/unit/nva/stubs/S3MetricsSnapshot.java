@@ -0,0 +1,50 @@
+package no.unit.nva.stubs;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An immutable copy of the metrics of a fake S3 client, broken down by operation and key prefix.
+ */
+public final class S3MetricsSnapshot {
+
+    private final Map<S3Operation, Map<String, OperationStatistics>> statistics;
+
+    S3MetricsSnapshot(Map<S3Operation, Map<String, OperationStatistics>> statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * The statistics of an operation summed over all key prefixes.
+     *
+     * @param operation the operation.
+     * @return the statistics, empty if the operation was never called.
+     */
+    public OperationStatistics getStatistics(S3Operation operation) {
+        return statistics.getOrDefault(operation, Collections.emptyMap())
+                   .values()
+                   .stream()
+                   .reduce(OperationStatistics.EMPTY, OperationStatistics::merge);
+    }
+
+    /**
+     * The statistics of an operation on keys with the given prefix, that is everything up to and including the last
+     * '/' of the key.
+     *
+     * @param operation the operation.
+     * @param prefix    the key prefix, for example "some/path/".
+     * @return the statistics, empty if the operation was never called on the prefix.
+     */
+    public OperationStatistics getStatistics(S3Operation operation, String prefix) {
+        return statistics.getOrDefault(operation, Collections.emptyMap())
+                   .getOrDefault(prefix, OperationStatistics.EMPTY);
+    }
+
+    public Set<String> getPrefixes() {
+        Set<String> prefixes = new TreeSet<>();
+        statistics.values().forEach(byPrefix -> prefixes.addAll(byPrefix.keySet()));
+        return prefixes;
+    }
+}
@@ -0,0 +1,25 @@
+package no.unit.nva.stubs;
+
+/**
+ * The operations of the fake S3 clients that are counted and timed by {@link S3Metrics}.
+ */
+public enum S3Operation {
+    GET_OBJECT,
+    HEAD_OBJECT,
+    PUT_OBJECT,
+    DELETE_OBJECT,
+    DELETE_OBJECTS,
+    SELECT_OBJECT_CONTENT,
+    COPY_OBJECT,
+    LIST_OBJECTS,
+    LIST_OBJECTS_V2,
+    CREATE_MULTIPART_UPLOAD,
+    UPLOAD_PART,
+    COMPLETE_MULTIPART_UPLOAD,
+    ABORT_MULTIPART_UPLOAD,
+    CREATE_BUCKET,
+    DELETE_BUCKET,
+    LIST_BUCKETS,
+    PUT_BUCKET_VERSIONING,
+    GET_BUCKET_VERSIONING
+}
@@ -0,0 +1,335 @@
+package no.unit.nva.stubs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import software.amazon.awssdk.services.s3.model.Bucket;
+import software.amazon.awssdk.services.s3.model.BucketVersioningStatus;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.GetBucketVersioningResponse;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Writes and reads the XML documents of the S3 REST API for {@link FakeS3Server}.
+ */
+final class S3Xml {
+
+    public static final String URL_ENCODING = "url";
+    private static final String NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+    private static final String STANDARD_STORAGE_CLASS = "STANDARD";
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private S3Xml() {
+    }
+
+    public static byte[] listBucketResult(ListObjectsV2Response response, boolean urlEncoded) {
+        UnaryOperator<String> encode = encoder(urlEncoded);
+        return document(writer -> {
+            writer.writeStartElement("ListBucketResult");
+            writer.writeDefaultNamespace(NAMESPACE);
+            element(writer, "Name", response.name());
+            element(writer, "Prefix", encode.apply(Optional.ofNullable(response.prefix()).orElse("")));
+            element(writer, "Delimiter", encode.apply(response.delimiter()));
+            element(writer, "StartAfter", encode.apply(response.startAfter()));
+            element(writer, "ContinuationToken", response.continuationToken());
+            element(writer, "NextContinuationToken", response.nextContinuationToken());
+            element(writer, "MaxKeys", response.maxKeys());
+            element(writer, "KeyCount", response.keyCount());
+            element(writer, "IsTruncated", response.isTruncated());
+            element(writer, "EncodingType", urlEncoded ? URL_ENCODING : null);
+            objects(writer, response.contents(), encode);
+            commonPrefixes(writer, response.commonPrefixes(), encode);
+            writer.writeEndElement();
+        });
+    }
+
+    public static byte[] listBucketResult(ListObjectsResponse response, boolean urlEncoded) {
+        UnaryOperator<String> encode = encoder(urlEncoded);
+        return document(writer -> {
+            writer.writeStartElement("ListBucketResult");
+            writer.writeDefaultNamespace(NAMESPACE);
+            element(writer, "Name", response.name());
+            element(writer, "Prefix", encode.apply(Optional.ofNullable(response.prefix()).orElse("")));
+            element(writer, "Delimiter", encode.apply(response.delimiter()));
+            element(writer, "Marker", encode.apply(Optional.ofNullable(response.marker()).orElse("")));
+            element(writer, "NextMarker", encode.apply(response.nextMarker()));
+            element(writer, "MaxKeys", response.maxKeys());
+            element(writer, "IsTruncated", response.isTruncated());
+            element(writer, "EncodingType", urlEncoded ? URL_ENCODING : null);
+            objects(writer, response.contents(), encode);
+            commonPrefixes(writer, response.commonPrefixes(), encode);
+            writer.writeEndElement();
+        });
+    }
+
+    public static byte[] initiateMultipartUploadResult(CreateMultipartUploadResponse response) {
+        return document(writer -> {
+            writer.writeStartElement("InitiateMultipartUploadResult");
+            writer.writeDefaultNamespace(NAMESPACE);
+            element(writer, "Bucket", response.bucket());
+            element(writer, "Key", response.key());
+            element(writer, "UploadId", response.uploadId());
+            writer.writeEndElement();
+        });
+    }
+
+    public static byte[] completeMultipartUploadResult(CompleteMultipartUploadResponse response, String location) {
+        return document(writer -> {
+            writer.writeStartElement("CompleteMultipartUploadResult");
+            writer.writeDefaultNamespace(NAMESPACE);
+            element(writer, "Location", location);
+            element(writer, "Bucket", response.bucket());
+            element(writer, "Key", response.key());
+            element(writer, "ETag", response.eTag());
+            writer.writeEndElement();
+        });
+    }
+
+    public static byte[] copyObjectResult(CopyObjectResult result) {
+        return document(writer -> {
+            writer.writeStartElement("CopyObjectResult");
+            writer.writeDefaultNamespace(NAMESPACE);
+            element(writer, "LastModified", timestamp(result.lastModified()));
+            element(writer, "ETag", result.eTag());
+            writer.writeEndElement();
+        });
+    }
+
+    public static byte[] listAllMyBucketsResult(ListBucketsResponse response) {
+        return document(writer -> {
+            writer.writeStartElement("ListAllMyBucketsResult");
+            writer.writeDefaultNamespace(NAMESPACE);
+            writer.writeStartElement("Buckets");
+            for (Bucket bucket : response.buckets()) {
+                writer.writeStartElement("Bucket");
+                element(writer, "Name", bucket.name());
+                element(writer, "CreationDate", timestamp(bucket.creationDate()));
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndElement();
+        });
+    }
+
+    public static byte[] versioningConfiguration(GetBucketVersioningResponse response) {
+        return document(writer -> {
+            writer.writeStartElement("VersioningConfiguration");
+            writer.writeDefaultNamespace(NAMESPACE);
+            element(writer, "Status", response.status());
+            writer.writeEndElement();
+        });
+    }
+
+    public static byte[] deleteResult(DeleteObjectsResponse response) {
+        return document(writer -> {
+            writer.writeStartElement("DeleteResult");
+            writer.writeDefaultNamespace(NAMESPACE);
+            for (DeletedObject deleted : response.deleted()) {
+                writer.writeStartElement("Deleted");
+                element(writer, "Key", deleted.key());
+                element(writer, "VersionId", deleted.versionId());
+                element(writer, "DeleteMarker", deleted.deleteMarker());
+                element(writer, "DeleteMarkerVersionId", deleted.deleteMarkerVersionId());
+                writer.writeEndElement();
+            }
+            for (S3Error error : response.errors()) {
+                writer.writeStartElement("Error");
+                element(writer, "Key", error.key());
+                element(writer, "VersionId", error.versionId());
+                element(writer, "Code", error.code());
+                element(writer, "Message", error.message());
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        });
+    }
+
+    public static byte[] error(String code, String message, String resource, String requestId) {
+        return document(writer -> {
+            writer.writeStartElement("Error");
+            element(writer, "Code", code);
+            element(writer, "Message", message);
+            element(writer, "Resource", resource);
+            element(writer, "RequestId", requestId);
+            writer.writeEndElement();
+        });
+    }
+
+    /**
+     * Reads the versioning status of a {@code PutBucketVersioning} request body.
+     *
+     * @param body the request body.
+     * @return the status, or null when the body names none.
+     * @throws XMLStreamException if the body is not well-formed XML.
+     */
+    public static BucketVersioningStatus versioningStatus(InputStream body) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(body);
+        BucketVersioningStatus status = null;
+        while (reader.hasNext() && status == null) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && "Status".equals(reader.getLocalName())) {
+                status = BucketVersioningStatus.fromValue(reader.getElementText().trim());
+            }
+        }
+        reader.close();
+        return status;
+    }
+
+    /**
+     * Reads the part list of a {@code CompleteMultipartUpload} request body.
+     *
+     * @param body the request body.
+     * @return the listed parts in document order.
+     * @throws XMLStreamException if the body is not well-formed XML.
+     */
+    public static CompletedMultipartUpload completedMultipartUpload(InputStream body) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(body);
+        List<CompletedPart> parts = new ArrayList<>();
+        CompletedPart.Builder part = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if ("Part".equals(element)) {
+                    part = CompletedPart.builder();
+                } else if ("PartNumber".equals(element) && part != null) {
+                    part.partNumber(Integer.valueOf(reader.getElementText().trim()));
+                } else if ("ETag".equals(element) && part != null) {
+                    part.eTag(reader.getElementText().trim());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "Part".equals(reader.getLocalName())) {
+                parts.add(part.build());
+                part = null;
+            }
+        }
+        reader.close();
+        return CompletedMultipartUpload.builder().parts(parts).build();
+    }
+
+    /**
+     * Reads the keys and the quiet flag of a {@code DeleteObjects} request body.
+     *
+     * @param body the request body.
+     * @return the objects to delete in document order.
+     * @throws XMLStreamException if the body is not well-formed XML.
+     */
+    public static Delete delete(InputStream body) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(body);
+        List<ObjectIdentifier> objects = new ArrayList<>();
+        ObjectIdentifier.Builder object = null;
+        Boolean quiet = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if ("Object".equals(element)) {
+                    object = ObjectIdentifier.builder();
+                } else if ("Key".equals(element) && object != null) {
+                    object.key(reader.getElementText());
+                } else if ("VersionId".equals(element) && object != null) {
+                    object.versionId(reader.getElementText().trim());
+                } else if ("Quiet".equals(element)) {
+                    quiet = Boolean.valueOf(reader.getElementText().trim());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "Object".equals(reader.getLocalName())) {
+                objects.add(object.build());
+                object = null;
+            }
+        }
+        reader.close();
+        return Delete.builder().objects(objects).quiet(quiet).build();
+    }
+
+    private static void objects(XMLStreamWriter writer, List<S3Object> objects, UnaryOperator<String> encode)
+        throws XMLStreamException {
+        for (S3Object object : objects) {
+            writer.writeStartElement("Contents");
+            element(writer, "Key", encode.apply(object.key()));
+            element(writer, "LastModified", timestamp(object.lastModified()));
+            element(writer, "ETag", object.eTag());
+            element(writer, "Size", object.size());
+            element(writer, "StorageClass", STANDARD_STORAGE_CLASS);
+            writer.writeEndElement();
+        }
+    }
+
+    private static void commonPrefixes(XMLStreamWriter writer, List<CommonPrefix> commonPrefixes,
+                                       UnaryOperator<String> encode) throws XMLStreamException {
+        for (CommonPrefix commonPrefix : commonPrefixes) {
+            writer.writeStartElement("CommonPrefixes");
+            element(writer, "Prefix", encode.apply(commonPrefix.prefix()));
+            writer.writeEndElement();
+        }
+    }
+
+    private static void element(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+        if (value != null) {
+            writer.writeStartElement(name);
+            writer.writeCharacters(value.toString());
+            writer.writeEndElement();
+        }
+    }
+
+    private static String timestamp(Instant instant) {
+        return instant == null ? null : TIMESTAMP_FORMAT.format(instant);
+    }
+
+    private static byte[] document(XmlContent content) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(output, StandardCharsets.UTF_8.name());
+            writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+            content.writeTo(writer);
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException(e);
+        }
+        return output.toByteArray();
+    }
+
+    private static UnaryOperator<String> encoder(boolean urlEncoded) {
+        return value -> urlEncoded && value != null ? URLEncoder.encode(value, StandardCharsets.UTF_8) : value;
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private interface XmlContent {
+
+        void writeTo(XMLStreamWriter writer) throws XMLStreamException;
+    }
+}
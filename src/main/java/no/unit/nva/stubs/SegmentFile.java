@@ -0,0 +1,89 @@
+package no.unit.nva.stubs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only temporary file holding object bytes that were moved out of memory. Appends go to the end of the
+ * file and reads are positional, so any number of threads can read while one appends. The file is deleted when it
+ * is closed.
+ */
+class SegmentFile implements Closeable {
+
+    private static final String FILE_PREFIX = "fake-s3-";
+    private static final String FILE_SUFFIX = ".segment";
+    private static final int END_OF_FILE = -1;
+    private final FileChannel channel;
+    private long end;
+
+    public SegmentFile(Path directory) {
+        try {
+            Path file = Files.createTempFile(directory, FILE_PREFIX, FILE_SUFFIX);
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                            StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies the content to the end of the file.
+     *
+     * @param content the bytes to write.
+     * @return the position of the first written byte.
+     */
+    public synchronized long append(ObjectContent content) {
+        long start = end;
+        long position = 0;
+        try {
+            while (position < content.size()) {
+                ByteBuffer chunk = content.read(position, ByteBufferPublisher.DEFAULT_CHUNK_SIZE);
+                position += chunk.remaining();
+                while (chunk.hasRemaining()) {
+                    end += channel.write(chunk, end);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return start;
+    }
+
+    /**
+     * Fills the buffer with the bytes starting at {@code position}, stopping early only at the end of the file.
+     *
+     * @param target   the buffer to fill.
+     * @param position the position of the first byte to read.
+     * @return the number of bytes read.
+     */
+    public int read(ByteBuffer target, long position) {
+        int read = 0;
+        try {
+            while (target.hasRemaining()) {
+                int chunk = channel.read(target, position + read);
+                if (chunk == END_OF_FILE) {
+                    break;
+                }
+                read += chunk;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return read;
+    }
+
+    public synchronized long size() {
+        return end;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
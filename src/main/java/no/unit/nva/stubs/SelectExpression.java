@@ -0,0 +1,740 @@
+package no.unit.nva.stubs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+/**
+ * The subset of the S3 Select SQL dialect that the fake clients evaluate:
+ * {@code SELECT * | path [AS name], ... FROM S3Object [[AS] alias] [WHERE condition] [LIMIT count]}. Conditions
+ * compare paths, literals and {@code CAST}s with {@code =, !=, <>, <, <=, >, >=}, {@code [NOT] LIKE} and
+ * {@code IS [NOT] NULL}, and combine them with {@code AND}, {@code OR}, {@code NOT} and parentheses. Aggregates,
+ * functions other than {@code CAST} and arithmetic are not supported.
+ *
+ * <p>As in SQL, a comparison involving a missing or null value is unknown, and a record is selected only when its
+ * condition is true. Unlike S3, text that holds a number compares as a number with a number, so CSV fields can be
+ * compared with numeric literals without a cast.
+ */
+final class SelectExpression {
+
+    private static final Pattern POSITIONAL_COLUMN = Pattern.compile("_[1-9][0-9]*");
+    private static final int NOT_POSITIONAL = 0;
+    private final List<Column> columns;
+    private final Condition condition;
+    private final long limit;
+
+    private SelectExpression(List<Column> columns, Condition condition, long limit) {
+        this.columns = columns;
+        this.condition = condition;
+        this.limit = limit;
+    }
+
+    /**
+     * Parses a select expression.
+     *
+     * @param expression the SQL expression.
+     * @return the parsed expression.
+     * @throws software.amazon.awssdk.services.s3.model.S3Exception if the expression is not in the supported subset.
+     */
+    public static SelectExpression parse(String expression) {
+        return new Parser(Objects.requireNonNullElse(expression, "")).parseQuery();
+    }
+
+    public boolean isSelectAll() {
+        return columns.isEmpty();
+    }
+
+    /**
+     * The names of the selected columns: the name given with {@code AS}, the last step of a path, or the position of
+     * the column for other expressions.
+     *
+     * @return the names, which are empty for {@code SELECT *}.
+     */
+    public List<String> getColumnNames() {
+        List<String> names = new ArrayList<>();
+        columns.forEach(column -> names.add(column.name));
+        return names;
+    }
+
+    /**
+     * The maximum number of records to return.
+     *
+     * @return the limit, which is {@link Long#MAX_VALUE} when the expression has none.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    public boolean matches(JsonNode record) {
+        return Boolean.TRUE.equals(condition.test(record));
+    }
+
+    /**
+     * The values of the selected columns of a record.
+     *
+     * @param record the record.
+     * @return the values in column order, where a path that does not exist in the record is a missing node.
+     */
+    public List<JsonNode> project(JsonNode record) {
+        List<JsonNode> values = new ArrayList<>(columns.size());
+        columns.forEach(column -> values.add(column.operand.valueIn(record)));
+        return values;
+    }
+
+    /**
+     * The field of a node by name or, for a name such as {@code _2} that the node does not have, by position.
+     */
+    private static JsonNode field(JsonNode node, String name, int position) {
+        JsonNode value = node.get(name);
+        if (value == null && node.isObject() && position != NOT_POSITIONAL) {
+            value = positionalField(node, position);
+        }
+        return value == null ? MissingNode.getInstance() : value;
+    }
+
+    private static JsonNode positionalField(JsonNode node, int position) {
+        Iterator<JsonNode> values = node.elements();
+        for (int index = 1; values.hasNext(); index++) {
+            JsonNode value = values.next();
+            if (index == position) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAbsent(JsonNode value) {
+        return value.isMissingNode() || value.isNull();
+    }
+
+    private static Integer compare(JsonNode left, JsonNode right) {
+        if (isAbsent(left) || isAbsent(right)) {
+            return null;
+        }
+        if (left.isNumber() || right.isNumber()) {
+            BigDecimal leftNumber = numberOf(left);
+            BigDecimal rightNumber = numberOf(right);
+            return leftNumber == null || rightNumber == null ? null : leftNumber.compareTo(rightNumber);
+        }
+        if (left.isTextual() && right.isTextual()) {
+            return left.textValue().compareTo(right.textValue());
+        }
+        if (left.isBoolean() && right.isBoolean()) {
+            return Boolean.compare(left.booleanValue(), right.booleanValue());
+        }
+        return null;
+    }
+
+    private static BigDecimal numberOf(JsonNode value) {
+        if (value.isNumber()) {
+            return value.decimalValue();
+        }
+        if (value.isTextual()) {
+            try {
+                return new BigDecimal(value.textValue().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Boolean and(Boolean left, Boolean right) {
+        if (Boolean.FALSE.equals(left) || Boolean.FALSE.equals(right)) {
+            return false;
+        }
+        return left == null || right == null ? null : true;
+    }
+
+    private static Boolean or(Boolean left, Boolean right) {
+        if (Boolean.TRUE.equals(left) || Boolean.TRUE.equals(right)) {
+            return true;
+        }
+        return left == null || right == null ? null : false;
+    }
+
+    private static Boolean not(Boolean value) {
+        return value == null ? null : !value;
+    }
+
+    private static Pattern likePattern(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char character : pattern.toCharArray()) {
+            if (character == '%' || character == '_') {
+                regex.append(Pattern.quote(literal.toString())).append(character == '%' ? ".*" : ".");
+                literal.setLength(0);
+            } else {
+                literal.append(character);
+            }
+        }
+        return Pattern.compile(regex.append(Pattern.quote(literal.toString())).toString(), Pattern.DOTALL);
+    }
+
+    private interface Operand {
+
+        JsonNode valueIn(JsonNode record);
+    }
+
+    private interface Condition {
+
+        /**
+         * Evaluates the condition for a record.
+         *
+         * @param record the record.
+         * @return true or false, or null when the condition is unknown.
+         */
+        Boolean test(JsonNode record);
+    }
+
+    private enum Comparison {
+        EQUAL(result -> result == 0),
+        NOT_EQUAL(result -> result != 0),
+        LESS(result -> result < 0),
+        LESS_OR_EQUAL(result -> result <= 0),
+        GREATER(result -> result > 0),
+        GREATER_OR_EQUAL(result -> result >= 0);
+
+        private final IntPredicate holds;
+
+        Comparison(IntPredicate holds) {
+            this.holds = holds;
+        }
+
+        static Comparison of(String symbol) {
+            switch (symbol) {
+                case "=":
+                    return EQUAL;
+                case "!=":
+                case "<>":
+                    return NOT_EQUAL;
+                case "<":
+                    return LESS;
+                case "<=":
+                    return LESS_OR_EQUAL;
+                case ">":
+                    return GREATER;
+                case ">=":
+                    return GREATER_OR_EQUAL;
+                default:
+                    return null;
+            }
+        }
+
+        Boolean test(JsonNode left, JsonNode right) {
+            Integer result = compare(left, right);
+            return result == null ? null : holds.test(result);
+        }
+    }
+
+    private enum CastType {
+        INT, INTEGER, BIGINT, FLOAT, DOUBLE, DECIMAL, NUMERIC, STRING, VARCHAR, CHAR, BOOL, BOOLEAN;
+
+        JsonNode convert(JsonNode value) {
+            if (isAbsent(value)) {
+                return value;
+            }
+            switch (this) {
+                case INT:
+                case INTEGER:
+                case BIGINT:
+                    BigDecimal number = numberOf(value);
+                    return number == null ? MissingNode.getInstance() : LongNode.valueOf(number.longValue());
+                case FLOAT:
+                case DOUBLE:
+                case DECIMAL:
+                case NUMERIC:
+                    BigDecimal decimal = numberOf(value);
+                    return decimal == null ? MissingNode.getInstance() : DecimalNode.valueOf(decimal);
+                case BOOL:
+                case BOOLEAN:
+                    return value.isBoolean() ? value : BooleanNode.valueOf(Boolean.parseBoolean(value.asText()));
+                default:
+                    return value.isValueNode() ? TextNode.valueOf(value.asText()) : TextNode.valueOf(value.toString());
+            }
+        }
+    }
+
+    private static final class Column {
+
+        private final String name;
+        private final Operand operand;
+
+        private Column(String name, Operand operand) {
+            this.name = name;
+            this.operand = operand;
+        }
+    }
+
+    private static final class Path implements Operand {
+
+        private final List<String> steps;
+        private final int[] positions;
+
+        private Path(List<String> steps, int[] positions) {
+            this.steps = steps;
+            this.positions = positions;
+        }
+
+        @Override
+        public JsonNode valueIn(JsonNode record) {
+            JsonNode value = record;
+            for (int index = 0; index < steps.size(); index++) {
+                value = field(value, steps.get(index), positions[index]);
+            }
+            return value;
+        }
+    }
+
+    private enum TokenType { WORD, QUOTED_NAME, STRING, NUMBER, SYMBOL, END }
+
+    private static final class Token {
+
+        private final TokenType type;
+        private final String text;
+        private final int position;
+
+        private Token(TokenType type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+
+        private boolean isKeyword(String keyword) {
+            return type == TokenType.WORD && text.equalsIgnoreCase(keyword);
+        }
+
+        private boolean isSymbol(String symbol) {
+            return type == TokenType.SYMBOL && text.equals(symbol);
+        }
+    }
+
+    /**
+     * A recursive descent parser over the tokens of an expression.
+     */
+    private static final class Parser {
+
+        private static final String SYMBOL_CHARACTERS = "*,.()=!<>";
+        private static final String[] RESERVED_WORDS = {"SELECT", "FROM", "WHERE", "LIMIT", "AND", "OR", "NOT", "AS",
+            "LIKE", "IS", "NULL"};
+        private final List<Token> tokens;
+        private final String alias;
+        private int next;
+
+        private Parser(String expression) {
+            this.tokens = tokenize(expression);
+            this.alias = findAlias(tokens);
+        }
+
+        private SelectExpression parseQuery() {
+            expectKeyword("SELECT");
+            List<Column> columns = parseColumns();
+            expectKeyword("FROM");
+            Token source = take();
+            if (!source.isKeyword("S3Object")) {
+                throw unexpected(source);
+            }
+            parseAlias();
+            Condition condition = acceptKeyword("WHERE") ? parseOr() : record -> true;
+            long limit = acceptKeyword("LIMIT") ? parseLimit() : Long.MAX_VALUE;
+            if (peek().type != TokenType.END) {
+                throw unexpected(peek());
+            }
+            return new SelectExpression(columns, condition, limit);
+        }
+
+        private List<Column> parseColumns() {
+            if (acceptSymbol("*")) {
+                return List.of();
+            }
+            List<Column> columns = new ArrayList<>();
+            do {
+                Operand operand = parseOperand();
+                String name = acceptKeyword("AS") ? parseName() : defaultColumnName(operand, columns.size() + 1);
+                columns.add(new Column(name, operand));
+            } while (acceptSymbol(","));
+            return columns;
+        }
+
+        private static String defaultColumnName(Operand operand, int position) {
+            if (operand instanceof Path) {
+                List<String> steps = ((Path) operand).steps;
+                return steps.get(steps.size() - 1);
+            }
+            return "_" + position;
+        }
+
+        private void parseAlias() {
+            boolean explicit = acceptKeyword("AS");
+            if (isName(peek())) {
+                take();
+            } else if (explicit) {
+                throw unexpected(peek());
+            }
+        }
+
+        /**
+         * Finds the alias of {@code S3Object} ahead of parsing, because the selected columns that refer to it come
+         * before it.
+         */
+        private static String findAlias(List<Token> tokens) {
+            for (int index = 0; index + 2 < tokens.size(); index++) {
+                if (tokens.get(index).isKeyword("FROM") && tokens.get(index + 1).isKeyword("S3Object")) {
+                    int aliasIndex = tokens.get(index + 2).isKeyword("AS") ? index + 3 : index + 2;
+                    Token token = tokens.get(Math.min(aliasIndex, tokens.size() - 1));
+                    return isName(token) ? token.text : null;
+                }
+            }
+            return null;
+        }
+
+        private static boolean isName(Token token) {
+            return token.type == TokenType.QUOTED_NAME || token.type == TokenType.WORD && !isReserved(token);
+        }
+
+        private long parseLimit() {
+            Token token = take();
+            if (token.type != TokenType.NUMBER || !token.text.chars().allMatch(Character::isDigit)) {
+                throw unexpected(token);
+            }
+            try {
+                return Long.parseLong(token.text);
+            } catch (NumberFormatException e) {
+                throw unexpected(token);
+            }
+        }
+
+        private Condition parseOr() {
+            Condition condition = parseAnd();
+            while (acceptKeyword("OR")) {
+                Condition left = condition;
+                Condition right = parseAnd();
+                condition = record -> or(left.test(record), right.test(record));
+            }
+            return condition;
+        }
+
+        private Condition parseAnd() {
+            Condition condition = parseNot();
+            while (acceptKeyword("AND")) {
+                Condition left = condition;
+                Condition right = parseNot();
+                condition = record -> and(left.test(record), right.test(record));
+            }
+            return condition;
+        }
+
+        private Condition parseNot() {
+            if (acceptKeyword("NOT")) {
+                Condition negated = parseNot();
+                return record -> not(negated.test(record));
+            }
+            if (peek().isSymbol("(") && startsCondition()) {
+                take();
+                Condition condition = parseOr();
+                expectSymbol(")");
+                return condition;
+            }
+            return parsePredicate();
+        }
+
+        private boolean startsCondition() {
+            int depth = 0;
+            for (int index = next; index < tokens.size(); index++) {
+                Token token = tokens.get(index);
+                if (token.isSymbol("(")) {
+                    depth++;
+                } else if (token.isSymbol(")") && --depth == 0) {
+                    Token following = tokens.get(index + 1);
+                    return Comparison.of(following.text) == null
+                           && !following.isKeyword("LIKE") && !following.isKeyword("IS")
+                           && !following.isKeyword("NOT");
+                }
+            }
+            return true;
+        }
+
+        private Condition parsePredicate() {
+            Operand left = parseOperand();
+            if (acceptKeyword("IS")) {
+                boolean negated = acceptKeyword("NOT");
+                expectKeyword("NULL");
+                return record -> negated != isAbsent(left.valueIn(record));
+            }
+            boolean negated = acceptKeyword("NOT");
+            if (acceptKeyword("LIKE")) {
+                Token pattern = take();
+                if (pattern.type != TokenType.STRING) {
+                    throw unexpected(pattern);
+                }
+                Pattern like = likePattern(pattern.text);
+                return record -> {
+                    JsonNode value = left.valueIn(record);
+                    return isAbsent(value) || !value.isValueNode()
+                               ? null
+                               : negated != like.matcher(value.asText()).matches();
+                };
+            }
+            if (negated) {
+                throw unexpected(peek());
+            }
+            Token operator = take();
+            Comparison comparison = operator.type == TokenType.SYMBOL ? Comparison.of(operator.text) : null;
+            if (comparison == null) {
+                throw unexpected(operator);
+            }
+            Operand right = parseOperand();
+            return record -> comparison.test(left.valueIn(record), right.valueIn(record));
+        }
+
+        private Operand parseOperand() {
+            Token token = peek();
+            if (acceptSymbol("(")) {
+                Operand operand = parseOperand();
+                expectSymbol(")");
+                return operand;
+            }
+            if (token.isKeyword("CAST")) {
+                return parseCast();
+            }
+            switch (token.type) {
+                case STRING:
+                    return literal(TextNode.valueOf(take().text));
+                case NUMBER:
+                    return literal(DecimalNode.valueOf(parseNumber(take())));
+                case WORD:
+                    if (token.isKeyword("TRUE") || token.isKeyword("FALSE")) {
+                        return literal(BooleanNode.valueOf(Boolean.parseBoolean(take().text)));
+                    }
+                    if (token.isKeyword("NULL")) {
+                        take();
+                        return literal(NullNode.getInstance());
+                    }
+                    return parsePath();
+                case QUOTED_NAME:
+                    return parsePath();
+                default:
+                    throw unexpected(token);
+            }
+        }
+
+        private Operand parseCast() {
+            take();
+            expectSymbol("(");
+            Operand operand = parseOperand();
+            expectKeyword("AS");
+            Token typeName = take();
+            CastType type = castTypeOf(typeName);
+            expectSymbol(")");
+            return record -> type.convert(operand.valueIn(record));
+        }
+
+        private Operand parsePath() {
+            List<Token> names = new ArrayList<>();
+            Token first = take();
+            if (isReserved(first)) {
+                throw unexpected(first);
+            }
+            names.add(first);
+            while (acceptSymbol(".")) {
+                names.add(parseNameToken());
+            }
+            if (isAlias(first) && names.size() > 1) {
+                names.remove(0);
+            }
+            List<String> steps = new ArrayList<>(names.size());
+            int[] positions = new int[names.size()];
+            for (int index = 0; index < names.size(); index++) {
+                steps.add(names.get(index).text);
+                positions[index] = positionOf(names.get(index));
+            }
+            return new Path(steps, positions);
+        }
+
+        /**
+         * The position a name such as {@code _2} refers to, parsed once here rather than for every record.
+         */
+        private static int positionOf(Token name) {
+            if (!POSITIONAL_COLUMN.matcher(name.text).matches()) {
+                return NOT_POSITIONAL;
+            }
+            try {
+                return Integer.parseInt(name.text.substring(1));
+            } catch (NumberFormatException e) {
+                throw unexpected(name);
+            }
+        }
+
+        private boolean isAlias(Token token) {
+            return alias != null && alias.equalsIgnoreCase(token.text) || token.isKeyword("S3Object");
+        }
+
+        private String parseName() {
+            return parseNameToken().text;
+        }
+
+        private Token parseNameToken() {
+            Token token = take();
+            if (token.type != TokenType.WORD && token.type != TokenType.QUOTED_NAME) {
+                throw unexpected(token);
+            }
+            return token;
+        }
+
+        private static BigDecimal parseNumber(Token token) {
+            try {
+                return new BigDecimal(token.text);
+            } catch (NumberFormatException e) {
+                throw unexpected(token);
+            }
+        }
+
+        private static Operand literal(JsonNode value) {
+            return record -> value;
+        }
+
+        private CastType castTypeOf(Token token) {
+            if (token.type == TokenType.WORD) {
+                for (CastType type : CastType.values()) {
+                    if (type.name().equalsIgnoreCase(token.text)) {
+                        return type;
+                    }
+                }
+            }
+            throw unexpected(token);
+        }
+
+        private static boolean isReserved(Token token) {
+            for (String word : RESERVED_WORDS) {
+                if (token.isKeyword(word)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Token peek() {
+            return tokens.get(next);
+        }
+
+        private Token take() {
+            Token token = tokens.get(next);
+            if (token.type != TokenType.END) {
+                next++;
+            }
+            return token;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (peek().isKeyword(keyword)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptSymbol(String symbol) {
+            if (peek().isSymbol(symbol)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expectKeyword(String keyword) {
+            if (!acceptKeyword(keyword)) {
+                throw unexpected(peek());
+            }
+        }
+
+        private void expectSymbol(String symbol) {
+            if (!acceptSymbol(symbol)) {
+                throw unexpected(peek());
+            }
+        }
+
+        private static RuntimeException unexpected(Token token) {
+            String text = token.type == TokenType.END ? "end of expression" : token.text;
+            return S3Errors.unexpectedToken(text, token.position);
+        }
+
+        private static List<Token> tokenize(String expression) {
+            List<Token> tokens = new ArrayList<>();
+            int position = 0;
+            while (position < expression.length()) {
+                char character = expression.charAt(position);
+                if (Character.isWhitespace(character)) {
+                    position++;
+                } else if (character == '\'' || character == '"') {
+                    position = quoted(expression, position, tokens);
+                } else if (Character.isDigit(character) || character == '-' && isDigitAt(expression, position + 1)) {
+                    int end = position + 1;
+                    while (end < expression.length()
+                           && (Character.isDigit(expression.charAt(end)) || expression.charAt(end) == '.')) {
+                        end++;
+                    }
+                    tokens.add(new Token(TokenType.NUMBER, expression.substring(position, end), position));
+                    position = end;
+                } else if (Character.isLetter(character) || character == '_') {
+                    int end = position + 1;
+                    while (end < expression.length()
+                           && (Character.isLetterOrDigit(expression.charAt(end)) || expression.charAt(end) == '_')) {
+                        end++;
+                    }
+                    tokens.add(new Token(TokenType.WORD, expression.substring(position, end), position));
+                    position = end;
+                } else if (SYMBOL_CHARACTERS.indexOf(character) >= 0) {
+                    String symbol = twoCharacterSymbol(expression, position);
+                    tokens.add(new Token(TokenType.SYMBOL, symbol, position));
+                    position += symbol.length();
+                } else {
+                    throw S3Errors.unexpectedToken(String.valueOf(character), position);
+                }
+            }
+            tokens.add(new Token(TokenType.END, "", expression.length()));
+            return tokens;
+        }
+
+        private static int quoted(String expression, int start, List<Token> tokens) {
+            char quote = expression.charAt(start);
+            StringBuilder text = new StringBuilder();
+            int position = start + 1;
+            while (position < expression.length()) {
+                char character = expression.charAt(position++);
+                if (character != quote) {
+                    text.append(character);
+                } else if (position < expression.length() && expression.charAt(position) == quote) {
+                    text.append(quote);
+                    position++;
+                } else {
+                    TokenType type = quote == '\'' ? TokenType.STRING : TokenType.QUOTED_NAME;
+                    tokens.add(new Token(type, text.toString(), start));
+                    return position;
+                }
+            }
+            throw S3Errors.unexpectedToken(expression.substring(start), start);
+        }
+
+        private static boolean isDigitAt(String expression, int position) {
+            return position < expression.length() && Character.isDigit(expression.charAt(position));
+        }
+
+        private static String twoCharacterSymbol(String expression, int position) {
+            String pair = position + 1 < expression.length() ? expression.substring(position, position + 2) : "";
+            return "!=".equals(pair) || "<>".equals(pair) || "<=".equals(pair) || ">=".equals(pair)
+                       ? pair
+                       : expression.substring(position, position + 1);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package no.unit.nva.stubs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import no.unit.nva.stubs.ObjectStore.Versioning;
+
+/**
+ * Writes a {@link FakeS3Snapshot} to a single file and maps it back. The file starts with a header and an index of the
+ * buckets, keys and versions, followed by the content of all objects back to back. Content shared by several versions
+ * or keys, such as copies and deduplicated objects, is written once.
+ *
+ * <p>Reading a snapshot file parses only the index. The content is memory-mapped read-only, in regions of at most
+ * {@link FileRegionContent#MAX_REGION_SIZE} bytes, and objects are views of the mapping, so the operating system pages
+ * content in as it is read and shares the pages between every process that maps the same file.
+ */
+final class SnapshotFile {
+
+    private static final long MAGIC = 0x46414B4553334E50L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES;
+    private static final String PARTIAL_FILE_SUFFIX = ".partial";
+    private static final int END_OF_FILE = -1;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes the snapshot to a file, replacing any earlier file. The snapshot is written to a temporary file next to
+     * the target and moved into place, so processes reading the target never see a partly written file.
+     *
+     * @param snapshot the snapshot.
+     * @param file     the file to write.
+     */
+    public static void write(FakeS3Snapshot snapshot, Path file) {
+        Map<ObjectContent, Long> offsets = new IdentityHashMap<>();
+        List<ObjectContent> contents = new ArrayList<>();
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(index)) {
+            writeStore(out, snapshot.getDefaultBucket(), offsets, contents);
+            Map<String, StoreSnapshot> buckets = new TreeMap<>(snapshot.getBuckets());
+            out.writeInt(buckets.size());
+            for (Entry<String, StoreSnapshot> bucket : buckets.entrySet()) {
+                out.writeUTF(bucket.getKey());
+                out.writeLong(bucket.getValue().getCreationDate().toEpochMilli());
+                writeStore(out, bucket.getValue(), offsets, contents);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Path absoluteFile = file.toAbsolutePath();
+        Path partialFile = null;
+        try {
+            partialFile = Files.createTempFile(absoluteFile.getParent(), absoluteFile.getFileName().toString(),
+                                               PARTIAL_FILE_SUFFIX);
+            try (FileChannel channel = FileChannel.open(partialFile, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                                        .putLong(MAGIC)
+                                        .putInt(FORMAT_VERSION)
+                                        .putLong(index.size())
+                                        .flip();
+                writeFully(channel, header);
+                writeFully(channel, ByteBuffer.wrap(index.toByteArray()));
+                for (ObjectContent content : contents) {
+                    content.transferTo(channel);
+                }
+            }
+            Files.move(partialFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(partialFile, e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps a snapshot file. The file must not be changed or deleted while clients forked from the snapshot are used.
+     *
+     * @param file the file written by {@link #write(FakeS3Snapshot, Path)}.
+     * @return the snapshot.
+     * @throws IllegalArgumentException if the file is not a snapshot file of this format version.
+     */
+    public static FakeS3Snapshot read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            int read = 0;
+            while (header.hasRemaining() && read != END_OF_FILE) {
+                read = channel.read(header);
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getLong() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Not a snapshot file of format version " + FORMAT_VERSION + ": "
+                                                   + file);
+            }
+            long indexSize = header.getLong();
+            ByteBuffer index = channel.map(MapMode.READ_ONLY, HEADER_SIZE, indexSize);
+            List<ByteBuffer> regions = mapContent(channel, HEADER_SIZE + indexSize);
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(index));
+            ObjectStore defaultBucket = new ObjectStore();
+            readStore(in, defaultBucket, regions);
+            Map<String, StoreSnapshot> buckets = new TreeMap<>();
+            int bucketCount = in.readInt();
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                String name = in.readUTF();
+                ObjectStore store = defaultBucket.newBucketStore(Instant.ofEpochMilli(in.readLong()));
+                readStore(in, store, regions);
+                buckets.put(name, store.snapshot());
+            }
+            return new FakeS3Snapshot(defaultBucket.snapshot(), buckets);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the versioning state and the version chains of a store, oldest version first, and assigns every content
+     * not seen before the next position in the content section.
+     */
+    private static void writeStore(DataOutputStream out, StoreSnapshot store, Map<ObjectContent, Long> offsets,
+                                   List<ObjectContent> contents) throws IOException {
+        out.writeByte(store.getVersioning().ordinal());
+        out.writeInt(store.size());
+        Iterator<Entry<String, ObjectVersion>> entries = store.iterator();
+        while (entries.hasNext()) {
+            Entry<String, ObjectVersion> entry = entries.next();
+            Deque<ObjectVersion> chain = new ArrayDeque<>();
+            for (ObjectVersion version = entry.getValue(); version != null; version = version.getPrevious()) {
+                chain.push(version);
+            }
+            out.writeUTF(entry.getKey());
+            out.writeInt(chain.size());
+            for (ObjectVersion version : chain) {
+                out.writeUTF(version.getVersionId());
+                out.writeLong(version.getLastModified().getEpochSecond());
+                out.writeInt(version.getLastModified().getNano());
+                out.writeBoolean(version.isDeleteMarker());
+                if (!version.isDeleteMarker()) {
+                    out.writeUTF(version.getETag());
+                    out.writeLong(offsetOf(version.getContent(), offsets, contents));
+                    out.writeLong(version.getContent().size());
+                }
+            }
+        }
+    }
+
+    private static long offsetOf(ObjectContent content, Map<ObjectContent, Long> offsets,
+                                 List<ObjectContent> contents) {
+        return offsets.computeIfAbsent(content, newContent -> {
+            ObjectContent last = contents.isEmpty() ? null : contents.get(contents.size() - 1);
+            long next = last == null ? 0 : offsets.get(last) + last.size();
+            contents.add(newContent);
+            return next;
+        });
+    }
+
+    private static void readStore(DataInputStream in, ObjectStore store, List<ByteBuffer> regions)
+        throws IOException {
+        store.setVersioning(Versioning.values()[in.readByte()]);
+        int keyCount = in.readInt();
+        for (int key = 0; key < keyCount; key++) {
+            String name = in.readUTF();
+            int versionCount = in.readInt();
+            ObjectVersion head = null;
+            for (int version = 0; version < versionCount; version++) {
+                String versionId = in.readUTF();
+                Instant lastModified = Instant.ofEpochSecond(in.readLong(), in.readInt());
+                if (in.readBoolean()) {
+                    head = ObjectVersion.deleteMarker(versionId, lastModified, head);
+                } else {
+                    String eTag = in.readUTF();
+                    ObjectContent content = contentAt(regions, in.readLong(), in.readLong());
+                    head = ObjectVersion.of(versionId, content, eTag, lastModified, head);
+                }
+            }
+            store.putVersions(name, head);
+        }
+    }
+
+    private static List<ByteBuffer> mapContent(FileChannel channel, long contentStart) throws IOException {
+        List<ByteBuffer> regions = new ArrayList<>();
+        long fileSize = channel.size();
+        for (long start = contentStart; start < fileSize; start += FileRegionContent.MAX_REGION_SIZE) {
+            long size = Math.min(FileRegionContent.MAX_REGION_SIZE, fileSize - start);
+            regions.add(channel.map(MapMode.READ_ONLY, start, size));
+        }
+        return regions;
+    }
+
+    /**
+     * A view of the content section, made of one view per mapped region the content spans.
+     */
+    private static ObjectContent contentAt(List<ByteBuffer> regions, long offset, long size) {
+        if (size == 0) {
+            return new DirectBufferContent(ByteBuffer.allocate(0));
+        }
+        List<ObjectContent> parts = new ArrayList<>();
+        long position = offset;
+        long end = offset + size;
+        while (position < end) {
+            int region = (int) (position / FileRegionContent.MAX_REGION_SIZE);
+            int start = (int) (position % FileRegionContent.MAX_REGION_SIZE);
+            int length = (int) Math.min(end - position, FileRegionContent.MAX_REGION_SIZE - start);
+            ByteBuffer view = regions.get(region).duplicate();
+            view.position(start).limit(start + length);
+            parts.add(new DirectBufferContent(view.slice()));
+            position += length;
+        }
+        return parts.size() == 1 ? parts.get(0) : new CompositeContent(parts);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void deleteQuietly(Path file, IOException failure) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+}
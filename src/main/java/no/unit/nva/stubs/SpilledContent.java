@@ -0,0 +1,88 @@
+package no.unit.nva.stubs;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Object content stored in a region of a {@link SegmentFile}. Nothing is held in memory: every read is a positional
+ * read of the file.
+ */
+class SpilledContent implements ObjectContent {
+
+    private final SegmentFile segmentFile;
+    private final long start;
+    private final long size;
+
+    public SpilledContent(SegmentFile segmentFile, long start, long size) {
+        this.segmentFile = segmentFile;
+        this.start = start;
+        this.size = size;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream newInputStream() {
+        return new RegionInputStream();
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int length) {
+        int available = (int) Math.max(0, Math.min(length, size - offset));
+        ByteBuffer buffer = ByteBuffer.allocate(available);
+        if (available > 0) {
+            segmentFile.read(buffer, start + offset);
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    @Override
+    public ObjectContent slice(long offset, long length) {
+        long sliceStart = Math.min(offset, size);
+        return new SpilledContent(segmentFile, start + sliceStart, Math.min(length, size - sliceStart));
+    }
+
+    private class RegionInputStream extends InputStream {
+
+        private static final int END_OF_STREAM = -1;
+        private static final int UNSIGNED_BYTE_MASK = 0xFF;
+        private long position;
+
+        @Override
+        public int read() {
+            byte[] singleByte = new byte[1];
+            int read = read(singleByte, 0, 1);
+            return read == END_OF_STREAM ? END_OF_STREAM : singleByte[0] & UNSIGNED_BYTE_MASK;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= size) {
+                return END_OF_STREAM;
+            }
+            int wanted = (int) Math.min(length, size - position);
+            int read = segmentFile.read(ByteBuffer.wrap(bytes, offset, wanted), start + position);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long count) {
+            long skipped = Math.max(0, Math.min(count, size - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, size - position);
+        }
+    }
+}
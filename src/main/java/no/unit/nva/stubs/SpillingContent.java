@@ -0,0 +1,94 @@
+package no.unit.nva.stubs;
+
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+
+/**
+ * Object content that starts out in memory and can be moved to a {@link SegmentFile} by its {@link MemoryBudget}.
+ * Readers see the same bytes before and after the move; every read counts as a use for the budget's eviction order.
+ * Compressed content counts and moves at its compressed size, and is still inflated block by block after the move.
+ */
+class SpillingContent implements ObjectContent {
+
+    private final MemoryBudget budget;
+    private final MemoryBudget.Resident residentEntry;
+    private final long size;
+    private final long footprint;
+    private volatile ObjectContent current;
+    private volatile boolean resident;
+
+    public SpillingContent(MemoryBudget budget, ObjectContent content, ReferenceQueue<SpillingContent> discarded) {
+        this.budget = budget;
+        this.residentEntry = new MemoryBudget.Resident(this, discarded);
+        this.size = content.size();
+        this.footprint = bytesInMemory(content).size();
+        this.current = content;
+        this.resident = true;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream newInputStream() {
+        return use().newInputStream();
+    }
+
+    @Override
+    public ByteBuffer read(long offset, int length) {
+        return use().read(offset, length);
+    }
+
+    @Override
+    public ObjectContent slice(long offset, long length) {
+        return use().slice(offset, length);
+    }
+
+    public boolean isResident() {
+        return resident;
+    }
+
+    /**
+     * The number of bytes the content keeps in memory until it is spilled.
+     *
+     * @return the number of bytes.
+     */
+    public long getFootprint() {
+        return footprint;
+    }
+
+    MemoryBudget.Resident getResidentEntry() {
+        return residentEntry;
+    }
+
+    /**
+     * Copies the content to the segment file and drops the reference to its memory. Readers that already hold a
+     * stream or buffer keep reading from memory.
+     *
+     * @param segmentFile the file receiving the bytes.
+     */
+    public synchronized void spill(SegmentFile segmentFile) {
+        if (resident) {
+            ObjectContent bytes = bytesInMemory(current);
+            SpilledContent spilled = new SpilledContent(segmentFile, segmentFile.append(bytes), bytes.size());
+            current = current instanceof CompressedContent
+                          ? ((CompressedContent) current).withCompressedBlocks(spilled)
+                          : spilled;
+            resident = false;
+        }
+    }
+
+    private ObjectContent use() {
+        if (resident) {
+            budget.touch(this);
+        }
+        return current;
+    }
+
+    private static ObjectContent bytesInMemory(ObjectContent content) {
+        return content instanceof CompressedContent ? ((CompressedContent) content).getCompressedBlocks() : content;
+    }
+}
@@ -0,0 +1,118 @@
+package no.unit.nva.stubs;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * The stripes of the index and the versioning state of an {@link ObjectStore} at one point in time. Every key lives in
+ * exactly one stripe, so lookups go straight to the stripe of the key, while ordered iteration merges the stripes.
+ */
+final class StoreSnapshot {
+
+    private final ObjectStore origin;
+    private final List<PersistentSortedMap<String, ObjectVersion>> stripes;
+    private final ObjectStore.Versioning versioning;
+
+    StoreSnapshot(ObjectStore origin, List<PersistentSortedMap<String, ObjectVersion>> stripes,
+                  ObjectStore.Versioning versioning) {
+        this.origin = origin;
+        this.stripes = List.copyOf(stripes);
+        this.versioning = versioning;
+    }
+
+    public ObjectVersion get(String key) {
+        return stripes.get(ObjectStore.stripeOf(key)).get(key);
+    }
+
+    public int size() {
+        return stripes.stream().mapToInt(PersistentSortedMap::size).sum();
+    }
+
+    public Instant getCreationDate() {
+        return origin.getCreationDate();
+    }
+
+    public ObjectStore.Versioning getVersioning() {
+        return versioning;
+    }
+
+    /**
+     * Iterates in key order over the entries whose keys are not smaller than {@code fromKey}.
+     *
+     * @param fromKey the smallest key to visit.
+     * @return an iterator over the entries of the snapshot.
+     */
+    public Iterator<Entry<String, ObjectVersion>> tailIterator(String fromKey) {
+        return new MergingIterator(stripes, fromKey);
+    }
+
+    public Iterator<Entry<String, ObjectVersion>> iterator() {
+        return new MergingIterator(stripes, null);
+    }
+
+    /**
+     * Creates a store that starts out with the objects of this snapshot and shares their bytes with the store the
+     * snapshot was taken from.
+     *
+     * @return the new store.
+     */
+    public ObjectStore fork() {
+        return origin.fork(this);
+    }
+
+    List<PersistentSortedMap<String, ObjectVersion>> getStripes() {
+        return stripes;
+    }
+
+    private static final class MergingIterator implements Iterator<Entry<String, ObjectVersion>> {
+
+        private static final Comparator<Cursor> BY_KEY = Comparator.comparing(cursor -> cursor.head.getKey());
+        private final PriorityQueue<Cursor> cursors = new PriorityQueue<>(BY_KEY);
+
+        private MergingIterator(List<PersistentSortedMap<String, ObjectVersion>> stripes, String fromKey) {
+            for (PersistentSortedMap<String, ObjectVersion> stripe : stripes) {
+                Iterator<Entry<String, ObjectVersion>> entries = fromKey == null
+                                                                     ? stripe.iterator()
+                                                                     : stripe.tailIterator(fromKey);
+                if (entries.hasNext()) {
+                    cursors.add(new Cursor(entries));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !cursors.isEmpty();
+        }
+
+        @Override
+        public Entry<String, ObjectVersion> next() {
+            Cursor cursor = cursors.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, ObjectVersion> next = cursor.head;
+            if (cursor.entries.hasNext()) {
+                cursor.head = cursor.entries.next();
+                cursors.add(cursor);
+            }
+            return next;
+        }
+    }
+
+    private static final class Cursor {
+
+        private final Iterator<Entry<String, ObjectVersion>> entries;
+        private Entry<String, ObjectVersion> head;
+
+        private Cursor(Iterator<Entry<String, ObjectVersion>> entries) {
+            this.entries = entries;
+            this.head = entries.next();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package no.unit.nva.stubs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel over millisecond timestamps. Level {@code k} has 64 slots of {@code 64^k} milliseconds
+ * each, and a task is filed at the lowest level where its deadline shares the slot of the current time, so scheduling
+ * costs O(1) no matter how far away the deadline is. When time advances into a slot of a higher level, the tasks of
+ * that slot cascade to lower levels. Each level keeps a bitmap of its occupied slots, so advancing over an idle
+ * stretch of any length, as a virtual clock may do, only visits the slots that hold tasks.
+ *
+ * <p>The wheel is not thread-safe.
+ *
+ * @param <T> the type of the scheduled tasks.
+ */
+class TimingWheel<T> {
+
+    private static final int BITS_PER_LEVEL = 6;
+    private static final int SLOTS_PER_LEVEL = 1 << BITS_PER_LEVEL;
+    private static final int SLOT_MASK = SLOTS_PER_LEVEL - 1;
+    private static final int LEVELS = (Long.SIZE + BITS_PER_LEVEL - 1) / BITS_PER_LEVEL;
+    private static final int LAST_SLOT = SLOTS_PER_LEVEL - 1;
+    private static final long NO_OCCUPIED_SLOT = Long.MAX_VALUE;
+    private final List<List<Queue<Task<T>>>> levels;
+    private final long[] occupiedSlots;
+    private long currentTime;
+    private int size;
+
+    public TimingWheel(long startTime) {
+        this.levels = new ArrayList<>(LEVELS);
+        for (int level = 0; level < LEVELS; level++) {
+            List<Queue<Task<T>>> slots = new ArrayList<>(SLOTS_PER_LEVEL);
+            for (int slot = 0; slot < SLOTS_PER_LEVEL; slot++) {
+                slots.add(new ArrayDeque<>());
+            }
+            levels.add(slots);
+        }
+        this.occupiedSlots = new long[LEVELS];
+        this.currentTime = startTime;
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a task. A task whose deadline is not after the current time is handed to {@code expired} at once.
+     *
+     * @param deadline the time at which the task is due.
+     * @param task     the task.
+     * @param expired  receives the task if it is already due.
+     */
+    public void schedule(long deadline, T task, Consumer<T> expired) {
+        if (deadline <= currentTime) {
+            expired.accept(task);
+            return;
+        }
+        file(new Task<>(deadline, task));
+        size++;
+    }
+
+    /**
+     * Moves the current time forward, handing every task that falls due on the way to {@code expired} in deadline
+     * order.
+     *
+     * @param time    the new current time. Times before the current time are ignored.
+     * @param expired receives the tasks that fell due.
+     */
+    public void advanceTo(long time, Consumer<T> expired) {
+        long nextSlotTime = nextOccupiedSlotTime();
+        while (nextSlotTime <= time) {
+            currentTime = nextSlotTime;
+            for (int level = LEVELS - 1; level >= 0; level--) {
+                if (slotStart(level, slotIndex(level, currentTime)) == currentTime) {
+                    drainSlot(level, slotIndex(level, currentTime), expired);
+                }
+            }
+            nextSlotTime = nextOccupiedSlotTime();
+        }
+        currentTime = Math.max(currentTime, time);
+    }
+
+    private void drainSlot(int level, int slot, Consumer<T> expired) {
+        if ((occupiedSlots[level] & (1L << slot)) == 0) {
+            return;
+        }
+        Queue<Task<T>> tasks = levels.get(level).get(slot);
+        occupiedSlots[level] &= ~(1L << slot);
+        List<Task<T>> drained = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Task<T> task : drained) {
+            if (task.deadline <= currentTime) {
+                size--;
+                expired.accept(task.payload);
+            } else {
+                file(task);
+            }
+        }
+    }
+
+    private void file(Task<T> task) {
+        int level = levelOf(task.deadline);
+        int slot = slotIndex(level, task.deadline);
+        levels.get(level).get(slot).add(task);
+        occupiedSlots[level] |= 1L << slot;
+    }
+
+    /**
+     * The lowest level at which the deadline falls into a different slot than the current time.
+     */
+    private int levelOf(long deadline) {
+        int highestDifferingBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(deadline ^ currentTime);
+        return highestDifferingBit / BITS_PER_LEVEL;
+    }
+
+    /**
+     * The earliest time at which time enters an occupied slot that lies ahead of the current time.
+     */
+    private long nextOccupiedSlotTime() {
+        long next = NO_OCCUPIED_SLOT;
+        for (int level = 0; level < LEVELS; level++) {
+            int current = slotIndex(level, currentTime);
+            long ahead = current == LAST_SLOT ? 0 : occupiedSlots[level] & (-1L << (current + 1));
+            if (ahead != 0) {
+                next = Math.min(next, slotStart(level, Long.numberOfTrailingZeros(ahead)));
+            }
+        }
+        return next;
+    }
+
+    private static int slotIndex(int level, long time) {
+        return (int) ((time >>> (level * BITS_PER_LEVEL)) & SLOT_MASK);
+    }
+
+    /**
+     * The first millisecond of a slot of the level's rotation that contains the current time.
+     */
+    private long slotStart(int level, int slot) {
+        int rotationBits = (level + 1) * BITS_PER_LEVEL;
+        long rotationStart = rotationBits >= Long.SIZE ? 0 : currentTime >>> rotationBits << rotationBits;
+        return rotationStart | (long) slot << (level * BITS_PER_LEVEL);
+    }
+
+    private static final class Task<T> {
+
+        private final long deadline;
+        private final T payload;
+
+        private Task(long deadline, T payload) {
+            this.deadline = deadline;
+            this.payload = payload;
+        }
+    }
+}
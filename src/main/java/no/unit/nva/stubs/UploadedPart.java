@@ -0,0 +1,23 @@
+package no.unit.nva.stubs;
+
+/**
+ * A part of a multipart upload and the ETag it was acknowledged with.
+ */
+class UploadedPart {
+
+    private final ObjectContent content;
+    private final String eTag;
+
+    public UploadedPart(ObjectContent content, String eTag) {
+        this.content = content;
+        this.eTag = eTag;
+    }
+
+    public ObjectContent getContent() {
+        return content;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+}
@@ -0,0 +1,74 @@
+package no.unit.nva.stubs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ContentWriterTest {
+
+    public static final int SEGMENT_SIZE = 1024;
+    public static final int OBJECT_SIZE = 10 * SEGMENT_SIZE + 17;
+
+    @Test
+    public void streamOfUnknownLengthLargerThanASegmentIsStoredAsAChainOfSegments() throws IOException {
+        byte[] bytes = randomBytes(OBJECT_SIZE);
+        ContentWriter writer = new ContentWriter(new DirectMemoryArena(), ContentWriter.UNKNOWN_CONTENT_LENGTH,
+                                                 SEGMENT_SIZE);
+
+        writer.writeFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        ObjectContent content = writer.finish();
+
+        assertThat(content, is(instanceOf(CompositeContent.class)));
+        assertThat(content.size(), is(equalTo((long) OBJECT_SIZE)));
+        assertThat(content.newInputStream().readAllBytes(), is(equalTo(bytes)));
+        assertThat(writer.getETag(), is(equalTo(md5Of(bytes))));
+    }
+
+    @Test
+    public void chunksOfKnownLengthSpanningSegmentsAreReadBackAcrossSegmentBoundaries() throws IOException {
+        byte[] bytes = randomBytes(OBJECT_SIZE);
+        ContentWriter writer = new ContentWriter(new DirectMemoryArena(), OBJECT_SIZE, SEGMENT_SIZE);
+
+        for (int position = 0; position < OBJECT_SIZE; position += 1000) {
+            writer.write(ByteBuffer.wrap(bytes, position, Math.min(1000, OBJECT_SIZE - position)));
+        }
+        ObjectContent content = writer.finish();
+
+        assertThat(content.newInputStream().readAllBytes(), is(equalTo(bytes)));
+        byte[] acrossBoundary = content.slice(SEGMENT_SIZE - 10, 20).newInputStream().readAllBytes();
+        assertThat(acrossBoundary, is(equalTo(Arrays.copyOfRange(bytes, SEGMENT_SIZE - 10, SEGMENT_SIZE + 10))));
+        assertThat(writer.getETag(), is(equalTo(md5Of(bytes))));
+    }
+
+    @Test
+    public void objectsWithinASegmentStayInASingleBuffer() throws IOException {
+        byte[] bytes = randomBytes(SEGMENT_SIZE - 1);
+        ContentWriter known = new ContentWriter(new DirectMemoryArena(), bytes.length, SEGMENT_SIZE);
+        ContentWriter unknown = new ContentWriter(new DirectMemoryArena(), ContentWriter.UNKNOWN_CONTENT_LENGTH,
+                                                  SEGMENT_SIZE);
+
+        known.writeFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        unknown.writeFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        assertThat(known.finish(), is(instanceOf(DirectBufferContent.class)));
+        assertThat(unknown.finish().newInputStream().readAllBytes(), is(equalTo(bytes)));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String md5Of(byte[] bytes) {
+        return ETags.md5Of(new DirectBufferContent(ByteBuffer.wrap(bytes)));
+    }
+}
@@ -0,0 +1,431 @@
+package no.unit.nva.stubs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.model.CSVInput;
+import software.amazon.awssdk.services.s3.model.CSVOutput;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ExpressionType;
+import software.amazon.awssdk.services.s3.model.FileHeaderInfo;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.InputSerialization;
+import software.amazon.awssdk.services.s3.model.JSONInput;
+import software.amazon.awssdk.services.s3.model.JSONOutput;
+import software.amazon.awssdk.services.s3.model.JSONType;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.OutputSerialization;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.RecordsEvent;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentEventStream;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentRequest;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentResponse;
+import software.amazon.awssdk.services.s3.model.SelectObjectContentResponseHandler;
+import software.amazon.awssdk.services.s3.model.Stats;
+import software.amazon.awssdk.services.s3.model.StatsEvent;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+class FakeS3AsyncClientTest {
+
+    public static final String SOME_BUCKET = "bucket";
+    public static final String SOME_KEY = "some/path/file.txt";
+    public static final Random RANDOM = new Random();
+    public static final int MORE_THAN_ONE_CHUNK = ByteBufferPublisher.DEFAULT_CHUNK_SIZE * 3 + 1;
+    private static final Executor SAME_THREAD = Runnable::run;
+    private static final String PEOPLE_JSON_LINES =
+        "{\"name\":\"Ada\",\"age\":36,\"address\":{\"city\":\"Oslo\"}}\n"
+        + "{\"name\":\"Bo\",\"age\":25,\"address\":{\"city\":\"Bergen\"}}\n"
+        + "{\"name\":\"Cyd\",\"age\":41,\"address\":{\"city\":\"Bergen\"}}\n";
+
+    @Test
+    void putObjectMakesContentAvailableToBlockingClient() throws Exception {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        byte[] expectedContent = randomBytes(MORE_THAN_ONE_CHUNK);
+
+        asyncClient.putObject(putObjectRequest(), AsyncRequestBody.fromBytes(expectedContent)).get();
+
+        byte[] actualContent = s3Client.getObject(getObjectRequest(), ResponseTransformer.toBytes()).asByteArray();
+        assertThat(actualContent, is(equalTo(expectedContent)));
+    }
+
+    @Test
+    void getObjectReturnsContentStoredByBlockingClient() throws Exception {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        byte[] expectedContent = randomBytes(MORE_THAN_ONE_CHUNK);
+        s3Client.putObject(putObjectRequest(), RequestBody.fromBytes(expectedContent));
+
+        ResponseBytes<GetObjectResponse> response =
+            asyncClient.getObject(getObjectRequest(), AsyncResponseTransformer.toBytes()).get();
+
+        assertThat(response.asByteArray(), is(equalTo(expectedContent)));
+        assertThat(response.response().contentLength(), is(equalTo((long) expectedContent.length)));
+    }
+
+    @Test
+    void getObjectPublishesChunksOnlyWhenSubscriberSignalsDemand() {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client, SAME_THREAD);
+        s3Client.putObject(putObjectRequest(), RequestBody.fromBytes(randomBytes(MORE_THAN_ONE_CHUNK)));
+        PublisherCapturingTransformer transformer = new PublisherCapturingTransformer();
+        asyncClient.getObject(getObjectRequest(), transformer);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        transformer.publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.chunks.size(), is(equalTo(1)));
+        assertThat(subscriber.completed, is(false));
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertThat(subscriber.chunks.size(), is(equalTo(4)));
+        assertThat(subscriber.completed, is(true));
+    }
+
+    @Test
+    void getObjectSignalsNonPositiveDemandAsErrorFromTheSerializedDrain() {
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        ObjectContent content = new DirectBufferContent(ByteBuffer.wrap(randomBytes(MORE_THAN_ONE_CHUNK)));
+        ByteBufferPublisher publisher = new ByteBufferPublisher(content, tasks::add);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        tasks.poll().run();
+
+        subscriber.subscription.request(1);
+        subscriber.subscription.request(0);
+
+        assertThat(subscriber.error, is(nullValue()));
+        assertThat(tasks.size(), is(equalTo(1)));
+        tasks.poll().run();
+        assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+        assertThat(subscriber.completed, is(false));
+    }
+
+    @Test
+    void getObjectCompletesExceptionallyWhenKeyDoesNotExist() {
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient();
+        CompletableFuture<ResponseBytes<GetObjectResponse>> response =
+            asyncClient.getObject(getObjectRequest(), AsyncResponseTransformer.toBytes());
+
+        ExecutionException exception = assertThrows(ExecutionException.class, response::get);
+        assertThat(exception.getCause(), is(instanceOf(NoSuchKeyException.class)));
+    }
+
+    @Test
+    void putObjectCompletesFutureOnSuppliedExecutor() throws Exception {
+        AtomicInteger executedTasks = new AtomicInteger();
+        Executor countingExecutor = task -> {
+            executedTasks.incrementAndGet();
+            task.run();
+        };
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(new FakeS3Client(), countingExecutor);
+
+        asyncClient.putObject(putObjectRequest(), AsyncRequestBody.fromString("content")).get();
+
+        assertThat(executedTasks.get(), is(equalTo(1)));
+    }
+
+    @Test
+    void multipartUploadMakesPartsPublishedAsynchronouslyReadableAsOneObject() throws Exception {
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient();
+        String uploadId = asyncClient.createMultipartUpload(
+            CreateMultipartUploadRequest.builder().bucket(SOME_BUCKET).key(SOME_KEY).build()).get().uploadId();
+        String eTag = asyncClient.uploadPart(uploadPartRequest(uploadId), AsyncRequestBody.fromString("content"))
+                          .get()
+                          .eTag();
+        CompletedMultipartUpload parts =
+            CompletedMultipartUpload.builder().parts(CompletedPart.builder().partNumber(1).eTag(eTag).build()).build();
+
+        asyncClient.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                                                .bucket(SOME_BUCKET)
+                                                .key(SOME_KEY)
+                                                .uploadId(uploadId)
+                                                .multipartUpload(parts)
+                                                .build()).get();
+
+        ResponseBytes<GetObjectResponse> response =
+            asyncClient.getObject(getObjectRequest(), AsyncResponseTransformer.toBytes()).get();
+        assertThat(response.asUtf8String(), is(equalTo("content")));
+    }
+
+    @Test
+    void getObjectDelaysResponseByResponseTimeWithoutBlockingCaller() throws Exception {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        s3Client.putObject(putObjectRequest(), RequestBody.fromString("content"));
+        s3Client.withLatencyModel(LatencyModel.builder().withBaseLatency(Duration.ofMillis(200)).build());
+
+        CompletableFuture<ResponseBytes<GetObjectResponse>> response =
+            asyncClient.getObject(getObjectRequest(), AsyncResponseTransformer.toBytes());
+
+        assertThat(response.isDone(), is(false));
+        assertThat(response.get().asUtf8String(), is(equalTo("content")));
+    }
+
+    @Test
+    void selectObjectContentReturnsSelectedFieldsOfMatchingJsonLines() throws Exception {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        s3Client.putObject(putObjectRequest(), RequestBody.fromString(PEOPLE_JSON_LINES));
+        String expression = "SELECT s.name, s.address.city AS town FROM S3Object s "
+                            + "WHERE s.age >= 30 AND NOT s.address.city = 'Bergen'";
+        SelectionCollector collector = new SelectionCollector();
+
+        asyncClient.selectObjectContent(jsonSelectRequest(expression), collector).get();
+
+        assertThat(collector.records.toString(), is(equalTo("{\"name\":\"Ada\",\"town\":\"Oslo\"}\n")));
+        assertThat(collector.completed, is(true));
+    }
+
+    @Test
+    void selectObjectContentFiltersCsvRecordsByHeaderColumns() throws Exception {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        String csv = "name,age,city\nAda,36,Oslo\n\"Berg, Bo\",25,Bergen\nCyd,41,\"Trondheim\"\n";
+        s3Client.putObject(putObjectRequest(), RequestBody.fromString(csv));
+        SelectObjectContentRequest request = SelectObjectContentRequest.builder()
+            .bucket(SOME_BUCKET)
+            .key(SOME_KEY)
+            .expressionType(ExpressionType.SQL)
+            .expression("SELECT s.name, s._2 FROM S3Object s WHERE CAST(s.age AS INT) > 40 OR s.name LIKE 'B%'")
+            .inputSerialization(InputSerialization.builder()
+                                    .csv(CSVInput.builder().fileHeaderInfo(FileHeaderInfo.USE).build())
+                                    .build())
+            .outputSerialization(OutputSerialization.builder().csv(CSVOutput.builder().build()).build())
+            .build();
+        SelectionCollector collector = new SelectionCollector();
+
+        asyncClient.selectObjectContent(request, collector).get();
+
+        assertThat(collector.records.toString(), is(equalTo("\"Berg, Bo\",25\nCyd,41\n")));
+    }
+
+    @Test
+    void selectObjectContentReportsBytesScannedAndReturned() throws Exception {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        s3Client.putObject(putObjectRequest(), RequestBody.fromString(PEOPLE_JSON_LINES));
+        SelectionCollector collector = new SelectionCollector();
+
+        asyncClient.selectObjectContent(jsonSelectRequest("SELECT * FROM S3Object WHERE age < 30"), collector).get();
+
+        int returnedBytes = collector.records.toString().getBytes(StandardCharsets.UTF_8).length;
+        assertThat(collector.stats.bytesScanned(), is(equalTo((long) PEOPLE_JSON_LINES.length())));
+        assertThat(collector.stats.bytesReturned(), is(equalTo((long) returnedBytes)));
+        assertThat(s3Client.getMetrics().snapshot().getStatistics(S3Operation.SELECT_OBJECT_CONTENT).getBytesOut(),
+                   is(equalTo((long) returnedBytes)));
+    }
+
+    @Test
+    void selectObjectContentStopsScanningWhenLimitIsReached() throws Exception {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        String manyRecords = PEOPLE_JSON_LINES.repeat(1000);
+        s3Client.putObject(putObjectRequest(), RequestBody.fromString(manyRecords));
+        SelectionCollector collector = new SelectionCollector();
+
+        asyncClient.selectObjectContent(jsonSelectRequest("SELECT s.name FROM S3Object s LIMIT 2"), collector).get();
+
+        assertThat(collector.records.toString(), is(equalTo("{\"name\":\"Ada\"}\n{\"name\":\"Bo\"}\n")));
+        assertThat(collector.stats.bytesScanned() < manyRecords.length(), is(true));
+    }
+
+    @Test
+    void selectObjectContentFailsWhenExpressionIsNotSupported() {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        s3Client.putObject(putObjectRequest(), RequestBody.fromString(PEOPLE_JSON_LINES));
+        SelectionCollector collector = new SelectionCollector();
+
+        CompletableFuture<Void> result =
+            asyncClient.selectObjectContent(jsonSelectRequest("SELECT COUNT(*) FROM S3Object"), collector);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+        S3Exception cause = (S3Exception) exception.getCause();
+        assertThat(cause.awsErrorDetails().errorCode(), is(equalTo("ParseUnexpectedToken")));
+        assertThat(collector.error, is(equalTo(cause)));
+    }
+
+    @Test
+    void selectObjectContentFailsWhenPositionalColumnIsTooLargeForAnInt() {
+        FakeS3Client s3Client = new FakeS3Client();
+        FakeS3AsyncClient asyncClient = new FakeS3AsyncClient(s3Client);
+        s3Client.putObject(putObjectRequest(), RequestBody.fromString(PEOPLE_JSON_LINES));
+        SelectionCollector collector = new SelectionCollector();
+
+        CompletableFuture<Void> result =
+            asyncClient.selectObjectContent(jsonSelectRequest("SELECT s._99999999999 FROM S3Object s"), collector);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+        S3Exception cause = (S3Exception) exception.getCause();
+        assertThat(cause.awsErrorDetails().errorCode(), is(equalTo("ParseUnexpectedToken")));
+        assertThat(collector.error, is(equalTo(cause)));
+    }
+
+    private static UploadPartRequest uploadPartRequest(String uploadId) {
+        return UploadPartRequest.builder().bucket(SOME_BUCKET).key(SOME_KEY).uploadId(uploadId).partNumber(1).build();
+    }
+
+    private static SelectObjectContentRequest jsonSelectRequest(String expression) {
+        return SelectObjectContentRequest.builder()
+                   .bucket(SOME_BUCKET)
+                   .key(SOME_KEY)
+                   .expressionType(ExpressionType.SQL)
+                   .expression(expression)
+                   .inputSerialization(InputSerialization.builder()
+                                           .json(JSONInput.builder().type(JSONType.LINES).build())
+                                           .build())
+                   .outputSerialization(OutputSerialization.builder().json(JSONOutput.builder().build()).build())
+                   .build();
+    }
+
+    private static GetObjectRequest getObjectRequest() {
+        return GetObjectRequest.builder().bucket(SOME_BUCKET).key(SOME_KEY).build();
+    }
+
+    private static PutObjectRequest putObjectRequest() {
+        return PutObjectRequest.builder().bucket(SOME_BUCKET).key(SOME_KEY).build();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class PublisherCapturingTransformer
+        implements AsyncResponseTransformer<GetObjectResponse, Void> {
+
+        private SdkPublisher<ByteBuffer> publisher;
+
+        @Override
+        public CompletableFuture<Void> prepare() {
+            return new CompletableFuture<>();
+        }
+
+        @Override
+        public void onResponse(GetObjectResponse response) {
+        }
+
+        @Override
+        public void onStream(SdkPublisher<ByteBuffer> publisher) {
+            this.publisher = publisher;
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable error) {
+        }
+    }
+
+    private static class RecordingSubscriber implements Subscriber<ByteBuffer> {
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            chunks.add(chunk);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static class SelectionCollector implements SelectObjectContentResponseHandler {
+
+        private final StringBuilder records = new StringBuilder();
+        private Stats stats;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void responseReceived(SelectObjectContentResponse response) {
+        }
+
+        @Override
+        public void onEventStream(SdkPublisher<SelectObjectContentEventStream> publisher) {
+            publisher.subscribe(new Subscriber<>() {
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(SelectObjectContentEventStream event) {
+                    event.accept(new Visitor() {
+                        @Override
+                        public void visitRecords(RecordsEvent event) {
+                            records.append(event.payload().asUtf8String());
+                        }
+
+                        @Override
+                        public void visitStats(StatsEvent event) {
+                            stats = event.details();
+                        }
+                    });
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
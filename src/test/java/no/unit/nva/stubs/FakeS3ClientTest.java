@@ -1,54 +1,1763 @@
 package no.unit.nva.stubs;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.hamcrest.collection.IsEmptyCollection.empty;
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.javafaker.Faker;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import no.unit.nva.testutils.IoUtils;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Bucket;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.BucketVersioningStatus;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteBucketRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutBucketVersioningRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.VersioningConfiguration;
 
 class FakeS3ClientTest {
 
     public static final Faker FAKER = Faker.instance();
     public static final URI SOME_URI = URI.create("s3://bucket/some/path/file.txt");
+    public static final Random RANDOM = new Random();
+    public static final int LARGER_THAN_ARENA_ALLOCATION = DirectMemoryArena.DEFAULT_SEGMENT_SIZE + 1;
+    public static final int NUMBER_OF_PARTS = 8;
+
+    @TempDir
+    public Path temporaryFolder;
+
+    @Test
+    public void putObjectMakesContentAvailableForGetting() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+
+        String expectedContent = randomString();
+
+        putObject(fakeS3Client, SOME_URI, expectedContent);
+        ResponseBytes<GetObjectResponse> result = getObject(fakeS3Client, SOME_URI);
+        String actualContent = result.asUtf8String();
+        assertThat(actualContent, is(equalTo(expectedContent)));
+    }
+
+    @Test
+    public void putObjectDoesNotAlterInputDataToFakeS3Client() {
+        Map<String, InputStream> inputData = new ConcurrentHashMap<>();
+        inputData.put(randomString(), IoUtils.stringToStream(randomString()));
+        ConcurrentHashMap<String, InputStream> inputDataCopy = new ConcurrentHashMap<>(inputData);
+        FakeS3Client fakeS3Client = new FakeS3Client(inputData);
+        putObject(fakeS3Client, SOME_URI, randomString());
+        assertThat(inputData, is(equalTo(inputDataCopy)));
+    }
+
+    @Test
+    public void getObjectReturnsSameContentWhenObjectIsReadRepeatedly() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String expectedContent = randomString();
+        putObject(fakeS3Client, SOME_URI, expectedContent);
+
+        assertThat(getObject(fakeS3Client, SOME_URI).asUtf8String(), is(equalTo(expectedContent)));
+        assertThat(getObject(fakeS3Client, SOME_URI).asUtf8String(), is(equalTo(expectedContent)));
+    }
+
+    @Test
+    public void getObjectReturnsContentSuppliedInConstructorMoreThanOnce() {
+        String expectedContent = randomString();
+        FakeS3Client fakeS3Client =
+            new FakeS3Client(Map.of(SOME_URI.getPath(), IoUtils.stringToStream(expectedContent)));
+
+        assertThat(getObject(fakeS3Client, SOME_URI).asUtf8String(), is(equalTo(expectedContent)));
+        assertThat(getObject(fakeS3Client, SOME_URI).asUtf8String(), is(equalTo(expectedContent)));
+    }
+
+    @Test
+    public void putObjectStoresObjectsLargerThanAnArenaSegment() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        byte[] expectedContent = randomBytes(LARGER_THAN_ARENA_ALLOCATION);
+        putObject(fakeS3Client, SOME_URI, expectedContent);
+
+        assertThat(getObject(fakeS3Client, SOME_URI).asByteArray(), is(equalTo(expectedContent)));
+    }
+
+    @Test
+    public void fakeS3ClientStoresStreamsOfUnknownLengthSuppliedInConstructor() {
+        byte[] expectedContent = randomBytes(LARGER_THAN_ARENA_ALLOCATION);
+        FakeS3Client fakeS3Client =
+            new FakeS3Client(Map.of(SOME_URI.getPath(), new ByteArrayInputStream(expectedContent)));
+
+        assertThat(getObject(fakeS3Client, SOME_URI).asByteArray(), is(equalTo(expectedContent)));
+    }
+
+    @Test
+    public void listObjectsV2ReturnsAllKeysWithPrefixInPagesOfMaxKeys() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        List<String> expectedKeys = keysWithPrefix("prefix/", 25);
+        putObjects(fakeS3Client, expectedKeys);
+        putObjects(fakeS3Client, keysWithPrefix("other/", 5));
+
+        List<ListObjectsV2Response> pages = listAllPages(fakeS3Client, "prefix/", null, 10);
+
+        assertThat(pages, hasSize(3));
+        assertThat(keysOf(pages), is(equalTo(expectedKeys)));
+        assertThat(pages.get(2).isTruncated(), is(false));
+    }
+
+    @Test
+    public void listObjectsV2RollsUpKeysContainingTheDelimiterIntoCommonPrefixes() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObjects(fakeS3Client, List.of("a/1", "a/2", "b/c/1", "c"));
+
+        ListObjectsV2Response response = listAllPages(fakeS3Client, null, "/", FakeS3Client.DEFAULT_MAX_KEYS).get(0);
+
+        assertThat(keysOf(List.of(response)), contains("c"));
+        assertThat(commonPrefixesOf(List.of(response)), contains("a/", "b/"));
+        assertThat(response.keyCount(), is(equalTo(3)));
+    }
+
+    @Test
+    public void listObjectsV2CountsEachCommonPrefixAsOneEntryWhenPaginating() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObjects(fakeS3Client, List.of("a/1", "a/2", "b/c/1", "c"));
+
+        List<ListObjectsV2Response> pages = listAllPages(fakeS3Client, null, "/", 1);
+
+        assertThat(pages, hasSize(3));
+        assertThat(commonPrefixesOf(pages), contains("a/", "b/"));
+        assertThat(keysOf(pages), contains("c"));
+    }
+
+    @Test
+    public void listObjectsV2ThrowsInvalidArgumentWhenContinuationTokenIsMalformed() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObjects(fakeS3Client, List.of("a/1", "a/2"));
+        ListObjectsV2Request request = ListObjectsV2Request.builder().continuationToken("not a token!").build();
+
+        S3Exception exception = assertThrows(S3Exception.class, () -> fakeS3Client.listObjectsV2(request));
+
+        assertThat(exception.statusCode(), is(equalTo(S3Errors.BAD_REQUEST)));
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("InvalidArgument")));
+    }
+
+    @Test
+    public void listObjectsReturnsKeysWithPrefixAfterMarker() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObjects(fakeS3Client, List.of("a/1", "a/2", "a/3", "b/1"));
+        ListObjectsRequest request = ListObjectsRequest.builder().prefix("a/").marker("a/1").build();
+
+        ListObjectsResponse response = fakeS3Client.listObjects(request);
+
+        List<String> keys = response.contents().stream().map(S3Object::key).collect(Collectors.toList());
+        assertThat(keys, contains("a/2", "a/3"));
+        assertThat(response.isTruncated(), is(false));
+    }
+
+    @Test
+    public void getObjectReturnsOnlyTheRequestedBytesWhenRangeIsClosed() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, "0123456789");
+
+        ResponseBytes<GetObjectResponse> result = getObject(fakeS3Client, SOME_URI, "bytes=2-5");
+
+        assertThat(result.asUtf8String(), is(equalTo("2345")));
+        assertThat(result.response().contentLength(), is(equalTo(4L)));
+        assertThat(result.response().contentRange(), is(equalTo("bytes 2-5/10")));
+    }
+
+    @Test
+    public void getObjectReturnsBytesUntilTheEndWhenRangeIsOpenEnded() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, "0123456789");
+
+        ResponseBytes<GetObjectResponse> result = getObject(fakeS3Client, SOME_URI, "bytes=7-");
+
+        assertThat(result.asUtf8String(), is(equalTo("789")));
+        assertThat(result.response().contentRange(), is(equalTo("bytes 7-9/10")));
+    }
+
+    @Test
+    public void getObjectReturnsTheLastBytesWhenRangeIsASuffix() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, "0123456789");
+
+        ResponseBytes<GetObjectResponse> result = getObject(fakeS3Client, SOME_URI, "bytes=-4");
+
+        assertThat(result.asUtf8String(), is(equalTo("6789")));
+        assertThat(result.response().contentRange(), is(equalTo("bytes 6-9/10")));
+    }
+
+    @Test
+    public void getObjectTruncatesRangeExtendingBeyondTheEndOfTheObject() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, "0123456789");
+
+        ResponseBytes<GetObjectResponse> result = getObject(fakeS3Client, SOME_URI, "bytes=8-100");
+
+        assertThat(result.asUtf8String(), is(equalTo("89")));
+    }
+
+    @Test
+    public void getObjectReturnsTheWholeObjectWhenSuffixIsTooLargeForALong() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, "0123456789");
+
+        ResponseBytes<GetObjectResponse> result = getObject(fakeS3Client, SOME_URI, "bytes=-99999999999999999999");
+
+        assertThat(result.asUtf8String(), is(equalTo("0123456789")));
+        assertThat(result.response().contentRange(), is(equalTo("bytes 0-9/10")));
+    }
+
+    @Test
+    public void getObjectReturnsTheWholeObjectWhenRangeIsMalformed() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, "0123456789");
+
+        ResponseBytes<GetObjectResponse> result = getObject(fakeS3Client, SOME_URI, "bytes=5-2");
+
+        assertThat(result.asUtf8String(), is(equalTo("0123456789")));
+        assertThat(result.response().contentRange(), is(nullValue()));
+    }
+
+    @Test
+    public void getObjectThrowsInvalidRangeWhenFirstByteIsTooLargeForALong() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, "0123456789");
+
+        S3Exception exception = assertThrows(S3Exception.class,
+                                             () -> getObject(fakeS3Client, SOME_URI, "bytes=99999999999999999999-"));
+
+        assertThat(exception.statusCode(), is(equalTo(416)));
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("InvalidRange")));
+    }
+
+    @Test
+    public void getObjectThrowsInvalidRangeWhenRangeStartsAfterTheEndOfTheObject() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, "0123456789");
+
+        S3Exception exception = assertThrows(S3Exception.class, () -> getObject(fakeS3Client, SOME_URI, "bytes=10-"));
+
+        assertThat(exception.statusCode(), is(equalTo(416)));
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("InvalidRange")));
+    }
+
+    @Test
+    public void completeMultipartUploadMakesPartsUploadedConcurrentlyReadableAsOneObject() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String uploadId = createMultipartUpload(fakeS3Client);
+        List<byte[]> parts = IntStream.range(0, NUMBER_OF_PARTS)
+                                 .mapToObj(index -> randomBytes(LARGER_THAN_ARENA_ALLOCATION / NUMBER_OF_PARTS))
+                                 .collect(Collectors.toList());
+
+        List<CompletedPart> completedParts = IntStream.range(0, NUMBER_OF_PARTS)
+                                                 .parallel()
+                                                 .mapToObj(index -> uploadPart(fakeS3Client, uploadId, index + 1,
+                                                                               parts.get(index)))
+                                                 .collect(Collectors.toList());
+        completeMultipartUpload(fakeS3Client, uploadId, completedParts);
+
+        byte[] expectedContent = concatenate(parts);
+        assertThat(getObject(fakeS3Client, SOME_URI).asByteArray(), is(equalTo(expectedContent)));
+    }
+
+    @Test
+    public void getObjectReturnsRangeSpanningSeveralPartsOfMultipartObject() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String uploadId = createMultipartUpload(fakeS3Client);
+        CompletedPart first = uploadPart(fakeS3Client, uploadId, 1, "0123".getBytes(StandardCharsets.UTF_8));
+        CompletedPart second = uploadPart(fakeS3Client, uploadId, 2, "4567".getBytes(StandardCharsets.UTF_8));
+        CompletedPart third = uploadPart(fakeS3Client, uploadId, 3, "89".getBytes(StandardCharsets.UTF_8));
+        completeMultipartUpload(fakeS3Client, uploadId, List.of(first, second, third));
+
+        assertThat(getObject(fakeS3Client, SOME_URI, "bytes=2-8").asUtf8String(), is(equalTo("2345678")));
+    }
+
+    @Test
+    public void completeMultipartUploadThrowsInvalidPartWhenETagDoesNotMatch() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String uploadId = createMultipartUpload(fakeS3Client);
+        uploadPart(fakeS3Client, uploadId, 1, randomBytes(10));
+        List<CompletedPart> wrongETag = List.of(CompletedPart.builder().partNumber(1).eTag("\"wrong\"").build());
+
+        S3Exception exception =
+            assertThrows(S3Exception.class, () -> completeMultipartUpload(fakeS3Client, uploadId, wrongETag));
+
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("InvalidPart")));
+    }
+
+    @Test
+    public void completeMultipartUploadThrowsInvalidPartOrderWhenPartsAreNotAscending() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String uploadId = createMultipartUpload(fakeS3Client);
+        CompletedPart first = uploadPart(fakeS3Client, uploadId, 1, randomBytes(10));
+        CompletedPart second = uploadPart(fakeS3Client, uploadId, 2, randomBytes(10));
+
+        S3Exception exception = assertThrows(S3Exception.class,
+                                             () -> completeMultipartUpload(fakeS3Client, uploadId,
+                                                                           List.of(second, first)));
+
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("InvalidPartOrder")));
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(ints = {0, -1, MultipartUpload.MAX_PART_NUMBER + 1})
+    public void uploadPartThrowsInvalidArgumentWhenPartNumberIsOutOfRange(Integer partNumber) {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String uploadId = createMultipartUpload(fakeS3Client);
+
+        S3Exception exception = assertThrows(S3Exception.class,
+                                             () -> uploadPart(fakeS3Client, uploadId, partNumber, randomBytes(10)));
+
+        assertThat(exception.statusCode(), is(equalTo(S3Errors.BAD_REQUEST)));
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("InvalidArgument")));
+    }
+
+    @Test
+    public void uploadPartThrowsNoSuchUploadWhenUploadHasBeenAborted() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String uploadId = createMultipartUpload(fakeS3Client);
+        fakeS3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                                              .bucket(SOME_URI.getHost())
+                                              .key(SOME_URI.getPath())
+                                              .uploadId(uploadId)
+                                              .build());
+
+        assertThrows(NoSuchUploadException.class, () -> uploadPart(fakeS3Client, uploadId, 1, randomBytes(10)));
+    }
+
+    @Test
+    public void getObjectThrowsSlowDownWhenPrefixExceedsItsReadRate() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, randomString());
+        fakeS3Client.withLatencyModel(LatencyModel.builder()
+                                          .withReadRequestsPerSecond(2)
+                                          .withClock(Clock.fixed(Instant.now(), ZoneOffset.UTC))
+                                          .build());
+        getObject(fakeS3Client, SOME_URI);
+        getObject(fakeS3Client, SOME_URI);
+
+        S3Exception exception = assertThrows(S3Exception.class, () -> getObject(fakeS3Client, SOME_URI));
+
+        assertThat(exception.statusCode(), is(equalTo(503)));
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("SlowDown")));
+    }
+
+    @Test
+    public void putObjectAdmitsRequestsToOtherPrefixesWhenOnePrefixIsThrottled() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        fakeS3Client.withLatencyModel(LatencyModel.builder()
+                                          .withWriteRequestsPerSecond(1)
+                                          .withClock(Clock.fixed(Instant.now(), ZoneOffset.UTC))
+                                          .build());
+        putObject(fakeS3Client, "first/file.txt", randomBytes(10));
+
+        assertThrows(S3Exception.class, () -> putObject(fakeS3Client, "first/other.txt", randomBytes(10)));
+        putObject(fakeS3Client, "second/file.txt", randomBytes(10));
+
+        assertThat(keysOf(listAllPages(fakeS3Client, "second/", null, 10)), contains("second/file.txt"));
+    }
+
+    @Test
+    public void putObjectTakesBaseLatencyPlusTransferTime() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        fakeS3Client.withLatencyModel(LatencyModel.builder()
+                                          .withBaseLatency(Duration.ofMillis(50))
+                                          .withBytesPerSecond(10_000)
+                                          .build());
+        long start = System.nanoTime();
+
+        putObject(fakeS3Client, SOME_URI, randomBytes(500));
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        assertThat(elapsed, is(greaterThanOrEqualTo(Duration.ofMillis(100))));
+    }
+
+    @Test
+    public void metricsCountCallsAndBytesPerOperationAndKeyPrefix() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        URI first = URI.create("s3://bucket/input/first.txt");
+        URI second = URI.create("s3://bucket/input/second.txt");
+        putObject(fakeS3Client, first, randomBytes(10));
+        putObject(fakeS3Client, second, randomBytes(20));
+        putObject(fakeS3Client, URI.create("s3://bucket/output/result.txt"), randomBytes(30));
+        getObject(fakeS3Client, first);
+        getObject(fakeS3Client, second, "bytes=0-4");
+
+        S3MetricsSnapshot snapshot = fakeS3Client.getMetrics().snapshot();
+
+        assertThat(snapshot.getStatistics(S3Operation.PUT_OBJECT).getCalls(), is(equalTo(3L)));
+        assertThat(snapshot.getStatistics(S3Operation.PUT_OBJECT).getBytesIn(), is(equalTo(60L)));
+        assertThat(snapshot.getStatistics(S3Operation.PUT_OBJECT, "/output/").getBytesIn(), is(equalTo(30L)));
+        assertThat(snapshot.getStatistics(S3Operation.GET_OBJECT, "/input/").getCalls(), is(equalTo(2L)));
+        assertThat(snapshot.getStatistics(S3Operation.GET_OBJECT, "/input/").getBytesOut(), is(equalTo(15L)));
+        assertThat(snapshot.getStatistics(S3Operation.GET_OBJECT, "/input/").getLatency().getCount(),
+                   is(equalTo(2L)));
+        assertThat(snapshot.getPrefixes(), contains("/input/", "/output/"));
+    }
+
+    @Test
+    public void metricsCountFailedCallsAsErrors() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+
+        assertThrows(NoSuchKeyException.class, () -> getObject(fakeS3Client, SOME_URI));
+
+        OperationStatistics statistics = fakeS3Client.getMetrics().snapshot().getStatistics(S3Operation.GET_OBJECT);
+        assertThat(statistics.getCalls(), is(equalTo(1L)));
+        assertThat(statistics.getErrors(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void metricsAreEmptyAfterReset() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, SOME_URI, randomString());
+
+        fakeS3Client.getMetrics().reset();
+
+        S3MetricsSnapshot snapshot = fakeS3Client.getMetrics().snapshot();
+        assertThat(snapshot.getStatistics(S3Operation.PUT_OBJECT).getCalls(), is(equalTo(0L)));
+        assertThat(snapshot.getPrefixes(), is(empty()));
+    }
+
+    @Test
+    public void constructorWithResourceNamesStoresResourcesUnderTheirNames() {
+        FakeS3Client fakeS3Client = new FakeS3Client("fixtures/first.txt");
+
+        assertThat(getObject(fakeS3Client, "fixtures/first.txt").asUtf8String(), is(equalTo("first fixture\n")));
+    }
+
+    @Test
+    public void constructorWithResourceNamesThrowsWhenResourceIsMissing() {
+        assertThrows(IllegalArgumentException.class, () -> new FakeS3Client("fixtures/missing.txt"));
+    }
+
+    @Test
+    public void withObjectsFromResourcesStoresEveryResourceBelowTheDirectory() {
+        FakeS3Client fakeS3Client = new FakeS3Client().withObjectsFromResources("fixtures", "seeded/");
+
+        assertThat(keysOf(listAllPages(fakeS3Client, null, null, FakeS3Client.DEFAULT_MAX_KEYS)),
+                   contains("seeded/first.txt", "seeded/nested/second.txt"));
+        assertThat(getObject(fakeS3Client, "seeded/nested/second.txt").asUtf8String(),
+                   is(equalTo("second fixture\n")));
+    }
+
+    @Test
+    public void withObjectsFromDirectoryReadsFileContentOnlyWhenObjectIsFirstRequested() throws IOException {
+        Path file = Files.createDirectories(temporaryFolder.resolve("nested")).resolve("file.txt");
+        Files.writeString(file, "seeded content");
+        FakeS3Client fakeS3Client = new FakeS3Client().withObjectsFromDirectory(temporaryFolder, "prefix/");
+
+        Files.writeString(file, "content at first read");
+        String firstRead = getObject(fakeS3Client, "prefix/nested/file.txt").asUtf8String();
+        Files.writeString(file, "content after first read");
+        String secondRead = getObject(fakeS3Client, "prefix/nested/file.txt").asUtf8String();
+
+        assertThat(firstRead, is(equalTo("content at first read")));
+        assertThat(secondRead, is(equalTo("content at first read")));
+    }
+
+    @Test
+    public void withObjectsFromDirectoryListsFileSizesWithoutReadingFiles() throws IOException {
+        Path file = temporaryFolder.resolve("file.txt");
+        Files.writeString(file, "seeded content");
+        FakeS3Client fakeS3Client = new FakeS3Client().withObjectsFromDirectory(temporaryFolder, "");
+        Files.delete(file);
+
+        List<S3Object> objects = fakeS3Client.listObjectsV2(ListObjectsV2Request.builder().build()).contents();
+
+        assertThat(objects.get(0).key(), is(equalTo("file.txt")));
+        assertThat(objects.get(0).size(), is(equalTo((long) "seeded content".length())));
+    }
+
+    @Test
+    public void withObjectsFromArchiveStoresEveryFileEntryOfTheArchive() throws IOException {
+        Path archive = temporaryFolder.resolve("fixtures.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("some/path/"));
+            zip.putNextEntry(new ZipEntry("some/path/file.txt"));
+            zip.write("archived content".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        FakeS3Client fakeS3Client = new FakeS3Client().withObjectsFromArchive(archive, "");
+
+        assertThat(keysOf(listAllPages(fakeS3Client, null, null, FakeS3Client.DEFAULT_MAX_KEYS)),
+                   contains("some/path/file.txt"));
+        assertThat(getObject(fakeS3Client, "some/path/file.txt").asUtf8String(), is(equalTo("archived content")));
+        fakeS3Client.close();
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterWrites() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, "first", randomBytes(10));
+
+        FakeS3Snapshot snapshot = fakeS3Client.snapshot();
+        putObject(fakeS3Client, "second", randomBytes(10));
+
+        assertThat(snapshot.size(), is(equalTo(1)));
+        assertThat(keysOf(listAllPages(snapshot.fork(), null, null, FakeS3Client.DEFAULT_MAX_KEYS)), contains("first"));
+    }
+
+    @Test
+    public void forksShareBaselineObjectsButIsolateTheirWrites() {
+        FakeS3Client baseline = new FakeS3Client(new ConcurrentHashMap<>());
+        String baselineContent = randomString();
+        putObject(baseline, SOME_URI, baselineContent);
+        FakeS3Snapshot snapshot = baseline.snapshot();
+
+        FakeS3Client firstFork = snapshot.fork();
+        FakeS3Client secondFork = snapshot.fork();
+        String overwrittenContent = randomString();
+        putObject(firstFork, SOME_URI, overwrittenContent);
+        putObject(firstFork, "only/in/first/fork", randomBytes(10));
+        secondFork.deleteObject(DeleteObjectRequest.builder().key(SOME_URI.getPath()).build());
+
+        assertThat(getObject(baseline, SOME_URI).asUtf8String(), is(equalTo(baselineContent)));
+        assertThat(getObject(firstFork, SOME_URI).asUtf8String(), is(equalTo(overwrittenContent)));
+        assertThrows(NoSuchKeyException.class, () -> getObject(secondFork, SOME_URI));
+        assertThat(keysOf(listAllPages(baseline, null, null, FakeS3Client.DEFAULT_MAX_KEYS)),
+                   contains(SOME_URI.getPath()));
+    }
+
+    @Test
+    public void restoreDiscardsObjectsWrittenAfterTheSnapshot() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String originalContent = randomString();
+        putObject(fakeS3Client, SOME_URI, originalContent);
+        FakeS3Snapshot snapshot = fakeS3Client.snapshot();
+        putObject(fakeS3Client, SOME_URI, randomString());
+        putObject(fakeS3Client, "added/after/snapshot", randomBytes(10));
+
+        fakeS3Client.restore(snapshot);
+
+        assertThat(getObject(fakeS3Client, SOME_URI).asUtf8String(), is(equalTo(originalContent)));
+        assertThat(keysOf(listAllPages(fakeS3Client, null, null, FakeS3Client.DEFAULT_MAX_KEYS)),
+                   contains(SOME_URI.getPath()));
+    }
+
+    @Test
+    public void memoryBudgetKeepsObjectsReadableAfterTheyAreSpilledToDisk() {
+        long budget = 1000;
+        FakeS3Client fakeS3Client = new FakeS3Client().withMemoryBudget(budget, temporaryFolder);
+        List<String> keys = keysWithPrefix("/spilled/", 20);
+        Map<String, byte[]> contents = new ConcurrentHashMap<>();
+        keys.forEach(key -> contents.put(key, randomBytes(200)));
+        keys.forEach(key -> putObject(fakeS3Client, key, contents.get(key)));
+
+        assertThat(fakeS3Client.getMemoryBudget().getResidentBytes(), is(lessThanOrEqualTo(budget)));
+        assertThat(fakeS3Client.getMemoryBudget().getSpilledBytes(), is(greaterThanOrEqualTo(3000L)));
+        for (String key : keys) {
+            assertThat(getObject(fakeS3Client, key).asByteArray(), is(equalTo(contents.get(key))));
+        }
+        byte[] firstContent = contents.get(keys.get(0));
+        assertThat(getObject(fakeS3Client, URI.create("s3://bucket" + keys.get(0)), "bytes=10-19").asByteArray(),
+                   is(equalTo(Arrays.copyOfRange(firstContent, 10, 20))));
+        fakeS3Client.close();
+    }
+
+    @Test
+    public void memoryBudgetReleasesOverwrittenContentInsteadOfSpillingIt() {
+        long objectSize = 200;
+        FakeS3Client fakeS3Client = new FakeS3Client().withMemoryBudget(2 * objectSize, temporaryFolder);
+        putObject(fakeS3Client, "/overwritten", randomBytes((int) objectSize));
+        byte[] latestContent = randomBytes((int) objectSize);
+        putObject(fakeS3Client, "/overwritten", latestContent);
+
+        awaitGarbageCollection(() -> fakeS3Client.getMemoryBudget().getResidentBytes() == objectSize);
+        putObject(fakeS3Client, "/added", randomBytes((int) objectSize));
+
+        assertThat(fakeS3Client.getMemoryBudget().getResidentBytes(), is(equalTo(2 * objectSize)));
+        assertThat(fakeS3Client.getMemoryBudget().getSpilledBytes(), is(equalTo(0L)));
+        assertThat(getObject(fakeS3Client, "/overwritten").asByteArray(), is(equalTo(latestContent)));
+        fakeS3Client.close();
+    }
+
+    @Test
+    public void copyObjectStoresSourceContentUnderDestinationKey() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String originalContent = randomString();
+        putObject(fakeS3Client, "source/file name+1.txt", originalContent.getBytes(StandardCharsets.UTF_8));
+
+        fakeS3Client.copyObject(CopyObjectRequest.builder()
+                                    .copySource("bucket/source/file%20name%2B1.txt")
+                                    .bucket("bucket")
+                                    .key("destination/file.txt")
+                                    .build());
+        putObject(fakeS3Client, "source/file name+1.txt", randomBytes(10));
+
+        assertThat(getObject(fakeS3Client, "destination/file.txt").asUtf8String(), is(equalTo(originalContent)));
+    }
+
+    @Test
+    public void copyObjectThrowsNoSuchKeyExceptionWhenSourceDoesNotExist() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        CopyObjectRequest request = CopyObjectRequest.builder()
+                                        .copySource("bucket/missing.txt")
+                                        .bucket("bucket")
+                                        .key("destination.txt")
+                                        .build();
+
+        assertThrows(NoSuchKeyException.class, () -> fakeS3Client.copyObject(request));
+    }
+
+    @Test
+    public void withDeduplicationStoresIdenticalContentOnce() {
+        FakeS3Client fakeS3Client = new FakeS3Client().withDeduplication();
+        byte[] sharedContent = randomBytes(1000);
+        List<String> keys = keysWithPrefix("fan-out/", 10);
+
+        keys.forEach(key -> putObject(fakeS3Client, key, sharedContent));
+        putObject(fakeS3Client, "distinct", randomBytes(1000));
+
+        assertThat(fakeS3Client.getDeduplicator().size(), is(equalTo(2)));
+        for (String key : keys) {
+            assertThat(getObject(fakeS3Client, key).asByteArray(), is(equalTo(sharedContent)));
+        }
+    }
+
+    @Test
+    public void lifecycleExpirationDeletesObjectsUnderPrefixOnceTheyAreOlderThanTheAge() {
+        VirtualClock clock = new VirtualClock();
+        LifecycleConfiguration configuration = LifecycleConfiguration.builder()
+                                                   .withExpiration("tmp/", Duration.ofHours(1))
+                                                   .withClock(clock)
+                                                   .build();
+        FakeS3Client fakeS3Client = new FakeS3Client().withLifecycleConfiguration(configuration);
+        putObject(fakeS3Client, "tmp/early", randomBytes(10));
+        clock.advance(Duration.ofMinutes(30));
+        putObject(fakeS3Client, "tmp/late", randomBytes(10));
+        putObject(fakeS3Client, "kept/file", randomBytes(10));
+
+        clock.advance(Duration.ofMinutes(45));
+
+        assertThat(keysOf(listAllPages(fakeS3Client, null, null, FakeS3Client.DEFAULT_MAX_KEYS)),
+                   contains("kept/file", "tmp/late"));
+        clock.advance(Duration.ofHours(10));
+        assertThat(keysOf(listAllPages(fakeS3Client, null, null, FakeS3Client.DEFAULT_MAX_KEYS)),
+                   contains("kept/file"));
+    }
+
+    @Test
+    public void lifecycleExpirationMeasuresAgeFromTheLatestWrite() {
+        VirtualClock clock = new VirtualClock();
+        FakeS3Client fakeS3Client = new FakeS3Client().withLifecycleConfiguration(
+            LifecycleConfiguration.builder().withExpiration("", Duration.ofHours(1)).withClock(clock).build());
+        putObject(fakeS3Client, "file", randomBytes(10));
+        clock.advance(Duration.ofMinutes(50));
+        byte[] rewrittenContent = randomBytes(10);
+        putObject(fakeS3Client, "file", rewrittenContent);
+
+        clock.advance(Duration.ofMinutes(50));
+
+        assertThat(getObject(fakeS3Client, "file").asByteArray(), is(equalTo(rewrittenContent)));
+    }
+
+    @Test
+    public void lifecycleExpirationMeasuresAgeFromTheLatestWriteOfDeduplicatedContent() {
+        VirtualClock clock = new VirtualClock();
+        FakeS3Client fakeS3Client = new FakeS3Client().withDeduplication().withLifecycleConfiguration(
+            LifecycleConfiguration.builder().withExpiration("", Duration.ofHours(1)).withClock(clock).build());
+        byte[] content = randomBytes(10);
+        putObject(fakeS3Client, "file", content);
+        clock.advance(Duration.ofMinutes(50));
+        putObject(fakeS3Client, "file", content);
+
+        clock.advance(Duration.ofMinutes(50));
+
+        assertThat(getObject(fakeS3Client, "file").asByteArray(), is(equalTo(content)));
+        clock.advance(Duration.ofMinutes(20));
+        assertThrows(NoSuchKeyException.class, () -> getObject(fakeS3Client, "file"));
+    }
+
+    @Test
+    public void lifecycleAbortsIncompleteMultipartUploads() {
+        VirtualClock clock = new VirtualClock();
+        FakeS3Client fakeS3Client = new FakeS3Client().withLifecycleConfiguration(
+            LifecycleConfiguration.builder()
+                .withAbortIncompleteMultipartUpload("", Duration.ofDays(1))
+                .withClock(clock)
+                .build());
+        String uploadId = createMultipartUpload(fakeS3Client);
+
+        clock.advance(Duration.ofDays(2));
+
+        assertThrows(NoSuchUploadException.class, () -> uploadPart(fakeS3Client, uploadId, 1, randomBytes(10)));
+    }
+
+    @Test
+    public void createdBucketsKeepObjectsUnderTheSameKeyApart() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        createBucket(fakeS3Client, "first");
+        createBucket(fakeS3Client, "second");
+
+        putObject(fakeS3Client, "first", "file.txt", "first content");
+        putObject(fakeS3Client, "second", "file.txt", "second content");
+
+        assertThat(getObject(fakeS3Client, "first", "file.txt"), is(equalTo("first content")));
+        assertThat(getObject(fakeS3Client, "second", "file.txt"), is(equalTo("second content")));
+        assertThrows(NoSuchKeyException.class, () -> getObject(fakeS3Client, "file.txt"));
+    }
+
+    @Test
+    public void createBucketThrowsBucketAlreadyOwnedByYouExceptionWhenBucketExists() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        createBucket(fakeS3Client, "existing");
+
+        assertThrows(BucketAlreadyOwnedByYouException.class, () -> createBucket(fakeS3Client, "existing"));
+    }
+
+    @Test
+    public void deleteBucketRemovesEmptyBucketsOnly() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        createBucket(fakeS3Client, "full");
+        createBucket(fakeS3Client, "empty");
+        putObject(fakeS3Client, "full", "file.txt", randomString());
+        DeleteBucketRequest deleteFullBucket = DeleteBucketRequest.builder().bucket("full").build();
+        DeleteBucketRequest deleteMissingBucket = DeleteBucketRequest.builder().bucket("missing").build();
+
+        fakeS3Client.deleteBucket(DeleteBucketRequest.builder().bucket("empty").build());
+
+        S3Exception notEmpty = assertThrows(S3Exception.class, () -> fakeS3Client.deleteBucket(deleteFullBucket));
+        assertThat(notEmpty.awsErrorDetails().errorCode(), is(equalTo("BucketNotEmpty")));
+        assertThrows(NoSuchBucketException.class, () -> fakeS3Client.deleteBucket(deleteMissingBucket));
+        assertThat(bucketNames(fakeS3Client), contains("full"));
+    }
+
+    @Test
+    public void listBucketsReturnsCreatedBucketsInNameOrder() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        createBucket(fakeS3Client, "second");
+        createBucket(fakeS3Client, "first");
+
+        assertThat(bucketNames(fakeS3Client), contains("first", "second"));
+        assertThat(fakeS3Client.listBuckets().buckets().get(0).creationDate(), is(lessThanOrEqualTo(Instant.now())));
+    }
+
+    @Test
+    public void copyObjectCopiesObjectsBetweenBuckets() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        createBucket(fakeS3Client, "source");
+        createBucket(fakeS3Client, "destination");
+        putObject(fakeS3Client, "source", "file.txt", "content");
+
+        fakeS3Client.copyObject(CopyObjectRequest.builder()
+                                    .copySource("source/file.txt")
+                                    .bucket("destination")
+                                    .key("copy.txt")
+                                    .build());
+
+        assertThat(getObject(fakeS3Client, "destination", "copy.txt"), is(equalTo("content")));
+        assertThrows(NoSuchKeyException.class, () -> getObject(fakeS3Client, "source", "copy.txt"));
+    }
+
+    @Test
+    public void listObjectsV2ReturnsKeysOfAHotPrefixInOrderAcrossStripes() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        List<String> keys = keysWithPrefix("hot/prefix/", 500);
+        List<String> shuffledKeys = new ArrayList<>(keys);
+        Collections.shuffle(shuffledKeys, RANDOM);
+        shuffledKeys.parallelStream().forEach(key -> putObject(fakeS3Client, key, randomBytes(1)));
+
+        assertThat(keysOf(listAllPages(fakeS3Client, "hot/", null, 64)), is(equalTo(keys)));
+    }
+
+    @Test
+    public void forkAndRestoreCarryCreatedBuckets() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        createBucket(fakeS3Client, "kept");
+        putObject(fakeS3Client, "kept", "file.txt", "content");
+        FakeS3Snapshot snapshot = fakeS3Client.snapshot();
+        createBucket(fakeS3Client, "discarded");
+        putObject(fakeS3Client, "kept", "file.txt", "overwritten");
+
+        FakeS3Client fork = snapshot.fork();
+        fakeS3Client.restore(snapshot);
+
+        assertThat(snapshot.size(), is(equalTo(1)));
+        assertThat(getObject(fork, "kept", "file.txt"), is(equalTo("content")));
+        assertThat(getObject(fakeS3Client, "kept", "file.txt"), is(equalTo("content")));
+        assertThat(bucketNames(fakeS3Client), contains("kept"));
+    }
+
+    @Test
+    public void putObjectWithIfNoneMatchFailsWhenObjectExists() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+
+        putObjectIf(fakeS3Client, "If-None-Match", "*", "first");
+
+        S3Exception exception = assertThrows(S3Exception.class,
+                                             () -> putObjectIf(fakeS3Client, "If-None-Match", "*", "second"));
+        assertThat(exception.statusCode(), is(equalTo(412)));
+        assertThat(getObject(fakeS3Client, "bucket", "file.txt"), is(equalTo("first")));
+    }
 
     @Test
-    public void putObjectMakesContentAvailableForGetting() {
+    public void putObjectWithIfMatchReplacesOnlyTheVersionItWasConditionedOn() {
         FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String firstETag = putObjectIf(fakeS3Client, "If-None-Match", "*", "first").eTag();
 
-        String expectedContent = randomString();
+        putObjectIf(fakeS3Client, "If-Match", firstETag, "second");
 
-        putObject(fakeS3Client, SOME_URI, expectedContent);
-        ResponseBytes<GetObjectResponse> result = getObject(fakeS3Client, SOME_URI);
-        String actualContent = result.asUtf8String();
-        assertThat(actualContent, is(equalTo(expectedContent)));
+        S3Exception exception = assertThrows(S3Exception.class,
+                                             () -> putObjectIf(fakeS3Client, "If-Match", firstETag, "third"));
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("PreconditionFailed")));
+        assertThat(getObject(fakeS3Client, "bucket", "file.txt"), is(equalTo("second")));
     }
 
     @Test
-    public void putObjectDoesNotAlterInputDataToFakeS3Client() {
-        Map<String, InputStream> inputData = new ConcurrentHashMap<>();
-        inputData.put(randomString(), IoUtils.stringToStream(randomString()));
-        ConcurrentHashMap<String, InputStream> inputDataCopy = new ConcurrentHashMap<>(inputData);
-        FakeS3Client fakeS3Client = new FakeS3Client(inputData);
-        putObject(fakeS3Client, SOME_URI, randomString());
-        assertThat(inputData, is(equalTo(inputDataCopy)));
+    public void concurrentConditionalWritersLoseNoUpdates() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObjectIf(fakeS3Client, "If-None-Match", "*", "0");
+        int writers = 8;
+        int incrementsPerWriter = 50;
+
+        IntStream.range(0, writers).parallel().forEach(writer -> {
+            for (int increment = 0; increment < incrementsPerWriter; increment++) {
+                incrementOptimistically(fakeS3Client);
+            }
+        });
+
+        assertThat(getObject(fakeS3Client, "bucket", "file.txt"),
+                   is(equalTo(Integer.toString(writers * incrementsPerWriter))));
+    }
+
+    @Test
+    public void getObjectWithIfMatchFailsWhenETagDiffers() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, "bucket", "file.txt", "content");
+        GetObjectRequest request = GetObjectRequest.builder()
+                                       .bucket("bucket")
+                                       .key("file.txt")
+                                       .ifMatch("\"other\"")
+                                       .build();
+
+        S3Exception exception = assertThrows(S3Exception.class,
+                                             () -> fakeS3Client.getObject(request, ResponseTransformer.toBytes()));
+        assertThat(exception.statusCode(), is(equalTo(412)));
+    }
+
+    @Test
+    public void versionedBucketKeepsOverwrittenAndDeletedVersions() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        setVersioning(fakeS3Client, BucketVersioningStatus.ENABLED);
+        String firstVersion = fakeS3Client.putObject(
+            PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+            RequestBody.fromString("first")).versionId();
+        putObject(fakeS3Client, "bucket", "file.txt", "second");
+
+        DeleteObjectResponse deleted = fakeS3Client.deleteObject(
+            DeleteObjectRequest.builder().bucket("bucket").key("file.txt").build());
+
+        assertThat(deleted.deleteMarker(), is(true));
+        assertThrows(NoSuchKeyException.class, () -> getObject(fakeS3Client, "bucket", "file.txt"));
+        assertThat(getObjectVersion(fakeS3Client, firstVersion), is(equalTo("first")));
+        assertThat(keysOf(listAllPages(fakeS3Client, null, null, FakeS3Client.DEFAULT_MAX_KEYS)), is(empty()));
+
+        fakeS3Client.deleteObject(DeleteObjectRequest.builder()
+                                      .bucket("bucket")
+                                      .key("file.txt")
+                                      .versionId(deleted.versionId())
+                                      .build());
+
+        assertThat(getObject(fakeS3Client, "bucket", "file.txt"), is(equalTo("second")));
+    }
+
+    @Test
+    public void suspendedVersioningReplacesTheNullVersionAndKeepsOlderVersions() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, "bucket", "file.txt", "unversioned");
+        setVersioning(fakeS3Client, BucketVersioningStatus.ENABLED);
+        String enabledVersion = fakeS3Client.putObject(
+            PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+            RequestBody.fromString("versioned")).versionId();
+        setVersioning(fakeS3Client, BucketVersioningStatus.SUSPENDED);
+
+        PutObjectResponse suspended = fakeS3Client.putObject(
+            PutObjectRequest.builder().bucket("bucket").key("file.txt").build(), RequestBody.fromString("suspended"));
+
+        assertThat(suspended.versionId(), is(equalTo("null")));
+        assertThat(getObjectVersion(fakeS3Client, "null"), is(equalTo("suspended")));
+        assertThat(getObjectVersion(fakeS3Client, enabledVersion), is(equalTo("versioned")));
+    }
+
+    @Test
+    public void putObjectAndUploadPartReturnTheMd5OfTheContentAsETag() throws Exception {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        byte[] content = randomBytes(LARGER_THAN_ARENA_ALLOCATION);
+
+        String putETag = fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+                                                RequestBody.fromBytes(content)).eTag();
+        String partETag = uploadPart(fakeS3Client, createMultipartUpload(fakeS3Client), 1, content).eTag();
+
+        assertThat(putETag, is(equalTo(quoted(md5Hex(content)))));
+        assertThat(partETag, is(equalTo(quoted(md5Hex(content)))));
+    }
+
+    @Test
+    public void objectsDrainedFromStreamsOfUnknownLengthHaveMd5ETags() throws Exception {
+        byte[] content = randomBytes(LARGER_THAN_ARENA_ALLOCATION);
+        FakeS3Client fakeS3Client = new FakeS3Client(Map.of(SOME_URI.getPath(), new ByteArrayInputStream(content)));
+
+        assertThat(getObject(fakeS3Client, SOME_URI.getPath()).response().eTag(),
+                   is(equalTo(quoted(md5Hex(content)))));
+    }
+
+    @Test
+    public void completedMultipartUploadHasETagOfPartDigestsAndPartCount() throws Exception {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String uploadId = createMultipartUpload(fakeS3Client);
+        byte[] firstPart = randomBytes(100);
+        byte[] secondPart = randomBytes(200);
+        List<CompletedPart> parts = List.of(uploadPart(fakeS3Client, uploadId, 1, firstPart),
+                                            uploadPart(fakeS3Client, uploadId, 2, secondPart));
+
+        completeMultipartUpload(fakeS3Client, uploadId, parts);
+
+        MessageDigest partDigests = MessageDigest.getInstance("MD5");
+        partDigests.update(MessageDigest.getInstance("MD5").digest(firstPart));
+        partDigests.update(MessageDigest.getInstance("MD5").digest(secondPart));
+        String expectedETag = quoted(String.format("%032x", new BigInteger(1, partDigests.digest())) + "-2");
+        assertThat(getObject(fakeS3Client, SOME_URI.getPath()).response().eTag(), is(equalTo(expectedETag)));
+    }
+
+    @Test
+    public void getObjectWithIfNoneMatchCurrentETagIsNotModifiedAndTransfersNoContent() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String eTag = fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+                                             RequestBody.fromString("content")).eTag();
+        GetObjectRequest request = GetObjectRequest.builder()
+                                       .bucket("bucket")
+                                       .key("file.txt")
+                                       .ifNoneMatch(eTag)
+                                       .build();
+
+        S3Exception exception = assertThrows(S3Exception.class,
+                                             () -> fakeS3Client.getObject(request, ResponseTransformer.toBytes()));
+
+        assertThat(exception.statusCode(), is(equalTo(304)));
+        assertThat(fakeS3Client.getMetrics().snapshot().getStatistics(S3Operation.GET_OBJECT).getBytesOut(),
+                   is(equalTo(0L)));
+    }
+
+    @Test
+    public void getObjectWithIfNoneMatchReturnsContentAfterObjectChanged() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String eTag = fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+                                             RequestBody.fromString("first")).eTag();
+        putObject(fakeS3Client, "bucket", "file.txt", "second");
+        GetObjectRequest request = GetObjectRequest.builder()
+                                       .bucket("bucket")
+                                       .key("file.txt")
+                                       .ifNoneMatch(eTag)
+                                       .build();
+
+        ResponseBytes<GetObjectResponse> response = fakeS3Client.getObject(request, ResponseTransformer.toBytes());
+
+        assertThat(response.asUtf8String(), is(equalTo("second")));
+        assertThat(response.response().eTag(), is(not(equalTo(eTag))));
+    }
+
+    @Test
+    public void getObjectWithIfModifiedSinceIsNotModifiedUnlessWrittenAfterThatTime() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, "bucket", "file.txt", "content");
+        GetObjectRequest.Builder request = GetObjectRequest.builder().bucket("bucket").key("file.txt");
+        Instant lastModified = getObject(fakeS3Client, "file.txt").response().lastModified();
+
+        S3Exception exception = assertThrows(
+            S3Exception.class,
+            () -> fakeS3Client.getObject(request.ifModifiedSince(lastModified).build(),
+                                         ResponseTransformer.toBytes()));
+        String content = fakeS3Client.getObject(request.ifModifiedSince(lastModified.minusSeconds(60)).build(),
+                                                ResponseTransformer.toBytes()).asUtf8String();
+
+        assertThat(exception.statusCode(), is(equalTo(304)));
+        assertThat(content, is(equalTo("content")));
+    }
+
+    @Test
+    public void headObjectReturnsMetadataOfTheObject() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String eTag = fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+                                             RequestBody.fromString("content")).eTag();
+
+        HeadObjectResponse response = fakeS3Client.headObject(
+            HeadObjectRequest.builder().bucket("bucket").key("file.txt").build());
+
+        assertThat(response.contentLength(), is(equalTo(7L)));
+        assertThat(response.eTag(), is(equalTo(eTag)));
+        assertThat(response.lastModified(), is(lessThanOrEqualTo(Instant.now())));
+        assertThat(fakeS3Client.getMetrics().snapshot().getStatistics(S3Operation.HEAD_OBJECT).getCalls(),
+                   is(equalTo(1L)));
+    }
+
+    @Test
+    public void headObjectHonorsConditionsAndMissingKeys() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        String eTag = fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+                                             RequestBody.fromString("content")).eTag();
+        HeadObjectRequest.Builder request = HeadObjectRequest.builder().bucket("bucket").key("file.txt");
+
+        S3Exception notModified = assertThrows(S3Exception.class,
+                                               () -> fakeS3Client.headObject(request.ifNoneMatch(eTag).build()));
+        S3Exception preconditionFailed = assertThrows(
+            S3Exception.class, () -> fakeS3Client.headObject(request.ifNoneMatch(null).ifMatch("\"other\"").build()));
+
+        assertThat(notModified.statusCode(), is(equalTo(304)));
+        assertThat(preconditionFailed.statusCode(), is(equalTo(412)));
+        assertThrows(NoSuchKeyException.class,
+                     () -> fakeS3Client.headObject(HeadObjectRequest.builder().bucket("bucket").key("other").build()));
+    }
+
+    @Test
+    public void putObjectFromFileServesTheFileContentInPlace() throws Exception {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        byte[] content = randomBytes(LARGER_THAN_ARENA_ALLOCATION);
+        Path source = Files.write(temporaryFolder.resolve("source.bin"), content);
+
+        PutObjectResponse response = fakeS3Client.putObject(
+            PutObjectRequest.builder().bucket("bucket").key("file.bin").build(), source);
+
+        assertThat(response.eTag(), is(equalTo(quoted(md5Hex(content)))));
+        assertThat(getObject(fakeS3Client, "file.bin").asByteArray(), is(equalTo(content)));
+        GetObjectRequest rangeRequest = GetObjectRequest.builder()
+                                            .bucket("bucket")
+                                            .key("file.bin")
+                                            .range("bytes=10-19")
+                                            .build();
+        assertThat(fakeS3Client.getObject(rangeRequest, ResponseTransformer.toBytes()).asByteArray(),
+                   is(equalTo(Arrays.copyOfRange(content, 10, 20))));
+    }
+
+    @Test
+    public void getObjectToFileWritesObjectsOfEveryKindOfContent() throws Exception {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        byte[] first = randomBytes(1000);
+        byte[] second = randomBytes(2000);
+        fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("memory.bin").build(),
+                               RequestBody.fromBytes(first));
+        fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("file.bin").build(),
+                               Files.write(temporaryFolder.resolve("source.bin"), second));
+        String uploadId = createMultipartUpload(fakeS3Client);
+        completeMultipartUpload(fakeS3Client, uploadId, List.of(uploadPart(fakeS3Client, uploadId, 1, first),
+                                                                uploadPart(fakeS3Client, uploadId, 2, second)));
+
+        assertThat(readToFile(fakeS3Client, "memory.bin"), is(equalTo(first)));
+        assertThat(readToFile(fakeS3Client, "file.bin"), is(equalTo(second)));
+        assertThat(readToFile(fakeS3Client, SOME_URI.getPath()), is(equalTo(concatenate(List.of(first, second)))));
+    }
+
+    @Test
+    public void putObjectFromByteBufferStoresTheRemainingBytesWithoutCopying() throws Exception {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        byte[] content = randomBytes(100);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length + 10);
+        buffer.position(10);
+        buffer.put(content).position(10);
+
+        PutObjectResponse response = fakeS3Client.putObject(
+            PutObjectRequest.builder().bucket("bucket").key("file.bin").build(), buffer);
+
+        assertThat(response.eTag(), is(equalTo(quoted(md5Hex(content)))));
+        assertThat(getObject(fakeS3Client, "file.bin").asByteArray(), is(equalTo(content)));
+        assertThat(buffer.position(), is(equalTo(10)));
+    }
+
+    @Test
+    public void compressedObjectsReadBackUnchangedAndTakeAFractionOfTheirSize() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>()).withCompression();
+        byte[] content = jsonLines(20_000);
+
+        fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("corpus.jsonl").build(),
+                               RequestBody.fromBytes(content));
+
+        assertThat(getObject(fakeS3Client, "corpus.jsonl").asByteArray(), is(equalTo(content)));
+        CompressionStatistics statistics = fakeS3Client.getCompressionStatistics();
+        assertThat(statistics.getUncompressedBytes(), is(equalTo((long) content.length)));
+        assertThat(statistics.getRatio(), is(greaterThanOrEqualTo(5.0)));
+        assertThat(statistics.getCompressionTime().isZero(), is(false));
+    }
+
+    @Test
+    public void rangedReadOfCompressedObjectInflatesOnlyTheBlocksItCovers() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>()).withCompression();
+        byte[] content = jsonLines(20_000);
+        fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("corpus.jsonl").build(),
+                               RequestBody.fromBytes(content));
+        int blockBoundary = ContentCompressor.DEFAULT_BLOCK_SIZE * 3;
+
+        byte[] withinBlock = readRange(fakeS3Client, blockBoundary + 100, blockBoundary + 199);
+        long inflatedWithinBlock = fakeS3Client.getCompressionStatistics().getInflatedBlocks();
+        byte[] acrossBlocks = readRange(fakeS3Client, blockBoundary - 50, blockBoundary + 49);
+
+        assertThat(withinBlock, is(equalTo(Arrays.copyOfRange(content, blockBoundary + 100, blockBoundary + 200))));
+        assertThat(acrossBlocks, is(equalTo(Arrays.copyOfRange(content, blockBoundary - 50, blockBoundary + 50))));
+        assertThat(inflatedWithinBlock, is(equalTo(1L)));
+        assertThat(fakeS3Client.getCompressionStatistics().getInflatedBlocks(), is(equalTo(3L)));
+    }
+
+    @Test
+    public void memoryBudgetCountsCompressedObjectsAtTheirCompressedSize() {
+        byte[] content = jsonLines(20_000);
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>())
+                                        .withCompression()
+                                        .withMemoryBudget(content.length / 2, temporaryFolder);
+
+        fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("corpus.jsonl").build(),
+                               RequestBody.fromBytes(content));
+
+        long compressedBytes = fakeS3Client.getCompressionStatistics().getCompressedBytes();
+        assertThat(fakeS3Client.getMemoryBudget().getResidentBytes(), is(equalTo(compressedBytes)));
+        assertThat(fakeS3Client.getMemoryBudget().getSpilledBytes(), is(equalTo(0L)));
+        fakeS3Client.close();
+    }
+
+    @Test
+    public void memoryBudgetSpillsCompressedBlocksAndInflatesThemFromDisk() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>())
+                                        .withCompression()
+                                        .withMemoryBudget(0, temporaryFolder);
+        byte[] content = jsonLines(20_000);
+
+        fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("corpus.jsonl").build(),
+                               RequestBody.fromBytes(content));
+
+        long compressedBytes = fakeS3Client.getCompressionStatistics().getCompressedBytes();
+        int blockBoundary = ContentCompressor.DEFAULT_BLOCK_SIZE * 3;
+        assertThat(fakeS3Client.getMemoryBudget().getSpilledBytes(), is(equalTo(compressedBytes)));
+        assertThat(getObject(fakeS3Client, "corpus.jsonl").asByteArray(), is(equalTo(content)));
+        assertThat(readRange(fakeS3Client, blockBoundary - 50, blockBoundary + 49),
+                   is(equalTo(Arrays.copyOfRange(content, blockBoundary - 50, blockBoundary + 50))));
+        fakeS3Client.close();
+    }
+
+    @Test
+    public void compressionAppliesToMultipartUploadsDeduplicatedContentAndForks() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>()).withDeduplication().withCompression();
+        byte[] firstPart = jsonLines(5_000);
+        byte[] secondPart = jsonLines(100);
+        String uploadId = createMultipartUpload(fakeS3Client);
+        completeMultipartUpload(fakeS3Client, uploadId, List.of(uploadPart(fakeS3Client, uploadId, 1, firstPart),
+                                                                uploadPart(fakeS3Client, uploadId, 2, secondPart)));
+        FakeS3Client fork = fakeS3Client.fork();
+
+        putObject(fork, "bucket", "copy.jsonl", new String(secondPart, StandardCharsets.UTF_8));
+
+        assertThat(getObject(fork, SOME_URI.getPath()).asByteArray(),
+                   is(equalTo(concatenate(List.of(firstPart, secondPart)))));
+        assertThat(getObject(fork, "bucket", "copy.jsonl"),
+                   is(equalTo(new String(secondPart, StandardCharsets.UTF_8))));
+        assertThat(fork.getCompressionStatistics().getUncompressedBytes(),
+                   is(equalTo((long) firstPart.length + 2L * secondPart.length)));
+    }
+
+    @Test
+    public void eventNotificationsDeliverMatchingWritesAsS3EventRecords() throws Exception {
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        EventNotificationConfiguration configuration = EventNotificationConfiguration.builder("ingest", queue::add)
+                                                           .withEvents("s3:ObjectCreated:*", "s3:ObjectRemoved:Delete")
+                                                           .withPrefix("incoming/")
+                                                           .withSuffix(".json")
+                                                           .build();
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>()).withEventNotification(configuration);
+
+        putObject(fakeS3Client, "bucket", "incoming/my file.json", "{}");
+        putObject(fakeS3Client, "bucket", "incoming/ignored.txt", "text");
+        putObject(fakeS3Client, "bucket", "elsewhere/ignored.json", "{}");
+        fakeS3Client.deleteObject(DeleteObjectRequest.builder().bucket("bucket").key("incoming/my file.json").build());
+
+        assertThat(fakeS3Client.awaitEventDelivery(Duration.ofSeconds(10)), is(true));
+        List<JsonNode> records = records(queue);
+        assertThat(records, hasSize(2));
+        JsonNode created = records.get(0);
+        assertThat(created.get("eventSource").asText(), is(equalTo("aws:s3")));
+        assertThat(created.get("eventName").asText(), is(equalTo("ObjectCreated:Put")));
+        assertThat(created.at("/s3/configurationId").asText(), is(equalTo("ingest")));
+        assertThat(created.at("/s3/bucket/name").asText(), is(equalTo("bucket")));
+        assertThat(created.at("/s3/bucket/arn").asText(), is(equalTo("arn:aws:s3:::bucket")));
+        assertThat(created.at("/s3/object/key").asText(), is(equalTo("incoming/my+file.json")));
+        assertThat(created.at("/s3/object/size").asLong(), is(equalTo(2L)));
+        assertThat(created.at("/s3/object/eTag").asText(), is(equalTo(md5Hex("{}".getBytes(StandardCharsets.UTF_8)))));
+        assertThat(records.get(1).get("eventName").asText(), is(equalTo("ObjectRemoved:Delete")));
+        assertThat(records.get(1).at("/s3/object/sequencer").asText(),
+                   is(greaterThan(created.at("/s3/object/sequencer").asText())));
+    }
+
+    @Test
+    public void eventNotificationsBatchRecordsAndReportTheBacklogOfASlowConsumer() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        Consumer<String> slowConsumer = json -> {
+            awaitUninterruptibly(released);
+            batchSizes.add(parse(json).get("Records").size());
+        };
+        EventNotificationConfiguration configuration = EventNotificationConfiguration.builder("slow", slowConsumer)
+                                                           .withBatchSize(10)
+                                                           .withBatchWindow(Duration.ofMillis(50))
+                                                           .build();
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>()).withEventNotification(configuration);
+
+        IntStream.range(0, 35).forEach(i -> putObject(fakeS3Client, "bucket", "object-" + i, "content"));
+        EventNotificationStatistics blocked = fakeS3Client.getEventNotificationStatistics("slow");
+        released.countDown();
+
+        assertThat(fakeS3Client.awaitEventDelivery(Duration.ofSeconds(10)), is(true));
+        EventNotificationStatistics statistics = fakeS3Client.getEventNotificationStatistics("slow");
+        assertThat(blocked.getPublishedRecords(), is(equalTo(35L)));
+        assertThat(blocked.getBacklog(), is(equalTo(35L)));
+        assertThat(statistics.getDeliveredRecords(), is(equalTo(35L)));
+        assertThat(statistics.getBacklog(), is(equalTo(0L)));
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum(), is(equalTo(35)));
+        assertThat(batchSizes.stream().allMatch(size -> size <= 10), is(true));
+        assertThat(statistics.getDeliveredBatches(), is(lessThanOrEqualTo(6L)));
+    }
+
+    @Test
+    public void eventNotificationsDeliverBatchesConcurrentlyAndCountFailedDeliveries() throws Exception {
+        CyclicBarrier allWorkersBusy = new CyclicBarrier(3);
+        Consumer<String> consumer = json -> {
+            awaitUninterruptibly(allWorkersBusy);
+            if (json.contains("failing")) {
+                throw new IllegalStateException("Destination unavailable");
+            }
+        };
+        EventNotificationConfiguration configuration = EventNotificationConfiguration.builder("parallel", consumer)
+                                                           .withConcurrency(3)
+                                                           .build();
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>()).withEventNotification(configuration);
+
+        putObject(fakeS3Client, "bucket", "first", "content");
+        putObject(fakeS3Client, "bucket", "second", "content");
+        putObject(fakeS3Client, "bucket", "failing", "content");
+
+        assertThat(fakeS3Client.awaitEventDelivery(Duration.ofSeconds(10)), is(true));
+        EventNotificationStatistics statistics = fakeS3Client.getEventNotificationStatistics("parallel");
+        assertThat(statistics.getDeliveredRecords(), is(equalTo(2L)));
+        assertThat(statistics.getFailedRecords(), is(equalTo(1L)));
+        assertThat(statistics.getBacklog(), is(equalTo(0L)));
+        fakeS3Client.close();
+    }
+
+    @Test
+    public void eventNotificationsKeepDeliveringAfterTheDestinationThrowsAnError() throws Exception {
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        Consumer<String> consumer = json -> {
+            if (json.contains("failing")) {
+                throw new AssertionError("Unexpected record");
+            }
+            queue.add(json);
+        };
+        EventNotificationConfiguration configuration = EventNotificationConfiguration.builder("asserting", consumer)
+                                                           .withBatchSize(1)
+                                                           .build();
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>()).withEventNotification(configuration);
+
+        putObject(fakeS3Client, "bucket", "failing", "content");
+        putObject(fakeS3Client, "bucket", "delivered", "content");
+
+        assertThat(fakeS3Client.awaitEventDelivery(Duration.ofSeconds(10)), is(true));
+        EventNotificationStatistics statistics = fakeS3Client.getEventNotificationStatistics("asserting");
+        assertThat(statistics.getDeliveredRecords(), is(equalTo(1L)));
+        assertThat(statistics.getFailedRecords(), is(equalTo(1L)));
+        assertThat(statistics.getLastFailure().orElseThrow().getMessage(), is(equalTo("Unexpected record")));
+        assertThat(records(queue), hasSize(1));
+        fakeS3Client.close();
+    }
+
+    @Test
+    public void eventNotificationsReportCopiesMultipartUploadsAndDeleteMarkers() throws Exception {
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        EventNotificationConfiguration configuration = EventNotificationConfiguration.builder("all", queue::add)
+                                                           .withEvents("s3:ObjectCreated:*", "s3:ObjectRemoved:*")
+                                                           .withBatchSize(100)
+                                                           .build();
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>()).withEventNotification(configuration);
+        setVersioning(fakeS3Client, BucketVersioningStatus.ENABLED);
+        putObject(fakeS3Client, "bucket", "original", "content");
+        fakeS3Client.copyObject(CopyObjectRequest.builder()
+                                    .copySource("bucket/original")
+                                    .bucket("bucket")
+                                    .key("copy")
+                                    .build());
+        String uploadId = createMultipartUpload(fakeS3Client);
+        completeMultipartUpload(fakeS3Client, uploadId, List.of(uploadPart(fakeS3Client, uploadId, 1, new byte[10])));
+        fakeS3Client.deleteObject(DeleteObjectRequest.builder().bucket("bucket").key("original").build());
+
+        assertThat(fakeS3Client.awaitEventDelivery(Duration.ofSeconds(10)), is(true));
+        List<String> eventNames = records(queue).stream()
+                                      .map(record -> record.get("eventName").asText())
+                                      .collect(Collectors.toList());
+        assertThat(eventNames, contains("ObjectCreated:Put", "ObjectCreated:Copy",
+                                        "ObjectCreated:CompleteMultipartUpload", "ObjectRemoved:DeleteMarkerCreated"));
+    }
+
+    private static List<JsonNode> records(BlockingQueue<String> queue) {
+        List<JsonNode> records = new ArrayList<>();
+        for (String notification : queue) {
+            parse(notification).get("Records").forEach(records::add);
+        }
+        return records;
+    }
+
+    private static JsonNode parse(String json) {
+        try {
+            return new ObjectMapper().readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void awaitGarbageCollection(BooleanSupplier collected) {
+        for (int attempt = 0; attempt < 100 && !collected.getAsBoolean(); attempt++) {
+            System.gc();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitUninterruptibly(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void importedSnapshotHasTheBucketsVersionsAndContentOfTheExportedClient() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        setVersioning(fakeS3Client, BucketVersioningStatus.ENABLED);
+        String firstVersion = fakeS3Client.putObject(
+            PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+            RequestBody.fromString("first")).versionId();
+        putObject(fakeS3Client, "bucket", "file.txt", "second");
+        fakeS3Client.deleteObject(DeleteObjectRequest.builder().bucket("bucket").key("file.txt").build());
+        createBucket(fakeS3Client, "other");
+        putObject(fakeS3Client, "other", "nested/data.json", "{\"id\":1}");
+        HeadObjectRequest headRequest = HeadObjectRequest.builder().bucket("other").key("nested/data.json").build();
+        HeadObjectResponse exported = fakeS3Client.headObject(headRequest);
+        Path file = temporaryFolder.resolve("buckets.snapshot");
+
+        fakeS3Client.exportSnapshot(file);
+        FakeS3Client imported = FakeS3Client.importSnapshot(file);
+
+        assertThat(bucketNames(imported), contains("other"));
+        assertThat(getObject(imported, "other", "nested/data.json"), is(equalTo("{\"id\":1}")));
+        HeadObjectResponse head = imported.headObject(headRequest);
+        assertThat(head.eTag(), is(equalTo(exported.eTag())));
+        assertThat(head.lastModified(), is(equalTo(exported.lastModified())));
+        assertThrows(NoSuchKeyException.class, () -> getObject(imported, "bucket", "file.txt"));
+        assertThat(getObjectVersion(imported, firstVersion), is(equalTo("first")));
+        String newVersion = imported.putObject(PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+                                               RequestBody.fromString("third")).versionId();
+        assertThat(getObjectVersion(imported, firstVersion), is(equalTo("first")));
+        assertThat(newVersion, is(not(equalTo(firstVersion))));
+    }
+
+    @Test
+    public void snapshotFileStoresSharedContentOnceAndServesEveryImportFromTheSameFile() throws IOException {
+        byte[] content = jsonLines(1_000);
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        putObject(fakeS3Client, "original.jsonl", content);
+        fakeS3Client.copyObject(CopyObjectRequest.builder()
+                                    .copySource("bucket/original.jsonl")
+                                    .bucket("bucket")
+                                    .key("copy.jsonl")
+                                    .build());
+        Path file = temporaryFolder.resolve("shared.snapshot");
+        fakeS3Client.snapshot().writeTo(file);
+
+        FakeS3Client first = FakeS3Client.importSnapshot(file);
+        FakeS3Client second = FakeS3Client.importSnapshot(file);
+        putObject(first, "copy.jsonl", "changed".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(Files.size(file), is(lessThanOrEqualTo(content.length + 1024L)));
+        assertThat(getObject(first, "original.jsonl").asByteArray(), is(equalTo(content)));
+        assertThat(getObject(first, "copy.jsonl").asUtf8String(), is(equalTo("changed")));
+        assertThat(getObject(second, "copy.jsonl").asByteArray(), is(equalTo(content)));
+        assertThat(readRange(second, "original.jsonl", 100, 199), is(equalTo(Arrays.copyOfRange(content, 100, 200))));
+        assertThat(FakeS3Snapshot.readFrom(file).size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void readingAFileThatIsNotASnapshotFails() throws IOException {
+        Path file = Files.write(temporaryFolder.resolve("not.snapshot"),
+                                "not a snapshot".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> FakeS3Snapshot.readFrom(file));
+    }
+
+    @Test
+    public void withObjectsLoadsKeysInParallelAndDeleteObjectsRemovesThemInBatches() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        createBucket(fakeS3Client, "bulk");
+        int keyCount = 20_000;
+
+        fakeS3Client.withObjects("bulk", IntStream.range(0, keyCount)
+                                             .mapToObj(i -> Map.entry("data/" + i + ".json", jsonLines(1))));
+        fakeS3Client.withObjects(null, List.of(Map.entry("default.txt", new byte[]{1, 2, 3})).iterator());
+
+        assertThat(fakeS3Client.snapshot().size(), is(equalTo(keyCount + 1)));
+        assertThat(getObject(fakeS3Client, "bulk", "data/123.json"),
+                   is(equalTo(new String(jsonLines(1), StandardCharsets.UTF_8))));
+        assertThat(getObject(fakeS3Client, "default.txt").asByteArray(), is(equalTo(new byte[]{1, 2, 3})));
+
+        int deletedKeys = 0;
+        ListObjectsV2Response page;
+        do {
+            page = fakeS3Client.listObjectsV2(ListObjectsV2Request.builder().bucket("bulk").build());
+            List<String> keys = page.contents().stream().map(S3Object::key).collect(Collectors.toList());
+            if (!keys.isEmpty()) {
+                deletedKeys += fakeS3Client.deleteObjects(deleteRequest("bulk", keys)).deleted().size();
+            }
+        } while (page.isTruncated());
+
+        assertThat(deletedKeys, is(equalTo(keyCount)));
+        assertThat(fakeS3Client.snapshot().size(), is(equalTo(1)));
+        assertThat(fakeS3Client.getMetrics().snapshot().getStatistics(S3Operation.DELETE_OBJECTS).getCalls(),
+                   is(equalTo((long) keyCount / FakeS3Client.MAX_DELETE_OBJECTS)));
+    }
+
+    @Test
+    public void deleteObjectsInVersionedBucketReportsDeleteMarkersAndDeletedVersions() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        setVersioning(fakeS3Client, BucketVersioningStatus.ENABLED);
+        String version = fakeS3Client.putObject(PutObjectRequest.builder().bucket("bucket").key("file.txt").build(),
+                                                RequestBody.fromString("content")).versionId();
+        putObject(fakeS3Client, "bucket", "other.txt", "content");
+        DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                                           .bucket("bucket")
+                                           .delete(Delete.builder()
+                                                       .objects(ObjectIdentifier.builder().key("other.txt").build(),
+                                                                ObjectIdentifier.builder()
+                                                                    .key("file.txt")
+                                                                    .versionId(version)
+                                                                    .build())
+                                                       .build())
+                                           .build();
+
+        DeleteObjectsResponse response = fakeS3Client.deleteObjects(request);
+        DeleteObjectsResponse quiet = fakeS3Client.deleteObjects(request.toBuilder()
+                                                                     .delete(request.delete()
+                                                                                 .toBuilder()
+                                                                                 .quiet(true)
+                                                                                 .build())
+                                                                     .build());
+
+        DeletedObject marker = response.deleted().get(0);
+        assertThat(marker.deleteMarker(), is(true));
+        assertThat(marker.deleteMarkerVersionId(), is(not(nullValue())));
+        assertThat(response.deleted().get(1).versionId(), is(equalTo(version)));
+        assertThat(response.errors(), is(empty()));
+        assertThat(quiet.deleted(), is(empty()));
+        assertThrows(NoSuchKeyException.class, () -> getObject(fakeS3Client, "bucket", "file.txt"));
+    }
+
+    @Test
+    public void deleteObjectsRejectsRequestsWithMoreThanAThousandKeys() {
+        FakeS3Client fakeS3Client = new FakeS3Client(new ConcurrentHashMap<>());
+        List<String> keys = IntStream.rangeClosed(0, FakeS3Client.MAX_DELETE_OBJECTS)
+                                .mapToObj(Integer::toString)
+                                .collect(Collectors.toList());
+
+        S3Exception exception = assertThrows(S3Exception.class,
+                                             () -> fakeS3Client.deleteObjects(deleteRequest("bucket", keys)));
+
+        assertThat(exception.awsErrorDetails().errorCode(), is(equalTo("MalformedXML")));
+    }
+
+    private static DeleteObjectsRequest deleteRequest(String bucket, List<String> keys) {
+        List<ObjectIdentifier> objects = keys.stream()
+                                         .map(key -> ObjectIdentifier.builder().key(key).build())
+                                         .collect(Collectors.toList());
+        return DeleteObjectsRequest.builder().bucket(bucket).delete(Delete.builder().objects(objects).build()).build();
+    }
+
+    private byte[] readRange(FakeS3Client fakeS3Client, int first, int last) {
+        return readRange(fakeS3Client, "corpus.jsonl", first, last);
+    }
+
+    private byte[] readRange(FakeS3Client fakeS3Client, String key, int first, int last) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                                       .bucket("bucket")
+                                       .key(key)
+                                       .range("bytes=" + first + "-" + last)
+                                       .build();
+        return fakeS3Client.getObject(request, ResponseTransformer.toBytes()).asByteArray();
+    }
+
+    private static byte[] jsonLines(int lines) {
+        StringBuilder corpus = new StringBuilder();
+        for (int line = 0; line < lines; line++) {
+            corpus.append("{\"identifier\":").append(line)
+                .append(",\"type\":\"Publication\",\"status\":\"PUBLISHED\",\"language\":\"nob\"}\n");
+        }
+        return corpus.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] readToFile(FakeS3Client fakeS3Client, String key) throws IOException {
+        Path destination = temporaryFolder.resolve(UUID.randomUUID().toString());
+        fakeS3Client.getObject(GetObjectRequest.builder().bucket("bucket").key(key).build(), destination);
+        return Files.readAllBytes(destination);
+    }
+
+    private static String md5Hex(byte[] content) throws NoSuchAlgorithmException {
+        return String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(content)));
+    }
+
+    private static String quoted(String value) {
+        return "\"" + value + "\"";
+    }
+
+    private void incrementOptimistically(FakeS3Client fakeS3Client) {
+        while (true) {
+            ResponseBytes<GetObjectResponse> current = fakeS3Client.getObject(
+                GetObjectRequest.builder().bucket("bucket").key("file.txt").build(), ResponseTransformer.toBytes());
+            String incremented = Integer.toString(Integer.parseInt(current.asUtf8String()) + 1);
+            try {
+                putObjectIf(fakeS3Client, "If-Match", current.response().eTag(), incremented);
+                return;
+            } catch (S3Exception conflict) {
+                assertThat(conflict.statusCode(), is(equalTo(412)));
+            }
+        }
+    }
+
+    private PutObjectResponse putObjectIf(FakeS3Client fakeS3Client, String condition, String eTag, String content) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                                       .bucket("bucket")
+                                       .key("file.txt")
+                                       .overrideConfiguration(AwsRequestOverrideConfiguration.builder()
+                                                                  .putHeader(condition, eTag)
+                                                                  .build())
+                                       .build();
+        return fakeS3Client.putObject(request, RequestBody.fromString(content));
+    }
+
+    private void setVersioning(FakeS3Client fakeS3Client, BucketVersioningStatus status) {
+        fakeS3Client.putBucketVersioning(PutBucketVersioningRequest.builder()
+                                             .bucket("bucket")
+                                             .versioningConfiguration(VersioningConfiguration.builder()
+                                                                          .status(status)
+                                                                          .build())
+                                             .build());
+    }
+
+    private String getObjectVersion(FakeS3Client fakeS3Client, String versionId) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                                       .bucket("bucket")
+                                       .key("file.txt")
+                                       .versionId(versionId)
+                                       .build();
+        return fakeS3Client.getObject(request, ResponseTransformer.toBytes()).asUtf8String();
+    }
+
+    private void createBucket(FakeS3Client fakeS3Client, String bucket) {
+        fakeS3Client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+    }
+
+    private List<String> bucketNames(FakeS3Client fakeS3Client) {
+        return fakeS3Client.listBuckets().buckets().stream().map(Bucket::name).collect(Collectors.toList());
+    }
+
+    private void putObject(FakeS3Client fakeS3Client, String bucket, String key, String content) {
+        fakeS3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(),
+                               RequestBody.fromString(content));
+    }
+
+    private String getObject(FakeS3Client fakeS3Client, String bucket, String key) {
+        return fakeS3Client.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build(),
+                                      ResponseTransformer.toBytes()).asUtf8String();
+    }
+
+    private String createMultipartUpload(FakeS3Client fakeS3Client) {
+        CreateMultipartUploadRequest request = CreateMultipartUploadRequest.builder()
+                                                   .bucket(SOME_URI.getHost())
+                                                   .key(SOME_URI.getPath())
+                                                   .build();
+        return fakeS3Client.createMultipartUpload(request).uploadId();
+    }
+
+    private CompletedPart uploadPart(FakeS3Client fakeS3Client, String uploadId, Integer partNumber, byte[] content) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                                        .bucket(SOME_URI.getHost())
+                                        .key(SOME_URI.getPath())
+                                        .uploadId(uploadId)
+                                        .partNumber(partNumber)
+                                        .build();
+        String eTag = fakeS3Client.uploadPart(request, RequestBody.fromBytes(content)).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private void completeMultipartUpload(FakeS3Client fakeS3Client, String uploadId, List<CompletedPart> parts) {
+        CompleteMultipartUploadRequest request = CompleteMultipartUploadRequest.builder()
+                                                     .bucket(SOME_URI.getHost())
+                                                     .key(SOME_URI.getPath())
+                                                     .uploadId(uploadId)
+                                                     .multipartUpload(CompletedMultipartUpload.builder()
+                                                                          .parts(parts)
+                                                                          .build())
+                                                     .build();
+        fakeS3Client.completeMultipartUpload(request);
+    }
+
+    private byte[] concatenate(List<byte[]> parts) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parts.forEach(part -> outputStream.write(part, 0, part.length));
+        return outputStream.toByteArray();
+    }
+
+    private List<ListObjectsV2Response> listAllPages(FakeS3Client fakeS3Client, String prefix, String delimiter,
+                                                     int maxKeys) {
+        List<ListObjectsV2Response> pages = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                                               .prefix(prefix)
+                                               .delimiter(delimiter)
+                                               .maxKeys(maxKeys)
+                                               .continuationToken(continuationToken)
+                                               .build();
+            ListObjectsV2Response page = fakeS3Client.listObjectsV2(request);
+            pages.add(page);
+            continuationToken = page.nextContinuationToken();
+        } while (continuationToken != null);
+        return pages;
+    }
+
+    private List<String> keysOf(List<ListObjectsV2Response> pages) {
+        return pages.stream()
+                   .flatMap(page -> page.contents().stream())
+                   .map(S3Object::key)
+                   .collect(Collectors.toList());
+    }
+
+    private List<String> commonPrefixesOf(List<ListObjectsV2Response> pages) {
+        return pages.stream()
+                   .flatMap(page -> page.commonPrefixes().stream())
+                   .map(CommonPrefix::prefix)
+                   .collect(Collectors.toList());
+    }
+
+    private List<String> keysWithPrefix(String prefix, int numberOfKeys) {
+        return IntStream.range(0, numberOfKeys)
+                   .mapToObj(index -> String.format("%s%03d", prefix, index))
+                   .collect(Collectors.toList());
+    }
+
+    private void putObjects(FakeS3Client fakeS3Client, List<String> keys) {
+        keys.forEach(key -> putObject(fakeS3Client, key, randomString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private ResponseBytes<GetObjectResponse> getObject(FakeS3Client fakeS3Client, String key) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder().bucket(SOME_URI.getHost()).key(key).build();
+        return fakeS3Client.getObject(getObjectRequest, ResponseTransformer.toBytes());
     }
 
     private ResponseBytes<GetObjectResponse> getObject(FakeS3Client fakeS3Client, URI s3Uri) {
+        return getObject(fakeS3Client, s3Uri, null);
+    }
+
+    private ResponseBytes<GetObjectResponse> getObject(FakeS3Client fakeS3Client, URI s3Uri, String range) {
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                                                 .bucket(s3Uri.getHost())
                                                 .key(s3Uri.getPath())
+                                                .range(range)
                                                 .build();
         ResponseBytes<GetObjectResponse> result =
             fakeS3Client.getObject(getObjectRequest, ResponseTransformer.toBytes());
@@ -56,16 +1765,29 @@ class FakeS3ClientTest {
     }
 
     private void putObject(FakeS3Client fakeS3Client, URI s3Uri, String expectedContent) {
+        putObject(fakeS3Client, s3Uri, expectedContent.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void putObject(FakeS3Client fakeS3Client, URI s3Uri, byte[] expectedContent) {
+        putObject(fakeS3Client, s3Uri.getPath(), expectedContent);
+    }
+
+    private void putObject(FakeS3Client fakeS3Client, String key, byte[] expectedContent) {
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                                                .bucket(s3Uri.getHost())
-                                                .key(s3Uri.getPath())
+                                                .bucket(SOME_URI.getHost())
+                                                .key(key)
                                                 .build();
 
-        fakeS3Client.putObject(putObjectRequest,
-                               RequestBody.fromBytes(expectedContent.getBytes(StandardCharsets.UTF_8)));
+        fakeS3Client.putObject(putObjectRequest, RequestBody.fromBytes(expectedContent));
     }
 
     private String randomString() {
         return FAKER.lorem().sentence(10);
     }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,342 @@
+package no.unit.nva.stubs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+class FakeS3ServerTest {
+
+    public static final String SOME_BUCKET = "bucket";
+    public static final String SOME_KEY = "some/path/file.txt";
+    public static final String MULTIPART_KEY = "multipart.txt";
+    public static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>(.+)</UploadId>");
+    private FakeS3Client s3Client;
+    private FakeS3Server server;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    public void startServer() {
+        s3Client = new FakeS3Client();
+        server = new FakeS3Server(s3Client).start();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void putObjectOverHttpStoresObjectInFakeS3Client() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(objectUri(SOME_KEY))
+                                                 .PUT(BodyPublishers.ofString("content")));
+
+        assertThat(response.statusCode(), is(equalTo(200)));
+        assertThat(readObject(SOME_KEY), is(equalTo("content")));
+    }
+
+    @Test
+    public void putObjectOverHttpDecodesAwsChunkedPayload() throws Exception {
+        String chunkedBody = "5;chunk-signature=abc\r\nhello\r\n"
+                             + "6;chunk-signature=def\r\n world\r\n"
+                             + "0;chunk-signature=ghi\r\n\r\n";
+
+        send(HttpRequest.newBuilder(objectUri(SOME_KEY))
+                 .header("x-amz-content-sha256", "STREAMING-AWS4-HMAC-SHA256-PAYLOAD")
+                 .header("x-amz-decoded-content-length", "11")
+                 .header("Content-Encoding", "aws-chunked")
+                 .PUT(BodyPublishers.ofString(chunkedBody)));
+
+        assertThat(readObject(SOME_KEY), is(equalTo("hello world")));
+    }
+
+    @Test
+    public void putObjectOverHttpReturnsInvalidArgumentWhenDecodedContentLengthIsNotANumber() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(objectUri(SOME_KEY))
+                                                 .header("x-amz-content-sha256", "STREAMING-AWS4-HMAC-SHA256-PAYLOAD")
+                                                 .header("x-amz-decoded-content-length", "eleven")
+                                                 .header("Content-Encoding", "aws-chunked")
+                                                 .PUT(BodyPublishers.ofString("0;chunk-signature=abc\r\n\r\n")));
+
+        assertThat(response.statusCode(), is(equalTo(400)));
+        assertThat(response.body(), containsString("<Code>InvalidArgument</Code>"));
+    }
+
+    @Test
+    public void putObjectOverHttpReturnsIncompleteBodyWhenChunkSizeIsNotHexadecimal() throws Exception {
+        String chunkedBody = "five;chunk-signature=abc\r\nhello\r\n";
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(objectUri(SOME_KEY))
+                                                 .header("x-amz-content-sha256", "STREAMING-AWS4-HMAC-SHA256-PAYLOAD")
+                                                 .header("x-amz-decoded-content-length", "5")
+                                                 .header("Content-Encoding", "aws-chunked")
+                                                 .PUT(BodyPublishers.ofString(chunkedBody)));
+
+        assertThat(response.statusCode(), is(equalTo(400)));
+        assertThat(response.body(), containsString("<Code>IncompleteBody</Code>"));
+    }
+
+    @Test
+    public void getObjectOverHttpReturnsPartialContentForRange() throws Exception {
+        storeObject(SOME_KEY, "0123456789");
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(objectUri(SOME_KEY))
+                                                 .header("Range", "bytes=2-4")
+                                                 .GET());
+
+        assertThat(response.statusCode(), is(equalTo(206)));
+        assertThat(response.body(), is(equalTo("234")));
+        assertThat(response.headers().firstValue("Content-Range").orElseThrow(), is(equalTo("bytes 2-4/10")));
+    }
+
+    @Test
+    public void getObjectOverHttpReturnsNoSuchKeyErrorDocumentWhenObjectIsMissing() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(objectUri(SOME_KEY)).GET());
+
+        assertThat(response.statusCode(), is(equalTo(404)));
+        assertThat(response.body(), containsString("<Code>NoSuchKey</Code>"));
+    }
+
+    @Test
+    public void headAndConditionalGetOverHttpRevalidateWithoutTransferringContent() throws Exception {
+        storeObject(SOME_KEY, "content");
+
+        HttpResponse<String> head = send(HttpRequest.newBuilder(objectUri(SOME_KEY))
+                                             .method("HEAD", BodyPublishers.noBody()));
+        String eTag = head.headers().firstValue("ETag").orElseThrow();
+        HttpResponse<String> conditionalGet = send(HttpRequest.newBuilder(objectUri(SOME_KEY))
+                                                       .header("If-None-Match", eTag)
+                                                       .GET());
+
+        assertThat(head.statusCode(), is(equalTo(200)));
+        assertThat(head.headers().firstValue("Content-Length").orElseThrow(), is(equalTo("7")));
+        assertThat(conditionalGet.statusCode(), is(equalTo(304)));
+        assertThat(conditionalGet.body(), is(equalTo("")));
+    }
+
+    @Test
+    public void listObjectsV2OverHttpReturnsKeysAndCommonPrefixes() throws Exception {
+        storeObject("some/path/file.txt", "content");
+        storeObject("some/other/file.txt", "content");
+        storeObject("some/file.txt", "content");
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(
+            URI.create(server.getEndpoint() + "/" + SOME_BUCKET + "?list-type=2&prefix=some%2F&delimiter=%2F")).GET());
+
+        assertThat(response.statusCode(), is(equalTo(200)));
+        assertThat(response.body(), containsString("<Key>some/file.txt</Key>"));
+        assertThat(response.body(), containsString("<CommonPrefixes><Prefix>some/other/</Prefix></CommonPrefixes>"));
+        assertThat(response.body(), containsString("<KeyCount>3</KeyCount>"));
+    }
+
+    @Test
+    public void listObjectsOverHttpReturnsInvalidArgumentWhenMaxKeysIsNotANumber() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(
+            URI.create(server.getEndpoint() + "/" + SOME_BUCKET + "?list-type=2&max-keys=many")).GET());
+
+        assertThat(response.statusCode(), is(equalTo(400)));
+        assertThat(response.body(), containsString("<Code>InvalidArgument</Code>"));
+    }
+
+    @Test
+    public void uploadPartOverHttpReturnsInvalidArgumentWhenPartNumberIsMissingOrNotANumber() throws Exception {
+        HttpResponse<String> initiated = send(HttpRequest.newBuilder(URI.create(objectUri(SOME_KEY) + "?uploads"))
+                                                  .POST(BodyPublishers.noBody()));
+        Matcher uploadId = UPLOAD_ID.matcher(initiated.body());
+        assertThat(uploadId.find(), is(true));
+
+        HttpResponse<String> missing = send(HttpRequest.newBuilder(
+            URI.create(objectUri(SOME_KEY) + "?uploadId=" + uploadId.group(1)))
+                                                .PUT(BodyPublishers.ofString("content")));
+        HttpResponse<String> notANumber = send(HttpRequest.newBuilder(
+            URI.create(objectUri(SOME_KEY) + "?partNumber=first&uploadId=" + uploadId.group(1)))
+                                                   .PUT(BodyPublishers.ofString("content")));
+
+        assertThat(missing.statusCode(), is(equalTo(400)));
+        assertThat(missing.body(), containsString("<Code>InvalidArgument</Code>"));
+        assertThat(notANumber.statusCode(), is(equalTo(400)));
+        assertThat(notANumber.body(), containsString("<Code>InvalidArgument</Code>"));
+    }
+
+    @Test
+    public void multipartUploadOverHttpStoresPartsAsOneObject() throws Exception {
+        HttpResponse<String> initiated = send(HttpRequest.newBuilder(URI.create(objectUri(SOME_KEY) + "?uploads"))
+                                                  .POST(BodyPublishers.noBody()));
+        Matcher uploadId = UPLOAD_ID.matcher(initiated.body());
+        assertThat(uploadId.find(), is(true));
+        String eTag = send(HttpRequest.newBuilder(
+            URI.create(objectUri(SOME_KEY) + "?partNumber=1&uploadId=" + uploadId.group(1)))
+                               .PUT(BodyPublishers.ofString("content")))
+                          .headers()
+                          .firstValue("ETag")
+                          .orElseThrow();
+        String completion = "<CompleteMultipartUpload><Part><PartNumber>1</PartNumber><ETag>" + eTag
+                            + "</ETag></Part></CompleteMultipartUpload>";
+
+        HttpResponse<String> completed = send(HttpRequest.newBuilder(
+            URI.create(objectUri(SOME_KEY) + "?uploadId=" + uploadId.group(1)))
+                                                  .POST(BodyPublishers.ofString(completion)));
+
+        assertThat(completed.statusCode(), is(equalTo(200)));
+        assertThat(readObject(SOME_KEY), is(equalTo("content")));
+    }
+
+    @Test
+    public void copyObjectOverHttpCopiesObjectWithinTheBucket() throws Exception {
+        storeObject(SOME_KEY, "content");
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(objectUri("copy.txt"))
+                                                 .header("x-amz-copy-source", "/" + SOME_BUCKET + "/" + SOME_KEY)
+                                                 .PUT(BodyPublishers.noBody()));
+
+        assertThat(response.statusCode(), is(equalTo(200)));
+        assertThat(response.body(), containsString("<CopyObjectResult"));
+        assertThat(readObject("copy.txt"), is(equalTo("content")));
+    }
+
+    @Test
+    public void deleteObjectOverHttpRemovesObject() throws Exception {
+        storeObject(SOME_KEY, "content");
+
+        HttpResponse<String> deleted = send(HttpRequest.newBuilder(objectUri(SOME_KEY)).DELETE());
+
+        assertThat(deleted.statusCode(), is(equalTo(204)));
+        assertThat(send(HttpRequest.newBuilder(objectUri(SOME_KEY)).GET()).statusCode(), is(equalTo(404)));
+    }
+
+    @Test
+    public void deleteObjectsOverHttpRemovesTheListedKeys() throws Exception {
+        storeObject("first.txt", "content");
+        storeObject("second.txt", "content");
+        String body = "<Delete><Object><Key>first.txt</Key></Object><Object><Key>second.txt</Key></Object></Delete>";
+
+        HttpResponse<String> deleted = send(HttpRequest.newBuilder(
+            URI.create(server.getEndpoint() + "/" + SOME_BUCKET + "?delete")).POST(BodyPublishers.ofString(body)));
+
+        assertThat(deleted.statusCode(), is(equalTo(200)));
+        assertThat(deleted.body(), containsString("<Deleted><Key>first.txt</Key></Deleted>"));
+        assertThat(send(HttpRequest.newBuilder(objectUri("second.txt")).GET()).statusCode(), is(equalTo(404)));
+    }
+
+    @Test
+    public void createAndListBucketsOverHttp() throws Exception {
+        HttpResponse<String> created = send(HttpRequest.newBuilder(URI.create(server.getEndpoint() + "/new-bucket"))
+                                                .PUT(BodyPublishers.noBody()));
+
+        HttpResponse<String> listed = send(HttpRequest.newBuilder(URI.create(server.getEndpoint() + "/")).GET());
+
+        assertThat(created.statusCode(), is(equalTo(200)));
+        assertThat(listed.body(), containsString("<Bucket><Name>new-bucket</Name><CreationDate>"));
+    }
+
+    @Test
+    public void sdkClientPointedAtTheEndpointPutsGetsListsUploadsAndDeletesObjects() {
+        try (S3Client sdkClient = sdkClient()) {
+            sdkClient.putObject(PutObjectRequest.builder().bucket(SOME_BUCKET).key(SOME_KEY).build(),
+                                RequestBody.fromString("0123456789"));
+            ResponseBytes<GetObjectResponse> range = sdkClient.getObject(
+                GetObjectRequest.builder().bucket(SOME_BUCKET).key(SOME_KEY).range("bytes=2-5").build(),
+                ResponseTransformer.toBytes());
+            String uploadId = sdkClient.createMultipartUpload(
+                CreateMultipartUploadRequest.builder().bucket(SOME_BUCKET).key(MULTIPART_KEY).build()).uploadId();
+            CompletedPart first = uploadPart(sdkClient, uploadId, 1, "first ");
+            CompletedPart second = uploadPart(sdkClient, uploadId, 2, "second");
+            sdkClient.completeMultipartUpload(
+                CompleteMultipartUploadRequest.builder()
+                    .bucket(SOME_BUCKET)
+                    .key(MULTIPART_KEY)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(first, second).build())
+                    .build());
+            ListObjectsV2Response listed =
+                sdkClient.listObjectsV2(ListObjectsV2Request.builder().bucket(SOME_BUCKET).build());
+            sdkClient.deleteObject(DeleteObjectRequest.builder().bucket(SOME_BUCKET).key(SOME_KEY).build());
+
+            assertThat(range.asUtf8String(), is(equalTo("2345")));
+            assertThat(range.response().contentRange(), is(equalTo("bytes 2-5/10")));
+            assertThat(readObject(MULTIPART_KEY), is(equalTo("first second")));
+            assertThat(listed.contents().stream().map(S3Object::key).collect(Collectors.toList()),
+                       contains(MULTIPART_KEY, SOME_KEY));
+            assertThrows(NoSuchKeyException.class,
+                         () -> sdkClient.getObject(GetObjectRequest.builder().bucket(SOME_BUCKET).key(SOME_KEY).build(),
+                                                   ResponseTransformer.toBytes()));
+        }
+    }
+
+    private S3Client sdkClient() {
+        return S3Client.builder()
+                   .endpointOverride(server.getEndpoint())
+                   .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                   .region(Region.EU_WEST_1)
+                   .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+                   .httpClient(UrlConnectionHttpClient.create())
+                   .build();
+    }
+
+    private static CompletedPart uploadPart(S3Client sdkClient, String uploadId, int partNumber, String content) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                                        .bucket(SOME_BUCKET)
+                                        .key(MULTIPART_KEY)
+                                        .uploadId(uploadId)
+                                        .partNumber(partNumber)
+                                        .build();
+        String eTag = sdkClient.uploadPart(request, RequestBody.fromString(content)).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return httpClient.send(request.build(), BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    private URI objectUri(String key) {
+        return URI.create(server.getEndpoint() + "/" + SOME_BUCKET + "/" + key);
+    }
+
+    private void storeObject(String key, String content) {
+        s3Client.putObject(PutObjectRequest.builder().bucket(SOME_BUCKET).key(key).build(),
+                           RequestBody.fromString(content));
+    }
+
+    private String readObject(String key) {
+        return s3Client.getObject(GetObjectRequest.builder().bucket(SOME_BUCKET).key(key).build(),
+                                  ResponseTransformer.toBytes()).asUtf8String();
+    }
+}
@@ -3,12 +3,36 @@ package no.unit.nva.stubs;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.amazonaws.services.securitytoken.model.AWSSecurityTokenServiceException;
 import com.amazonaws.services.securitytoken.model.AssumeRoleRequest;
+import com.amazonaws.services.securitytoken.model.AssumeRoleResult;
 import com.amazonaws.services.securitytoken.model.Credentials;
+import com.amazonaws.services.securitytoken.model.GetCallerIdentityRequest;
+import com.amazonaws.services.securitytoken.model.GetCallerIdentityResult;
+import com.amazonaws.services.securitytoken.model.GetFederationTokenRequest;
+import com.amazonaws.services.securitytoken.model.GetFederationTokenResult;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 
 class FakeStsClientTest {
 
+    private static final String SOME_ROLE_ARN = "arn:aws:iam::123456789012:role/some-role";
+    private static final int CONCURRENT_CALLERS = 8;
+    private static final Instant SOME_INSTANT = Instant.parse("2021-10-01T12:00:00Z");
+    private static final String OTHER_ROLE_ARN = "arn:aws:iam::123456789012:role/other-role";
+
     @Test
     public void assumeRoleReturnsNonEmptyCredentials() {
         FakeStsClient fakeStsClient = new FakeStsClient();
@@ -18,5 +42,165 @@ class FakeStsClientTest {
         assertThat(credentials.getSessionToken(), is(equalTo(FakeStsClient.SAMPLE_SESSION_TOKEN)));
     }
 
+    @Test
+    public void assumeRoleThrowsThrottlingWhenRoleExceedsItsRequestRate() {
+        FakeStsClient fakeStsClient = new FakeStsClient()
+                                          .withLatencyModel(LatencyModel.builder()
+                                                                .withReadRequestsPerSecond(1)
+                                                                .withClock(Clock.fixed(Instant.now(), ZoneOffset.UTC))
+                                                                .build());
+        AssumeRoleRequest request = new AssumeRoleRequest().withRoleArn("arn:aws:iam::123456789012:role/some-role");
+        fakeStsClient.assumeRole(request);
+
+        AWSSecurityTokenServiceException exception =
+            assertThrows(AWSSecurityTokenServiceException.class, () -> fakeStsClient.assumeRole(request));
+
+        assertThat(exception.getErrorCode(), is(equalTo(FakeStsClient.THROTTLING_ERROR_CODE)));
+        assertThat(exception.getStatusCode(), is(equalTo(400)));
+    }
+
+    @Test
+    public void assumeRoleReturnsCachedCredentialsPerRoleAndSession() {
+        FakeStsClient fakeStsClient = new FakeStsClient();
+
+        Credentials first = fakeStsClient.assumeRole(assumeRoleRequest(SOME_ROLE_ARN, "first")).getCredentials();
+        Credentials again = fakeStsClient.assumeRole(assumeRoleRequest(SOME_ROLE_ARN, "first")).getCredentials();
+        Credentials second = fakeStsClient.assumeRole(assumeRoleRequest(SOME_ROLE_ARN, "second")).getCredentials();
+        Credentials otherRole = fakeStsClient.assumeRole(assumeRoleRequest(OTHER_ROLE_ARN, "first")).getCredentials();
+
+        assertThat(again, is(equalTo(first)));
+        assertThat(second.getAccessKeyId(), is(not(equalTo(first.getAccessKeyId()))));
+        assertThat(otherRole.getAccessKeyId(), is(not(equalTo(first.getAccessKeyId()))));
+        assertThat(otherRole.getSessionToken(), is(not(equalTo(first.getSessionToken()))));
+    }
+
+    @Test
+    public void assumeRoleReturnsCredentialsExpiringAfterRequestedDuration() {
+        FakeStsClient fakeStsClient = new FakeStsClient();
+        Instant before = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        AssumeRoleResult result =
+            fakeStsClient.assumeRole(assumeRoleRequest(SOME_ROLE_ARN, "session").withDurationSeconds(900));
+
+        Instant expiration = result.getCredentials().getExpiration().toInstant();
+        assertThat(expiration.isBefore(before.plusSeconds(900)), is(false));
+        assertThat(expiration.isAfter(Instant.now().plusSeconds(900)), is(false));
+        assertThat(result.getAssumedRoleUser().getArn(),
+                   is(equalTo("arn:aws:sts::123456789012:assumed-role/some-role/session")));
+    }
+
+    @Test
+    public void assumeRoleIssuesCredentialsForEachRequestedDurationOfASession() {
+        VirtualClock clock = new VirtualClock(SOME_INSTANT);
+        FakeStsClient fakeStsClient = new FakeStsClient().withClock(clock);
+
+        Credentials shortSession = fakeStsClient.assumeRole(
+            assumeRoleRequest(SOME_ROLE_ARN, "session").withDurationSeconds(900)).getCredentials();
+        Credentials longSession = fakeStsClient.assumeRole(
+            assumeRoleRequest(SOME_ROLE_ARN, "session").withDurationSeconds(7200)).getCredentials();
+        Credentials shortSessionAgain = fakeStsClient.assumeRole(
+            assumeRoleRequest(SOME_ROLE_ARN, "session").withDurationSeconds(900)).getCredentials();
+
+        assertThat(shortSession.getExpiration().toInstant(), is(equalTo(SOME_INSTANT.plusSeconds(900))));
+        assertThat(longSession.getExpiration().toInstant(), is(equalTo(SOME_INSTANT.plusSeconds(7200))));
+        assertThat(shortSessionAgain, is(equalTo(shortSession)));
+    }
+
+    @Test
+    public void assumeRoleThrowsValidationErrorWhenDurationIsOutsideLimits() {
+        FakeStsClient fakeStsClient = new FakeStsClient();
+        AssumeRoleRequest request = assumeRoleRequest(SOME_ROLE_ARN, "session").withDurationSeconds(60);
+
+        AWSSecurityTokenServiceException exception =
+            assertThrows(AWSSecurityTokenServiceException.class, () -> fakeStsClient.assumeRole(request));
+
+        assertThat(exception.getErrorCode(), is(equalTo(FakeStsClient.VALIDATION_ERROR_CODE)));
+    }
+
+    @Test
+    public void getSessionTokenAndGetFederationTokenIssueCredentialsOfTheCaller() {
+        FakeStsClient fakeStsClient = new FakeStsClient();
+
+        Credentials sessionCredentials = fakeStsClient.getSessionToken().getCredentials();
+        GetFederationTokenResult federation =
+            fakeStsClient.getFederationToken(new GetFederationTokenRequest().withName("some-user"));
+        GetCallerIdentityResult identity = fakeStsClient.getCallerIdentity(new GetCallerIdentityRequest());
+
+        assertThat(fakeStsClient.getSessionToken().getCredentials(), is(equalTo(sessionCredentials)));
+        assertThat(federation.getCredentials().getAccessKeyId(),
+                   is(not(equalTo(sessionCredentials.getAccessKeyId()))));
+        assertThat(federation.getFederatedUser().getFederatedUserId(), is(equalTo("123456789012:some-user")));
+        assertThat(identity.getArn(), is(equalTo(FakeStsClient.CALLER_ARN)));
+        assertThat(identity.getAccount(), is(equalTo(FakeStsClient.ACCOUNT_ID)));
+    }
+
+    @Test
+    public void assumeRoleIssuesNewCredentialsOnceSessionHasExpiredOnVirtualClock() {
+        VirtualClock clock = new VirtualClock(SOME_INSTANT);
+        FakeStsClient fakeStsClient = new FakeStsClient().withClock(clock).withSessionDuration(Duration.ofMinutes(15));
+        AssumeRoleRequest request = assumeRoleRequest(SOME_ROLE_ARN, "session");
+        Credentials first = fakeStsClient.assumeRole(request).getCredentials();
+
+        clock.advance(Duration.ofMinutes(14));
+        Credentials beforeExpiry = fakeStsClient.assumeRole(request).getCredentials();
+        clock.advance(Duration.ofMinutes(1));
+        Credentials afterExpiry = fakeStsClient.assumeRole(request).getCredentials();
+
+        assertThat(beforeExpiry, is(equalTo(first)));
+        assertThat(afterExpiry.getAccessKeyId(), is(not(equalTo(first.getAccessKeyId()))));
+        assertThat(afterExpiry.getExpiration().toInstant(), is(equalTo(clock.instant().plus(Duration.ofMinutes(15)))));
+    }
+
+    @Test
+    public void getAssumeRoleCountShowsCachingProviderCallsStsOncePerValidityWindow() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        FakeStsClient fakeStsClient = new FakeStsClient().withClock(clock);
+        CachingCredentialsProvider provider =
+            new CachingCredentialsProvider(fakeStsClient, clock, assumeRoleRequest(SOME_ROLE_ARN, "handler"));
+
+        fetchConcurrently(provider);
+        clock.advance(FakeStsClient.DEFAULT_ROLE_SESSION_DURATION);
+        fetchConcurrently(provider);
+
+        assertThat(fakeStsClient.getAssumeRoleCount(SOME_ROLE_ARN, "handler"), is(equalTo(2L)));
+        assertThat(fakeStsClient.getAssumeRoleCount(SOME_ROLE_ARN), is(equalTo(2L)));
+        assertThat(fakeStsClient.getAssumeRoleCount(OTHER_ROLE_ARN), is(equalTo(0L)));
+    }
+
+    private static void fetchConcurrently(CachingCredentialsProvider provider) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_CALLERS);
+        try {
+            List<Callable<Credentials>> calls = Collections.nCopies(CONCURRENT_CALLERS * 100, provider::get);
+            for (Future<Credentials> credentials : executor.invokeAll(calls)) {
+                credentials.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 
-}
\ No newline at end of file
+    private static AssumeRoleRequest assumeRoleRequest(String roleArn, String sessionName) {
+        return new AssumeRoleRequest().withRoleArn(roleArn).withRoleSessionName(sessionName);
+    }
+
+    private static class CachingCredentialsProvider {
+
+        private final FakeStsClient stsClient;
+        private final Clock clock;
+        private final AssumeRoleRequest request;
+        private Credentials credentials;
+
+        CachingCredentialsProvider(FakeStsClient stsClient, Clock clock, AssumeRoleRequest request) {
+            this.stsClient = stsClient;
+            this.clock = clock;
+            this.request = request;
+        }
+
+        synchronized Credentials get() {
+            if (credentials == null || !clock.instant().isBefore(credentials.getExpiration().toInstant())) {
+                credentials = stsClient.assumeRole(request).getCredentials();
+            }
+            return credentials;
+        }
+    }
+}
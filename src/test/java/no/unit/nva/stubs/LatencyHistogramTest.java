@@ -0,0 +1,47 @@
+package no.unit.nva.stubs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import java.time.Duration;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    public static final long NUMBER_OF_VALUES = 1000;
+    public static final long NANOS_PER_MILLI = 1_000_000L;
+
+    @Test
+    public void percentilesAreWithinTheRelativeErrorOfTheBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LongStream.rangeClosed(1, NUMBER_OF_VALUES).forEach(millis -> histogram.record(millis * NANOS_PER_MILLI));
+
+        LatencyDistribution distribution = histogram.snapshot();
+
+        assertThat(distribution.getCount(), is(equalTo(NUMBER_OF_VALUES)));
+        assertThat(distribution.getMax(), is(equalTo(Duration.ofMillis(NUMBER_OF_VALUES))));
+        assertIsCloseTo(distribution.getPercentile(50), Duration.ofMillis(500));
+        assertIsCloseTo(distribution.getPercentile(99), Duration.ofMillis(990));
+        assertThat(distribution.getPercentile(100), is(equalTo(distribution.getMax())));
+    }
+
+    @Test
+    public void everyValueFallsInsideTheBucketItIsCountedIn() {
+        LongStream.of(0, 1, 31, 32, 33, 63, 64, 1000, 123_456_789, Long.MAX_VALUE).forEach(value -> {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.highestValueIn(index), is(greaterThanOrEqualTo(value)));
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestValueIn(index - 1), is(lessThanOrEqualTo(value - 1)));
+            }
+        });
+    }
+
+    private static void assertIsCloseTo(Duration actual, Duration expected) {
+        long tolerance = expected.toNanos() / LatencyHistogram.SUB_BUCKET_COUNT;
+        assertThat(actual.toNanos(), is(greaterThanOrEqualTo(expected.toNanos())));
+        assertThat(actual.toNanos(), is(lessThanOrEqualTo(expected.toNanos() + tolerance)));
+    }
+}
@@ -0,0 +1,78 @@
+package no.unit.nva.stubs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import no.unit.nva.stubs.LatencyModel.RequestType;
+import org.junit.jupiter.api.Test;
+
+class LatencyModelTest {
+
+    public static final String SOME_PREFIX = "some/prefix/";
+
+    @Test
+    public void responseTimeIsBaseLatencyPlusTransferTimeAtConfiguredBandwidth() {
+        LatencyModel model = LatencyModel.builder()
+                                 .withBaseLatency(Duration.ofMillis(20))
+                                 .withBytesPerSecond(1000)
+                                 .build();
+
+        assertThat(model.responseTime(500), is(equalTo(Duration.ofMillis(520))));
+    }
+
+    @Test
+    public void tryAcquireAdmitsRequestsAgainAsTheRateLimitRefills() {
+        SteppingClock clock = new SteppingClock();
+        LatencyModel model = LatencyModel.builder().withWriteRequestsPerSecond(10).withClock(clock).build();
+        for (int i = 0; i < 10; i++) {
+            assertThat(model.tryAcquire(SOME_PREFIX, RequestType.WRITE), is(true));
+        }
+        assertThat(model.tryAcquire(SOME_PREFIX, RequestType.WRITE), is(false));
+
+        clock.advance(Duration.ofMillis(100));
+
+        assertThat(model.tryAcquire(SOME_PREFIX, RequestType.WRITE), is(true));
+        assertThat(model.tryAcquire(SOME_PREFIX, RequestType.WRITE), is(false));
+    }
+
+    @Test
+    public void tryAcquireLimitsReadsAndWritesIndependently() {
+        LatencyModel model = LatencyModel.builder()
+                                 .withWriteRequestsPerSecond(1)
+                                 .withClock(Clock.fixed(Instant.now(), ZoneOffset.UTC))
+                                 .build();
+        model.tryAcquire(SOME_PREFIX, RequestType.WRITE);
+
+        assertThat(model.tryAcquire(SOME_PREFIX, RequestType.WRITE), is(false));
+        assertThat(model.tryAcquire(SOME_PREFIX, RequestType.READ), is(true));
+    }
+
+    private static class SteppingClock extends Clock {
+
+        private Instant now = Instant.now();
+
+        public void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package no.unit.nva.stubs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MemoryBudgetTest {
+
+    public static final int OBJECT_SIZE = 40;
+    public static final long BUDGET_FOR_TWO_OBJECTS = 2 * OBJECT_SIZE;
+
+    @TempDir
+    public Path temporaryFolder;
+
+    @Test
+    public void admitSpillsLeastRecentlyUsedContentWhenBudgetIsExceeded() throws IOException {
+        try (MemoryBudget budget = new MemoryBudget(BUDGET_FOR_TWO_OBJECTS, temporaryFolder)) {
+            SpillingContent first = (SpillingContent) budget.admit(content('a'));
+            SpillingContent second = (SpillingContent) budget.admit(content('b'));
+            first.read(0, OBJECT_SIZE);
+
+            SpillingContent third = (SpillingContent) budget.admit(content('c'));
+
+            assertThat(first.isResident(), is(true));
+            assertThat(second.isResident(), is(false));
+            assertThat(third.isResident(), is(true));
+            assertThat(budget.getResidentBytes(), is(equalTo(BUDGET_FOR_TWO_OBJECTS)));
+            assertThat(budget.getSpilledBytes(), is(equalTo((long) OBJECT_SIZE)));
+        }
+    }
+
+    @Test
+    public void spilledContentReadsTheSameBytesFromDisk() throws IOException {
+        try (MemoryBudget budget = new MemoryBudget(0, temporaryFolder)) {
+            ObjectContent spilled = budget.admit(content('x'));
+
+            assertThat(((SpillingContent) spilled).isResident(), is(false));
+            assertThat(asString(spilled.newInputStream()), is(equalTo("x".repeat(OBJECT_SIZE))));
+            assertThat(asString(spilled.slice(10, 5).newInputStream()), is(equalTo("xxxxx")));
+            assertThat(spilled.read(OBJECT_SIZE - 2, OBJECT_SIZE).remaining(), is(equalTo(2)));
+        }
+    }
+
+    private static ObjectContent content(char filler) {
+        byte[] bytes = String.valueOf(filler).repeat(OBJECT_SIZE).getBytes(StandardCharsets.UTF_8);
+        return new DirectBufferContent(ByteBuffer.wrap(bytes));
+    }
+
+    private static String asString(InputStream inputStream) throws IOException {
+        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
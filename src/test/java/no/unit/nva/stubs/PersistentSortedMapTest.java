@@ -0,0 +1,69 @@
+package no.unit.nva.stubs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class PersistentSortedMapTest {
+
+    public static final int NUMBER_OF_OPERATIONS = 10_000;
+    public static final int KEY_RANGE = 500;
+    public static final Random RANDOM = new Random(42);
+
+    @Test
+    public void mapBehavesLikeSortedMapUnderRandomPutsAndRemoves() {
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        PersistentSortedMap<String, Integer> actual = PersistentSortedMap.empty();
+        for (int operation = 0; operation < NUMBER_OF_OPERATIONS; operation++) {
+            String key = randomKey();
+            if (RANDOM.nextBoolean()) {
+                expected.put(key, operation);
+                actual = actual.put(key, operation);
+            } else {
+                expected.remove(key);
+                actual = actual.remove(key);
+            }
+        }
+
+        assertThat(actual.size(), is(equalTo(expected.size())));
+        assertThat(entries(actual.iterator()), is(equalTo(new ArrayList<>(expected.entrySet()))));
+        String fromKey = randomKey();
+        assertThat(entries(actual.tailIterator(fromKey)),
+                   is(equalTo(new ArrayList<>(expected.tailMap(fromKey, true).entrySet()))));
+    }
+
+    @Test
+    public void updatesLeaveEarlierVersionsUnchanged() {
+        PersistentSortedMap<String, Integer> original = PersistentSortedMap.<String, Integer>empty()
+                                                            .put("a", 1)
+                                                            .put("b", 2);
+
+        PersistentSortedMap<String, Integer> updated = original.put("a", 10).remove("b").put("c", 3);
+
+        assertThat(original.get("a"), is(equalTo(1)));
+        assertThat(original.get("b"), is(equalTo(2)));
+        assertThat(original.get("c"), is(nullValue()));
+        assertThat(updated.get("a"), is(equalTo(10)));
+        assertThat(updated.get("b"), is(nullValue()));
+        assertThat(updated.size(), is(equalTo(2)));
+    }
+
+    private static String randomKey() {
+        return String.format("key%03d", RANDOM.nextInt(KEY_RANGE));
+    }
+
+    private static List<Entry<String, Integer>> entries(Iterator<Entry<String, Integer>> iterator) {
+        List<Entry<String, Integer>> entries = new ArrayList<>();
+        iterator.forEachRemaining(entry -> entries.add(new SimpleImmutableEntry<>(entry)));
+        return entries;
+    }
+}
@@ -0,0 +1,69 @@
+package no.unit.nva.stubs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsEmptyCollection.empty;
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    public static final long START_TIME = 1_600_000_000_000L;
+    public static final int NUMBER_OF_TASKS = 2000;
+    public static final long ONE_YEAR_IN_MILLIS = 365L * 24 * 60 * 60 * 1000;
+    public static final Random RANDOM = new Random(7);
+
+    @Test
+    public void advanceToExpiresTasksInDeadlineOrderWhenTheyFallDue() {
+        TimingWheel<Long> timingWheel = new TimingWheel<>(START_TIME);
+        List<Long> deadlines = new ArrayList<>();
+        List<Long> expired = new ArrayList<>();
+        for (int task = 0; task < NUMBER_OF_TASKS; task++) {
+            long deadline = START_TIME + 1 + (long) (RANDOM.nextDouble() * ONE_YEAR_IN_MILLIS);
+            deadlines.add(deadline);
+            timingWheel.schedule(deadline, deadline, expired::add);
+        }
+        long now = START_TIME;
+        while (now < START_TIME + ONE_YEAR_IN_MILLIS) {
+            now += (long) (RANDOM.nextDouble() * ONE_YEAR_IN_MILLIS / 50);
+            timingWheel.advanceTo(now, expired::add);
+            long currentTime = now;
+            assertThat(expired, is(equalTo(deadlines.stream()
+                                               .filter(deadline -> deadline <= currentTime)
+                                               .sorted()
+                                               .collect(Collectors.toList()))));
+        }
+        timingWheel.advanceTo(START_TIME + ONE_YEAR_IN_MILLIS + 1, expired::add);
+
+        assertThat(expired.size(), is(equalTo(NUMBER_OF_TASKS)));
+        assertThat(timingWheel.size(), is(equalTo(0)));
+    }
+
+    @Test
+    public void scheduleExpiresTaskAtOnceWhenDeadlineHasPassed() {
+        TimingWheel<String> timingWheel = new TimingWheel<>(START_TIME);
+        List<String> expired = new ArrayList<>();
+
+        timingWheel.schedule(START_TIME, "due", expired::add);
+        timingWheel.schedule(START_TIME + 1, "pending", expired::add);
+
+        assertThat(expired, contains("due"));
+        assertThat(timingWheel.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void advanceToDoesNotExpireTasksBeforeTheirDeadline() {
+        TimingWheel<String> timingWheel = new TimingWheel<>(START_TIME);
+        List<String> expired = new ArrayList<>();
+        timingWheel.schedule(START_TIME + ONE_YEAR_IN_MILLIS, "late", expired::add);
+
+        timingWheel.advanceTo(START_TIME + ONE_YEAR_IN_MILLIS - 1, expired::add);
+
+        assertThat(expired, is(empty()));
+    }
+}